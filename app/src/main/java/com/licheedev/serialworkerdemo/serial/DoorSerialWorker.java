@@ -1,21 +1,42 @@
 package com.licheedev.serialworkerdemo.serial;
 
 import android.os.Handler;
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import com.licheedev.serialworker.core.DataReceiver;
 import com.licheedev.serialworker.worker.RxRs232SerialWorkerX;
 import com.licheedev.serialworkerdemo.serial.command.RecvCommand;
 import com.licheedev.serialworkerdemo.serial.command.SendCommand;
+import java.util.concurrent.Executor;
 
 /**
  * 柜子的串口操作
  */
 public class DoorSerialWorker extends RxRs232SerialWorkerX<SendCommand, RecvCommand> {
 
-    private final Handler mRecvHandler;
+    /**
+     * 命令码对应的关联键，预先装箱，免得每帧都分配Integer（大于127的命令码不在Integer缓存中）
+     */
+    private static final Integer[] CMD_KEYS = new Integer[256];
 
-    public DoorSerialWorker(@Nullable Handler recvHandler) {
-        mRecvHandler = recvHandler;
+    static {
+        for (int i = 0; i < CMD_KEYS.length; i++) {
+            CMD_KEYS[i] = i;
+        }
+    }
+
+    public DoorSerialWorker(@Nullable final Handler recvHandler) {
+        // 开锁命令插到轮询命令前面，每级优先级相当于提前1秒排队
+        setPriorityScheduling(true, 1000);
+        if (recvHandler != null) {
+            // 在recvHandler的线程回调收到的数据，最多缓存256个，处理不过来时丢弃最旧的
+            setReceiveDispatch(new Executor() {
+                @Override
+                public void execute(@NonNull Runnable command) {
+                    recvHandler.post(command);
+                }
+            }, 256, OVERFLOW_DROP_OLDEST);
+        }
     }
 
     @Override
@@ -24,6 +45,21 @@ public class DoorSerialWorker extends RxRs232SerialWorkerX<SendCommand, RecvComm
         return sendData.getCmd() == recvData.getCmd();
     }
 
+    @Override
+    protected Object getSendKey(SendCommand sendData) {
+        // 用命令码作为关联键，收到数据时直接找到同命令码的请求
+        return cmdKey(sendData.getCmd());
+    }
+
+    @Override
+    protected Object getRecvKey(RecvCommand recvData) {
+        return cmdKey(recvData.getCmd());
+    }
+
+    private static Object cmdKey(int cmd) {
+        return cmd >= 0 && cmd < CMD_KEYS.length ? CMD_KEYS[cmd] : Integer.valueOf(cmd);
+    }
+
     @Override
     public DataReceiver<RecvCommand> newReceiver() {
         return new DoorDataReceiver();
@@ -33,16 +69,7 @@ public class DoorSerialWorker extends RxRs232SerialWorkerX<SendCommand, RecvComm
     public void onReceiveData(final RecvCommand recvData) {
         // 把数据暴露出去
         if (mReceiveCallback != null) {
-            if (mRecvHandler != null) {
-                mRecvHandler.post(new Runnable() {
-                    @Override
-                    public void run() {
-                        mReceiveCallback.onReceive(recvData);
-                    }
-                });
-            } else {
-                mReceiveCallback.onReceive(recvData);
-            }
+            mReceiveCallback.onReceive(recvData);
         }
     }
 
@@ -1,11 +1,12 @@
 package com.licheedev.serialworkerdemo.serial.command.send;
 
+import com.licheedev.serialworker.core.Prioritized;
 import com.licheedev.serialworkerdemo.serial.Protocol;
 
 /**
  * 4．读取控制板温度参数28
  */
-public class Send28ReadTemp extends SendBase {
+public class Send28ReadTemp extends SendBase implements Prioritized {
 
     private final byte[] mData;
 
@@ -21,4 +22,10 @@ public class Send28ReadTemp extends SendBase {
     protected byte[] getDataN() {
         return mData;
     }
+
+    @Override
+    public int getPriority() {
+        // 轮询命令，让其他命令先执行
+        return PRIORITY_LOW;
+    }
 }
@@ -1,11 +1,12 @@
 package com.licheedev.serialworkerdemo.serial.command.send;
 
+import com.licheedev.serialworker.core.Prioritized;
 import com.licheedev.serialworkerdemo.serial.Protocol;
 
 /**
  * 1．安卓板开锁发送命令A4
  */
-public class SendA4OpenDoor extends SendBase {
+public class SendA4OpenDoor extends SendBase implements Prioritized {
 
     private final byte[] mData;
     private final int mLockNum;
@@ -41,4 +42,10 @@ public class SendA4OpenDoor extends SendBase {
     public long getOpenTime() {
         return mOpenTime;
     }
+
+    @Override
+    public int getPriority() {
+        // 开锁命令优先执行，插到轮询命令前面
+        return PRIORITY_HIGH;
+    }
 }
@@ -1,6 +1,7 @@
 package com.licheedev.serialworkerdemo.serial.command.send;
 
 import android.os.SystemClock;
+import com.licheedev.serialworker.checksum.ChecksumAdapter;
 import com.licheedev.serialworkerdemo.serial.ByteUtil;
 import com.licheedev.serialworkerdemo.serial.Protocol;
 import com.licheedev.serialworkerdemo.serial.command.SendCommand;
@@ -61,9 +62,8 @@ abstract class SendBase implements SendCommand {
             byteBuffer.put((byte) cmd);
             // 填充数据N
             byteBuffer.put(dataN);
-            // 计算校验和 
-            byte xor = ByteUtil.getXOR(bytes, 0, bytes.length - 1);
-            byteBuffer.put(xor);
+            // 计算校验和，直接写到最后1字节
+            ChecksumAdapter.xor().fill(bytes, 0, bytes.length);
             mBytes = bytes;
         }
         return bytes;
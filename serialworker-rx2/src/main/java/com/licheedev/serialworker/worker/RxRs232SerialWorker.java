@@ -1,10 +1,12 @@
 package com.licheedev.serialworker.worker;
 
 import androidx.annotation.NonNull;
+import com.licheedev.serialworker.core.BatchResult;
 import com.licheedev.serialworker.core.RecvData;
 import com.licheedev.serialworker.core.SendData;
 import io.reactivex.Observable;
 import io.reactivex.schedulers.Schedulers;
+import java.util.List;
 import java.util.concurrent.Callable;
 
 /**
@@ -25,7 +27,8 @@ public abstract class RxRs232SerialWorker<S extends SendData, R extends RecvData
         return RxTool.getRxObservable(new Callable<R>() {
             @Override
             public R call() throws Exception {
-                return callOnSerialThread(rawSendNoNullCallable(sendData, getTimeout()));
+                return callOnSerialThread(rawSendNoNullCallable(sendData, getTimeout()),
+                    getSendPriority(sendData));
             }
         });
     }
@@ -47,4 +50,16 @@ public abstract class RxRs232SerialWorker<S extends SendData, R extends RecvData
     public <T extends R> Observable<T> rxSendOnIo(@NonNull S sendData, @NonNull Class<T> cast) {
         return rxSendOnIo(sendData).cast(cast);
     }
+
+    @NonNull
+    @Override
+    public Observable<List<BatchResult<R>>> rxSendBatch(@NonNull final List<S> sendDataList) {
+
+        return RxTool.getRxObservable(new Callable<List<BatchResult<R>>>() {
+            @Override
+            public List<BatchResult<R>> call() throws Exception {
+                return syncSendBatch(sendDataList);
+            }
+        });
+    }
 }
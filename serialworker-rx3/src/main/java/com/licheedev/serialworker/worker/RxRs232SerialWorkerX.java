@@ -24,7 +24,8 @@ public abstract class RxRs232SerialWorkerX<S extends SendData, R extends RecvDat
         return RxTool.getRxObservable(new Callable<R>() {
             @Override
             public R call() throws Exception {
-                return callOnReceiveThread(rawSendXCallable(sendData));
+                // 在订阅的线程中等待，不占用接收线程池
+                return sendX(sendData);
             }
         });
     }
@@ -1,9 +1,11 @@
 package com.licheedev.serialworker.worker;
 
 import androidx.annotation.NonNull;
+import com.licheedev.serialworker.core.BatchResult;
 import com.licheedev.serialworker.core.RecvData;
 import com.licheedev.serialworker.core.SendData;
 import io.reactivex.rxjava3.core.Observable;
+import java.util.List;
 
 /**
  * 收发数据操作
@@ -60,4 +62,16 @@ interface RxSendReceive<S extends SendData, R extends RecvData> {
      */
     @NonNull
     <T extends R> Observable<T> rxSendOnIo(@NonNull S sendData, @NonNull Class<T> cast);
+
+    /**
+     * 批量收发数据，需要处理异常；
+     * 收发数据在同一线程中执行；
+     * 没切线程，需自己进行线程调度
+     *
+     * @param sendDataList 发送的数据
+     * @return 每个命令的结果
+     * @see SendReceive#syncSendBatch(List)
+     */
+    @NonNull
+    Observable<List<BatchResult<R>>> rxSendBatch(@NonNull List<S> sendDataList);
 }
@@ -0,0 +1,146 @@
+package com.licheedev.serialworker.worker;
+
+import android.os.Build;
+import android.os.Debug;
+import android.system.Os;
+import android.util.Log;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.licheedev.serialworker.core.ReadWaitStrategy;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * 各个读等待策略的首字节延迟（p50/p99）和读线程的CPU占用，需要在设备上运行，结果打印到logcat；
+ * 用一个管道模拟串口：读线程按{@link BaseSerialWorker}读线程的方式检查available()，
+ * 没有数据时交给等待策略，{@link BlockingReadWaitStrategy}会poll管道的读端，跟真实串口一样由内核唤醒
+ */
+@RunWith(AndroidJUnit4.class)
+public class ReadWaitStrategyBenchmark {
+
+    private static final String TAG = "ReadWaitBenchmark";
+    private static final int SAMPLES = 300;
+    private static final int WARMUP_SAMPLES = 50;
+    private static final long MIN_GAP_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long MAX_GAP_NANOS = TimeUnit.MILLISECONDS.toNanos(15);
+
+    @Test
+    public void firstByteLatency() throws Exception {
+        assumeTrue(Build.VERSION.SDK_INT >= 21);
+        Log.i(TAG, String.format("%-28s %10s %10s %8s", "strategy", "p50(us)", "p99(us)",
+            "cpu(%)"));
+        run("BusySpinReadWaitStrategy", new BusySpinReadWaitStrategy());
+        run("YieldReadWaitStrategy", new YieldReadWaitStrategy());
+        run("BackoffReadWaitStrategy", new BackoffReadWaitStrategy());
+        run("SleepReadWaitStrategy(10)", new SleepReadWaitStrategy(10));
+        run("BlockingReadWaitStrategy", new BlockingReadWaitStrategy());
+    }
+
+    private static void run(String name, ReadWaitStrategy strategy) throws Exception {
+        FileDescriptor[] pipe = Os.pipe();
+        try {
+            Reader reader = new Reader(strategy, pipe[0], WARMUP_SAMPLES + SAMPLES);
+            Thread thread = new Thread(reader, name);
+            thread.start();
+            Random random = new Random(1);
+            byte[] data = { 1 };
+            for (int i = 0; i < WARMUP_SAMPLES + SAMPLES; i++) {
+                // 等读线程取走上一个字节，再隔一段随机时间发下一个，免得跟读线程的休眠周期同步
+                while (reader.mSentNanos != 0 && thread.isAlive()) {
+                    Thread.yield();
+                }
+                if (!thread.isAlive()) {
+                    // 读线程出错退出了
+                    break;
+                }
+                LockSupport.parkNanos(
+                    MIN_GAP_NANOS + (long) (random.nextDouble() * (MAX_GAP_NANOS - MIN_GAP_NANOS)));
+                reader.mSentNanos = System.nanoTime();
+                Os.write(pipe[1], data, 0, data.length);
+            }
+            thread.join();
+            if (reader.mError != null) {
+                throw reader.mError;
+            }
+
+            long[] latencies = Arrays.copyOfRange(reader.mLatencies, WARMUP_SAMPLES,
+                WARMUP_SAMPLES + SAMPLES);
+            Arrays.sort(latencies);
+            Log.i(TAG, String.format("%-28s %10.1f %10.1f %8.1f", name,
+                percentile(latencies, 50) / 1000.0, percentile(latencies, 99) / 1000.0,
+                reader.mCpuNanos * 100.0 / reader.mWallNanos));
+        } finally {
+            Os.close(pipe[1]);
+            Os.close(pipe[0]);
+        }
+    }
+
+    /**
+     * 百分位数
+     *
+     * @param sorted 排好序的样本
+     * @param percent 百分位，比如50、99
+     * @return
+     */
+    private static long percentile(long[] sorted, double percent) {
+        int index = (int) Math.ceil(percent / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    /**
+     * 模拟读线程
+     */
+    private static class Reader implements Runnable {
+
+        private final ReadWaitStrategy mStrategy;
+        private final FileDescriptor mFd;
+        private final long[] mLatencies;
+        private volatile long mSentNanos; // 写入管道的时间，0表示读线程已经取走
+        private long mCpuNanos;
+        private long mWallNanos;
+        private Exception mError;
+
+        Reader(ReadWaitStrategy strategy, FileDescriptor fd, int samples) {
+            mStrategy = strategy;
+            mFd = fd;
+            mLatencies = new long[samples];
+        }
+
+        @Override
+        public void run() {
+            FileInputStream inputStream = new FileInputStream(mFd);
+            mStrategy.onStart(mFd);
+            long wallStart = System.nanoTime();
+            long cpuStart = Debug.threadCpuTimeNanos();
+            int received = 0;
+            int idleCount = 0;
+            try {
+                while (received < mLatencies.length) {
+                    if (inputStream.available() > 0) {
+                        inputStream.read();
+                        mLatencies[received++] = System.nanoTime() - mSentNanos;
+                        mSentNanos = 0;
+                        idleCount = 0;
+                    } else {
+                        mStrategy.waitForData(idleCount, -1);
+                        if (idleCount < Integer.MAX_VALUE) {
+                            idleCount++;
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                mError = e;
+            }
+            mCpuNanos = Debug.threadCpuTimeNanos() - cpuStart;
+            mWallNanos = System.nanoTime() - wallStart;
+            mStrategy.onStop();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.licheedev.serialworker.worker;
+
+import android.os.Build;
+import android.system.Os;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.io.FileDescriptor;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * 用一个管道代替串口，测试poll(2)等待、超时和唤醒，需要在设备上运行
+ */
+@RunWith(AndroidJUnit4.class)
+public class SerialFdPollerTest {
+
+    private FileDescriptor[] mPipe;
+    private SerialFdPoller mPoller;
+
+    @Before
+    public void setUp() throws Exception {
+        assumeTrue(Build.VERSION.SDK_INT >= 21);
+        mPipe = Os.pipe();
+        mPoller = new SerialFdPoller(mPipe[0]);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (mPoller != null) {
+            mPoller.close();
+        }
+        if (mPipe != null) {
+            Os.close(mPipe[1]);
+            Os.close(mPipe[0]);
+        }
+    }
+
+    @Test
+    public void readable_returnsTrue() throws Exception {
+        Os.write(mPipe[1], new byte[] { 1 }, 0, 1);
+        assertTrue(mPoller.await(1000));
+    }
+
+    @Test
+    public void noData_timesOut() throws Exception {
+        long start = System.nanoTime();
+        assertFalse(mPoller.await(50));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("elapsed " + elapsed, elapsed >= 40 && elapsed < 1000);
+    }
+
+    @Test
+    public void dataArrival_wakesWaitingThread() throws Exception {
+        final AtomicBoolean readable = new AtomicBoolean();
+        final CountDownLatch done = new CountDownLatch(1);
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    readable.set(mPoller.await(-1));
+                } catch (Exception e) {
+                    //e.printStackTrace();
+                }
+                done.countDown();
+            }
+        }).start();
+        Thread.sleep(50);
+        assertEquals(1, done.getCount());
+
+        Os.write(mPipe[1], new byte[] { 1 }, 0, 1);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(readable.get());
+    }
+
+    @Test
+    public void wakeup_returnsFalse() throws Exception {
+        final AtomicBoolean readable = new AtomicBoolean(true);
+        final CountDownLatch done = new CountDownLatch(1);
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    readable.set(mPoller.await(-1));
+                } catch (Exception e) {
+                    //e.printStackTrace();
+                }
+                done.countDown();
+            }
+        }).start();
+        Thread.sleep(50);
+        mPoller.wakeup();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertFalse(readable.get());
+
+        // 唤醒用的数据已经被读走，不会让下一次立即返回
+        assertFalse(mPoller.await(50));
+    }
+
+    @Test
+    public void closed_wakeupIsIgnored() throws Exception {
+        mPoller.close();
+        mPoller.close();
+        mPoller.wakeup();
+    }
+
+    @Test
+    public void blockingStrategy_wakesOnData() throws Exception {
+        final BlockingReadWaitStrategy strategy = new BlockingReadWaitStrategy();
+        final CountDownLatch done = new CountDownLatch(1);
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                strategy.onStart(mPipe[0]);
+                try {
+                    strategy.waitForData(0, -1);
+                } catch (Exception e) {
+                    //e.printStackTrace();
+                }
+                strategy.onStop();
+                done.countDown();
+            }
+        }).start();
+        Thread.sleep(50);
+        // 一直阻塞，不像退化模式那样最多等FALLBACK_PARK_MILLIS
+        assertEquals(1, done.getCount());
+
+        Os.write(mPipe[1], new byte[] { 1 }, 0, 1);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,158 @@
+package com.licheedev.serialworker.checksum;
+
+import androidx.annotation.NonNull;
+import com.licheedev.serialworker.core.RunningChecksum;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+/**
+ * 把{@link Checksum}用于帧的校验和编码，校验码位于帧的末尾，直接在缓存中计算，不复制数据。
+ * 接收时交给{@link com.licheedev.serialworker.core.LengthFieldFrameDecoder}边接收边计算；
+ * 发送时在{@link com.licheedev.serialworker.core.SendData#toBytes()}中用{@link #fill(byte[], int, int)}填充校验码。
+ * <pre>
+ * ChecksumAdapter crc = ChecksumAdapter.crc16Modbus();
+ * crc.fill(frame, 0, frame.length); // 计算除最后2字节外的数据，写到最后2字节
+ * </pre>
+ * 内部的{@link Checksum}有状态，不是线程安全的，每个分包器/编码器用自己的实例
+ */
+public class ChecksumAdapter implements RunningChecksum {
+
+    private final Checksum mChecksum;
+    private final int mLength;
+    private final boolean mBigEndian;
+    private final int mSkip;
+    private int mSkipRemaining; // 边接收边计算时，还需要跳过的字节数
+
+    /**
+     * @param checksum 校验算法
+     * @param length 校验码的字节数，1~8
+     * @param bigEndian 校验码是否高字节在前
+     * @param skip 帧开头不参与计算的字节数（比如有的协议帧头不参与校验）
+     */
+    public ChecksumAdapter(@NonNull Checksum checksum, int length, boolean bigEndian, int skip) {
+        if (length < 1 || length > 8) {
+            throw new IllegalArgumentException("length must be 1~8: " + length);
+        }
+        mChecksum = checksum;
+        mLength = length;
+        mBigEndian = bigEndian;
+        mSkip = skip;
+    }
+
+    /**
+     * 异或校验，1字节
+     */
+    public static ChecksumAdapter xor() {
+        return new ChecksumAdapter(new Xor8(), 1, true, 0);
+    }
+
+    /**
+     * CRC-8/SMBUS，1字节
+     */
+    public static ChecksumAdapter crc8() {
+        return new ChecksumAdapter(new Crc8(), 1, true, 0);
+    }
+
+    /**
+     * CRC-16/MODBUS，2字节，低字节在前
+     */
+    public static ChecksumAdapter crc16Modbus() {
+        return new ChecksumAdapter(Crc16.modbus(), 2, false, 0);
+    }
+
+    /**
+     * CRC-16/CCITT-FALSE，2字节，高字节在前
+     */
+    public static ChecksumAdapter crc16Ccitt() {
+        return new ChecksumAdapter(Crc16.ccitt(), 2, true, 0);
+    }
+
+    /**
+     * CRC-32（{@link CRC32}，由系统本地实现），4字节，低字节在前
+     */
+    public static ChecksumAdapter crc32() {
+        return new ChecksumAdapter(new CRC32(), 4, false, 0);
+    }
+
+    @Override
+    public int length() {
+        return mLength;
+    }
+
+    /**
+     * 计算校验值
+     *
+     * @param buffer 数据所在的缓存
+     * @param offset 开始位置
+     * @param length 参与计算的长度
+     * @return
+     */
+    public long compute(@NonNull byte[] buffer, int offset, int length) {
+        mChecksum.reset();
+        mChecksum.update(buffer, offset, length);
+        return mChecksum.getValue();
+    }
+
+    @Override
+    public void reset() {
+        mChecksum.reset();
+        mSkipRemaining = mSkip;
+    }
+
+    @Override
+    public void update(@NonNull byte[] buffer, int offset, int length) {
+        if (mSkipRemaining > 0) {
+            int skip = Math.min(length, mSkipRemaining);
+            offset += skip;
+            length -= skip;
+            mSkipRemaining -= skip;
+        }
+        if (length > 0) {
+            mChecksum.update(buffer, offset, length);
+        }
+    }
+
+    @Override
+    public boolean check(@NonNull byte[] buffer, int offset) {
+        return mChecksum.getValue() == read(buffer, offset);
+    }
+
+    @Override
+    public boolean verify(@NonNull byte[] buffer, int offset, int length) {
+        int dataLength = length - mSkip - mLength;
+        if (dataLength < 0) {
+            return false;
+        }
+        long value = compute(buffer, offset + mSkip, dataLength);
+        return value == read(buffer, offset + length - mLength);
+    }
+
+    /**
+     * 计算一帧数据的校验值，并写到帧末尾
+     *
+     * @param buffer 数据所在的缓存
+     * @param offset 帧的开始位置
+     * @param length 帧的长度（包括末尾的校验码）
+     */
+    public void fill(@NonNull byte[] buffer, int offset, int length) {
+        int dataLength = length - mSkip - mLength;
+        if (dataLength < 0) {
+            throw new IllegalArgumentException("frame is too short: " + length);
+        }
+        long value = compute(buffer, offset + mSkip, dataLength);
+        int pos = offset + length - mLength;
+        for (int i = 0; i < mLength; i++) {
+            int shift = mBigEndian ? (mLength - 1 - i) * 8 : i * 8;
+            buffer[pos + i] = (byte) (value >>> shift);
+        }
+    }
+
+    private long read(byte[] buffer, int pos) {
+        long value = 0;
+        for (int i = 0; i < mLength; i++) {
+            int shift = mBigEndian ? (mLength - 1 - i) * 8 : i * 8;
+            value |= (buffer[pos + i] & 0xFFL) << shift;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,150 @@
+package com.licheedev.serialworker.checksum;
+
+import java.util.zip.Checksum;
+
+/**
+ * 查表法CRC-16，每次处理4个字节（slicing-by-4）。常用的参数：
+ * <ul>
+ * <li>{@link #modbus()}：CRC-16/MODBUS，多项式0x8005（反转），初始值0xFFFF，低字节在前发送；</li>
+ * <li>{@link #ccitt()}：CRC-16/CCITT-FALSE，多项式0x1021，初始值0xFFFF，高字节在前发送。</li>
+ * </ul>
+ * 不是线程安全的，每个分包器/编码器用自己的实例
+ */
+public class Crc16 implements Checksum {
+
+    private static volatile int[][] sModbusTables;
+    private static volatile int[][] sCcittTables;
+
+    private final int[][] mTables;
+    private final boolean mReflected;
+    private final int mInit;
+    private final int mXorOut;
+    private int mCrc;
+
+    /**
+     * @param poly 多项式（不反转的写法，如0x8005、0x1021）
+     * @param init 初始值
+     * @param reflected 输入输出是否反转
+     * @param xorOut 结果异或值
+     */
+    public Crc16(int poly, int init, boolean reflected, int xorOut) {
+        this(makeTables(poly & 0xFFFF, reflected), init, reflected, xorOut);
+    }
+
+    private Crc16(int[][] tables, int init, boolean reflected, int xorOut) {
+        mTables = tables;
+        mReflected = reflected;
+        mInit = init & 0xFFFF;
+        mXorOut = xorOut & 0xFFFF;
+        mCrc = mInit;
+    }
+
+    /**
+     * CRC-16/MODBUS
+     */
+    public static Crc16 modbus() {
+        int[][] tables = sModbusTables;
+        if (tables == null) {
+            sModbusTables = tables = makeTables(0x8005, true);
+        }
+        return new Crc16(tables, 0xFFFF, true, 0);
+    }
+
+    /**
+     * CRC-16/CCITT-FALSE
+     */
+    public static Crc16 ccitt() {
+        int[][] tables = sCcittTables;
+        if (tables == null) {
+            sCcittTables = tables = makeTables(0x1021, false);
+        }
+        return new Crc16(tables, 0xFFFF, false, 0);
+    }
+
+    private static int[][] makeTables(int poly, boolean reflected) {
+        int[][] tables = new int[4][256];
+        int[] t0 = tables[0];
+        if (reflected) {
+            int rpoly = Integer.reverse(poly) >>> 16;
+            for (int i = 0; i < 256; i++) {
+                int crc = i;
+                for (int j = 0; j < 8; j++) {
+                    crc = (crc & 1) != 0 ? (crc >>> 1) ^ rpoly : crc >>> 1;
+                }
+                t0[i] = crc;
+            }
+            for (int k = 1; k < 4; k++) {
+                for (int i = 0; i < 256; i++) {
+                    int prev = tables[k - 1][i];
+                    tables[k][i] = (prev >>> 8) ^ t0[prev & 0xFF];
+                }
+            }
+        } else {
+            for (int i = 0; i < 256; i++) {
+                int crc = i << 8;
+                for (int j = 0; j < 8; j++) {
+                    crc = (crc & 0x8000) != 0 ? (crc << 1) ^ poly : crc << 1;
+                }
+                t0[i] = crc & 0xFFFF;
+            }
+            for (int k = 1; k < 4; k++) {
+                for (int i = 0; i < 256; i++) {
+                    int prev = tables[k - 1][i];
+                    tables[k][i] = ((prev << 8) & 0xFFFF) ^ t0[prev >>> 8];
+                }
+            }
+        }
+        return tables;
+    }
+
+    @Override
+    public void update(int b) {
+        int[] t0 = mTables[0];
+        if (mReflected) {
+            mCrc = (mCrc >>> 8) ^ t0[(mCrc ^ b) & 0xFF];
+        } else {
+            mCrc = ((mCrc << 8) & 0xFFFF) ^ t0[((mCrc >>> 8) ^ b) & 0xFF];
+        }
+    }
+
+    @Override
+    public void update(byte[] b, int off, int len) {
+        final int[] t0 = mTables[0];
+        final int[] t1 = mTables[1];
+        final int[] t2 = mTables[2];
+        final int[] t3 = mTables[3];
+        int crc = mCrc;
+        int end = off + len;
+        int end4 = off + (len & ~3);
+        if (mReflected) {
+            while (off < end4) {
+                crc ^= (b[off] & 0xFF) | (b[off + 1] & 0xFF) << 8;
+                crc = t3[crc & 0xFF] ^ t2[crc >>> 8] ^ t1[b[off + 2] & 0xFF] ^ t0[b[off + 3] & 0xFF];
+                off += 4;
+            }
+            while (off < end) {
+                crc = (crc >>> 8) ^ t0[(crc ^ b[off++]) & 0xFF];
+            }
+        } else {
+            while (off < end4) {
+                crc ^= (b[off] & 0xFF) << 8 | (b[off + 1] & 0xFF);
+                crc = t3[crc >>> 8] ^ t2[crc & 0xFF] ^ t1[b[off + 2] & 0xFF] ^ t0[b[off + 3] & 0xFF];
+                off += 4;
+            }
+            while (off < end) {
+                crc = ((crc << 8) & 0xFFFF) ^ t0[((crc >>> 8) ^ b[off++]) & 0xFF];
+            }
+        }
+        mCrc = crc;
+    }
+
+    @Override
+    public long getValue() {
+        return (mCrc ^ mXorOut) & 0xFFFF;
+    }
+
+    @Override
+    public void reset() {
+        mCrc = mInit;
+    }
+}
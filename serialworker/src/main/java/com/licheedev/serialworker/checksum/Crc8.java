@@ -0,0 +1,73 @@
+package com.licheedev.serialworker.checksum;
+
+import java.util.zip.Checksum;
+
+/**
+ * 查表法CRC-8（不反转），默认为CRC-8/SMBUS，多项式0x07，初始值0x00
+ */
+public class Crc8 implements Checksum {
+
+    private static final int[] SMBUS_TABLE = makeTable(0x07);
+
+    private final int[] mTable;
+    private final int mInit;
+    private final int mXorOut;
+    private int mCrc;
+
+    public Crc8() {
+        mTable = SMBUS_TABLE;
+        mInit = 0;
+        mXorOut = 0;
+        mCrc = 0;
+    }
+
+    /**
+     * @param poly 多项式
+     * @param init 初始值
+     * @param xorOut 结果异或值
+     */
+    public Crc8(int poly, int init, int xorOut) {
+        mTable = poly == 0x07 ? SMBUS_TABLE : makeTable(poly);
+        mInit = init & 0xFF;
+        mXorOut = xorOut & 0xFF;
+        mCrc = mInit;
+    }
+
+    private static int[] makeTable(int poly) {
+        int[] table = new int[256];
+        for (int i = 0; i < 256; i++) {
+            int crc = i;
+            for (int j = 0; j < 8; j++) {
+                crc = (crc & 0x80) != 0 ? (crc << 1) ^ poly : crc << 1;
+            }
+            table[i] = crc & 0xFF;
+        }
+        return table;
+    }
+
+    @Override
+    public void update(int b) {
+        mCrc = mTable[(mCrc ^ b) & 0xFF];
+    }
+
+    @Override
+    public void update(byte[] b, int off, int len) {
+        final int[] table = mTable;
+        int crc = mCrc;
+        int end = off + len;
+        while (off < end) {
+            crc = table[(crc ^ b[off++]) & 0xFF];
+        }
+        mCrc = crc;
+    }
+
+    @Override
+    public long getValue() {
+        return (mCrc ^ mXorOut) & 0xFF;
+    }
+
+    @Override
+    public void reset() {
+        mCrc = mInit;
+    }
+}
@@ -0,0 +1,42 @@
+package com.licheedev.serialworker.checksum;
+
+import java.util.zip.Checksum;
+
+/**
+ * 异或校验，所有字节做异或，结果为1字节
+ */
+public class Xor8 implements Checksum {
+
+    private int mValue;
+
+    @Override
+    public void update(int b) {
+        mValue ^= b;
+    }
+
+    @Override
+    public void update(byte[] b, int off, int len) {
+        int value = mValue;
+        int end = off + len;
+        // 每次处理4个字节，减少依赖链
+        int end4 = off + (len & ~3);
+        while (off < end4) {
+            value ^= b[off] ^ b[off + 1] ^ b[off + 2] ^ b[off + 3];
+            off += 4;
+        }
+        while (off < end) {
+            value ^= b[off++];
+        }
+        mValue = value;
+    }
+
+    @Override
+    public long getValue() {
+        return mValue & 0xFF;
+    }
+
+    @Override
+    public void reset() {
+        mValue = 0;
+    }
+}
@@ -0,0 +1,50 @@
+package com.licheedev.serialworker.core;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * 批量发送中单个命令的结果，成功时为收到的响应（只发送不等待响应的为null），失败时为异常（比如超时）
+ *
+ * @param <R>
+ */
+public final class BatchResult<R> {
+
+    private final R mResponse;
+    private final Throwable mError;
+
+    private BatchResult(R response, Throwable error) {
+        mResponse = response;
+        mError = error;
+    }
+
+    @NonNull
+    public static <R> BatchResult<R> success(@Nullable R response) {
+        return new BatchResult<>(response, null);
+    }
+
+    @NonNull
+    public static <R> BatchResult<R> failure(@NonNull Throwable error) {
+        return new BatchResult<>(null, error);
+    }
+
+    public boolean isSuccess() {
+        return mError == null;
+    }
+
+    @Nullable
+    public R getResponse() {
+        return mResponse;
+    }
+
+    @Nullable
+    public Throwable getError() {
+        return mError;
+    }
+
+    @Override
+    public String toString() {
+        return isSuccess() ? "BatchResult{response=" + mResponse + "}"
+            : "BatchResult{error=" + mError + "}";
+    }
+}
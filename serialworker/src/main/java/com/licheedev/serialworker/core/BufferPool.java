@@ -0,0 +1,236 @@
+package com.licheedev.serialworker.core;
+
+import androidx.annotation.NonNull;
+import com.licheedev.myutils.LogPlus;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 串口收发用的缓存池，按容量分成64/256/1024/4096字节几种规格；
+ * 每个线程先从自己的小缓存中借还，不够时再使用共用的池，借还都不需要分配对象。
+ * 超过4096字节的不缓存，直接分配。
+ * <p>
+ * 可以开启泄漏检测（{@link #setLeakDetection(boolean)}），会记录每个缓存在哪里借出的，
+ * 没有release就被回收的缓存会打印借出时的调用栈；有额外开销，只建议调试时开启。
+ * <pre>
+ * PooledBuffer buffer = BufferPool.getDefault().acquire(length);
+ * try {
+ *     // 使用buffer.array()
+ * } finally {
+ *     buffer.release();
+ * }
+ * </pre>
+ */
+public class BufferPool {
+
+    private static final String TAG = "SerialWorker";
+    private static final int[] SIZE_CLASSES = { 64, 256, 1024, 4096 };
+
+    private static volatile BufferPool sDefault;
+
+    private final Stack[] mShared;
+    private final int mThreadCacheSize;
+    private final ThreadLocal<Stack[]> mThreadCache = new ThreadLocal<Stack[]>() {
+        @Override
+        protected Stack[] initialValue() {
+            Stack[] stacks = new Stack[SIZE_CLASSES.length];
+            for (int i = 0; i < stacks.length; i++) {
+                stacks[i] = new Stack(mThreadCacheSize);
+            }
+            return stacks;
+        }
+    };
+
+    private final AtomicLong mAllocated = new AtomicLong();
+    private final AtomicLong mAcquired = new AtomicLong();
+
+    private volatile boolean mLeakDetection;
+    private final ReferenceQueue<PooledBuffer> mLeakQueue = new ReferenceQueue<>();
+    private final Set<LeakTracker> mTrackers =
+        Collections.synchronizedSet(Collections.newSetFromMap(
+            new IdentityHashMap<LeakTracker, Boolean>()));
+
+    /**
+     * @param maxPooledPerClass 共用的池中，每种规格最多保留的缓存数
+     * @param threadCacheSize 每个线程，每种规格最多保留的缓存数
+     */
+    public BufferPool(int maxPooledPerClass, int threadCacheSize) {
+        mShared = new Stack[SIZE_CLASSES.length];
+        for (int i = 0; i < mShared.length; i++) {
+            mShared[i] = new Stack(maxPooledPerClass);
+        }
+        mThreadCacheSize = threadCacheSize;
+    }
+
+    /**
+     * 默认的缓存池，每种规格最多保留256个，每个线程每种规格最多16个
+     *
+     * @return
+     */
+    @NonNull
+    public static BufferPool getDefault() {
+        BufferPool pool = sDefault;
+        if (pool == null) {
+            synchronized (BufferPool.class) {
+                pool = sDefault;
+                if (pool == null) {
+                    sDefault = pool = new BufferPool(256, 16);
+                }
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * 借一个缓存，引用计数为1
+     *
+     * @param capacity 需要的容量
+     * @return
+     */
+    @NonNull
+    public PooledBuffer acquire(int capacity) {
+        mAcquired.incrementAndGet();
+        int sizeClass = sizeClassOf(capacity);
+        PooledBuffer buffer = null;
+        if (sizeClass >= 0) {
+            buffer = mThreadCache.get()[sizeClass].pop();
+            if (buffer == null) {
+                buffer = mShared[sizeClass].popSync();
+            }
+        }
+        if (buffer == null) {
+            mAllocated.incrementAndGet();
+            int size = sizeClass >= 0 ? SIZE_CLASSES[sizeClass] : capacity;
+            buffer = new PooledBuffer(new byte[size], sizeClass >= 0 ? this : null, sizeClass);
+        }
+        buffer.init();
+        if (mLeakDetection) {
+            reportLeaks();
+            LeakTracker tracker = new LeakTracker(buffer, mLeakQueue);
+            buffer.mTracker = tracker;
+            mTrackers.add(tracker);
+        }
+        return buffer;
+    }
+
+    void recycle(PooledBuffer buffer) {
+        LeakTracker tracker = buffer.mTracker;
+        if (tracker != null) {
+            buffer.mTracker = null;
+            mTrackers.remove(tracker);
+            tracker.clear();
+        }
+        int sizeClass = buffer.getSizeClass();
+        if (!mThreadCache.get()[sizeClass].push(buffer)) {
+            mShared[sizeClass].pushSync(buffer);
+        }
+    }
+
+    /**
+     * 开启或关闭泄漏检测
+     *
+     * @param enable
+     */
+    public void setLeakDetection(boolean enable) {
+        mLeakDetection = enable;
+    }
+
+    public boolean isLeakDetection() {
+        return mLeakDetection;
+    }
+
+    /**
+     * 新分配的缓存数，稳定运行后应该不再增加
+     *
+     * @return
+     */
+    public long getAllocatedCount() {
+        return mAllocated.get();
+    }
+
+    /**
+     * 借出的总次数
+     *
+     * @return
+     */
+    public long getAcquiredCount() {
+        return mAcquired.get();
+    }
+
+    /**
+     * 打印已经被回收、但没有release的缓存
+     */
+    public void reportLeaks() {
+        LeakTracker tracker;
+        while ((tracker = (LeakTracker) mLeakQueue.poll()) != null) {
+            if (mTrackers.remove(tracker)) {
+                LogPlus.w(TAG, "PooledBuffer was garbage collected without release()",
+                    tracker.mAllocation);
+            }
+        }
+    }
+
+    private static int sizeClassOf(int capacity) {
+        for (int i = 0; i < SIZE_CLASSES.length; i++) {
+            if (capacity <= SIZE_CLASSES[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 记录借出的位置
+     */
+    static final class LeakTracker extends WeakReference<PooledBuffer> {
+
+        final Throwable mAllocation;
+
+        LeakTracker(PooledBuffer buffer, ReferenceQueue<PooledBuffer> queue) {
+            super(buffer, queue);
+            mAllocation = new Throwable("PooledBuffer allocated here");
+        }
+    }
+
+    /**
+     * 固定容量的栈
+     */
+    private static final class Stack {
+
+        private final PooledBuffer[] mElements;
+        private int mSize;
+
+        Stack(int capacity) {
+            mElements = new PooledBuffer[capacity];
+        }
+
+        PooledBuffer pop() {
+            if (mSize == 0) {
+                return null;
+            }
+            PooledBuffer buffer = mElements[--mSize];
+            mElements[mSize] = null;
+            return buffer;
+        }
+
+        boolean push(PooledBuffer buffer) {
+            if (mSize == mElements.length) {
+                return false;
+            }
+            mElements[mSize++] = buffer;
+            return true;
+        }
+
+        synchronized PooledBuffer popSync() {
+            return pop();
+        }
+
+        synchronized boolean pushSync(PooledBuffer buffer) {
+            return push(buffer);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.licheedev.serialworker.core;
+
+import androidx.annotation.Nullable;
+
+/**
+ * 可选接口，{@link SendData}或{@link RecvData}实现此接口后，收到数据时可以根据关联键直接找到等待响应的请求，
+ * 不需要对每个请求逐一判断是否为其响应（比如命令码、流水号）。
+ * 关联键需要正确实现equals()和hashCode()；请求的关联键与响应的关联键不相等时，不会被认为是这个请求的响应
+ */
+public interface Correlated {
+
+    /**
+     * 关联键
+     *
+     * @return 为null表示没有关联键，会使用逐一判断的方式匹配
+     */
+    @Nullable
+    Object getCorrelationKey();
+}
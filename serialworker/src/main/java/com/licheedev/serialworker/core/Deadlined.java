@@ -0,0 +1,16 @@
+package com.licheedev.serialworker.core;
+
+/**
+ * 可选接口，{@link SendData}实现此接口后，命令有绝对的截止时间（包括排队、发送和等待响应的时间）：
+ * 从串口队列取出时已经过期的命令会直接以超时失败，不会发送；没过期的，只用剩下的时间等待响应。
+ * 参考{@link com.licheedev.serialworker.worker.Rs232SerialWorker#setDeadlineMode(boolean)}
+ */
+public interface Deadlined {
+
+    /**
+     * 截止时间，以{@link System#nanoTime()}为准
+     *
+     * @return 为0表示没有截止时间
+     */
+    long getDeadlineNanos();
+}
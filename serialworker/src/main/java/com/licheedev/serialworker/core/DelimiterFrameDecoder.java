@@ -0,0 +1,251 @@
+package com.licheedev.serialworker.core;
+
+import androidx.annotation.NonNull;
+import java.util.Arrays;
+
+/**
+ * 按分隔符分帧，适用于扫码枪、AT指令、NMEA等文本协议，分隔符可以是多个字节（如"\r\n"）。
+ * 不超过{@link #SHORT_DELIMITER_LENGTH}字节的分隔符（如"\r\n"）逐字节查找最后一个字节，找到再比较前面的字节；
+ * 更长的分隔符使用Horspool算法查找，按跳转表跳过不可能匹配的位置；
+ * 每次收到新数据时从上次停下的位置继续查找，不会从头重新扫描。
+ * 一帧超过maxFrameLength仍没有分隔符时，按{@link #OVERFLOW_DISCARD}等策略处理，内存占用有上限。
+ * <pre>
+ * super(new byte[] { '\r', '\n' }, 1024, true, OVERFLOW_DISCARD);
+ * </pre>
+ * 去掉分隔符时，空帧（连续的分隔符）会被忽略。
+ *
+ * @param <T>
+ */
+public abstract class DelimiterFrameDecoder<T> implements DataReceiver<T> {
+
+    /** 超长的帧整个丢弃，直到下一个分隔符 */
+    public static final int OVERFLOW_DISCARD = 0;
+    /** 超长的帧只保留前maxFrameLength字节，其余丢弃，直到下一个分隔符 */
+    public static final int OVERFLOW_TRUNCATE = 1;
+    /** 超长的帧按maxFrameLength拆成多帧 */
+    public static final int OVERFLOW_SPLIT = 2;
+
+    /**
+     * 不超过此长度的分隔符不用跳转表：每次最多只能跳过几个字节，查表反而比逐字节比较慢
+     */
+    private static final int SHORT_DELIMITER_LENGTH = 3;
+
+    private final byte[] mDelimiter;
+    private final int[] mSkipTable; // Horspool跳转表，短分隔符时为null
+    private final int mMaxFrameLength;
+    private final boolean mStripDelimiter;
+    private final int mOverflowPolicy;
+
+    private final byte[] mBuffer;
+    private int mStart; // 当前帧的开始位置
+    private int mEnd; // 数据的结束位置
+    private int mScan; // 下次从这里开始查找分隔符
+    private boolean mDiscarding; // 正在丢弃超长帧的剩余部分
+
+    /**
+     * @param delimiter 分隔符
+     * @param maxFrameLength 帧长度上限（不包括分隔符）
+     * @param stripDelimiter 帧是否去掉分隔符
+     * @param overflowPolicy 超长帧的处理策略，{@link #OVERFLOW_DISCARD}、{@link #OVERFLOW_TRUNCATE}、{@link
+     * #OVERFLOW_SPLIT}
+     */
+    protected DelimiterFrameDecoder(@NonNull byte[] delimiter, int maxFrameLength,
+        boolean stripDelimiter, int overflowPolicy) {
+        if (delimiter.length == 0) {
+            throw new IllegalArgumentException("empty delimiter");
+        }
+        if (maxFrameLength <= 0) {
+            throw new IllegalArgumentException("maxFrameLength must be positive");
+        }
+        if (overflowPolicy < OVERFLOW_DISCARD || overflowPolicy > OVERFLOW_SPLIT) {
+            throw new IllegalArgumentException("unknown overflowPolicy: " + overflowPolicy);
+        }
+        mDelimiter = delimiter.clone();
+        mMaxFrameLength = maxFrameLength;
+        mStripDelimiter = stripDelimiter;
+        mOverflowPolicy = overflowPolicy;
+
+        int m = delimiter.length;
+        if (m > SHORT_DELIMITER_LENGTH) {
+            mSkipTable = new int[256];
+            Arrays.fill(mSkipTable, m);
+            for (int i = 0; i < m - 1; i++) {
+                mSkipTable[delimiter[i] & 0xFF] = m - 1 - i;
+            }
+        } else {
+            mSkipTable = null;
+        }
+        // 处理后未完成的帧不超过maxFrameLength+分隔符，整理后总有空间接收新数据
+        mBuffer = new byte[Math.max((maxFrameLength + m) * 2, 1024)];
+    }
+
+    @Override
+    public void onReceive(@NonNull ValidData validData, @NonNull byte[] bytes, int offset,
+        int length) {
+        while (length > 0) {
+            int count = append(bytes, offset, length);
+            offset += count;
+            length -= count;
+            decode(validData);
+        }
+    }
+
+    @Override
+    public void resetCache() {
+        mStart = 0;
+        mEnd = 0;
+        mScan = 0;
+        mDiscarding = false;
+    }
+
+    /**
+     * 收到一帧，默认添加到validData（复制到validData复用的缓存中）
+     *
+     * @param validData 有效数据容器
+     * @param buffer 帧所在的缓存，只在此方法内有效
+     * @param offset 帧的开始位置
+     * @param length 帧的长度
+     */
+    protected void onFrame(@NonNull ValidData validData, @NonNull byte[] buffer, int offset,
+        int length) {
+        validData.addFrame(buffer, offset, length);
+    }
+
+    private int append(byte[] bytes, int offset, int length) {
+        if (mBuffer.length - mEnd < length && mStart > 0) {
+            // 把未处理的数据移到开头
+            int remaining = mEnd - mStart;
+            System.arraycopy(mBuffer, mStart, mBuffer, 0, remaining);
+            mScan -= mStart;
+            mStart = 0;
+            mEnd = remaining;
+        }
+        int count = Math.min(length, mBuffer.length - mEnd);
+        System.arraycopy(bytes, offset, mBuffer, mEnd, count);
+        mEnd += count;
+        return count;
+    }
+
+    private void decode(ValidData validData) {
+        final int delimiterLength = mDelimiter.length;
+        while (true) {
+            int index = indexOfDelimiter();
+            if (index < 0) {
+                checkOverflow(validData);
+                break;
+            }
+            if (mDiscarding) {
+                // 超长帧的剩余部分
+                mDiscarding = false;
+            } else {
+                int length = index - mStart;
+                if (length > mMaxFrameLength) {
+                    handleOverflow(validData, length);
+                } else if (!mStripDelimiter) {
+                    onFrame(validData, mBuffer, mStart, length + delimiterLength);
+                } else if (length > 0) {
+                    onFrame(validData, mBuffer, mStart, length);
+                }
+            }
+            mStart = index + delimiterLength;
+            mScan = mStart;
+        }
+
+        if (mStart >= mEnd) {
+            mStart = 0;
+            mEnd = 0;
+            mScan = 0;
+        }
+    }
+
+    /**
+     * 没有找到分隔符时，检查未完成的帧是否已经超长
+     */
+    private void checkOverflow(ValidData validData) {
+        // 末尾可能是不完整的分隔符，需要保留
+        int keep = mDelimiter.length - 1;
+        while (mEnd - mStart - keep > mMaxFrameLength) {
+            if (mDiscarding || mOverflowPolicy != OVERFLOW_SPLIT) {
+                if (!mDiscarding && mOverflowPolicy == OVERFLOW_TRUNCATE) {
+                    onFrame(validData, mBuffer, mStart, mMaxFrameLength);
+                }
+                // 丢弃到分隔符为止
+                mDiscarding = true;
+                mStart = mEnd - keep;
+                mScan = Math.max(mScan, mStart);
+                return;
+            }
+            onFrame(validData, mBuffer, mStart, mMaxFrameLength);
+            mStart += mMaxFrameLength;
+            mScan = Math.max(mScan, mStart);
+        }
+    }
+
+    /**
+     * 找到分隔符时，帧已经超长
+     */
+    private void handleOverflow(ValidData validData, int length) {
+        if (mOverflowPolicy == OVERFLOW_TRUNCATE) {
+            onFrame(validData, mBuffer, mStart, mMaxFrameLength);
+        } else if (mOverflowPolicy == OVERFLOW_SPLIT) {
+            int offset = mStart;
+            int end = mStart + length;
+            while (offset < end) {
+                int count = Math.min(mMaxFrameLength, end - offset);
+                onFrame(validData, mBuffer, offset, count);
+                offset += count;
+            }
+        }
+    }
+
+    /**
+     * 从mScan开始查找分隔符，没有找到时把mScan移到下次需要开始查找的位置
+     *
+     * @return 分隔符的开始位置，没有找到返回-1
+     */
+    private int indexOfDelimiter() {
+        final byte[] buffer = mBuffer;
+        final byte[] delimiter = mDelimiter;
+        final int end = mEnd;
+        final int last = delimiter.length - 1;
+        final byte lastByte = delimiter[last];
+        int i = mScan;
+
+        if (mSkipTable == null) {
+            // 找分隔符的最后一个字节，k为它的位置
+            int k = i + last;
+            while (k < end) {
+                if (buffer[k] == lastByte) {
+                    int j = last - 1;
+                    while (j >= 0 && buffer[k - last + j] == delimiter[j]) {
+                        j--;
+                    }
+                    if (j < 0) {
+                        return k - last;
+                    }
+                }
+                k++;
+            }
+            mScan = k - last;
+            return -1;
+        }
+
+        final int[] skipTable = mSkipTable;
+        while (i + last < end) {
+            byte b = buffer[i + last];
+            if (b == lastByte) {
+                int j = last - 1;
+                while (j >= 0 && buffer[i + j] == delimiter[j]) {
+                    j--;
+                }
+                if (j < 0) {
+                    return i;
+                }
+            }
+            i += skipTable[b & 0xFF];
+        }
+        // i之前的位置都不可能匹配
+        mScan = i;
+        return -1;
+    }
+}
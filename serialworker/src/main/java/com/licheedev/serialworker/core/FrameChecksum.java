@@ -0,0 +1,28 @@
+package com.licheedev.serialworker.core;
+
+import androidx.annotation.NonNull;
+
+/**
+ * 帧校验，校验码位于帧的末尾；直接在接收缓存中校验，不需要复制数据
+ *
+ * @see LengthFieldFrameDecoder
+ */
+public interface FrameChecksum {
+
+    /**
+     * 校验码的字节数
+     *
+     * @return
+     */
+    int length();
+
+    /**
+     * 校验一帧数据
+     *
+     * @param buffer 数据所在的缓存
+     * @param offset 帧的开始位置
+     * @param length 帧的长度（包括末尾的校验码）
+     * @return 是否校验通过
+     */
+    boolean verify(@NonNull byte[] buffer, int offset, int length);
+}
@@ -0,0 +1,153 @@
+package com.licheedev.serialworker.core;
+
+import androidx.annotation.NonNull;
+import java.util.Arrays;
+
+/**
+ * 一帧数据在缓存中的位置，不复制数据。
+ * <p>
+ * 由{@link ValidData}提供的实例只在处理这一批数据时（{@code handleValidData()}、
+ * {@link SliceDataReceiver#adaptReceive(FrameView)}）有效。之后实例本身和它指向的缓存都会被复用，
+ * 保留下来的实例会变成后面某一帧的数据，所以不要把实例保存到字段、集合中或交给其他线程；
+ * 需要保留的数据用{@link #toByteArray()}或{@link #copyTo(BufferPool)}复制出来
+ */
+public final class FrameView {
+
+    private byte[] mBuffer;
+    private int mOffset;
+    private int mLength;
+
+    FrameView() {
+    }
+
+    /**
+     * 包装整个数组
+     *
+     * @param bytes
+     * @return
+     */
+    @NonNull
+    public static FrameView wrap(@NonNull byte[] bytes) {
+        FrameView view = new FrameView();
+        view.set(bytes, 0, bytes.length);
+        return view;
+    }
+
+    void set(byte[] buffer, int offset, int length) {
+        mBuffer = buffer;
+        mOffset = offset;
+        mLength = length;
+    }
+
+    /**
+     * 数据所在的缓存
+     *
+     * @return
+     */
+    @NonNull
+    public byte[] getBuffer() {
+        return mBuffer;
+    }
+
+    /**
+     * 帧在缓存中的开始位置
+     *
+     * @return
+     */
+    public int getOffset() {
+        return mOffset;
+    }
+
+    /**
+     * 帧的长度
+     *
+     * @return
+     */
+    public int length() {
+        return mLength;
+    }
+
+    /**
+     * 帧中第index个字节
+     *
+     * @param index
+     * @return
+     */
+    public byte get(int index) {
+        checkIndex(index, 1);
+        return mBuffer[mOffset + index];
+    }
+
+    /**
+     * 帧中第index个字节，无符号
+     *
+     * @param index
+     * @return
+     */
+    public int getUnsigned(int index) {
+        return get(index) & 0xFF;
+    }
+
+    /**
+     * 从第index个字节开始，读取无符号整数
+     *
+     * @param index 开始位置
+     * @param size 字节数，1~8
+     * @param bigEndian 是否大端
+     * @return
+     */
+    public long getLong(int index, int size, boolean bigEndian) {
+        checkIndex(index, size);
+        int start = mOffset + index;
+        long value = 0;
+        for (int i = 0; i < size; i++) {
+            int shift = bigEndian ? (size - 1 - i) * 8 : i * 8;
+            value |= (mBuffer[start + i] & 0xFFL) << shift;
+        }
+        return value;
+    }
+
+    /**
+     * 复制整帧
+     *
+     * @return
+     */
+    @NonNull
+    public byte[] toByteArray() {
+        return Arrays.copyOfRange(mBuffer, mOffset, mOffset + mLength);
+    }
+
+    /**
+     * 复制帧中的一部分
+     *
+     * @param from 开始位置（包括）
+     * @param to 结束位置（不包括）
+     * @return
+     */
+    @NonNull
+    public byte[] toByteArray(int from, int to) {
+        checkIndex(from, to - from);
+        return Arrays.copyOfRange(mBuffer, mOffset + from, mOffset + to);
+    }
+
+    /**
+     * 复制整帧到从缓存池借来的缓存中，用于在处理这一批数据之后继续使用，用完后需要{@link PooledBuffer#release()}
+     *
+     * @param pool 缓存池
+     * @return {@link PooledBuffer#length()}为帧的长度
+     */
+    @NonNull
+    public PooledBuffer copyTo(@NonNull BufferPool pool) {
+        PooledBuffer buffer = pool.acquire(mLength);
+        System.arraycopy(mBuffer, mOffset, buffer.array(), 0, mLength);
+        buffer.setLength(mLength);
+        return buffer;
+    }
+
+    private void checkIndex(int index, int size) {
+        if (index < 0 || size < 0 || index + size > mLength) {
+            throw new IndexOutOfBoundsException(
+                "index=" + index + ", size=" + size + ", length=" + mLength);
+        }
+    }
+}
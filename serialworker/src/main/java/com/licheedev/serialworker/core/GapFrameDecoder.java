@@ -0,0 +1,118 @@
+package com.licheedev.serialworker.core;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * 按字符间隔（静默时间）分帧，适用于Modbus-RTU等没有长度域的协议：
+ * 超过gapNanos没有收到新数据，就认为一帧结束，校验通过后添加到{@link ValidData}。
+ * 间隔一般用{@link com.licheedev.serialworker.worker.BaseSerialWorker#getFrameGapNanos()}，
+ * 由波特率、数据位、校验位和停止位算出：
+ * <pre>
+ * protected DataReceiver newReceiver() {
+ *     return new MyRtuReceiver(getFrameGapNanos()); // 继承GapFrameDecoder
+ * }
+ * </pre>
+ * 帧的结束取决于读线程多快发现数据，读线程不会使用默认的按固定时间睡眠的等待策略，
+ * 会自动换成阻塞等待（API 21+）或短时间park的退避等待；
+ * 不能使用共用的读线程{@link com.licheedev.serialworker.worker.SerialReactor}，设置了也会使用自己的读线程。
+ *
+ * @param <T>
+ */
+public abstract class GapFrameDecoder<T> implements TimedDataReceiver<T> {
+
+    private final long mGapNanos;
+    private final FrameChecksum mChecksum;
+    private final int mMinFrameLength;
+    private final byte[] mBuffer;
+    private int mLength;
+    private boolean mOverflow; // 当前帧超长，结束时丢弃
+    private long mLastNanos;
+
+    /**
+     * @param gapNanos 帧间隔，纳秒
+     * @param maxFrameLength 帧长度上限，超过的整帧丢弃
+     * @param checksum 帧校验，为null时不校验
+     */
+    protected GapFrameDecoder(long gapNanos, int maxFrameLength,
+        @Nullable FrameChecksum checksum) {
+        if (gapNanos <= 0 || maxFrameLength <= 0) {
+            throw new IllegalArgumentException("gapNanos and maxFrameLength must be positive");
+        }
+        mGapNanos = gapNanos;
+        mChecksum = checksum;
+        mMinFrameLength = checksum != null ? checksum.length() + 1 : 1;
+        mBuffer = new byte[maxFrameLength];
+    }
+
+    @Override
+    public void onReceive(@NonNull ValidData validData, @NonNull byte[] bytes, int offset,
+        int length) {
+        onReceive(validData, bytes, offset, length, System.nanoTime());
+    }
+
+    @Override
+    public void onReceive(@NonNull ValidData validData, @NonNull byte[] bytes, int offset,
+        int length, long nanoTime) {
+        if (length <= 0) {
+            return;
+        }
+        if (hasPending() && nanoTime - mLastNanos >= mGapNanos) {
+            // 没能及时结束的上一帧
+            endFrame(validData);
+        }
+        if (!mOverflow) {
+            if (mLength + length > mBuffer.length) {
+                mOverflow = true;
+            } else {
+                System.arraycopy(bytes, offset, mBuffer, mLength, length);
+                mLength += length;
+            }
+        }
+        mLastNanos = nanoTime;
+    }
+
+    @Override
+    public long getDeadlineNanos() {
+        return hasPending() ? mLastNanos + mGapNanos : -1;
+    }
+
+    @Override
+    public void onTimeout(@NonNull ValidData validData, long nanoTime) {
+        if (hasPending() && nanoTime - mLastNanos >= mGapNanos) {
+            endFrame(validData);
+        }
+    }
+
+    @Override
+    public void resetCache() {
+        mLength = 0;
+        mOverflow = false;
+    }
+
+    /**
+     * 收到校验通过的一帧，默认添加到validData（复制到validData复用的缓存中）
+     *
+     * @param validData 有效数据容器
+     * @param buffer 帧所在的缓存，只在此方法内有效
+     * @param offset 帧的开始位置
+     * @param length 帧的长度
+     */
+    protected void onFrame(@NonNull ValidData validData, @NonNull byte[] buffer, int offset,
+        int length) {
+        validData.addFrame(buffer, offset, length);
+    }
+
+    private boolean hasPending() {
+        return mLength > 0 || mOverflow;
+    }
+
+    private void endFrame(ValidData validData) {
+        if (!mOverflow && mLength >= mMinFrameLength && (mChecksum == null || mChecksum.verify(
+            mBuffer, 0, mLength))) {
+            onFrame(validData, mBuffer, 0, mLength);
+        }
+        mLength = 0;
+        mOverflow = false;
+    }
+}
@@ -0,0 +1,267 @@
+package com.licheedev.serialworker.core;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * 通用的“帧头+长度域”分包器，适用于大部分长度可变的协议：
+ * <pre>
+ * | 帧头 | ... | 长度域 | ... | 校验码 |
+ * |&lt;-- lengthFieldOffset --&gt;|
+ * 帧长度 = lengthFieldOffset + lengthFieldSize + 长度域的值 + lengthAdjustment
+ * </pre>
+ * 内部按“帧头-长度-数据-校验码”的状态逐段解析，记住上次解析到哪里，
+ * 一帧分成很多次收到时，每个字节只处理一次，不会重复解析帧头和长度；
+ * 帧在缓存中总是连续的，收完时直接在缓存中校验一遍（比每收到一段就更新一次校验值快）。
+ * 帧头、长度或校验不对时，从这一帧的第二个字节开始重新找帧头，直接在缓存中重新解析，不复制、不分配；
+ * 收到的数据直接存在固定大小（2倍maxFrameLength）的缓存中，帧在缓存中原地交给{@link #onFrame}，不会溢出。
+ * <p>
+ * 比如帧结构为“3B B3 | 长度(2字节，大端，=命令码+数据N) | 命令码 | 数据N | 异或校验”：
+ * <pre>
+ * super(new byte[] { 0x3B, (byte) 0xB3 }, 2, 2, true, 1, 261, ChecksumAdapter.xor());
+ * </pre>
+ *
+ * @param <T>
+ */
+public abstract class LengthFieldFrameDecoder<T> implements DataReceiver<T> {
+
+    private static final int STATE_HEADER = 0;
+    private static final int STATE_LENGTH = 1;
+    private static final int STATE_BODY = 2;
+    private static final int STATE_CHECKSUM = 3;
+
+    private final byte[] mHeader;
+    private final int[] mHeaderFallback; // 帧头部分匹配失败时的回退位置（KMP）
+    private final int mLengthFieldOffset;
+    private final int mLengthFieldSize;
+    private final int mLengthFieldEnd;
+    private final boolean mBigEndian;
+    private final int mLengthAdjustment;
+    private final int mMaxFrameLength;
+    private final FrameChecksum mChecksum;
+    private final int mChecksumLength;
+    private final int mMinFrameLength;
+
+    private final byte[] mBuffer; // 收到的数据
+    private int mStart; // 当前帧在mBuffer中的开始位置
+    private int mLimit; // mBuffer中数据的结束位置
+    private int mState = STATE_HEADER;
+    private int mFrameLength; // 当前帧已解析的长度（找帧头时为已匹配的帧头长度）
+    private int mExpectedLength; // 当前帧的总长度
+    private boolean mResync; // 当前帧不对，需要从第二个字节重新找帧头
+
+    /**
+     * @param header 帧头，可以为空数组（不检查帧头）
+     * @param lengthFieldOffset 长度域在帧中的位置
+     * @param lengthFieldSize 长度域的字节数，1~4
+     * @param bigEndian 长度域是否是大端
+     * @param lengthAdjustment 帧长度的修正值，参考类说明
+     * @param maxFrameLength 帧长度上限，超过的视为错误数据
+     * @param checksum 帧校验，为null时不校验
+     */
+    protected LengthFieldFrameDecoder(@NonNull byte[] header, int lengthFieldOffset,
+        int lengthFieldSize, boolean bigEndian, int lengthAdjustment, int maxFrameLength,
+        @Nullable FrameChecksum checksum) {
+        if (lengthFieldSize < 1 || lengthFieldSize > 4) {
+            throw new IllegalArgumentException("lengthFieldSize must be 1~4: " + lengthFieldSize);
+        }
+        if (lengthFieldOffset < header.length) {
+            throw new IllegalArgumentException("length field overlaps the header");
+        }
+        mHeader = header.clone();
+        mHeaderFallback = makeFallback(mHeader);
+        mLengthFieldOffset = lengthFieldOffset;
+        mLengthFieldSize = lengthFieldSize;
+        mLengthFieldEnd = lengthFieldOffset + lengthFieldSize;
+        mBigEndian = bigEndian;
+        mLengthAdjustment = lengthAdjustment;
+        mChecksum = checksum;
+        mChecksumLength = checksum != null ? checksum.length() : 0;
+        mMinFrameLength = mLengthFieldEnd + mChecksumLength;
+        if (maxFrameLength < mMinFrameLength) {
+            throw new IllegalArgumentException("maxFrameLength is too small: " + maxFrameLength);
+        }
+        mMaxFrameLength = maxFrameLength;
+        // 解析完的数据中，没处理完的最多只有一帧，缓存满时移到开头，至少能腾出maxFrameLength的空间
+        mBuffer = new byte[maxFrameLength * 2];
+    }
+
+    private static int[] makeFallback(byte[] header) {
+        int[] fallback = new int[header.length];
+        int k = 0;
+        for (int i = 1; i < header.length; i++) {
+            while (k > 0 && header[i] != header[k]) {
+                k = fallback[k - 1];
+            }
+            if (header[i] == header[k]) {
+                k++;
+            }
+            fallback[i] = k;
+        }
+        return fallback;
+    }
+
+    @Override
+    public void onReceive(@NonNull ValidData validData, @NonNull byte[] bytes, int offset,
+        int length) {
+        final int capacity = mBuffer.length;
+        while (length > 0) {
+            if (mLimit == capacity) {
+                // 缓存满了，把当前帧移到开头
+                System.arraycopy(mBuffer, mStart, mBuffer, 0, mLimit - mStart);
+                mLimit -= mStart;
+                mStart = 0;
+            }
+            int count = Math.min(length, capacity - mLimit);
+            System.arraycopy(bytes, offset, mBuffer, mLimit, count);
+            mLimit += count;
+            offset += count;
+            length -= count;
+            parse(validData);
+        }
+    }
+
+    /**
+     * 解析缓存中剩下的数据
+     */
+    private void parse(ValidData validData) {
+        int pos;
+        while ((pos = mStart + mFrameLength) < mLimit) {
+            switch (mState) {
+                case STATE_HEADER:
+                    parseHeader(pos);
+                    break;
+                case STATE_LENGTH:
+                    parseLength(pos);
+                    break;
+                case STATE_BODY:
+                    parseBody(pos);
+                    break;
+                default:
+                    parseChecksum(pos);
+                    break;
+            }
+            if (mState == STATE_CHECKSUM && mFrameLength == mExpectedLength) {
+                finishFrame(validData);
+            }
+            if (mResync) {
+                // 从这一帧的第二个字节开始，在缓存中重新解析
+                mResync = false;
+                mStart++;
+                resetFrame();
+            }
+        }
+        if (mStart == mLimit) {
+            // 都处理完了，下次从缓存开头存放
+            mStart = 0;
+            mLimit = 0;
+        }
+    }
+
+    @Override
+    public void resetCache() {
+        resetFrame();
+        mStart = 0;
+        mLimit = 0;
+        mResync = false;
+    }
+
+    /**
+     * 收到校验通过的一帧，默认添加到validData（复制到validData复用的缓存中）
+     *
+     * @param validData 有效数据容器
+     * @param buffer 帧所在的缓存，只在此方法内有效
+     * @param offset 帧的开始位置
+     * @param length 帧的长度
+     */
+    protected void onFrame(@NonNull ValidData validData, @NonNull byte[] buffer, int offset,
+        int length) {
+        validData.addFrame(buffer, offset, length);
+    }
+
+    private void resetFrame() {
+        mState = STATE_HEADER;
+        mFrameLength = 0;
+        mExpectedLength = 0;
+    }
+
+    private void parseHeader(int pos) {
+        final byte[] header = mHeader;
+        if (header.length == 0) {
+            mState = STATE_LENGTH;
+            return;
+        }
+        final byte[] buffer = mBuffer;
+        final int limit = mLimit;
+        int matched = mFrameLength;
+        while (pos < limit) {
+            byte b = buffer[pos++];
+            while (matched > 0 && b != header[matched]) {
+                matched = mHeaderFallback[matched - 1];
+            }
+            if (b == header[matched] && ++matched == header.length) {
+                break;
+            }
+        }
+        // 已匹配的部分就是当前帧的开头
+        mStart = pos - matched;
+        mFrameLength = matched;
+        if (matched == header.length) {
+            mState = STATE_LENGTH;
+        }
+    }
+
+    private void parseLength(int pos) {
+        mFrameLength += Math.min(mLimit - pos, mLengthFieldEnd - mFrameLength);
+        if (mFrameLength < mLengthFieldEnd) {
+            return;
+        }
+
+        long frameLength = mLengthFieldEnd + readLengthField() + mLengthAdjustment;
+        if (frameLength < mMinFrameLength || frameLength > mMaxFrameLength) {
+            // 长度不对
+            mResync = true;
+            return;
+        }
+        mExpectedLength = (int) frameLength;
+        mState = mFrameLength < mExpectedLength - mChecksumLength ? STATE_BODY : STATE_CHECKSUM;
+    }
+
+    private void parseBody(int pos) {
+        int bodyEnd = mExpectedLength - mChecksumLength;
+        mFrameLength += Math.min(mLimit - pos, bodyEnd - mFrameLength);
+        if (mFrameLength == bodyEnd) {
+            mState = STATE_CHECKSUM;
+        }
+    }
+
+    private void parseChecksum(int pos) {
+        mFrameLength += Math.min(mLimit - pos, mExpectedLength - mFrameLength);
+    }
+
+    private void finishFrame(ValidData validData) {
+        if (mChecksum == null || mChecksum.verify(mBuffer, mStart, mExpectedLength)) {
+            onFrame(validData, mBuffer, mStart, mExpectedLength);
+            mStart += mExpectedLength;
+            resetFrame();
+        } else {
+            mResync = true;
+        }
+    }
+
+    private long readLengthField() {
+        final byte[] frame = mBuffer;
+        final int offset = mStart + mLengthFieldOffset;
+        long value = 0;
+        if (mBigEndian) {
+            for (int i = 0; i < mLengthFieldSize; i++) {
+                value = (value << 8) | (frame[offset + i] & 0xFF);
+            }
+        } else {
+            for (int i = mLengthFieldSize - 1; i >= 0; i--) {
+                value = (value << 8) | (frame[offset + i] & 0xFF);
+            }
+        }
+        return value;
+    }
+}
@@ -0,0 +1,111 @@
+package com.licheedev.serialworker.core;
+
+import androidx.annotation.NonNull;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 从{@link BufferPool}借来的缓存，带引用计数；
+ * 引用计数归0时自动还给缓存池，之后不能再访问{@link #array()}
+ */
+public final class PooledBuffer {
+
+    private final byte[] mArray;
+    private final BufferPool mPool; // 为null表示不属于缓存池（超过最大规格）
+    private final int mSizeClass;
+    private final AtomicInteger mRefCnt = new AtomicInteger();
+    private int mLength;
+    BufferPool.LeakTracker mTracker;
+
+    PooledBuffer(byte[] array, BufferPool pool, int sizeClass) {
+        mArray = array;
+        mPool = pool;
+        mSizeClass = sizeClass;
+    }
+
+    /**
+     * 底层数组，长度可能大于申请的容量
+     *
+     * @return
+     */
+    @NonNull
+    public byte[] array() {
+        return mArray;
+    }
+
+    public int capacity() {
+        return mArray.length;
+    }
+
+    /**
+     * 有效数据的长度，由使用者设置
+     *
+     * @return
+     */
+    public int length() {
+        return mLength;
+    }
+
+    public void setLength(int length) {
+        if (length < 0 || length > mArray.length) {
+            throw new IndexOutOfBoundsException("length=" + length + ", capacity=" + mArray.length);
+        }
+        mLength = length;
+    }
+
+    /**
+     * 当前的引用计数
+     *
+     * @return
+     */
+    public int refCnt() {
+        return mRefCnt.get();
+    }
+
+    /**
+     * 引用计数加1，交给其他线程或组件时使用，对方用完后需要{@link #release()}
+     *
+     * @return this
+     */
+    @NonNull
+    public PooledBuffer retain() {
+        int refCnt;
+        do {
+            refCnt = mRefCnt.get();
+            if (refCnt <= 0) {
+                throw new IllegalStateException("PooledBuffer has been released");
+            }
+        } while (!mRefCnt.compareAndSet(refCnt, refCnt + 1));
+        return this;
+    }
+
+    /**
+     * 引用计数减1，归0时还给缓存池
+     *
+     * @return 是否已经还给缓存池
+     */
+    public boolean release() {
+        int refCnt;
+        do {
+            refCnt = mRefCnt.get();
+            if (refCnt <= 0) {
+                throw new IllegalStateException("PooledBuffer has been released");
+            }
+        } while (!mRefCnt.compareAndSet(refCnt, refCnt - 1));
+        if (refCnt == 1) {
+            if (mPool != null) {
+                mPool.recycle(this);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    int getSizeClass() {
+        return mSizeClass;
+    }
+
+    void init() {
+        mLength = 0;
+        mRefCnt.set(1);
+    }
+}
@@ -0,0 +1,25 @@
+package com.licheedev.serialworker.core;
+
+import androidx.annotation.NonNull;
+
+/**
+ * 可以直接编码到缓存中的发送数据；实现此接口时，发送时从{@link BufferPool}借缓存编码，发送完归还，
+ * 不再调用{@link #toBytes()}，每次发送都不需要分配新的数组
+ */
+public interface PooledSendData extends SendData {
+
+    /**
+     * 编码后的字节数
+     *
+     * @return
+     */
+    int encodedLength();
+
+    /**
+     * 编码到缓存中
+     *
+     * @param buffer 缓存，剩余空间不少于{@link #encodedLength()}
+     * @param offset 开始位置
+     */
+    void encode(@NonNull byte[] buffer, int offset);
+}
@@ -0,0 +1,21 @@
+package com.licheedev.serialworker.core;
+
+/**
+ * 可选接口，{@link SendData}实现此接口后，开启优先级调度时（参考
+ * {@link com.licheedev.serialworker.worker.BaseSerialWorker#setPriorityScheduling(boolean, long)}），
+ * 优先级高的命令可以插队到排队中的低优先级命令前面执行（比如开锁命令插到轮询命令前面）
+ */
+public interface Prioritized {
+
+    int PRIORITY_LOW = -1;
+    int PRIORITY_NORMAL = 0;
+    int PRIORITY_HIGH = 1;
+    int PRIORITY_URGENT = 2;
+
+    /**
+     * 优先级，数值越大越优先，没有实现此接口的为{@link #PRIORITY_NORMAL}
+     *
+     * @return
+     */
+    int getPriority();
+}
@@ -0,0 +1,38 @@
+package com.licheedev.serialworker.core;
+
+import androidx.annotation.Nullable;
+import java.io.FileDescriptor;
+import java.io.IOException;
+
+/**
+ * 读线程等待数据的策略，在串口暂时没有数据可读时使用，决定了响应延迟和CPU占用之间的取舍；
+ * 一个实例只给一个读线程使用，不要在多个读线程之间共用
+ */
+public interface ReadWaitStrategy {
+
+    /**
+     * 读线程开始时被调用（在读线程中）
+     *
+     * @param fd 串口的文件描述符，无法获取时为null
+     */
+    void onStart(@Nullable FileDescriptor fd);
+
+    /**
+     * 串口没有数据可读时被调用（在读线程中），等待数据到达
+     *
+     * @param idleCount 连续没有读到数据的次数，从0开始，读到数据后重新计数
+     * @param timeoutNanos 最长等待时间，纳秒；小于0表示不限制
+     * @throws IOException 串口出错
+     */
+    void waitForData(int idleCount, long timeoutNanos) throws IOException;
+
+    /**
+     * 唤醒正在等待数据的读线程，可以在任意线程调用
+     */
+    void wakeup();
+
+    /**
+     * 读线程结束时被调用（在读线程中），释放资源
+     */
+    void onStop();
+}
@@ -0,0 +1,214 @@
+package com.licheedev.serialworker.core;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.licheedev.myutils.LogPlus;
+import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 异步请求的结果，收到响应、出错或超时时完成；
+ * 等待结果时不占用任何线程，可以用{@link #addCallback(Callback, Executor)}在完成时得到通知，
+ * 也可以用{@link #get()}阻塞等待
+ *
+ * @param <T>
+ */
+public class ResponseFuture<T> implements Future<T> {
+
+    private static final String TAG = "SerialWorker";
+
+    private static final int PENDING = 0;
+    private static final int SUCCESS = 1;
+    private static final int FAILURE = 2;
+    private static final int CANCELLED = 3;
+
+    private int mState = PENDING;
+    private T mResult;
+    private Throwable mError;
+    private ArrayList<Runnable> mListeners;
+
+    /**
+     * 成功完成
+     *
+     * @param result 结果
+     * @return 是否由此调用完成，已经完成过的返回false
+     */
+    public boolean complete(@Nullable T result) {
+        ArrayList<Runnable> listeners;
+        synchronized (this) {
+            if (mState != PENDING) {
+                return false;
+            }
+            mResult = result;
+            mState = SUCCESS;
+            listeners = takeListeners();
+        }
+        runListeners(listeners);
+        return true;
+    }
+
+    /**
+     * 失败完成
+     *
+     * @param error 异常
+     * @return 是否由此调用完成，已经完成过的返回false
+     */
+    public boolean fail(@NonNull Throwable error) {
+        return finish(FAILURE, error);
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return finish(CANCELLED, new CancellationException());
+    }
+
+    private boolean finish(int state, Throwable error) {
+        ArrayList<Runnable> listeners;
+        synchronized (this) {
+            if (mState != PENDING) {
+                return false;
+            }
+            mError = error;
+            mState = state;
+            listeners = takeListeners();
+        }
+        runListeners(listeners);
+        return true;
+    }
+
+    private ArrayList<Runnable> takeListeners() {
+        notifyAll();
+        ArrayList<Runnable> listeners = mListeners;
+        mListeners = null;
+        return listeners;
+    }
+
+    private static void runListeners(@Nullable ArrayList<Runnable> listeners) {
+        if (listeners == null) {
+            return;
+        }
+        for (Runnable listener : listeners) {
+            runListener(listener);
+        }
+    }
+
+    /**
+     * 运行监听，监听抛出的异常只打印日志，不影响其他监听，也不会传到完成的线程（比如读线程、定时器线程）
+     */
+    private static void runListener(Runnable listener) {
+        try {
+            listener.run();
+        } catch (RuntimeException e) {
+            LogPlus.w(TAG, "ResponseFuture listener exception occurred", e);
+        }
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return mState == CANCELLED;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return mState != PENDING;
+    }
+
+    @Override
+    public synchronized T get() throws InterruptedException, ExecutionException {
+        while (mState == PENDING) {
+            wait();
+        }
+        return report();
+    }
+
+    @Override
+    public synchronized T get(long timeout, @NonNull TimeUnit unit)
+        throws InterruptedException, ExecutionException, TimeoutException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (mState == PENDING) {
+            long waitNanos = deadline - System.nanoTime();
+            if (waitNanos <= 0) {
+                throw new TimeoutException();
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, waitNanos);
+        }
+        return report();
+    }
+
+    private T report() throws ExecutionException {
+        if (mState == SUCCESS) {
+            return mResult;
+        } else if (mState == CANCELLED) {
+            throw (CancellationException) mError;
+        }
+        throw new ExecutionException(mError);
+    }
+
+    /**
+     * 完成时运行，已经完成则马上运行；在完成的线程中执行（通常是串口的读线程），不要执行耗时操作
+     *
+     * @param listener
+     */
+    public void addListener(@NonNull Runnable listener) {
+        synchronized (this) {
+            if (mState == PENDING) {
+                if (mListeners == null) {
+                    mListeners = new ArrayList<>(2);
+                }
+                mListeners.add(listener);
+                return;
+            }
+        }
+        runListener(listener);
+    }
+
+    /**
+     * 完成时回调
+     *
+     * @param callback 回调
+     * @param executor 执行回调的线程池，为null时直接在完成的线程中回调（通常是串口的读线程）；
+     * 线程池拒绝执行时（比如已关闭）也直接回调，免得回调丢失
+     */
+    public void addCallback(@NonNull final Callback<? super T> callback,
+        @Nullable final Executor executor) {
+        // 同一个对象既是完成监听，也是交给executor的任务，只分配一次
+        addListener(new Runnable() {
+            private boolean mDispatched;
+
+            @Override
+            public void run() {
+                if (executor == null || mDispatched) {
+                    notifyCallback(callback);
+                } else {
+                    mDispatched = true;
+                    try {
+                        executor.execute(this);
+                    } catch (RejectedExecutionException e) {
+                        LogPlus.w(TAG, "Callback executor rejected", e);
+                        notifyCallback(callback);
+                    }
+                }
+            }
+        });
+    }
+
+    private void notifyCallback(Callback<? super T> callback) {
+        T result;
+        Throwable error;
+        synchronized (this) {
+            result = mResult;
+            error = mError;
+        }
+        if (error == null) {
+            callback.onSuccess(result);
+        } else {
+            callback.onFailure(error);
+        }
+    }
+}
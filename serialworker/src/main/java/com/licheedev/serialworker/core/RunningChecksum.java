@@ -0,0 +1,33 @@
+package com.licheedev.serialworker.core;
+
+import androidx.annotation.NonNull;
+
+/**
+ * 可以边接收边计算的帧校验，分包器每收到一段数据就更新一次，帧收完时只需比较校验码，不需要再遍历整帧；
+ * 适用于帧数据不在一块连续缓存中的自定义分包器，帧是连续的直接用{@link #verify(byte[], int, int)}更快
+ */
+public interface RunningChecksum extends FrameChecksum {
+
+    /**
+     * 开始新的一帧
+     */
+    void reset();
+
+    /**
+     * 更新校验值，参数为帧中不包括校验码的数据，按顺序分段传入
+     *
+     * @param buffer 数据所在的缓存
+     * @param offset 开始位置
+     * @param length 长度
+     */
+    void update(@NonNull byte[] buffer, int offset, int length);
+
+    /**
+     * 比较当前的校验值与帧末尾的校验码
+     *
+     * @param buffer 校验码所在的缓存
+     * @param offset 校验码的开始位置
+     * @return 是否校验通过
+     */
+    boolean check(@NonNull byte[] buffer, int offset);
+}
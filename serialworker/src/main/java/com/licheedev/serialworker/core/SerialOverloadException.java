@@ -0,0 +1,19 @@
+package com.licheedev.serialworker.core;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 串口过载异常，串口队列已满，或请求排队太久，请求没有发送就被拒绝了。
+ * 调用者可以据此提前放弃或降低请求频率
+ */
+public class SerialOverloadException extends RejectedExecutionException {
+
+    private static final long serialVersionUID = -1;
+
+    public SerialOverloadException() {
+    }
+
+    public SerialOverloadException(String message) {
+        super(message);
+    }
+}
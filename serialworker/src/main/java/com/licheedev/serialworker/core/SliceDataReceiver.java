@@ -0,0 +1,23 @@
+package com.licheedev.serialworker.core;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * 直接从缓存中的帧转换数据的接收器，不需要每帧都复制出一个byte[]；
+ * 实现了此接口时，{@link com.licheedev.serialworker.worker.Rs232SerialWorker}只会调用{@link #adaptReceive(FrameView)}。
+ * {@link #adaptReceive(byte[])}用于兼容，一般直接调用{@code adaptReceive(FrameView.wrap(allPack))}即可
+ *
+ * @param <T>
+ */
+public interface SliceDataReceiver<T> extends DataReceiver<T> {
+
+    /**
+     * 把收到的有效数据转换成特定的数据类型
+     *
+     * @param frame 完整的数据包，只在此方法内有效，不要保留此实例，需要保留的数据要复制出来
+     * @return
+     */
+    @Nullable
+    T adaptReceive(@NonNull FrameView frame);
+}
@@ -0,0 +1,40 @@
+package com.licheedev.serialworker.core;
+
+import androidx.annotation.NonNull;
+
+/**
+ * 需要数据到达时间的数据接收器，比如按字符间隔（静默时间）分帧的协议；
+ * 读线程会记录每次读到数据的时间（{@link System#nanoTime()}），
+ * 没有新数据时，最多等到{@link #getDeadlineNanos()}，然后调用{@link #onTimeout(ValidData, long)}
+ *
+ * @see GapFrameDecoder
+ */
+public interface TimedDataReceiver<T> extends DataReceiver<T> {
+
+    /**
+     * 当接收到数据时被调用
+     *
+     * @param validData 用来缓存收到的有效数据的容器
+     * @param bytes 接收到的数据所在的缓存
+     * @param offset 收到数据在缓存中的开始位置
+     * @param length 收到数据的长度
+     * @param nanoTime 读到数据的时间，{@link System#nanoTime()}
+     */
+    void onReceive(@NonNull ValidData validData, @NonNull byte[] bytes, int offset, int length,
+        long nanoTime);
+
+    /**
+     * 下一次需要调用{@link #onTimeout(ValidData, long)}的时间
+     *
+     * @return {@link System#nanoTime()}的时间，小于0表示不需要
+     */
+    long getDeadlineNanos();
+
+    /**
+     * 到了{@link #getDeadlineNanos()}仍没有新数据时被调用
+     *
+     * @param validData 用来缓存收到的有效数据的容器
+     * @param nanoTime 当前时间，{@link System#nanoTime()}
+     */
+    void onTimeout(@NonNull ValidData validData, long nanoTime);
+}
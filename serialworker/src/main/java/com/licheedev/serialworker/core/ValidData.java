@@ -4,39 +4,127 @@ import androidx.annotation.NonNull;
 import java.util.ArrayList;
 
 /**
- * 有效数据容器
+ * 有效数据容器。
+ * 用{@link #addFrame(byte[], int, int)}添加的帧复制到内部复用的缓存中，
+ * 通过{@link #get(int)}得到{@link FrameView}，整个过程不需要为每帧分配新的数组；
+ * {@link #add(byte[])}和{@link #getAll()}用于兼容，{@link #getAll()}需要时才为缓存中的帧生成byte[]。
+ * 得到的{@link FrameView}不能保留到下一批数据
  */
 public class ValidData {
 
-    private final ArrayList<byte[]> mBuffer;
+    private final ArrayList<FrameView> mFrames; // 前mSize个有效，其余留着复用
+    private int mSize;
+    private byte[] mArena; // 帧数据缓存
+    private int mArenaUsed;
+    private ArrayList<byte[]> mBuffer; // getAll()的结果
 
     public ValidData() {
-        mBuffer = new ArrayList<>();
+        mFrames = new ArrayList<>();
+        mArena = new byte[1024];
     }
 
     public void add(@NonNull byte[] validData) {
-        mBuffer.add(validData);
+        nextFrame().set(validData, 0, validData.length);
+    }
+
+    /**
+     * 添加一帧，数据会复制到内部的缓存中
+     *
+     * @param buffer 帧所在的缓存
+     * @param offset 帧的开始位置
+     * @param length 帧的长度
+     */
+    public void addFrame(@NonNull byte[] buffer, int offset, int length) {
+        if (mArena.length - mArenaUsed < length) {
+            growArena(length);
+        }
+        System.arraycopy(buffer, offset, mArena, mArenaUsed, length);
+        nextFrame().set(mArena, mArenaUsed, length);
+        mArenaUsed += length;
+    }
+
+    /**
+     * 第index帧，只在处理这一批数据时有效，{@link #clear()}之后实例会被复用到新的帧，不要保留，
+     * 见{@link FrameView}
+     *
+     * @param index
+     * @return
+     */
+    @NonNull
+    public FrameView get(int index) {
+        if (index >= mSize) {
+            throw new IndexOutOfBoundsException("index=" + index + ", size=" + mSize);
+        }
+        return mFrames.get(index);
     }
 
     public void clear() {
-        mBuffer.clear();
+        mSize = 0;
+        mArenaUsed = 0;
+        mBuffer = null;
     }
 
     @NonNull
     public ArrayList<byte[]> getAll() {
+        if (mBuffer == null) {
+            ArrayList<byte[]> all = new ArrayList<>(mSize);
+            for (int i = 0; i < mSize; i++) {
+                FrameView frame = mFrames.get(i);
+                byte[] buffer = frame.getBuffer();
+                if (buffer != mArena && frame.getOffset() == 0
+                    && frame.length() == buffer.length) {
+                    // 用add(byte[])添加的
+                    all.add(buffer);
+                } else {
+                    all.add(frame.toByteArray());
+                }
+            }
+            mBuffer = all;
+        }
         return mBuffer;
     }
 
     public int size() {
-        return mBuffer.size();
+        return mSize;
     }
 
     public boolean isEmpty() {
-        return mBuffer.isEmpty();
+        return mSize == 0;
     }
-    
+
     @NonNull
     public ArrayList<byte[]> cloneData() {
-        return new ArrayList<>(mBuffer);
+        return new ArrayList<>(getAll());
+    }
+
+    private FrameView nextFrame() {
+        mBuffer = null;
+        FrameView frame;
+        if (mSize < mFrames.size()) {
+            frame = mFrames.get(mSize);
+        } else {
+            frame = new FrameView();
+            mFrames.add(frame);
+        }
+        mSize++;
+        return frame;
+    }
+
+    private void growArena(int length) {
+        byte[] old = mArena;
+        int capacity = old.length;
+        while (capacity - mArenaUsed < length) {
+            capacity *= 2;
+        }
+        byte[] arena = new byte[capacity];
+        System.arraycopy(old, 0, arena, 0, mArenaUsed);
+        mArena = arena;
+        // 已添加的帧指向新的缓存
+        for (int i = 0; i < mSize; i++) {
+            FrameView frame = mFrames.get(i);
+            if (frame.getBuffer() == old) {
+                frame.set(arena, frame.getOffset(), frame.length());
+            }
+        }
     }
 }
@@ -0,0 +1,101 @@
+package com.licheedev.serialworker.worker;
+
+import androidx.annotation.NonNull;
+import com.licheedev.serialworker.core.RecvData;
+import com.licheedev.serialworker.core.ResponseFuture;
+import com.licheedev.serialworker.core.SendData;
+import com.licheedev.serialworker.core.WaitRoom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 异步等待响应，收到响应时直接在读线程中完成{@link ResponseFuture}，不占用等待的线程；
+ * 超时由共用的时间轮定时器处理
+ *
+ * @param <S>
+ * @param <R>
+ */
+class AsyncWaitRoom<S extends SendData, R extends RecvData> implements WaitRoom<R> {
+
+    private final SendReceive<S, R> mWork;
+    private final S mSendData;
+    private final ResponseFuture<R> mFuture;
+    private HashedWheelTimer.Timeout mTimeout;
+
+    AsyncWaitRoom(@NonNull SendReceive<S, R> work, @NonNull S sendData,
+        @NonNull ResponseFuture<R> future) {
+        mWork = work;
+        mSendData = sendData;
+        mFuture = future;
+    }
+
+    @NonNull
+    ResponseFuture<R> getFuture() {
+        return mFuture;
+    }
+
+    /**
+     * 开始计算超时
+     *
+     * @param timer 定时器
+     * @param timeout 超时，毫秒
+     */
+    synchronized void startTimeout(@NonNull HashedWheelTimer timer, long timeout) {
+        if (mFuture.isDone()) {
+            return;
+        }
+        mTimeout = timer.newTimeout(new Runnable() {
+            @Override
+            public void run() {
+                mFuture.fail(
+                    new TimeoutException(Rs232SerialWorker.SERIAL_PORT_RECEIVES_DATA_TIMEOUT));
+            }
+        }, timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 取消超时
+     */
+    synchronized void cancelTimeout() {
+        if (mTimeout != null) {
+            mTimeout.cancel();
+            mTimeout = null;
+        }
+    }
+
+    @Override
+    public R getResponse(long timeout) {
+        try {
+            return mFuture.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void putResponse(R r) {
+        offerResponse(r);
+    }
+
+    /**
+     * 尝试用收到的数据完成请求
+     *
+     * @param r 接收的数据
+     * @return 是否是此请求的响应
+     */
+    boolean offerResponse(R r) {
+        if (r == null || mFuture.isDone()) {
+            return false;
+        }
+        // 检查一下响应
+        return mWork.isMyResponse(mSendData, r) && mFuture.complete(r);
+    }
+
+    @Override
+    public void notifyRunningReceive(boolean running) {
+        // 空实现
+    }
+}
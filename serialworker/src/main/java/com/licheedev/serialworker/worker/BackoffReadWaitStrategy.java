@@ -0,0 +1,90 @@
+package com.licheedev.serialworker.worker;
+
+import androidx.annotation.Nullable;
+import com.licheedev.serialworker.core.ReadWaitStrategy;
+import java.io.FileDescriptor;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 逐级退避的等待策略：先忙等待，再让出CPU，最后park，park时间按指数增长直到上限；
+ * 数据连续到达时延迟很低，串口空闲时CPU占用也很低
+ */
+public class BackoffReadWaitStrategy implements ReadWaitStrategy {
+
+    private final int mSpinTries;
+    private final int mYieldTries;
+    private final long mMinParkNanos;
+    private final long mMaxParkNanos;
+    private volatile Thread mThread;
+
+    /**
+     * 默认：忙等待100次，让出CPU 10次，park时间从50微秒开始翻倍，最大10毫秒
+     */
+    public BackoffReadWaitStrategy() {
+        this(100, 10, 50_000L, 10_000_000L);
+    }
+
+    /**
+     * @param spinTries 忙等待的次数
+     * @param yieldTries 让出CPU的次数
+     * @param minParkNanos 最短park时间，纳秒
+     * @param maxParkNanos 最长park时间，纳秒
+     */
+    public BackoffReadWaitStrategy(int spinTries, int yieldTries, long minParkNanos,
+        long maxParkNanos) {
+        if (minParkNanos <= 0 || maxParkNanos < minParkNanos) {
+            throw new IllegalArgumentException(
+                "Illegal park nanos, min=" + minParkNanos + ", max=" + maxParkNanos);
+        }
+        mSpinTries = spinTries;
+        mYieldTries = yieldTries;
+        mMinParkNanos = minParkNanos;
+        mMaxParkNanos = maxParkNanos;
+    }
+
+    /**
+     * 最长park时间，纳秒
+     *
+     * @return
+     */
+    long getMaxParkNanos() {
+        return mMaxParkNanos;
+    }
+
+    @Override
+    public void onStart(@Nullable FileDescriptor fd) {
+        mThread = Thread.currentThread();
+    }
+
+    @Override
+    public void waitForData(int idleCount, long timeoutNanos) {
+        if (idleCount < mSpinTries) {
+            return;
+        }
+        if (idleCount < mSpinTries + mYieldTries) {
+            Thread.yield();
+            return;
+        }
+        int shift = Math.min(idleCount - mSpinTries - mYieldTries, 30);
+        long parkNanos = Math.min(mMinParkNanos << shift, mMaxParkNanos);
+        if (timeoutNanos >= 0) {
+            parkNanos = Math.min(parkNanos, timeoutNanos);
+        }
+        if (parkNanos > 0) {
+            LockSupport.parkNanos(this, parkNanos);
+        }
+    }
+
+    @Override
+    public void wakeup() {
+        Thread thread = mThread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    @Override
+    public void onStop() {
+        mThread = null;
+    }
+}
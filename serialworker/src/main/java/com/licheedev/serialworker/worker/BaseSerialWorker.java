@@ -1,5 +1,6 @@
 package com.licheedev.serialworker.worker;
 
+import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
 import android.serialport.SerialPort;
@@ -7,24 +8,36 @@ import android.text.TextUtils;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import com.licheedev.hwutils.ByteUtil;
-import com.licheedev.hwutils.SystemClockEx;
 import com.licheedev.myutils.LogPlus;
 import com.licheedev.serialworker.core.Callback;
 import com.licheedev.serialworker.core.DataReceiver;
 import com.licheedev.serialworker.core.OpenSerialException;
+import com.licheedev.serialworker.core.Prioritized;
+import com.licheedev.serialworker.core.ReadWaitStrategy;
+import com.licheedev.serialworker.core.SerialOverloadException;
 import com.licheedev.serialworker.core.SerialWorker;
+import com.licheedev.serialworker.core.TimedDataReceiver;
 import com.licheedev.serialworker.core.ValidData;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * 基本的串口操作,默认会在打开串口的时候开线程进行读取，没有额外处理收发是否同步（不区分232还是485）
@@ -40,23 +53,110 @@ public abstract class BaseSerialWorker implements SerialWorker {
     protected SerialPort mSerialPort;
 
     protected DefaultSerialReadThread mReadThread; // 读线程
-
-    protected final ExecutorService mSerialExecutor;
+    private SerialReactor mReactor; // 多个串口共用的读线程
+    private ReactorChannel mReactorChannel;
+    private ReceivePipeline mReceivePipeline; // 流水线接收时的分包线程
+    private int mReceiveRingCapacity; // 流水线接收的环形缓存容量，0表示不使用
+    private final AtomicLong mReceiveOverrunBytes = new AtomicLong();
+    private final AtomicLong mReceiveOverrunCount = new AtomicLong();
+
+    protected final SerialTaskExecutor mSerialExecutor;
+    /** 串口锁，串口线程执行任务、调用的线程直接执行同步方法时都要先获取，公平锁 */
+    private final ReentrantLock mPortLock = new ReentrantLock(true);
+    private volatile boolean mDirectSync = false; // 同步方法是否在调用的线程中直接执行
+    private final AtomicInteger mDirectWaiters = new AtomicInteger(); // 直接执行模式下等待串口锁的线程数
+    private volatile long mMaxQueueWait; // 请求最长排队时间，毫秒，0表示不限制
+    private volatile long mCoalesceNanos; // 合并写入的最长延迟，0表示不合并
+    // 以下持有串口锁时访问
+    private int mPendingFrames; // 已写入缓存、还没flush的帧数
+    private boolean mCoalescedWrite; // 当前的写入允许延迟合并
+    private long mPendingSinceNanos; // 第一个没flush的帧写入缓存的时间
+    // 数据还留在缓存中、等写入串口后再回调的任务
+    private final ArrayDeque<CallTask> mUnflushedWrites = new ArrayDeque<>();
+    private final AtomicLong mWriteCount = new AtomicLong(); // flush的次数，即写入串口的次数
+    private final AtomicLong mWrittenFrames = new AtomicLong(); // 写入串口的帧数
+    final AtomicLong mOverloadCount = new AtomicLong(); // 因过载被拒绝的请求数（不包括串口队列已满的）
+    protected final SerialWorkerGroup mGroup;
 
     private boolean mLogSend = false; // 打印发送的数据
     private boolean mLogRecv = false; // 打印接收的数
     protected final Handler mUiHandler;
+    protected final Executor mUiExecutor; // 在UI线程中执行
+    private volatile Executor mCallbackExecutor; // 执行异步回调，为null时在完成的线程中直接回调
 
     private String mDevicePath; // 串口地址
     private int mBaudrate; // 串口波特率
     private int mDataBits = 8; // 数据位
     private int mParity = 0; // 校验位
     private int mStopBits = 1; // 停止位
+    private long mFrameGapNanos; // 帧间隔，0表示按串口参数计算
+    private volatile boolean mBlockingRead = false; // 读线程是否在内核中阻塞等待数据
 
     public BaseSerialWorker() {
-        // 用来操作串口发送数据的单一线程池
-        mSerialExecutor = Executors.newSingleThreadExecutor();
+        this(null);
+    }
+
+    /**
+     * @param group 多个串口共用的线程资源，为null时使用自己的线程
+     */
+    public BaseSerialWorker(@Nullable SerialWorkerGroup group) {
+        mGroup = group;
+        if (group != null) {
+            // 在共用的线程池中按顺序执行
+            mSerialExecutor = group.newSerialExecutor();
+            mReactor = group.getReactor();
+        } else {
+            // 用来操作串口发送数据的单一线程池
+            mSerialExecutor = new SerialTaskExecutor(TAG);
+        }
+        mSerialExecutor.setTaskLock(mPortLock);
+        mSerialExecutor.setAfterTask(new Runnable() {
+            @Override
+            public void run() {
+                flushCoalescedWrites();
+            }
+        });
         mUiHandler = new Handler(Looper.getMainLooper());
+        mUiExecutor = new Executor() {
+            @Override
+            public void execute(@NonNull Runnable command) {
+                mUiHandler.post(command);
+            }
+        };
+        mCallbackExecutor = mUiExecutor;
+    }
+
+    /**
+     * 设置执行异步回调（{@link Callback}）的线程池，默认在UI线程中回调。
+     * 可以传入专用的回调线程或共用的线程池，免得每个回调都要排在UI线程的绘制后面；
+     * 传入null时，在完成的线程（串口线程或读线程）中直接回调，延迟最低，但回调中不能执行耗时操作。
+     * 带callbackExecutor参数的方法可以单独指定某次调用的回调线程
+     *
+     * @param executor 执行回调的线程池，为null时直接回调
+     */
+    public void setCallbackExecutor(@Nullable Executor executor) {
+        mCallbackExecutor = executor;
+    }
+
+    /**
+     * 执行异步回调的线程池
+     *
+     * @return 为null时表示在完成的线程中直接回调
+     * @see #setCallbackExecutor(Executor)
+     */
+    @Nullable
+    public Executor getCallbackExecutor() {
+        return mCallbackExecutor;
+    }
+
+    /**
+     * 异步请求超时用的定时器
+     *
+     * @return
+     */
+    @NonNull
+    HashedWheelTimer getTimer() {
+        return mGroup != null ? mGroup.getTimer() : SerialWorkerGroup.getDefaultTimer();
     }
 
     /**
@@ -115,10 +215,18 @@ public abstract class BaseSerialWorker implements SerialWorker {
      * @return
      * @throws OpenSerialException
      */
-    private synchronized SerialPort doOpenSerial() throws OpenSerialException {
+    private SerialPort doOpenSerial() throws OpenSerialException {
+        // 重新打开时，先在锁外从共用的读线程中取消注册
+        unregisterReactorChannel();
+        synchronized (this) {
+            return openSerialLocked();
+        }
+    }
+
+    private SerialPort openSerialLocked() throws OpenSerialException {
 
         if (mSerialPort != null) {
-            closeSerial();
+            closeSerialLocked();
         }
 
         try {
@@ -146,7 +254,7 @@ public abstract class BaseSerialWorker implements SerialWorker {
             return mSerialPort;
         } catch (Exception e) {
             // 清理数据
-            closeSerial();
+            closeSerialLocked();
             // 抛出异常
             throw new OpenSerialException(
                 String.format(ERROR_OPEN_SERIAL_FAILED, getSerialPortName()), e);
@@ -156,74 +264,365 @@ public abstract class BaseSerialWorker implements SerialWorker {
     /**
      * 当串口打开成功时运行，可以用来打开读线程什么的。
      * 默认开启了一个读线程{@link DefaultSerialReadThread}不停读取数据，然后使用{@link DataReceiver}对数据进行处理;
+     * 设置了{@link #setReactor(SerialReactor)}时，则注册到共用的读线程，不再单独开线程；
      * 如果需要完全控制读写，则可以重写这个方法。
      */
     protected void onSerialOpened(@NonNull InputStream inputStream,
         @NonNull OutputStream outputStream) {
+        ReceiveProcessor processor = new ReceiveProcessor();
+        ReceiveSink sink = processor;
+        // 流水线接收，读线程只把数据放到环形缓存中
+        if (mReceiveRingCapacity > 0) {
+            if (processor.isTimed()) {
+                LogPlus.w(TAG, String.format(
+                    "SerialPort(%s) TimedDataReceiver needs arrival time, pipelined receive disabled",
+                    getSerialPortName()));
+            } else {
+                mReceivePipeline = new ReceivePipeline(processor, mReceiveRingCapacity);
+                mReceivePipeline.start();
+                sink = mReceivePipeline;
+            }
+        }
+        // 注册到共用的读线程，按时间分帧的需要自己的读线程
+        SerialReactor reactor = mReactor;
+        if (reactor != null && !processor.isTimed()) {
+            FileDescriptor fd = getSerialFd();
+            if (fd != null) {
+                ReactorChannel channel = new ReactorChannel(reactor, fd, sink);
+                if (reactor.register(channel)) {
+                    mReactorChannel = channel;
+                    return;
+                }
+            }
+            LogPlus.w(TAG, String.format("SerialPort(%s) can't use SerialReactor, start Read Thread",
+                getSerialPortName()));
+        }
         // 打开读线程
-        mReadThread = new DefaultSerialReadThread();
+        mReadThread = new DefaultSerialReadThread(sink,
+            processor.isTimed() ? newTimedReadWaitStrategy() : newReadWaitStrategy());
         mReadThread.start();
     }
 
+    /**
+     * 读到的数据交给谁处理
+     */
+    private interface ReceiveSink {
+
+        void process(byte[] buffer, int offset, int length);
+
+        /**
+         * 下一次需要调用{@link #checkTimeout()}的时间
+         *
+         * @return {@link System#nanoTime()}的时间，小于0表示不需要
+         */
+        long getDeadlineNanos();
+
+        void checkTimeout();
+    }
+
+    /**
+     * 处理从串口读到的数据：打印日志、{@link #onReceiveData(byte[], int, int)}，
+     * 然后使用{@link DataReceiver}分包，并{@link #handleValidData(ValidData, DataReceiver)}
+     */
+    private class ReceiveProcessor implements ReceiveSink {
+
+        private final DataReceiver mReceiver;
+        // 需要数据到达时间的接收器，与mReceiver是同一个对象
+        private final TimedDataReceiver<?> mTimedReceiver;
+        // 用来容纳有效数据的
+        private final ValidData mValidData;
+
+        ReceiveProcessor() {
+            mReceiver = newReceiver();
+            if (mReceiver != null) {
+                // 读之前先reset一下
+                mReceiver.resetCache();
+            }
+            mTimedReceiver =
+                mReceiver instanceof TimedDataReceiver ? (TimedDataReceiver<?>) mReceiver : null;
+            mValidData = new ValidData();
+        }
+
+        boolean isTimed() {
+            return mTimedReceiver != null;
+        }
+
+        @Override
+        public long getDeadlineNanos() {
+            return mTimedReceiver != null ? mTimedReceiver.getDeadlineNanos() : -1;
+        }
+
+        @Override
+        public void checkTimeout() {
+            if (mTimedReceiver == null) {
+                return;
+            }
+            mValidData.clear();
+            mTimedReceiver.onTimeout(mValidData, System.nanoTime());
+            if (mValidData.size() > 0) {
+                handleValidData(mValidData, mReceiver);
+            }
+        }
+
+        @Override
+        public void process(byte[] buffer, int offset, int length) {
+            // 打印日志
+            if (isLogRecv()) {
+                doLogRecv(ByteUtil.bytes2HexStr(buffer, offset, length));
+            }
+
+            onReceiveData(buffer, offset, length);
+
+            if (mReceiver != null) {
+                // 清空有效数据缓存
+                mValidData.clear();
+                // 处理接收到的数据
+                if (mTimedReceiver != null) {
+                    mTimedReceiver.onReceive(mValidData, buffer, offset, length,
+                        System.nanoTime());
+                } else {
+                    mReceiver.onReceive(mValidData, buffer, offset, length);
+                }
+                if (mValidData.size() > 0) {
+                    // 处理有效的数据
+                    handleValidData(mValidData, mReceiver);
+                }
+            }
+        }
+    }
+
+    /**
+     * 流水线接收：读线程只把数据复制到环形缓存中，由单独的线程分包和分发，
+     * 分发慢了也不会拖慢读取；环形缓存满了时丢弃新数据，并计入溢出统计
+     */
+    private class ReceivePipeline implements ReceiveSink, Runnable {
+
+        private final ReceiveProcessor mProcessor;
+        private final SpscByteRing mRing;
+        private final ReadWaitStrategy mWaitStrategy;
+        private final Thread mThread;
+        private volatile boolean mRunning = true;
+        private volatile boolean mWaiting; // 分包线程正在等待数据
+
+        ReceivePipeline(ReceiveProcessor processor, int capacity) {
+            mProcessor = processor;
+            mRing = new SpscByteRing(capacity);
+            mWaitStrategy = newDispatchWaitStrategy();
+            mThread = new Thread(this, TAG + "-dispatch");
+        }
+
+        void start() {
+            mThread.start();
+        }
+
+        /**
+         * 放入环形缓存（读线程）
+         */
+        @Override
+        public void process(byte[] buffer, int offset, int length) {
+            int count = mRing.offer(buffer, offset, length);
+            if (count < length) {
+                mReceiveOverrunBytes.addAndGet(length - count);
+                mReceiveOverrunCount.incrementAndGet();
+            }
+            if (mWaiting) {
+                mWaitStrategy.wakeup();
+            }
+        }
+
+        @Override
+        public long getDeadlineNanos() {
+            return -1;
+        }
+
+        @Override
+        public void checkTimeout() {
+            // 空实现
+        }
+
+        @Override
+        public void run() {
+            LogPlus.i(TAG, String.format("Start SerialPort(%s) Dispatch Thread (%s)",
+                getSerialPortName(), mWaitStrategy.getClass().getSimpleName()));
+
+            mWaitStrategy.onStart(null);
+            byte[] buffer = new byte[2048];
+            int idleCount = 0;
+            while (mRunning) {
+                try {
+                    int len = mRing.poll(buffer, 0, buffer.length);
+                    if (len > 0) {
+                        idleCount = 0;
+                        mProcessor.process(buffer, 0, len);
+                        continue;
+                    }
+                    mWaiting = true;
+                    // 设置等待状态后再检查一次，免得错过唤醒
+                    if (mRing.isEmpty() && mRunning) {
+                        mWaitStrategy.waitForData(idleCount, -1);
+                    }
+                    mWaiting = false;
+                    if (idleCount < Integer.MAX_VALUE) {
+                        idleCount++;
+                    }
+                } catch (Exception e) {
+                    mWaiting = false;
+                    if (!mRunning) {
+                        break;
+                    }
+                    LogPlus.w(TAG, String.format("SerialPort(%s) Dispatch Thread exception occurred",
+                        getSerialPortName()), e);
+                }
+            }
+            mWaitStrategy.onStop();
+
+            LogPlus.i(TAG,
+                String.format("SerialPort(%s) Dispatch Thread Finished", getSerialPortName()));
+        }
+
+        int getPending() {
+            return mRing.size();
+        }
+
+        void close() {
+            mRunning = false;
+            mWaitStrategy.wakeup();
+            mThread.interrupt();
+        }
+    }
+
+    /**
+     * 注册到{@link SerialReactor}的串口
+     */
+    private class ReactorChannel implements SerialReactor.Channel {
+
+        private final SerialReactor mReactor;
+        private final FileDescriptor mFd;
+        private final ReceiveSink mProcessor;
+        private volatile boolean mClosed;
+
+        ReactorChannel(SerialReactor reactor, FileDescriptor fd, ReceiveSink processor) {
+            mReactor = reactor;
+            mFd = fd;
+            mProcessor = processor;
+        }
+
+        @NonNull
+        @Override
+        public FileDescriptor getFd() {
+            return mFd;
+        }
+
+        @Override
+        public void onReadable(@NonNull byte[] buffer) throws IOException {
+            InputStream inputStream = mInputStream;
+            if (mClosed || inputStream == null) {
+                return;
+            }
+            int len;
+            // 读完为止，免得有数据残留在BufferedInputStream中
+            do {
+                len = inputStream.read(buffer);
+                if (len > 0) {
+                    mProcessor.process(buffer, 0, len);
+                }
+            } while (!mClosed && len > 0 && inputStream.available() > 0);
+
+            notifyRunningReceive(true);
+        }
+
+        @Override
+        public void onError(@NonNull Exception e) {
+            if (mClosed) {
+                return;
+            }
+            mClosed = true;
+            onReactorError(e);
+        }
+
+        void close() {
+            mClosed = true;
+            mReactor.unregister(this);
+        }
+    }
+
+    /**
+     * 共用的读线程（{@link SerialReactor}）读串口出错时调用（在SerialReactor线程中），
+     * 此时串口已从共用的读线程中取消注册，不会再收到数据；
+     * 默认打印日志并关闭串口，可以重写，比如重新打开串口
+     *
+     * @param e 异常
+     */
+    protected void onReactorError(@NonNull Exception e) {
+        LogPlus.w(TAG, String.format("SerialPort(%s) SerialReactor exception occurred, close it",
+            getSerialPortName()), e);
+        closeSerial();
+    }
+
     /**
      * 默认读线程
      */
     private class DefaultSerialReadThread extends Thread {
 
         private final byte[] mRecvBuffer;
-        private boolean mRunning = true;
+        private volatile boolean mRunning = true;
+        private final ReadWaitStrategy mWaitStrategy;
+        private final ReceiveSink mProcessor;
 
-        DefaultSerialReadThread() {
+        DefaultSerialReadThread(ReceiveSink processor, ReadWaitStrategy waitStrategy) {
             // 接收收据缓存
             mRecvBuffer = new byte[2048];
+            mWaitStrategy = waitStrategy;
+            mProcessor = processor;
         }
 
         @Override
         public void run() {
 
-            DataReceiver receiver = newReceiver();
-            if (receiver != null) {
-                // 读之前先reset一下
-                receiver.resetCache();
-            }
+            ReceiveSink processor = mProcessor;
 
-            // 用来容纳有效数据的
-            ValidData validData = new ValidData();
+            // 没有数据时的等待策略
+            ReadWaitStrategy waitStrategy = mWaitStrategy;
+            waitStrategy.onStart(getSerialFd());
 
-            LogPlus.i(TAG, String.format("Start SerialPort(%s) Read Thread", getSerialPortName()));
+            LogPlus.i(TAG, String.format("Start SerialPort(%s) Read Thread (%s)", getSerialPortName(),
+                waitStrategy.getClass().getSimpleName()));
 
             int len;
+            int idleCount = 0;
 
             while (mRunning) {
                 try {
                     if (mInputStream.available() > 0) {
+                        idleCount = 0;
                         len = mInputStream.read(mRecvBuffer);
                         if (len > 0) {
-                            // 打印日志
-                            if (isLogRecv()) {
-                                doLogRecv(ByteUtil.bytes2HexStr(mRecvBuffer, 0, len));
-                            }
-
-                            onReceiveData(mRecvBuffer, 0, len);
-
-                            if (receiver != null) {
-                                // 清空有效数据缓存
-                                validData.clear();
-                                // 处理接收到的数据
-                                receiver.onReceive(validData, mRecvBuffer, 0, len);
-                                if (validData.size() > 0) {
-                                    // 处理有效的数据
-                                    handleValidData(validData, receiver);
-                                }
-                            }
+                            processor.process(mRecvBuffer, 0, len);
                         }
                     } else {
-                        // 暂停一点时间，免得一直循环造成CPU占用率过高
-                        SystemClockEx.sleep(10);
+                        long deadline = processor.getDeadlineNanos();
+                        if (deadline < 0) {
+                            // 等待数据到达，免得一直循环造成CPU占用率过高
+                            waitStrategy.waitForData(idleCount, -1);
+                        } else {
+                            // 最多等到帧间隔结束
+                            long timeout = deadline - System.nanoTime();
+                            if (timeout > 0) {
+                                waitStrategy.waitForData(idleCount, timeout);
+                            }
+                            processor.checkTimeout();
+                        }
+                        if (idleCount < Integer.MAX_VALUE) {
+                            idleCount++;
+                        }
                     }
 
                     notifyRunningReceive(mRunning);
                 } catch (Exception e) {
+                    if (!mRunning) {
+                        // 关闭串口导致的异常，忽略
+                        break;
+                    }
                     LogPlus.w(TAG, String.format("SerialPort(%s) Read Thread exception occurred",
                         getSerialPortName()), e);
                 }
@@ -231,6 +630,8 @@ public abstract class BaseSerialWorker implements SerialWorker {
 
             }
 
+            waitStrategy.onStop();
+
             LogPlus.i(TAG,
                 String.format("SerialPort(%s) Read Thread Finished", getSerialPortName()));
         }
@@ -240,10 +641,169 @@ public abstract class BaseSerialWorker implements SerialWorker {
          */
         void close() {
             mRunning = false;
+            mWaitStrategy.wakeup();
             this.interrupt();
         }
     }
 
+    /**
+     * 获取串口的文件描述符
+     *
+     * @return 串口未打开或无法获取时返回null
+     */
+    @Nullable
+    protected FileDescriptor getSerialFd() {
+        SerialPort serialPort = mSerialPort;
+        if (serialPort == null) {
+            return null;
+        }
+        InputStream inputStream = serialPort.getInputStream();
+        if (inputStream instanceof FileInputStream) {
+            try {
+                return ((FileInputStream) inputStream).getFD();
+            } catch (IOException e) {
+                //e.printStackTrace();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 设置多个串口共用的读线程，不设置时（默认）每个串口使用自己的读线程；
+     * 不支持时（API 21以下或无法获取文件描述符）自动使用自己的读线程。
+     * [注意]修改配置后，需要重新打开串口
+     *
+     * @param reactor 共用的读线程，null表示不使用
+     */
+    public void setReactor(@Nullable SerialReactor reactor) {
+        mReactor = reactor;
+    }
+
+    /**
+     * 获取多个串口共用的读线程
+     *
+     * @return
+     */
+    @Nullable
+    public SerialReactor getReactor() {
+        return mReactor;
+    }
+
+    /**
+     * 新建读线程等待数据的策略，每次打开串口都会调用；
+     * 使用{@link com.licheedev.serialworker.core.TimedDataReceiver}时，{@link SleepReadWaitStrategy}会被自动换掉；
+     * 可以重写此方法，按串口的需求选择延迟和CPU占用的取舍，参考
+     * {@link BlockingReadWaitStrategy}、{@link BackoffReadWaitStrategy}、
+     * {@link YieldReadWaitStrategy}、{@link BusySpinReadWaitStrategy}、{@link SleepReadWaitStrategy}
+     *
+     * @return 尽量new出来，不要复用成员变量
+     */
+    @NonNull
+    protected ReadWaitStrategy newReadWaitStrategy() {
+        if (mBlockingRead) {
+            return new BlockingReadWaitStrategy();
+        }
+        // 默认每10毫秒检查一次是否有数据
+        return new SleepReadWaitStrategy(10);
+    }
+
+    /**
+     * 使用{@link com.licheedev.serialworker.core.TimedDataReceiver}（按时间分帧）时读线程的等待策略。
+     * {@link #newReadWaitStrategy()}返回的是{@link SleepReadWaitStrategy}（默认）时，
+     * 数据到达时间只能精确到睡眠的时长，一次睡眠内到达的两帧也会连在一起，帧间隔失去意义，
+     * 所以换成阻塞等待（API 21+），或最长只park半个帧间隔的{@link BackoffReadWaitStrategy}
+     *
+     * @return
+     */
+    @NonNull
+    ReadWaitStrategy newTimedReadWaitStrategy() {
+        ReadWaitStrategy strategy = newReadWaitStrategy();
+        if (!(strategy instanceof SleepReadWaitStrategy)) {
+            return strategy;
+        }
+        if (Build.VERSION.SDK_INT >= 21) {
+            return new BlockingReadWaitStrategy();
+        }
+        long maxParkNanos = Math.max(50_000L, getFrameGapNanos() / 2);
+        return new BackoffReadWaitStrategy(100, 10, 50_000L, maxParkNanos);
+    }
+
+    /**
+     * 设置读线程是否在内核中阻塞等待数据（poll），数据到达后立即处理，串口空闲时不占用CPU；
+     * 需要API 21+，不支持时退化为最多等待10毫秒。默认false。
+     * 重写了{@link #newReadWaitStrategy()}时此设置无效。
+     * [注意]修改配置后，需要重新打开串口
+     *
+     * @param blockingRead
+     */
+    public void setBlockingRead(boolean blockingRead) {
+        mBlockingRead = blockingRead;
+    }
+
+    /**
+     * 读线程是否在内核中阻塞等待数据
+     *
+     * @return
+     */
+    public boolean isBlockingRead() {
+        return mBlockingRead;
+    }
+
+    /**
+     * 设置流水线接收：读线程只把数据复制到预先分配的环形缓存中，
+     * 由单独的分包线程打印日志、{@link #onReceiveData(byte[], int, int)}、分包和分发，
+     * 处理慢了也不会拖慢读取，避免高波特率时内核缓存溢出；环形缓存满了时丢弃新数据，
+     * 参考{@link #getReceiveOverrunBytes()}。默认不使用。
+     * 使用{@link com.licheedev.serialworker.core.TimedDataReceiver}时无效。
+     * [注意]修改配置后，需要重新打开串口
+     *
+     * @param ringCapacity 环形缓存的容量，会向上取为2的幂，0表示不使用
+     */
+    public void setPipelinedReceive(int ringCapacity) {
+        mReceiveRingCapacity = Math.max(ringCapacity, 0);
+    }
+
+    public int getPipelinedReceive() {
+        return mReceiveRingCapacity;
+    }
+
+    /**
+     * 新建分包线程等待数据的策略，参考{@link #setPipelinedReceive(int)}，默认{@link BackoffReadWaitStrategy}
+     *
+     * @return 尽量new出来，不要复用成员变量
+     */
+    @NonNull
+    protected ReadWaitStrategy newDispatchWaitStrategy() {
+        return new BackoffReadWaitStrategy();
+    }
+
+    /**
+     * 流水线接收时，因环形缓存已满而丢弃的字节数
+     *
+     * @return
+     */
+    public long getReceiveOverrunBytes() {
+        return mReceiveOverrunBytes.get();
+    }
+
+    /**
+     * 流水线接收时，发生丢弃的次数
+     *
+     * @return
+     */
+    public long getReceiveOverrunCount() {
+        return mReceiveOverrunCount.get();
+    }
+
+    /**
+     * 流水线接收时，环形缓存中等待分包的字节数
+     *
+     * @return
+     */
+    public synchronized int getReceivePendingBytes() {
+        return mReceivePipeline != null ? mReceivePipeline.getPending() : 0;
+    }
+
     @Override
     public void setDevice(@NonNull String devicePath, int baudrate) {
         mDevicePath = devicePath;
@@ -277,6 +837,35 @@ public abstract class BaseSerialWorker implements SerialWorker {
         return mStopBits;
     }
 
+    /**
+     * 设置帧间隔（静默时间），参考{@link #getFrameGapNanos()}
+     *
+     * @param gapNanos 纳秒，0表示按串口参数计算（默认）
+     */
+    public void setFrameGapNanos(long gapNanos) {
+        mFrameGapNanos = gapNanos;
+    }
+
+    /**
+     * 帧间隔（静默时间），用于按间隔分帧的协议，参考{@link com.licheedev.serialworker.core.GapFrameDecoder}。
+     * 默认按Modbus-RTU的规定，为3.5个字符的时间，一个字符的位数=起始位+数据位+校验位+停止位；
+     * 波特率大于19200时，固定为1.75毫秒（字符时间太短，系统调度的抖动会把一帧拆开）
+     *
+     * @return 纳秒
+     */
+    public long getFrameGapNanos() {
+        if (mFrameGapNanos > 0) {
+            return mFrameGapNanos;
+        }
+        int baudrate = mBaudrate > 0 ? mBaudrate : 9600;
+        if (baudrate > 19200) {
+            return 1_750_000L;
+        }
+        int charBits = 1 + mDataBits + (mParity != 0 ? 1 : 0) + mStopBits;
+        // 3.5个字符
+        return charBits * 3_500_000_000L / baudrate;
+    }
+
     /**
      * 同步打开串口，会阻塞线程
      *
@@ -309,25 +898,63 @@ public abstract class BaseSerialWorker implements SerialWorker {
      * 关闭串口
      */
     @Override
-    public synchronized void closeSerial() {
+    public void closeSerial() {
+        unregisterReactorChannel();
+        synchronized (this) {
+            closeSerialLocked();
+        }
+    }
 
-        // 关闭读线程
-        if (mReadThread != null) {
-            try {
+    /**
+     * 从共用的读线程中取消注册。要等SerialReactor重建pollfd（最多1秒），不能持有锁调用：
+     * SerialReactor线程回调时（比如{@link #onReactorError(Exception)}关闭串口）也要拿锁，会互相等到超时
+     */
+    private void unregisterReactorChannel() {
+        ReactorChannel channel;
+        synchronized (this) {
+            channel = mReactorChannel;
+            mReactorChannel = null;
+        }
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    private void closeSerialLocked() {
+
+        // 关闭读线程
+        if (mReadThread != null) {
+            try {
                 mReadThread.close();
             } catch (Exception e) {
                 //e.printStackTrace();
             }
         }
 
+        // 在锁外取消注册后，又有其他线程重新打开了串口（或调用者本身持有锁）
+        if (mReactorChannel != null) {
+            mReactorChannel.close();
+            mReactorChannel = null;
+        }
+
+        // 关闭分包线程
+        if (mReceivePipeline != null) {
+            mReceivePipeline.close();
+            mReceivePipeline = null;
+        }
+
         if (mOutputStream != null) {
+            IOException error = null;
             try {
+                // 会把合并写入还没写入的数据一起写入
                 mOutputStream.close();
             } catch (IOException e) {
-                //e.printStackTrace();
+                error = e;
             } finally {
                 mOutputStream = null;
+                mPendingFrames = 0;
             }
+            writesFlushed(error);
         }
 
         if (mInputStream != null) {
@@ -370,10 +997,16 @@ public abstract class BaseSerialWorker implements SerialWorker {
      * 释放资源
      */
     @Override
-    public synchronized void release() {
-        closeSerial();
-        // 关闭线程池
-        mSerialExecutor.shutdown();
+    public void release() {
+        unregisterReactorChannel();
+        synchronized (this) {
+            closeSerialLocked();
+            if (mGroup != null && !mSerialExecutor.isShutdown()) {
+                mGroup.releaseSerialExecutor();
+            }
+            // 关闭线程池（使用SerialWorkerGroup时，不会关闭共用的线程池）
+            mSerialExecutor.shutdown();
+        }
 
         // TODO: 如果子类有其他东西要释放，就在这里处理
     }
@@ -425,15 +1058,17 @@ public abstract class BaseSerialWorker implements SerialWorker {
         throws InterruptedException, ExecutionException, OpenSerialException, IOException,
         TimeoutException {
 
-        Future<T> future = null;
+        return awaitFuture(executor.submit(callable));
+    }
+
+    private static <T> T awaitFuture(Future<T> future)
+        throws InterruptedException, ExecutionException, OpenSerialException, IOException,
+        TimeoutException {
         try {
-            future = executor.submit(callable);
             return future.get();
         } catch (InterruptedException e) {
             // 如果被外部中断了，也要中断里面的任务
-            if (future != null) {
-                future.cancel(true);
-            }
+            future.cancel(true);
             throw e;
         } catch (ExecutionException e) {
             //e.printStackTrace();
@@ -454,48 +1089,193 @@ public abstract class BaseSerialWorker implements SerialWorker {
     }
 
     /**
-     * 在线程池执行 callable 的操作，然后在UI线程中执行 callback的操作
+     * 在线程池执行 callable 的操作，然后在{@link #getCallbackExecutor()}中执行 callback的操作
      *
      * @param executor
      * @param callable
      * @param callback
      */
+    @SuppressWarnings("unchecked")
     protected void asyncCallOnExecutor(ExecutorService executor, final Callable<?> callable,
         final Callback callback) {
+        asyncCallOnExecutor(executor, callable, callback, mCallbackExecutor);
+    }
+
+    /**
+     * 在线程池执行 callable 的操作，然后在callbackExecutor中执行 callback的操作
+     *
+     * @param executor
+     * @param callable
+     * @param callback
+     * @param callbackExecutor 执行回调的线程池，为null时直接在执行callable的线程中回调
+     */
+    protected <T> void asyncCallOnExecutor(ExecutorService executor,
+        final Callable<? extends T> callable, @Nullable final Callback<? super T> callback,
+        @Nullable final Executor callbackExecutor) {
+        CallTask task = CallTask.obtain(callable, callback, callbackExecutor, null);
         try {
-            executor.execute(new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        final Object o = callable.call();
-                        if (callback != null) {
-                            mUiHandler.post(new Runnable() {
-                                @Override
-                                public void run() {
-                                    callback.onSuccess(o);
-                                }
-                            });
-                        }
-                    } catch (final Exception e) {
-                        if (callback != null) {
-                            mUiHandler.post(new Runnable() {
-                                @Override
-                                public void run() {
-                                    callback.onFailure(e);
-                                }
-                            });
-                        }
-                    }
+            executor.execute(task);
+        } catch (Exception e) {
+            task.fail(e);
+        }
+    }
+
+    /**
+     * 异步调用的任务，先在线程池中执行callable，再把自己交给回调线程池执行回调；
+     * 回调后回收到池中重复使用（类似{@link android.os.Message#obtain()}），稳定后每次调用不再分配任务对象
+     */
+    private static final class CallTask implements SerialTaskExecutor.RejectableTask {
+
+        private static final int MAX_POOL_SIZE = 64;
+        private static final Object sPoolSync = new Object();
+        private static CallTask sPool;
+        private static int sPoolSize;
+
+        private CallTask mNext;
+        private Callable<?> mCallable;
+        private Callback<Object> mCallback;
+        private Executor mCallbackExecutor;
+        // 只写入数据时所属的worker，不关心callable的结果，写入串口后才回调onSuccess(null)
+        private BaseSerialWorker mWriter;
+        private boolean mCalled; // callable已执行，再次执行时回调
+        private Object mResult;
+        private Throwable mError;
+
+        /**
+         * @param callback 回调，能接收callable的结果（writer不为null时结果为null）
+         * @param writer 只写入数据时为所属的worker，参考{@link #asyncWriteOnSerialThread}
+         */
+        @SuppressWarnings("unchecked")
+        static CallTask obtain(Callable<?> callable, @Nullable Callback<?> callback,
+            @Nullable Executor callbackExecutor, @Nullable BaseSerialWorker writer) {
+            CallTask task = null;
+            synchronized (sPoolSync) {
+                if (sPool != null) {
+                    task = sPool;
+                    sPool = task.mNext;
+                    task.mNext = null;
+                    sPoolSize--;
+                }
+            }
+            if (task == null) {
+                task = new CallTask();
+            }
+            task.mCallable = callable;
+            // 调用者保证了类型匹配，回调只会收到callable的结果或null
+            task.mCallback = (Callback<Object>) callback;
+            task.mCallbackExecutor = callbackExecutor;
+            task.mWriter = writer;
+            return task;
+        }
+
+        @Override
+        public void run() {
+            if (mCalled) {
+                deliver();
+                return;
+            }
+            mCalled = true;
+            BaseSerialWorker writer = mWriter;
+            if (writer != null) {
+                write(writer);
+                return;
+            }
+            try {
+                mResult = mCallable.call();
+            } catch (Exception e) {
+                mError = e;
+            }
+            mCallable = null;
+            dispatch();
+        }
+
+        /**
+         * 只写入数据，允许合并写入；数据还留在缓存中时，等写入串口后（{@link #completeWrite(IOException)}）再回调
+         */
+        private void write(BaseSerialWorker writer) {
+            boolean outer = writer.beginCoalescedWrite();
+            try {
+                mCallable.call();
+            } catch (Exception e) {
+                mError = e;
+            } finally {
+                writer.endCoalescedWrite(outer);
+            }
+            mCallable = null;
+            if (mError == null && writer.deferUntilFlushed(this)) {
+                return;
+            }
+            dispatch();
+        }
+
+        /**
+         * 延迟合并的数据已写入串口，或写入失败
+         *
+         * @param error 写入失败的异常，成功时为null
+         */
+        void completeWrite(@Nullable IOException error) {
+            mError = error;
+            dispatch();
+        }
+
+        @Override
+        public void reject(@NonNull RejectedExecutionException e) {
+            fail(e);
+        }
+
+        /**
+         * 线程池拒绝执行
+         */
+        void fail(@NonNull Throwable tr) {
+            mCalled = true;
+            mCallable = null;
+            mError = tr;
+            dispatch();
+        }
+
+        private void dispatch() {
+            if (mCallback == null) {
+                recycle();
+                return;
+            }
+            if (mCallbackExecutor != null) {
+                try {
+                    mCallbackExecutor.execute(this);
+                    return;
+                } catch (RejectedExecutionException e) {
+                    // 回调线程池已关闭，直接回调，免得回调丢失
+                    LogPlus.w(TAG, "Callback executor rejected", e);
+                }
+            }
+            deliver();
+        }
+
+        private void deliver() {
+            Callback<Object> callback = mCallback;
+            Object result = mResult;
+            Throwable error = mError;
+            recycle();
+            if (error == null) {
+                callback.onSuccess(result);
+            } else {
+                callback.onFailure(error);
+            }
+        }
+
+        private void recycle() {
+            mCallable = null;
+            mCallback = null;
+            mCallbackExecutor = null;
+            mWriter = null;
+            mCalled = false;
+            mResult = null;
+            mError = null;
+            synchronized (sPoolSync) {
+                if (sPoolSize < MAX_POOL_SIZE) {
+                    mNext = sPool;
+                    sPool = this;
+                    sPoolSize++;
                 }
-            });
-        } catch (final Exception e) {
-            if (callback != null) {
-                mUiHandler.post(new Runnable() {
-                    @Override
-                    public void run() {
-                        callback.onFailure(e);
-                    }
-                });
             }
         }
     }
@@ -512,14 +1292,279 @@ public abstract class BaseSerialWorker implements SerialWorker {
     protected <T> T callOnSerialThread(Callable<T> callable)
         throws InterruptedException, ExecutionException, OpenSerialException, IOException,
         TimeoutException {
+        return callOnSerialThread(callable, Prioritized.PRIORITY_NORMAL);
+    }
+
+    /**
+     * 通用的同步方法，开启优先级调度时按优先级排队
+     *
+     * @param callable
+     * @param priority 优先级，参考{@link Prioritized}
+     * @param <T>
+     * @return
+     * @throws InterruptedException
+     * @throws ExecutionException
+     * @see #setPriorityScheduling(boolean, long)
+     */
+    protected <T> T callOnSerialThread(Callable<T> callable, int priority)
+        throws InterruptedException, ExecutionException, OpenSerialException, IOException,
+        TimeoutException {
+
+        if (mPortLock.isHeldByCurrentThread()) {
+            // 在串口线程中（比如直接回调中）再次调用，直接执行，免得自己等自己
+            return callDirectly(callable);
+        }
+        if (mDirectSync) {
+            if (mSerialExecutor.isShutdown()) {
+                throw new RejectedExecutionException("SerialTaskExecutor has been shut down");
+            }
+            // 先占一个位置再检查，多个线程同时调用时不会一起通过检查
+            int capacity = mSerialExecutor.getCapacity();
+            int waiters = mDirectWaiters.incrementAndGet();
+            try {
+                if (capacity > 0 && mSerialExecutor.getQueueSize() + waiters > capacity) {
+                    mOverloadCount.incrementAndGet();
+                    throw new SerialOverloadException(
+                        "SerialPort queue is full, capacity=" + capacity);
+                }
+                long maxQueueWait = mMaxQueueWait;
+                if (maxQueueWait > 0) {
+                    if (!mPortLock.tryLock(maxQueueWait, TimeUnit.MILLISECONDS)) {
+                        mOverloadCount.incrementAndGet();
+                        throw new SerialOverloadException(
+                            "SerialPort queue wait exceeded " + maxQueueWait + "ms");
+                    }
+                } else {
+                    mPortLock.lockInterruptibly();
+                }
+            } finally {
+                // 拿到串口锁或失败后不再算在队列中
+                mDirectWaiters.decrementAndGet();
+            }
+            try {
+                return callDirectly(callable);
+            } finally {
+                mPortLock.unlock();
+            }
+        }
+        FutureTask<T> future = new SerialTaskExecutor.RejectableFutureTask<>(callable);
+        mSerialExecutor.execute(future, priority);
+        return awaitFuture(future);
+    }
+
+    private static <T> T callDirectly(Callable<T> callable)
+        throws InterruptedException, ExecutionException, OpenSerialException, IOException,
+        TimeoutException {
+        try {
+            return callable.call();
+        } catch (Exception e) {
+            if (e instanceof OpenSerialException) {
+                throw ((OpenSerialException) e);
+            } else if (e instanceof IOException) {
+                throw ((IOException) e);
+            } else if (e instanceof TimeoutException) {
+                throw ((TimeoutException) e);
+            } else if (e instanceof InterruptedException) {
+                throw ((InterruptedException) e);
+            } else if (e instanceof RuntimeException) {
+                throw ((RuntimeException) e);
+            } else {
+                throw new ExecutionException(e);
+            }
+        }
+    }
 
-        return callOnExecutor(mSerialExecutor, callable);
+    /**
+     * 设置同步方法（比如syncSend）是否在调用的线程中直接执行，默认false。
+     * 为true时，调用的线程获取串口锁（公平锁，按先来后到）后自己发送和等待响应，
+     * 不再提交到串口线程再阻塞等待结果，省掉两次线程切换；串口线程中的异步任务也持有同一把锁，互不干扰。
+     * 注意：等待响应期间，其他同步调用和串口线程中的任务都要排队；使用{@link SerialWorkerGroup}时，
+     * 排队的任务会占住共用线程池的一个线程
+     *
+     * @param directSync
+     */
+    public void setDirectSync(boolean directSync) {
+        mDirectSync = directSync;
+    }
+
+    public boolean isDirectSync() {
+        return mDirectSync;
     }
 
     protected void asyncCallOnSerialThread(final Callable<?> callable, final Callback callback) {
         asyncCallOnExecutor(mSerialExecutor, callable, callback);
     }
 
+    protected <T> void asyncCallOnSerialThread(final Callable<? extends T> callable,
+        @Nullable final Callback<? super T> callback, @Nullable Executor callbackExecutor) {
+        asyncCallOnSerialThread(callable, callback, callbackExecutor,
+            Prioritized.PRIORITY_NORMAL);
+    }
+
+    /**
+     * 在串口线程执行 callable 的操作，开启优先级调度时按优先级排队，然后在callbackExecutor中执行 callback的操作
+     *
+     * @param callable
+     * @param callback
+     * @param callbackExecutor 执行回调的线程池，为null时直接在串口线程中回调
+     * @param priority 优先级，参考{@link Prioritized}
+     */
+    protected <T> void asyncCallOnSerialThread(final Callable<? extends T> callable,
+        @Nullable final Callback<? super T> callback, @Nullable Executor callbackExecutor,
+        int priority) {
+        executeCallTask(CallTask.obtain(callable, callback, callbackExecutor, null), priority);
+    }
+
+    /**
+     * 在串口线程执行只写入数据的callable（比如sendOnly、sendBytes），不关心它的结果；
+     * 允许合并写入（参考{@link #setWriteCoalescing(long)}），数据真正写入串口后才回调onSuccess(null)，写入失败时回调onFailure
+     *
+     * @param callable
+     * @param callback
+     * @param callbackExecutor 执行回调的线程池，为null时直接在串口线程中回调
+     * @param priority 优先级，参考{@link Prioritized}
+     */
+    final void asyncWriteOnSerialThread(Callable<?> callable, @Nullable Callback<Void> callback,
+        @Nullable Executor callbackExecutor, int priority) {
+        executeCallTask(CallTask.obtain(callable, callback, callbackExecutor, this), priority);
+    }
+
+    /**
+     * 只写入数据的任务执行完后，数据还留在缓存中时，先不回调，写入串口后再回调；持有串口锁时调用
+     *
+     * @param task
+     * @return 是否需要等待写入
+     */
+    private boolean deferUntilFlushed(CallTask task) {
+        if (mPendingFrames == 0) {
+            return false;
+        }
+        synchronized (mUnflushedWrites) {
+            mUnflushedWrites.add(task);
+        }
+        return true;
+    }
+
+    /**
+     * 缓存中的数据已写入串口（或写入失败），回调等待写入的任务，再调用{@link #onWritesFlushed(IOException)}
+     *
+     * @param error 写入失败的异常，成功时为null
+     */
+    private void writesFlushed(@Nullable IOException error) {
+        while (true) {
+            CallTask task;
+            synchronized (mUnflushedWrites) {
+                task = mUnflushedWrites.poll();
+            }
+            if (task == null) {
+                break;
+            }
+            task.completeWrite(error);
+        }
+        onWritesFlushed(error);
+    }
+
+    private void executeCallTask(CallTask task, int priority) {
+        try {
+            mSerialExecutor.execute(task, priority);
+        } catch (Exception e) {
+            task.fail(e);
+        }
+    }
+
+    /**
+     * 设置串口队列的容量，排队的任务（包括直接执行模式下等待串口锁的线程）达到上限后，
+     * 新的请求马上以{@link SerialOverloadException}失败（同步方法抛出，异步方法回调onFailure），
+     * 不会无限排队；设备不应答、每个请求都要等到超时的时候，可以避免所有调用者的延迟越来越高
+     *
+     * @param capacity 容量，0表示不限制（默认）
+     */
+    public void setQueueCapacity(int capacity) {
+        mSerialExecutor.setCapacity(capacity);
+    }
+
+    public int getQueueCapacity() {
+        return mSerialExecutor.getCapacity();
+    }
+
+    /**
+     * 设置请求最长的排队时间，排队超过此时间的请求不会发送，以{@link SerialOverloadException}失败
+     *
+     * @param millis 毫秒，0表示不限制（默认）
+     */
+    public void setMaxQueueWait(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("millis must not be negative: " + millis);
+        }
+        mMaxQueueWait = millis;
+    }
+
+    public long getMaxQueueWait() {
+        return mMaxQueueWait;
+    }
+
+    /**
+     * 当前串口队列的深度，即排队中的任务数，加上直接执行模式下等待串口锁的线程数；
+     * 调用者可以据此提前放弃或降低请求频率
+     *
+     * @return
+     */
+    public int getQueueDepth() {
+        return mSerialExecutor.getQueueSize() + mDirectWaiters.get();
+    }
+
+    /**
+     * 因过载（队列已满或排队太久）被拒绝的请求数
+     *
+     * @return
+     */
+    public long getOverloadCount() {
+        return mSerialExecutor.getRejectedCount() + mOverloadCount.get();
+    }
+
+    /**
+     * 从队列中取出请求时，检查排队时间是否超过{@link #setMaxQueueWait(long)}
+     *
+     * @param submitNanos 提交请求的时间，以{@link System#nanoTime()}为准
+     * @throws SerialOverloadException 排队太久
+     */
+    void checkQueueWait(long submitNanos) {
+        long maxQueueWait = mMaxQueueWait;
+        if (maxQueueWait > 0
+            && System.nanoTime() - submitNanos > TimeUnit.MILLISECONDS.toNanos(maxQueueWait)) {
+            mOverloadCount.incrementAndGet();
+            throw new SerialOverloadException(
+                "SerialPort queue wait exceeded " + maxQueueWait + "ms");
+        }
+    }
+
+    /**
+     * 开启或关闭串口任务的优先级调度，默认按提交顺序执行。
+     * 开启后，实现了{@link Prioritized}的命令按优先级插队，优先级每高一级相当于提前agingMillis排队，
+     * 排队足够久的低优先级命令不会被一直插队；各优先级的排队时间参考{@link #getQueueWaitStats(int)}
+     *
+     * @param enabled 是否开启
+     * @param agingMillis 每级优先级相当的排队时间，毫秒，开启时必须大于0，关闭时忽略
+     */
+    public void setPriorityScheduling(boolean enabled, long agingMillis) {
+        mSerialExecutor.setPriorityScheduling(enabled, agingMillis);
+    }
+
+    public boolean isPriorityScheduling() {
+        return mSerialExecutor.isPriorityScheduling();
+    }
+
+    /**
+     * 某个优先级的串口任务的排队时间统计（开启优先级调度后才会统计）
+     *
+     * @param priority 优先级
+     * @return 没有执行过此优先级的任务时为null
+     */
+    @Nullable
+    public SerialTaskExecutor.QueueWaitStats getQueueWaitStats(int priority) {
+        return mSerialExecutor.getQueueWaitStats(priority);
+    }
+
     /**
      * 在当前线程发送数据
      *
@@ -535,7 +1580,7 @@ public abstract class BaseSerialWorker implements SerialWorker {
         }
 
         if (isLogSend()) {
-            doLogSend(ByteUtil.bytes2HexStr(bytes, 0, len));
+            doLogSend(ByteUtil.bytes2HexStr(bytes, offset, len));
         }
 
         if (mOutputStream == null) {
@@ -544,7 +1589,146 @@ public abstract class BaseSerialWorker implements SerialWorker {
         }
 
         mOutputStream.write(bytes, offset, len);
-        mOutputStream.flush();
+        if (mPendingFrames++ == 0) {
+            mPendingSinceNanos = System.nanoTime();
+        }
+        long coalesceNanos = mCoalesceNanos;
+        if (coalesceNanos > 0 && mCoalescedWrite && mSerialExecutor.isInSerialThread()
+            && System.nanoTime() - mPendingSinceNanos < coalesceNanos) {
+            // 先留在缓存中，串口线程空闲或到了延迟上限时再一起写入
+            return;
+        }
+        flushWrites();
+    }
+
+    /**
+     * 开始允许延迟合并的写入，之后在串口线程中的{@link #rawSend(byte[], int, int)}可以先留在缓存中；
+     * 只用于发送后不在当前线程等待响应的情况（比如sendOnly、sendBytes），持有串口锁时调用
+     *
+     * @return 之前的状态，传给{@link #endCoalescedWrite(boolean)}
+     */
+    final boolean beginCoalescedWrite() {
+        boolean outer = mCoalescedWrite;
+        mCoalescedWrite = true;
+        return outer;
+    }
+
+    final void endCoalescedWrite(boolean outer) {
+        mCoalescedWrite = outer;
+    }
+
+    /**
+     * 是否有已写入缓存、还没写入串口的数据，持有串口锁时调用
+     *
+     * @return
+     */
+    final boolean hasPendingWrites() {
+        return mPendingFrames > 0;
+    }
+
+    /**
+     * 把缓存中还没写入的数据马上写入串口
+     *
+     * @throws IOException
+     */
+    protected void flushWrites() throws IOException {
+        int frames = mPendingFrames;
+        if (frames == 0) {
+            return;
+        }
+        mPendingFrames = 0;
+        OutputStream outputStream = mOutputStream;
+        try {
+            if (outputStream == null) {
+                throw new IOException(
+                    String.format(ERROR_NO_SERIALPORT_OPENED, getSerialPortName()));
+            }
+            outputStream.flush();
+        } catch (IOException e) {
+            writesFlushed(e);
+            throw e;
+        }
+        mWriteCount.incrementAndGet();
+        mWrittenFrames.addAndGet(frames);
+        writesFlushed(null);
+    }
+
+    /**
+     * 缓存中的数据已写入串口（或写入失败）时调用，持有串口锁，或在{@link #closeSerial()}中调用；
+     * 延迟合并的发送可以在这里才开始计算响应超时
+     *
+     * @param error 写入失败的异常，成功时为null
+     */
+    protected void onWritesFlushed(@Nullable IOException error) {
+    }
+
+    /**
+     * 串口线程每执行完一个任务后调用，没有排队的任务或到了延迟上限时，写入合并的数据
+     */
+    private void flushCoalescedWrites() {
+        if (mPendingFrames == 0) {
+            return;
+        }
+        if (mSerialExecutor.getQueueSize() > 0
+            && System.nanoTime() - mPendingSinceNanos < mCoalesceNanos) {
+            // 后面还有任务，继续合并
+            return;
+        }
+        try {
+            flushWrites();
+        } catch (IOException e) {
+            LogPlus.w(TAG, String.format("SerialPort(%s) flush failed", getSerialPortName()), e);
+        }
+    }
+
+    /**
+     * 设置合并写入。开启后，串口线程中连续执行的、不在串口线程等待响应的发送
+     * （异步的sendOnly、sendBytes，以及sendX，其响应超时从真正写入串口后才开始计算）先写入缓存，
+     * 等串口线程没有排队的任务、或第一帧已等了maxDelayMicros时，一次写入串口，减少系统调用；
+     * 其他的发送（比如syncSend、子类自己调用的rawSend）不合并，写入时会把之前缓存的数据一起写入。
+     * 延迟写入的sendOnly、sendBytes真正写入串口后才回调，写入失败时回调onFailure。
+     * 合并的效果参考{@link #getAverageFramesPerWrite()}
+     *
+     * @param maxDelayMicros 最多延迟多久写入，微秒，0表示不合并（默认）
+     */
+    public void setWriteCoalescing(long maxDelayMicros) {
+        if (maxDelayMicros < 0) {
+            throw new IllegalArgumentException(
+                "maxDelayMicros must not be negative: " + maxDelayMicros);
+        }
+        mCoalesceNanos = TimeUnit.MICROSECONDS.toNanos(maxDelayMicros);
+    }
+
+    public long getWriteCoalescing() {
+        return TimeUnit.NANOSECONDS.toMicros(mCoalesceNanos);
+    }
+
+    /**
+     * 写入串口的次数（flush的次数）
+     *
+     * @return
+     */
+    public long getWriteCount() {
+        return mWriteCount.get();
+    }
+
+    /**
+     * 写入串口的帧数（调用rawSend的次数）
+     *
+     * @return
+     */
+    public long getWrittenFrameCount() {
+        return mWrittenFrames.get();
+    }
+
+    /**
+     * 平均每次写入串口的帧数，没开启合并写入时为1
+     *
+     * @return
+     */
+    public double getAverageFramesPerWrite() {
+        long writes = mWriteCount.get();
+        return writes == 0 ? 0 : (double) mWrittenFrames.get() / writes;
     }
 
     /**
@@ -593,13 +1777,13 @@ public abstract class BaseSerialWorker implements SerialWorker {
     @Override
     public void sendBytes(final byte[] bytes, final int offset, final int length,
         @Nullable Callback<Void> callback) {
-        asyncCallOnSerialThread(new Callable<Void>() {
+        asyncWriteOnSerialThread(new Callable<Void>() {
             @Override
             public Void call() throws Exception {
                 rawSend(bytes, offset, length);
                 return null;
             }
-        }, callback);
+        }, callback, mCallbackExecutor, Prioritized.PRIORITY_NORMAL);
     }
 
     @Override
@@ -0,0 +1,83 @@
+package com.licheedev.serialworker.worker;
+
+import android.os.Build;
+import androidx.annotation.Nullable;
+import com.licheedev.hwutils.SystemClockEx;
+import com.licheedev.myutils.LogPlus;
+import com.licheedev.serialworker.core.ReadWaitStrategy;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 在内核中阻塞等待串口数据（poll），数据到达后立即返回，串口空闲时不占用CPU；
+ * 需要API 21+，无法poll串口时，退化为park等待（最多{@link #FALLBACK_PARK_MILLIS}毫秒，可被唤醒）
+ */
+public class BlockingReadWaitStrategy implements ReadWaitStrategy {
+
+    public static final long FALLBACK_PARK_MILLIS = 10;
+
+    private volatile SerialFdPoller mPoller;
+    private volatile Thread mThread;
+
+    @Override
+    public void onStart(@Nullable FileDescriptor fd) {
+        mThread = Thread.currentThread();
+        if (fd != null && Build.VERSION.SDK_INT >= 21) {
+            try {
+                mPoller = new SerialFdPoller(fd);
+            } catch (Exception e) {
+                LogPlus.w(BaseSerialWorker.TAG, "Can't poll SerialPort fd, fallback to parking", e);
+            }
+        }
+    }
+
+    @Override
+    public void waitForData(int idleCount, long timeoutNanos) throws IOException {
+        SerialFdPoller poller = mPoller;
+        if (poller != null) {
+            int timeoutMillis = -1;
+            if (timeoutNanos >= 0) {
+                // poll只支持毫秒，向上取整，不足1毫秒的部分由调用方继续等待
+                timeoutMillis = (int) Math.min(Integer.MAX_VALUE,
+                    TimeUnit.NANOSECONDS.toMillis(timeoutNanos + 999_999L));
+            }
+            try {
+                poller.await(timeoutMillis);
+            } catch (IOException e) {
+                // 串口出错时poll会立即返回，避免空转
+                SystemClockEx.sleep(FALLBACK_PARK_MILLIS);
+                throw e;
+            }
+        } else {
+            long parkNanos = TimeUnit.MILLISECONDS.toNanos(FALLBACK_PARK_MILLIS);
+            if (timeoutNanos >= 0) {
+                parkNanos = Math.min(parkNanos, timeoutNanos);
+            }
+            LockSupport.parkNanos(this, parkNanos);
+        }
+    }
+
+    @Override
+    public void wakeup() {
+        SerialFdPoller poller = mPoller;
+        if (poller != null) {
+            poller.wakeup();
+        }
+        Thread thread = mThread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    @Override
+    public void onStop() {
+        SerialFdPoller poller = mPoller;
+        mPoller = null;
+        mThread = null;
+        if (poller != null) {
+            poller.close();
+        }
+    }
+}
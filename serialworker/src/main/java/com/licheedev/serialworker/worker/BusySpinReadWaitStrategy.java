@@ -0,0 +1,32 @@
+package com.licheedev.serialworker.worker;
+
+import androidx.annotation.Nullable;
+import com.licheedev.serialworker.core.ReadWaitStrategy;
+import java.io.FileDescriptor;
+
+/**
+ * 不停地检查是否有数据，响应延迟最低，但会一直占满一个CPU核心；
+ * 只适合对延迟要求极高、并且CPU核心充足的场景
+ */
+public class BusySpinReadWaitStrategy implements ReadWaitStrategy {
+
+    @Override
+    public void onStart(@Nullable FileDescriptor fd) {
+        // 空实现
+    }
+
+    @Override
+    public void waitForData(int idleCount, long timeoutNanos) {
+        // 直接返回，马上再次检查
+    }
+
+    @Override
+    public void wakeup() {
+        // 从不阻塞，不需要唤醒
+    }
+
+    @Override
+    public void onStop() {
+        // 空实现
+    }
+}
@@ -0,0 +1,324 @@
+package com.licheedev.serialworker.worker;
+
+import androidx.annotation.NonNull;
+import com.licheedev.myutils.LogPlus;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 时间轮定时器，所有请求的超时共用一个线程；添加和取消超时都是O(1)，可以同时挂着几万个超时。
+ * 精度为一个tick（默认1毫秒）；没有待处理的超时时，线程会一直休眠，不会空转。
+ * 超时任务在定时器线程中执行，不要执行耗时操作
+ */
+public class HashedWheelTimer {
+
+    private static final int STATE_INIT = 0;
+    private static final int STATE_STARTED = 1;
+    private static final int STATE_STOPPED = 2;
+
+    private final String mName;
+    private final long mTickNanos;
+    private final Bucket[] mWheel;
+    private final int mMask;
+    private final ConcurrentLinkedQueue<Timeout> mNewTimeouts = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Timeout> mCancelledTimeouts =
+        new ConcurrentLinkedQueue<>();
+    private final AtomicLong mPendingCount = new AtomicLong();
+    private final AtomicInteger mState = new AtomicInteger(STATE_INIT);
+    private volatile Thread mThread;
+    private volatile boolean mIdle; // 线程正在无限期休眠，添加超时时需要唤醒
+    private long mStartTime;
+    private long mTick;
+
+    /**
+     * 默认tick为1毫秒，一圈512个tick
+     *
+     * @param name 线程名
+     */
+    public HashedWheelTimer(@NonNull String name) {
+        this(name, 1, TimeUnit.MILLISECONDS, 512);
+    }
+
+    /**
+     * @param name 线程名
+     * @param tickDuration 每个tick的时长，即定时器的精度
+     * @param unit tickDuration的单位
+     * @param ticksPerWheel 一圈的tick数，会向上取为2的幂
+     */
+    public HashedWheelTimer(@NonNull String name, long tickDuration, @NonNull TimeUnit unit,
+        int ticksPerWheel) {
+        if (tickDuration <= 0 || ticksPerWheel <= 0) {
+            throw new IllegalArgumentException("tickDuration and ticksPerWheel must be positive");
+        }
+        mName = name;
+        mTickNanos = unit.toNanos(tickDuration);
+        int size = 1;
+        while (size < ticksPerWheel) {
+            size <<= 1;
+        }
+        mWheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            mWheel[i] = new Bucket();
+        }
+        mMask = size - 1;
+    }
+
+    /**
+     * 添加超时任务
+     *
+     * @param task 到时执行的任务，在定时器线程中执行
+     * @param delay 延时
+     * @param unit 延时的单位
+     * @return 可用来取消
+     */
+    @NonNull
+    public Timeout newTimeout(@NonNull Runnable task, long delay, @NonNull TimeUnit unit) {
+        start();
+        long deadline = System.nanoTime() + unit.toNanos(Math.max(delay, 0)) - mStartTime;
+        Timeout timeout = new Timeout(this, task, deadline);
+        mPendingCount.incrementAndGet();
+        mNewTimeouts.add(timeout);
+        if (mIdle) {
+            LockSupport.unpark(mThread);
+        }
+        return timeout;
+    }
+
+    /**
+     * 未到期也未取消的超时数量
+     *
+     * @return
+     */
+    public long getPendingCount() {
+        return mPendingCount.get();
+    }
+
+    /**
+     * 停止定时器，未到期的超时都不会再执行
+     */
+    public void stop() {
+        if (mState.getAndSet(STATE_STOPPED) == STATE_STARTED) {
+            LockSupport.unpark(mThread);
+        }
+    }
+
+    private void start() {
+        int state = mState.get();
+        if (state == STATE_STARTED) {
+            return;
+        }
+        if (state == STATE_STOPPED) {
+            throw new IllegalStateException("HashedWheelTimer has been stopped");
+        }
+        synchronized (this) {
+            if (mState.get() != STATE_INIT) {
+                return;
+            }
+            mStartTime = System.nanoTime();
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    loop();
+                }
+            }, mName);
+            thread.setDaemon(true);
+            mThread = thread;
+            mState.set(STATE_STARTED);
+            thread.start();
+        }
+    }
+
+    private void loop() {
+        while (mState.get() == STATE_STARTED) {
+            long deadline = waitForNextTick();
+            if (deadline < 0) {
+                continue;
+            }
+            processCancelled();
+            transferTimeouts();
+            mWheel[(int) (mTick & mMask)].expire(deadline);
+            mTick++;
+        }
+    }
+
+    /**
+     * 等待下一个tick
+     *
+     * @return 当前时间（相对开始时间），小于0表示需要重新检查
+     */
+    private long waitForNextTick() {
+        if (mPendingCount.get() == 0 && mNewTimeouts.isEmpty()) {
+            // 没有超时，休眠直到有新的超时
+            mIdle = true;
+            if (mPendingCount.get() == 0 && mNewTimeouts.isEmpty()
+                && mState.get() == STATE_STARTED) {
+                LockSupport.park(this);
+            }
+            mIdle = false;
+            processCancelled();
+            // 所有格子都是空的，直接对齐到当前时间
+            mTick = Math.max(mTick, (System.nanoTime() - mStartTime) / mTickNanos);
+            return -1;
+        }
+
+        long deadline = mTickNanos * (mTick + 1);
+        while (true) {
+            long current = System.nanoTime() - mStartTime;
+            long sleepNanos = deadline - current;
+            if (sleepNanos <= 0) {
+                return current;
+            }
+            if (mState.get() != STATE_STARTED) {
+                return -1;
+            }
+            LockSupport.parkNanos(this, sleepNanos);
+        }
+    }
+
+    private void transferTimeouts() {
+        Timeout timeout;
+        while ((timeout = mNewTimeouts.poll()) != null) {
+            if (timeout.mState.get() == Timeout.ST_CANCELLED) {
+                continue;
+            }
+            long calculated = timeout.mDeadline / mTickNanos;
+            timeout.mRemainingRounds = (calculated - mTick) / mWheel.length;
+            // 已经过期的，放到当前的格子中马上执行
+            long ticks = Math.max(calculated, mTick);
+            mWheel[(int) (ticks & mMask)].add(timeout);
+        }
+    }
+
+    private void processCancelled() {
+        Timeout timeout;
+        while ((timeout = mCancelledTimeouts.poll()) != null) {
+            if (timeout.mBucket != null) {
+                timeout.mBucket.remove(timeout);
+            }
+        }
+    }
+
+    /**
+     * 超时任务，可以取消
+     */
+    public static final class Timeout {
+
+        private static final int ST_INIT = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+
+        private final HashedWheelTimer mTimer;
+        private final Runnable mTask;
+        private final long mDeadline;
+        private final AtomicInteger mState = new AtomicInteger(ST_INIT);
+        // 以下只在定时器线程中访问
+        private long mRemainingRounds;
+        private Bucket mBucket;
+        private Timeout mPrev;
+        private Timeout mNext;
+
+        private Timeout(HashedWheelTimer timer, Runnable task, long deadline) {
+            mTimer = timer;
+            mTask = task;
+            mDeadline = deadline;
+        }
+
+        /**
+         * 取消
+         *
+         * @return 是否由此调用取消，已到期或已取消的返回false
+         */
+        public boolean cancel() {
+            if (!mState.compareAndSet(ST_INIT, ST_CANCELLED)) {
+                return false;
+            }
+            mTimer.mPendingCount.decrementAndGet();
+            // 交给定时器线程从格子中移除
+            mTimer.mCancelledTimeouts.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return mState.get() == ST_CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return mState.get() == ST_EXPIRED;
+        }
+
+        private void expire() {
+            if (!mState.compareAndSet(ST_INIT, ST_EXPIRED)) {
+                return;
+            }
+            mTimer.mPendingCount.decrementAndGet();
+            try {
+                mTask.run();
+            } catch (Throwable t) {
+                LogPlus.w(BaseSerialWorker.TAG, "HashedWheelTimer task exception occurred", t);
+            }
+        }
+    }
+
+    /**
+     * 时间轮的一个格子，双向链表，只在定时器线程中访问
+     */
+    private static final class Bucket {
+
+        private Timeout mHead;
+        private Timeout mTail;
+
+        void add(Timeout timeout) {
+            timeout.mBucket = this;
+            if (mHead == null) {
+                mHead = mTail = timeout;
+            } else {
+                mTail.mNext = timeout;
+                timeout.mPrev = mTail;
+                mTail = timeout;
+            }
+        }
+
+        void expire(long deadline) {
+            Timeout timeout = mHead;
+            while (timeout != null) {
+                Timeout next = timeout.mNext;
+                if (timeout.mRemainingRounds <= 0) {
+                    if (timeout.mDeadline <= deadline) {
+                        remove(timeout);
+                        timeout.expire();
+                    }
+                } else if (timeout.isCancelled()) {
+                    remove(timeout);
+                } else {
+                    timeout.mRemainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.mBucket != this) {
+                return;
+            }
+            Timeout next = timeout.mNext;
+            if (timeout.mPrev != null) {
+                timeout.mPrev.mNext = next;
+            }
+            if (next != null) {
+                next.mPrev = timeout.mPrev;
+            }
+            if (timeout == mHead) {
+                mHead = next;
+            }
+            if (timeout == mTail) {
+                mTail = timeout.mPrev;
+            }
+            timeout.mPrev = null;
+            timeout.mNext = null;
+            timeout.mBucket = null;
+        }
+    }
+}
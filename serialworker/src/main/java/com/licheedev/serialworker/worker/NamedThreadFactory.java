@@ -0,0 +1,23 @@
+package com.licheedev.serialworker.worker;
+
+import androidx.annotation.NonNull;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 给线程加上名字，方便排查问题
+ */
+class NamedThreadFactory implements ThreadFactory {
+
+    private final String mPrefix;
+    private final AtomicInteger mCount = new AtomicInteger();
+
+    NamedThreadFactory(@NonNull String prefix) {
+        mPrefix = prefix;
+    }
+
+    @Override
+    public Thread newThread(@NonNull Runnable r) {
+        return new Thread(r, mPrefix + "-" + mCount.incrementAndGet());
+    }
+}
@@ -0,0 +1,226 @@
+package com.licheedev.serialworker.worker;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.licheedev.myutils.LogPlus;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 有上限的接收数据分发队列，读线程放入，在指定的线程池中按顺序交给使用者；
+ * 使用者处理不过来时，按溢出策略阻塞读线程或丢弃数据，内存占用不会无限增长
+ *
+ * @param <R>
+ */
+abstract class ReceiveDispatcher<R> {
+
+    /** 批量分发的数量，处理完一批后重新提交，免得长时间占用线程（比如主线程） */
+    private static final int BATCH = 32;
+
+    private final Executor mExecutor;
+    private final int mCapacity;
+    private final int mPolicy;
+    private final ArrayDeque<Slot<R>> mQueue = new ArrayDeque<>();
+    private final HashMap<Object, Slot<R>> mLatest; // KEEP_LATEST时，关联键对应的排队中的数据
+    private final AtomicLong mDropped = new AtomicLong();
+    private Slot<R> mFreeSlots; // 回收的Slot，稳定后每帧不再分配对象
+    private boolean mScheduled;
+    private boolean mClosed;
+
+    private final Runnable mDrainTask = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    ReceiveDispatcher(@NonNull Executor executor, int capacity, int policy) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        if (policy < Rs232SerialWorker.OVERFLOW_BLOCK
+            || policy > Rs232SerialWorker.OVERFLOW_KEEP_LATEST) {
+            throw new IllegalArgumentException("unknown overflow policy: " + policy);
+        }
+        mExecutor = executor;
+        mCapacity = capacity;
+        mPolicy = policy;
+        mLatest = policy == Rs232SerialWorker.OVERFLOW_KEEP_LATEST ? new HashMap<Object, Slot<R>>()
+            : null;
+    }
+
+    boolean isKeepLatest() {
+        return mLatest != null;
+    }
+
+    /**
+     * 交给使用者（在分发线程中调用）
+     */
+    abstract void deliver(@NonNull R r);
+
+    /**
+     * 放入队列（读线程）
+     *
+     * @param r 数据
+     * @param key 关联键，KEEP_LATEST时同一关联键只保留最新的数据，为null时不合并
+     */
+    void offer(@NonNull R r, @Nullable Object key) {
+        boolean schedule = false;
+        synchronized (this) {
+            if (mClosed) {
+                return;
+            }
+            if (mLatest != null && key != null) {
+                Slot<R> slot = mLatest.get(key);
+                if (slot != null) {
+                    // 用最新的数据替换排队中的旧数据，位置不变
+                    slot.mValue = r;
+                    mDropped.incrementAndGet();
+                    return;
+                }
+            }
+            if (mQueue.size() >= mCapacity) {
+                switch (mPolicy) {
+                    case Rs232SerialWorker.OVERFLOW_BLOCK:
+                        while (mQueue.size() >= mCapacity && !mClosed) {
+                            try {
+                                wait();
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                mDropped.incrementAndGet();
+                                return;
+                            }
+                        }
+                        if (mClosed) {
+                            return;
+                        }
+                        break;
+                    case Rs232SerialWorker.OVERFLOW_DROP_NEWEST:
+                        mDropped.incrementAndGet();
+                        return;
+                    default:
+                        // DROP_OLDEST、KEEP_LATEST
+                        recycle(removeFirst());
+                        mDropped.incrementAndGet();
+                        break;
+                }
+            }
+            Slot<R> slot = mFreeSlots;
+            if (slot != null) {
+                mFreeSlots = slot.mNext;
+                slot.mNext = null;
+            } else {
+                slot = new Slot<>();
+            }
+            slot.mValue = r;
+            slot.mKey = key;
+            mQueue.addLast(slot);
+            if (mLatest != null && key != null) {
+                mLatest.put(key, slot);
+            }
+            if (!mScheduled) {
+                mScheduled = true;
+                schedule = true;
+            }
+        }
+        if (schedule) {
+            schedule();
+        }
+    }
+
+    private void schedule() {
+        try {
+            mExecutor.execute(mDrainTask);
+        } catch (RejectedExecutionException e) {
+            LogPlus.w(BaseSerialWorker.TAG, "ReceiveDispatcher rejected", e);
+            synchronized (this) {
+                mScheduled = false;
+                mDropped.addAndGet(mQueue.size());
+                mQueue.clear();
+                if (mLatest != null) {
+                    mLatest.clear();
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    private void drain() {
+        for (int i = 0; i < BATCH; i++) {
+            R r;
+            synchronized (this) {
+                Slot<R> slot = removeFirst();
+                if (slot == null) {
+                    mScheduled = false;
+                    return;
+                }
+                r = slot.mValue;
+                recycle(slot);
+                notifyAll();
+            }
+            try {
+                deliver(r);
+            } catch (RuntimeException e) {
+                LogPlus.w(BaseSerialWorker.TAG, "ReceiveDispatcher deliver exception occurred", e);
+            }
+        }
+        // 还有数据，重新提交，让出线程
+        synchronized (this) {
+            if (mQueue.isEmpty()) {
+                mScheduled = false;
+                return;
+            }
+        }
+        schedule();
+    }
+
+    private Slot<R> removeFirst() {
+        Slot<R> slot = mQueue.pollFirst();
+        if (slot != null && mLatest != null && slot.mKey != null) {
+            mLatest.remove(slot.mKey);
+        }
+        return slot;
+    }
+
+    private void recycle(Slot<R> slot) {
+        slot.mValue = null;
+        slot.mKey = null;
+        slot.mNext = mFreeSlots;
+        mFreeSlots = slot;
+    }
+
+    /**
+     * 丢弃的数据数量
+     *
+     * @return
+     */
+    long getDroppedCount() {
+        return mDropped.get();
+    }
+
+    synchronized int size() {
+        return mQueue.size();
+    }
+
+    /**
+     * 关闭，丢弃排队中的数据，唤醒阻塞的读线程
+     */
+    synchronized void close() {
+        mClosed = true;
+        mQueue.clear();
+        if (mLatest != null) {
+            mLatest.clear();
+        }
+        notifyAll();
+    }
+
+    private static final class Slot<R> {
+
+        R mValue;
+        Object mKey;
+        Slot<R> mNext;
+    }
+}
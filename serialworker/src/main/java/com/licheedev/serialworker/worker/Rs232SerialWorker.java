@@ -2,20 +2,30 @@ package com.licheedev.serialworker.worker;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import com.licheedev.serialworker.core.BatchResult;
+import com.licheedev.serialworker.core.BufferPool;
 import com.licheedev.serialworker.core.Callback;
+import com.licheedev.serialworker.core.Correlated;
 import com.licheedev.serialworker.core.DataReceiver;
+import com.licheedev.serialworker.core.Deadlined;
 import com.licheedev.serialworker.core.OpenSerialException;
+import com.licheedev.serialworker.core.PooledBuffer;
+import com.licheedev.serialworker.core.PooledSendData;
+import com.licheedev.serialworker.core.Prioritized;
 import com.licheedev.serialworker.core.RecvData;
 import com.licheedev.serialworker.core.SendData;
+import com.licheedev.serialworker.core.SliceDataReceiver;
 import com.licheedev.serialworker.core.ValidData;
 import com.licheedev.serialworker.core.WaitRoom;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Callable;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 用于全双工的rs232设备。此类的实现是类rs485的，即请求与应答在同一个单一线程中执行。
@@ -30,44 +40,184 @@ public abstract class Rs232SerialWorker<S extends SendData, R extends RecvData>
 
     public static final String SERIAL_PORT_RECEIVES_DATA_TIMEOUT =
         "SerialPort receives data timeout!";
-    protected final List<WaitRoom<R>> mWaitRooms;
+    public static final String SERIAL_PORT_COMMAND_EXPIRED =
+        "SerialPort command expired before sending!";
+
+    /** 接收分发队列满时，阻塞读线程，直到有空位（背压，数据暂存在串口驱动的缓冲区中） */
+    public static final int OVERFLOW_BLOCK = 0;
+    /** 接收分发队列满时，丢弃最旧的数据 */
+    public static final int OVERFLOW_DROP_OLDEST = 1;
+    /** 接收分发队列满时，丢弃新收到的数据 */
+    public static final int OVERFLOW_DROP_NEWEST = 2;
+    /**
+     * 同一关联键（{@link #getRecvKey(RecvData)}，比如命令码）只保留最新的数据，替换排队中的旧数据；
+     * 关联键为null或队列满时，丢弃最旧的数据。适合状态上报类的数据
+     */
+    public static final int OVERFLOW_KEEP_LATEST = 3;
+
+    /** 所有等待中的请求，有关联键的按关联键索引 */
+    final WaitRoomRegistry<R> mWaitRoomRegistry;
     private long mTimeout = 2000L;
+    private volatile boolean mDeadlineMode = false;
+    private final AtomicLong mExpiredCount = new AtomicLong();
+    private volatile ReceiveDispatcher<R> mReceiveDispatcher;
+    private static final int SEND_CALL_POOL_SIZE = 16;
+    private final Object mSendCallPoolSync = new Object();
+    private SendCall mSendCallPool; // 回收的SendCall，单链表
+    private int mSendCallPoolSize;
 
     public Rs232SerialWorker() {
-        mWaitRooms = new CopyOnWriteArrayList<>();
+        this(null);
+    }
+
+    /**
+     * @param group 多个串口共用的线程资源，为null时使用自己的线程
+     */
+    public Rs232SerialWorker(@Nullable SerialWorkerGroup group) {
+        super(group);
+        mWaitRoomRegistry = new WaitRoomRegistry<>();
+    }
+
+    /**
+     * 获取发送数据的关联键，收到的数据的关联键与之相等时，才会调用{@link #isMyResponse(SendData, RecvData)}判断；
+     * 默认使用{@link Correlated#getCorrelationKey()}，没有实现时返回null（逐一判断）。
+     * 可以重写此方法，比如返回命令码，需要与{@link #getRecvKey(RecvData)}配套
+     *
+     * @param sendData 发送的数据
+     * @return 关联键
+     */
+    @Nullable
+    protected Object getSendKey(@NonNull S sendData) {
+        if (sendData instanceof Correlated) {
+            return ((Correlated) sendData).getCorrelationKey();
+        }
+        return null;
+    }
+
+    /**
+     * 获取接收数据的关联键，参考{@link #getSendKey(SendData)}
+     *
+     * @param recvData 接收的数据
+     * @return 关联键，为null时会交给所有等待中的请求逐一判断
+     */
+    @Nullable
+    protected Object getRecvKey(@NonNull R recvData) {
+        if (recvData instanceof Correlated) {
+            return ((Correlated) recvData).getCorrelationKey();
+        }
+        return null;
+    }
+
+    /**
+     * 获取发送数据的优先级，开启优先级调度时使用，参考{@link #setPriorityScheduling(boolean, long)}；
+     * 默认使用{@link Prioritized#getPriority()}，没有实现时为{@link Prioritized#PRIORITY_NORMAL}
+     *
+     * @param sendData 发送的数据
+     * @return 优先级
+     */
+    protected int getSendPriority(@NonNull S sendData) {
+        if (sendData instanceof Prioritized) {
+            return ((Prioritized) sendData).getPriority();
+        }
+        return Prioritized.PRIORITY_NORMAL;
     }
 
     @Override
     public void handleValidData(@NonNull ValidData validData, DataReceiver receiver) {
-        ArrayList<byte[]> all = validData.getAll();
-        for (byte[] bytes : all) {
-            R r = (R) receiver.adaptReceive(bytes);
+        // SliceDataReceiver直接使用缓存中的帧，不复制
+        SliceDataReceiver<?> sliceReceiver =
+            receiver instanceof SliceDataReceiver ? (SliceDataReceiver<?>) receiver : null;
+        ArrayList<byte[]> all = sliceReceiver == null ? validData.getAll() : null;
+        for (int i = 0, size = validData.size(); i < size; i++) {
+            R r = (R) (sliceReceiver != null ? sliceReceiver.adaptReceive(validData.get(i))
+                : receiver.adaptReceive(all.get(i)));
             if (r != null) {
-                Iterator<WaitRoom<R>> iterator = mWaitRooms.iterator();
-                while (iterator.hasNext()) {
-                    try {
-                        iterator.next().putResponse(r);
-                    } catch (Exception e) {
-                        //e.printStackTrace();
-                    }
-                }
-                onReceiveData(r);
+                dispatchResponse(r);
+                deliverReceiveData(r);
             }
         }
     }
 
+    /**
+     * 把收到的数据交给等待中的请求
+     *
+     * @param r 接收的数据
+     */
+    protected void dispatchResponse(@NonNull R r) {
+        mWaitRoomRegistry.putResponse(r, getRecvKey(r));
+    }
+
+    private void deliverReceiveData(@NonNull R r) {
+        ReceiveDispatcher<R> dispatcher = mReceiveDispatcher;
+        if (dispatcher == null) {
+            onReceiveData(r);
+        } else {
+            dispatcher.offer(r, dispatcher.isKeepLatest() ? getRecvKey(r) : null);
+        }
+    }
+
+    /**
+     * 设置接收分发队列，{@link #onReceiveData(RecvData)}改为在executor中按顺序调用，
+     * 读线程只负责解析和唤醒等待中的请求，不会被处理慢的使用者拖住；
+     * 队列中最多缓存capacity个数据，满了按overflowPolicy处理，丢弃的数量参考{@link #getDroppedFrameCount()}。
+     * 注意：使用{@link #OVERFLOW_BLOCK}时，executor不能是读线程本身，也不要在executor中同步等待读线程
+     *
+     * @param executor 调用{@link #onReceiveData(RecvData)}的线程池，为null时恢复为在读线程中直接调用（默认）
+     * @param capacity 队列容量
+     * @param overflowPolicy 溢出策略，{@link #OVERFLOW_BLOCK}、{@link #OVERFLOW_DROP_OLDEST}、
+     * {@link #OVERFLOW_DROP_NEWEST}或{@link #OVERFLOW_KEEP_LATEST}
+     */
+    public void setReceiveDispatch(@Nullable Executor executor, int capacity, int overflowPolicy) {
+        ReceiveDispatcher<R> dispatcher = null;
+        if (executor != null) {
+            dispatcher = new ReceiveDispatcher<R>(executor, capacity, overflowPolicy) {
+                @Override
+                void deliver(@NonNull R r) {
+                    onReceiveData(r);
+                }
+            };
+        }
+        ReceiveDispatcher<R> old = mReceiveDispatcher;
+        mReceiveDispatcher = dispatcher;
+        if (old != null) {
+            old.close();
+        }
+    }
+
+    /**
+     * 接收分发队列丢弃（或被同一关联键的新数据替换）的数据数量
+     *
+     * @return 没有设置接收分发队列时为0
+     */
+    public long getDroppedFrameCount() {
+        ReceiveDispatcher<R> dispatcher = mReceiveDispatcher;
+        return dispatcher == null ? 0 : dispatcher.getDroppedCount();
+    }
+
+    /**
+     * 接收分发队列中等待调用{@link #onReceiveData(RecvData)}的数据数量
+     *
+     * @return
+     */
+    public int getReceiveDispatchQueueSize() {
+        ReceiveDispatcher<R> dispatcher = mReceiveDispatcher;
+        return dispatcher == null ? 0 : dispatcher.size();
+    }
+
     @Override
-    public void notifyRunningReceive(boolean running) {
-        Iterator<WaitRoom<R>> iterator = mWaitRooms.iterator();
-        while (iterator.hasNext()) {
-            try {
-                iterator.next().notifyRunningReceive(running);
-            } catch (Exception e) {
-                //e.printStackTrace();
-            }
+    public void release() {
+        super.release();
+        ReceiveDispatcher<R> dispatcher = mReceiveDispatcher;
+        if (dispatcher != null) {
+            dispatcher.close();
         }
     }
 
+    @Override
+    public void notifyRunningReceive(boolean running) {
+        mWaitRoomRegistry.notifyRunningReceive(running);
+    }
+
     @Override
     public void onReceiveData(@NonNull byte[] receiveBuffer, int offset, int length) {
         // ignore
@@ -90,34 +240,185 @@ public abstract class Rs232SerialWorker<S extends SendData, R extends RecvData>
      * @param timeout 接收数据超时，0表示不会等待接收数据
      */
     protected R rawSend(final S sendData, long timeout) throws IOException, OpenSerialException {
+        return rawSendAndWait(sendData, resolveTimeout(sendData, timeout), 0);
+    }
+
+    /**
+     * 在当前线程发送数据，并等待接收数据；有截止时间时，已经过期的直接抛出超时异常，不发送，
+     * 没过期的只用剩下的时间等待接收数据。
+     * 没有截止时间时（默认）通过{@link #rawSend(SendData, long)}发送，重写它仍然有效；
+     * 有截止时间时不经过它，截止时间作为参数传递，重入的调用互不影响
+     *
+     * @param sendData 发送的数据
+     * @param timeout 接收数据超时，0表示不会等待接收数据
+     * @param deadlineNanos 截止时间，参考{@link #getSendDeadlineNanos(SendData, long)}，0表示没有
+     */
+    protected R rawSend(final S sendData, long timeout, long deadlineNanos)
+        throws IOException, OpenSerialException, TimeoutException {
+        if (deadlineNanos == 0) {
+            return rawSend(sendData, timeout);
+        }
+        checkDeadline(deadlineNanos);
+        return rawSendAndWait(sendData, resolveTimeout(sendData, timeout), deadlineNanos);
+    }
+
+    /**
+     * 同{@link #rawSend(SendData, long, long)}，没收到数据会抛出超时异常；
+     * 没有截止时间时（默认）通过{@link #rawSendNoNull(SendData, long)}发送，重写它仍然有效
+     */
+    protected R rawSendNoNull(final S sendData, long timeout, long deadlineNanos)
+        throws TimeoutException, IOException, OpenSerialException {
+        if (deadlineNanos == 0) {
+            return rawSendNoNull(sendData, timeout);
+        }
+        R r = rawSend(sendData, timeout, deadlineNanos);
+        if (r == null) {
+            throw new TimeoutException(SERIAL_PORT_RECEIVES_DATA_TIMEOUT);
+        }
+        return r;
+    }
+
+    private R rawSendAndWait(final S sendData, long timeout, long deadlineNanos)
+        throws IOException, OpenSerialException {
 
         SingleWaitRoom<S, R> waitRoom = null;
         R response = null;
+        Object key = null;
 
-        if (sendData.timeout() > 0) { // 优先使用命令指定的超时时间
-            timeout = sendData.timeout();
-        }
         try {
             if (timeout > 0) {
                 waitRoom = new SingleWaitRoom<>(this, sendData);
-                mWaitRooms.add(waitRoom);
+                key = getSendKey(sendData);
+                mWaitRoomRegistry.add(waitRoom, key);
             }
-            byte[] bytes = sendData.toBytes();
-            // 更新发送时间
-            sendData.updateSendTime();
             // 发送数据
-            rawSend(bytes, 0, bytes.length);
+            rawSendData(sendData);
             if (waitRoom != null) {
-                response = waitRoom.getResponse(timeout);
+                // 合并写入时，等待响应前要先写入串口
+                flushWrites();
+                response = waitRoom.getResponse(remainingTimeout(timeout, deadlineNanos));
             }
         } finally {
             if (waitRoom != null) {
-                mWaitRooms.remove(waitRoom);
+                mWaitRoomRegistry.remove(waitRoom, key);
             }
         }
         return response;
     }
 
+    /**
+     * 设置是否按截止时间处理请求，默认false。为true时，超时时间从提交请求时开始计算，包括在串口队列中排队的时间：
+     * 从队列取出时已经过期的请求直接以超时失败，不会发送（参考{@link #getExpiredCount()}），
+     * 没过期的只用剩下的时间等待响应。过载时串口不会把时间花在已经没人等的请求上。
+     * 实现了{@link Deadlined}的命令，不管是否开启，都会按其截止时间处理
+     *
+     * @param deadlineMode
+     */
+    public void setDeadlineMode(boolean deadlineMode) {
+        mDeadlineMode = deadlineMode;
+    }
+
+    public boolean isDeadlineMode() {
+        return mDeadlineMode;
+    }
+
+    /**
+     * 因为截止时间已过，没有发送就丢弃的请求数量
+     *
+     * @return
+     */
+    public long getExpiredCount() {
+        return mExpiredCount.get();
+    }
+
+    /**
+     * 计算请求的截止时间，在提交请求时调用
+     *
+     * @param sendData 发送的数据
+     * @param timeout 接收数据超时（已经考虑了{@link SendData#timeout()}），0表示不会等待接收数据
+     * @return 截止时间，以{@link System#nanoTime()}为准，0表示没有
+     */
+    protected long getSendDeadlineNanos(@NonNull S sendData, long timeout) {
+        long deadline = 0;
+        if (sendData instanceof Deadlined) {
+            deadline = ((Deadlined) sendData).getDeadlineNanos();
+        }
+        if (mDeadlineMode && timeout > 0) {
+            long byTimeout = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+            if (deadline == 0 || byTimeout - deadline < 0) {
+                deadline = byTimeout;
+            }
+        }
+        return deadline;
+    }
+
+    /**
+     * 从队列中取出请求时，检查是否已过截止时间
+     *
+     * @param deadlineNanos 截止时间，0表示没有
+     * @throws TimeoutException 已过截止时间
+     */
+    void checkDeadline(long deadlineNanos) throws TimeoutException {
+        if (deadlineNanos != 0 && deadlineNanos - System.nanoTime() <= 0) {
+            mExpiredCount.incrementAndGet();
+            throw new TimeoutException(SERIAL_PORT_COMMAND_EXPIRED);
+        }
+    }
+
+    /**
+     * 截止时间前剩下的接收数据超时
+     *
+     * @param timeout 接收数据超时，0表示不会等待接收数据
+     * @param deadlineNanos 截止时间，0表示没有
+     * @return 毫秒，需要等待时最少为1
+     */
+    static long remainingTimeout(long timeout, long deadlineNanos) {
+        if (timeout <= 0 || deadlineNanos == 0) {
+            return timeout;
+        }
+        long remaining = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime() + 999_999);
+        return Math.max(1, Math.min(timeout, remaining));
+    }
+
+    /**
+     * 在当前线程把发送数据写入串口，并更新发送时间；
+     * 实现了{@link PooledSendData}时，使用{@link #getBufferPool()}借来的缓存编码，不分配新的数组
+     *
+     * @param sendData
+     * @throws IOException
+     * @throws OpenSerialException
+     */
+    protected void rawSendData(@NonNull S sendData) throws IOException, OpenSerialException {
+        if (sendData instanceof PooledSendData) {
+            PooledSendData data = (PooledSendData) sendData;
+            int length = data.encodedLength();
+            PooledBuffer buffer = getBufferPool().acquire(length);
+            try {
+                data.encode(buffer.array(), 0);
+                // 更新发送时间
+                sendData.updateSendTime();
+                rawSend(buffer.array(), 0, length);
+            } finally {
+                buffer.release();
+            }
+            return;
+        }
+        byte[] bytes = sendData.toBytes();
+        // 更新发送时间
+        sendData.updateSendTime();
+        rawSend(bytes, 0, bytes.length);
+    }
+
+    /**
+     * 发送数据时使用的缓存池，参考{@link PooledSendData}
+     *
+     * @return
+     */
+    @NonNull
+    protected BufferPool getBufferPool() {
+        return BufferPool.getDefault();
+    }
+
     /**
      * 发送数据，没收到数据会抛出超时异常
      *
@@ -136,29 +437,63 @@ public abstract class Rs232SerialWorker<S extends SendData, R extends RecvData>
         return r;
     }
 
+    /**
+     * 发送数据的Callable，{@link #syncSendOnly(SendData)}等使用，每次返回新的对象；
+     * 默认的实现在提交时计算截止时间，执行时调用{@link #rawSend(SendData, long, long)}。
+     * 异步的{@link #sendOnly(SendData, Callback)}不经过这里，而是使用内部重复使用的对象，执行时同样调用它
+     *
+     * @param sendData
+     * @param timeout
+     * @return
+     */
     @NonNull
     protected Callable<R> rawSendCallable(final S sendData, final long timeout) {
+        final long deadlineNanos = getSendDeadlineNanos(sendData, resolveTimeout(sendData, timeout));
+        final long submitNanos = System.nanoTime();
         return new Callable<R>() {
             @Override
             public R call() throws Exception {
-                return rawSend(sendData, timeout);
+                // 排队太久的不发送
+                checkQueueWait(submitNanos);
+                return rawSend(sendData, timeout, deadlineNanos);
             }
         };
     }
 
+    /**
+     * 发送数据的Callable，没收到数据会抛出超时异常，{@link #syncSend(SendData)}等使用，每次返回新的对象；
+     * 默认的实现在提交时计算截止时间，执行时调用{@link #rawSendNoNull(SendData, long, long)}。
+     * 异步的{@link #send(SendData, Callback)}不经过这里，而是使用内部重复使用的对象，执行时同样调用它
+     *
+     * @param sendData
+     * @param timeout
+     * @return
+     */
     @NonNull
     protected Callable<R> rawSendNoNullCallable(final S sendData, final long timeout) {
+        final long deadlineNanos = getSendDeadlineNanos(sendData, resolveTimeout(sendData, timeout));
+        final long submitNanos = System.nanoTime();
         return new Callable<R>() {
             @Override
             public R call() throws Exception {
-                return rawSendNoNull(sendData, timeout);
+                // 排队太久的不发送
+                checkQueueWait(submitNanos);
+                return rawSendNoNull(sendData, timeout, deadlineNanos);
             }
         };
     }
 
+    /**
+     * 优先使用命令指定的超时时间
+     */
+    private static long resolveTimeout(@NonNull SendData sendData, long timeout) {
+        return sendData.timeout() > 0 ? sendData.timeout() : timeout;
+    }
+
     @Override
     public R syncSend(@NonNull S sendData) throws Exception {
-        return callOnSerialThread(rawSendNoNullCallable(sendData, getTimeout()));
+        return callOnSerialThread(rawSendNoNullCallable(sendData, getTimeout()),
+            getSendPriority(sendData));
     }
 
     @Override
@@ -173,7 +508,7 @@ public abstract class Rs232SerialWorker<S extends SendData, R extends RecvData>
 
     @Override
     public void syncSendOnly(@NonNull S sendData) throws Exception {
-        callOnSerialThread(rawSendCallable(sendData, 0));
+        callOnSerialThread(rawSendCallable(sendData, 0), getSendPriority(sendData));
     }
 
     @Override
@@ -187,30 +522,382 @@ public abstract class Rs232SerialWorker<S extends SendData, R extends RecvData>
 
     @Override
     public void send(@NonNull final S sendData, @Nullable final Callback<R> callback) {
-        asyncCallOnSerialThread(rawSendNoNullCallable(sendData, getTimeout()), callback);
+        send(sendData, callback, getCallbackExecutor());
+    }
+
+    /**
+     * 发送数据，并在callbackExecutor中回调，参考{@link #setCallbackExecutor(Executor)}
+     *
+     * @param sendData 发送的数据
+     * @param callback 回调
+     * @param callbackExecutor 执行回调的线程池，为null时在串口线程中直接回调
+     */
+    public void send(@NonNull final S sendData, @Nullable final Callback<R> callback,
+        @Nullable Executor callbackExecutor) {
+        asyncCallOnSerialThread(obtainSendCall(sendData, getTimeout(), true), callback,
+            callbackExecutor, getSendPriority(sendData));
     }
 
     @Override
-    public <T extends R> void send(@NonNull final S sendData, @NonNull Class<T> cast,
+    public <T extends R> void send(@NonNull final S sendData, @NonNull final Class<T> cast,
         @Nullable final Callback<T> callback) {
 
+        final Callable<R> callable = rawSendNoNullCallable(sendData, getTimeout());
         asyncCallOnSerialThread(new Callable<T>() {
             @Override
             public T call() throws Exception {
-                return (T) rawSendNoNull(sendData, getTimeout());
+                return cast.cast(callable.call());
             }
-        }, callback);
+        }, callback, getCallbackExecutor(), getSendPriority(sendData));
     }
 
     @Override
     public void sendOnly(@NonNull final S sendData, @Nullable final Callback<Void> callback) {
+        sendOnly(sendData, callback, getCallbackExecutor());
+    }
 
-        asyncCallOnSerialThread(new Callable<Void>() {
-            @Override
-            public Void call() throws Exception {
-                rawSend(sendData, 0);
-                return null;
+    /**
+     * 只发送数据，并在callbackExecutor中回调，参考{@link #setCallbackExecutor(Executor)}
+     *
+     * @param sendData 发送的数据
+     * @param callback 回调
+     * @param callbackExecutor 执行回调的线程池，为null时在串口线程中直接回调
+     */
+    public void sendOnly(@NonNull final S sendData, @Nullable final Callback<Void> callback,
+        @Nullable Executor callbackExecutor) {
+
+        // 不等待响应，允许合并写入，参考setWriteCoalescing
+        asyncWriteOnSerialThread(obtainSendCall(sendData, 0, false), callback, callbackExecutor,
+            getSendPriority(sendData));
+    }
+
+    @NonNull
+    @Override
+    public List<BatchResult<R>> syncSendBatch(@NonNull List<S> sendDataList) throws Exception {
+        if (sendDataList.isEmpty()) {
+            return new ArrayList<>();
+        }
+        BatchCall call = new BatchCall(sendDataList);
+        return callOnSerialThread(call, call.mPriority);
+    }
+
+    @Override
+    public void sendBatch(@NonNull List<S> sendDataList,
+        @Nullable Callback<List<BatchResult<R>>> callback) {
+        BatchCall call = new BatchCall(sendDataList);
+        asyncCallOnSerialThread(call, callback, getCallbackExecutor(), call.mPriority);
+    }
+
+    /**
+     * 批量发送时每次写入串口的命令数，写入后等这些命令的响应都收到（或超时）再写下一批；
+     * 默认一次全部写入，半双工的设备可以重写为1
+     *
+     * @return
+     */
+    protected int getBatchChunkSize() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * 批量发送用的Callable，提交时计算各命令的超时、截止时间和整批的优先级（取最高的）
+     */
+    private final class BatchCall implements Callable<List<BatchResult<R>>> {
+
+        final List<S> mSendData;
+        final long[] mTimeouts;
+        final long[] mDeadlines;
+        final long mSubmitNanos;
+        final int mPriority;
+
+        BatchCall(List<S> sendDataList) {
+            mSendData = new ArrayList<>(sendDataList);
+            int size = mSendData.size();
+            mTimeouts = new long[size];
+            mDeadlines = new long[size];
+            int priority = Integer.MIN_VALUE;
+            for (int i = 0; i < size; i++) {
+                S sendData = mSendData.get(i);
+                long timeout = sendData.timeout() > 0 ? sendData.timeout() : getTimeout();
+                mTimeouts[i] = timeout;
+                mDeadlines[i] = getSendDeadlineNanos(sendData, timeout);
+                priority = Math.max(priority, getSendPriority(sendData));
+            }
+            mPriority = size > 0 ? priority : Prioritized.PRIORITY_NORMAL;
+            mSubmitNanos = System.nanoTime();
+        }
+
+        @Override
+        public List<BatchResult<R>> call() throws Exception {
+            // 排队太久的整批不发送
+            checkQueueWait(mSubmitNanos);
+            return rawSendBatch(mSendData, mTimeouts, mDeadlines);
+        }
+    }
+
+    /**
+     * 在当前线程批量发送数据，并等待接收数据
+     *
+     * @param sendDataList 发送的数据
+     * @param timeouts 各命令接收数据的超时（已经考虑了{@link SendData#timeout()}），0表示不等待
+     * @param deadlines 各命令的截止时间，0表示没有
+     * @return 每个命令的结果
+     */
+    @NonNull
+    protected List<BatchResult<R>> rawSendBatch(@NonNull List<S> sendDataList,
+        @NonNull long[] timeouts, @NonNull long[] deadlines) {
+
+        int size = sendDataList.size();
+        List<R> responses = new ArrayList<>(Collections.<R>nCopies(size, null));
+        Throwable[] errors = new Throwable[size];
+        byte[][] encoded = new byte[size][];
+        int chunkSize = Math.max(1, getBatchChunkSize());
+
+        BatchWaitRoom waitRoom = new BatchWaitRoom(sendDataList, responses);
+        mWaitRoomRegistry.add(waitRoom, null);
+        try {
+            for (int from = 0; from < size; from += chunkSize) {
+                int to = Math.min(size, from + chunkSize);
+                // 计算总长度，已过截止时间的不发送
+                int total = 0;
+                for (int i = from; i < to; i++) {
+                    S sendData = sendDataList.get(i);
+                    try {
+                        checkDeadline(deadlines[i]);
+                        if (sendData instanceof PooledSendData) {
+                            total += ((PooledSendData) sendData).encodedLength();
+                        } else {
+                            encoded[i] = sendData.toBytes();
+                            total += encoded[i].length;
+                        }
+                    } catch (Exception e) {
+                        // 只有这个命令失败，不影响其他命令
+                        errors[i] = e;
+                    }
+                }
+                if (total == 0) {
+                    continue;
+                }
+                // 编码到同一个缓存中，一次写入
+                PooledBuffer buffer = getBufferPool().acquire(total);
+                try {
+                    byte[] array = buffer.array();
+                    int offset = 0;
+                    for (int i = from; i < to; i++) {
+                        if (errors[i] != null) {
+                            continue;
+                        }
+                        S sendData = sendDataList.get(i);
+                        if (encoded[i] != null) {
+                            System.arraycopy(encoded[i], 0, array, offset, encoded[i].length);
+                            offset += encoded[i].length;
+                            encoded[i] = null;
+                        } else {
+                            PooledSendData data = (PooledSendData) sendData;
+                            try {
+                                data.encode(array, offset);
+                            } catch (RuntimeException e) {
+                                // 编码失败的不发送，后面的命令覆盖它写了一半的数据
+                                errors[i] = e;
+                                continue;
+                            }
+                            offset += data.encodedLength();
+                        }
+                        sendData.updateSendTime();
+                        if (timeouts[i] > 0) {
+                            waitRoom.expect(i);
+                        }
+                    }
+                    if (offset > 0) {
+                        rawSend(array, 0, offset);
+                        flushWrites();
+                    }
+                } catch (Exception e) {
+                    // 写入失败，这一批和后面的都没发出去
+                    for (int i = from; i < size; i++) {
+                        if (errors[i] == null) {
+                            errors[i] = e;
+                        }
+                    }
+                    break;
+                } finally {
+                    buffer.release();
+                }
+                // 按顺序等待响应，超时从写入后开始计算
+                long writeNanos = System.nanoTime();
+                for (int i = from; i < to; i++) {
+                    if (errors[i] != null || timeouts[i] <= 0) {
+                        continue;
+                    }
+                    long deadline = writeNanos + TimeUnit.MILLISECONDS.toNanos(timeouts[i]);
+                    if (deadlines[i] != 0 && deadlines[i] - deadline < 0) {
+                        deadline = deadlines[i];
+                    }
+                    if (waitRoom.await(i, deadline) == null) {
+                        errors[i] = new TimeoutException(SERIAL_PORT_RECEIVES_DATA_TIMEOUT);
+                    }
+                }
+            }
+        } finally {
+            mWaitRoomRegistry.remove(waitRoom, null);
+        }
+
+        List<BatchResult<R>> results = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            if (errors[i] != null) {
+                results.add(BatchResult.<R>failure(errors[i]));
+            } else {
+                results.add(BatchResult.success(responses.get(i)));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 批量发送时等待响应的，收到的数据按发送顺序交给第一个匹配且还没收到响应的命令，
+     * 同一命令码的多个命令也能各自得到自己的响应
+     */
+    private final class BatchWaitRoom implements WaitRoom<R> {
+
+        private final List<S> mSendData;
+        private final Object[] mKeys;
+        private final List<R> mResponses;
+        private final boolean[] mExpected;
+
+        BatchWaitRoom(List<S> sendDataList, List<R> responses) {
+            mSendData = sendDataList;
+            mResponses = responses;
+            mKeys = new Object[sendDataList.size()];
+            mExpected = new boolean[sendDataList.size()];
+            for (int i = 0; i < mKeys.length; i++) {
+                mKeys[i] = getSendKey(sendDataList.get(i));
+            }
+        }
+
+        /**
+         * 开始等待第index个命令的响应，写入串口前调用
+         */
+        synchronized void expect(int index) {
+            mExpected[index] = true;
+        }
+
+        /**
+         * 等待第index个命令的响应
+         *
+         * @param deadlineNanos 截止时间
+         * @return 没收到时为null
+         */
+        synchronized R await(int index, long deadlineNanos) {
+            while (mResponses.get(index) == null) {
+                long remaining = deadlineNanos - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
             }
-        }, callback);
+            mExpected[index] = false;
+            return mResponses.get(index);
+        }
+
+        @Override
+        public Object getResponse(long timeout) {
+            return null;
+        }
+
+        @Override
+        public synchronized void putResponse(R r) {
+            if (r == null) {
+                return;
+            }
+            Object key = getRecvKey(r);
+            for (int i = 0; i < mExpected.length; i++) {
+                if (!mExpected[i] || mResponses.get(i) != null) {
+                    continue;
+                }
+                if (key != null && mKeys[i] != null && !key.equals(mKeys[i])) {
+                    continue;
+                }
+                if (isMyResponse(mSendData.get(i), r)) {
+                    mResponses.set(i, r);
+                    notifyAll();
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public void notifyRunningReceive(boolean running) {
+            // 空实现
+        }
+    }
+
+    /**
+     * 从池中取出异步发送用的Callable，只交给串口线程执行一次
+     *
+     * @param sendData 发送的数据
+     * @param timeout 接收数据超时
+     * @param noNull 没收到数据时是否抛出超时异常
+     * @return
+     */
+    private SendCall obtainSendCall(S sendData, long timeout, boolean noNull) {
+        SendCall call = null;
+        synchronized (mSendCallPoolSync) {
+            if (mSendCallPool != null) {
+                call = mSendCallPool;
+                mSendCallPool = call.mNext;
+                call.mNext = null;
+                mSendCallPoolSize--;
+            }
+        }
+        if (call == null) {
+            call = new SendCall();
+        }
+        timeout = resolveTimeout(sendData, timeout);
+        call.mSendData = sendData;
+        call.mTimeout = timeout;
+        call.mDeadlineNanos = getSendDeadlineNanos(sendData, timeout);
+        call.mSubmitNanos = System.nanoTime();
+        call.mNoNull = noNull;
+        return call;
+    }
+
+    /**
+     * 异步发送（{@link #send(SendData, Callback, Executor)}、{@link #sendOnly(SendData, Callback,
+     * Executor)}）用的Callable，提交时计算截止时间，执行时先回收到池中再发送，稳定后每次发送不再分配对象；
+     * 只在内部使用，不会交给子类，所以不会被重复执行
+     */
+    private final class SendCall implements Callable<R> {
+
+        private SendCall mNext;
+        private S mSendData;
+        private long mTimeout;
+        private long mDeadlineNanos;
+        private long mSubmitNanos;
+        private boolean mNoNull;
+
+        @Override
+        public R call() throws Exception {
+            S sendData = mSendData;
+            long timeout = mTimeout;
+            long deadlineNanos = mDeadlineNanos;
+            long submitNanos = mSubmitNanos;
+            boolean noNull = mNoNull;
+            mSendData = null;
+            synchronized (mSendCallPoolSync) {
+                if (mSendCallPoolSize < SEND_CALL_POOL_SIZE) {
+                    mNext = mSendCallPool;
+                    mSendCallPool = this;
+                    mSendCallPoolSize++;
+                }
+            }
+            // 排队太久的不发送
+            checkQueueWait(submitNanos);
+            return noNull ? rawSendNoNull(sendData, timeout, deadlineNanos)
+                : rawSend(sendData, timeout, deadlineNanos);
+        }
     }
 }
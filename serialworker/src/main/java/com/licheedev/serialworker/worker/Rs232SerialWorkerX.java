@@ -1,21 +1,32 @@
 package com.licheedev.serialworker.worker;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import com.licheedev.myutils.LogPlus;
 import com.licheedev.serialworker.core.Callback;
 import com.licheedev.serialworker.core.OpenSerialException;
 import com.licheedev.serialworker.core.RecvData;
+import com.licheedev.serialworker.core.ResponseFuture;
 import com.licheedev.serialworker.core.SendData;
+import com.licheedev.serialworker.core.SerialOverloadException;
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeoutException;
 
 /**
  * {@link Rs232SerialWorker}的增强版。
  * {@link Rs232SerialWorker}中，请求和应答，是在同一线程中处理的。必须等待前一条命令请求和应答完成，才能处理下一条命令。
  * {@link Rs232SerialWorkerX}中的带“X”的方法，发送数据会在单一线程中处理（发送是串行的），接收数据则在不同的线程中处理。
+ * {@link #sendAsync(SendData)}等待响应时不占用任何线程，收到响应时直接在读线程中完成。
+ * 可以用{@link #setPipelineWindow(int)}限制同时在途的请求数量，用{@link #setPipelineFifo(boolean)}按顺序匹配响应。
  *
  * @param <S>
  * @param <R>
@@ -25,12 +36,46 @@ public abstract class Rs232SerialWorkerX<S extends SendData, R extends RecvData>
 
     private final ExecutorService mReceiveExecutor;
 
+    private final Object mPipelineLock = new Object();
+    /** 因窗口已满而排队的请求 */
+    private final ArrayDeque<AsyncRequest> mBacklog = new ArrayDeque<>();
+    /** 按顺序匹配时，已发送、等待响应的请求，按发送顺序 */
+    private final ArrayDeque<AsyncRequest> mFifoInFlight = new ArrayDeque<>();
+    /** 合并写入时，已写入缓存、还没写入串口的请求，写入串口后才开始计算超时 */
+    private final ArrayDeque<AsyncRequest> mUnflushed = new ArrayDeque<>();
+    private int mPipelineWindow;
+    private int mInFlight;
+    private volatile boolean mPipelineFifo;
+
     public Rs232SerialWorkerX() {
-        mReceiveExecutor = Executors.newCachedThreadPool();
+        this(null);
+    }
+
+    /**
+     * @param group 多个串口共用的线程资源，为null时使用自己的线程；
+     * 接收线程池的线程数和排队数都有上限，为null时使用{@link SerialWorkerGroup.Builder}的默认值
+     */
+    public Rs232SerialWorkerX(@Nullable SerialWorkerGroup group) {
+        super(group);
+        if (group != null) {
+            mReceiveExecutor = group.getReceiveExecutor();
+        } else {
+            mReceiveExecutor = SerialWorkerGroup.newDefaultReceivePool(TAG + "-X");
+        }
+    }
+
+    @Override
+    public void release() {
+        super.release();
+        // 共用的线程池由SerialWorkerGroup负责关闭
+        if (mGroup == null) {
+            mReceiveExecutor.shutdown();
+        }
     }
 
     /**
-     * 在当前线程发送数据
+     * 在当前线程发送数据并等待响应，同{@link #sendX(SendData)}，
+     * 通过{@link #sendAsync(SendData)}发送，等待时只占用当前线程
      *
      * @param sendData
      */
@@ -38,31 +83,24 @@ public abstract class Rs232SerialWorkerX<S extends SendData, R extends RecvData>
         throws IOException, OpenSerialException, InterruptedException, ExecutionException,
         TimeoutException {
 
-        SingleWaitRoom<S, R> waitRoom = new SingleWaitRoom<>(this, sendData);
-        mWaitRooms.add(waitRoom);
-        R response;
+        ResponseFuture<R> future = sendAsync(sendData);
         try {
-            callOnSerialThread(new Callable<Object>() {
-                @Override
-                public Object call() throws Exception {
-                    byte[] bytes = sendData.toBytes();
-                    // 更新发送时间
-                    sendData.updateSendTime();
-                    // 发送数据
-                    rawSend(bytes, 0, bytes.length);
-                    return null;
-                }
-            });
-            response = waitRoom.getResponse(getTimeout());
-        } finally {
-            mWaitRooms.remove(waitRoom);
-        }
-
-        if (response == null) {
-            throw new TimeoutException(SERIAL_PORT_RECEIVES_DATA_TIMEOUT);
+            return future.get();
+        } catch (InterruptedException e) {
+            // 如果被外部中断了，也要取消请求
+            future.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof OpenSerialException) {
+                throw (OpenSerialException) cause;
+            } else if (cause instanceof TimeoutException) {
+                throw (TimeoutException) cause;
+            }
+            throw e;
         }
-
-        return response;
     }
 
     protected Callable<R> rawSendXCallable(final S sendData) {
@@ -74,6 +112,12 @@ public abstract class Rs232SerialWorkerX<S extends SendData, R extends RecvData>
         };
     }
 
+    /**
+     * 在接收线程池中执行
+     *
+     * @deprecated 等待响应时会一直占用接收线程池的线程，用{@link #sendAsync(SendData)}代替
+     */
+    @Deprecated
     protected <T> T callOnReceiveThread(Callable<T> callable)
         throws InterruptedException, ExecutionException, OpenSerialException, IOException,
         TimeoutException {
@@ -81,13 +125,347 @@ public abstract class Rs232SerialWorkerX<S extends SendData, R extends RecvData>
         return callOnExecutor(mReceiveExecutor, callable);
     }
 
+    /**
+     * 在接收线程池中异步执行
+     *
+     * @deprecated 等待响应时会一直占用接收线程池的线程，用{@link #sendAsync(SendData)}代替
+     */
+    @Deprecated
     protected void asyncCallOnReceiveThread(final Callable<?> callable, final Callback callback) {
         asyncCallOnExecutor(mReceiveExecutor, callable, callback);
     }
 
+    /**
+     * 设置流水线窗口，即同时在途（已发送或正在排队发送、未收到响应）的异步请求数量上限；
+     * 窗口满时，新的请求先在内部排队，不写入串口，等前面的请求完成（收到响应、出错或超时）后再依次发送，
+     * 超时从真正发送后才开始计算。设备能连续接收多条命令时，可以不必每条命令都等一个来回，串口带宽能充分利用。
+     * 只对{@link #sendAsync(SendData)}及基于它的“X”方法有效
+     *
+     * @param window 窗口大小，小于等于0表示不限制（默认）
+     */
+    public void setPipelineWindow(int window) {
+        List<AsyncRequest> ready;
+        synchronized (mPipelineLock) {
+            mPipelineWindow = window;
+            ready = pollBacklogLocked();
+        }
+        for (AsyncRequest request : ready) {
+            executeRequest(request);
+        }
+    }
+
+    public int getPipelineWindow() {
+        synchronized (mPipelineLock) {
+            return mPipelineWindow;
+        }
+    }
+
+    /**
+     * 设置是否按顺序匹配响应。
+     * 为true时，收到的数据只交给最早发出、还没完成的异步请求（仍会用{@link #isMyResponse(SendData, RecvData)}检查），
+     * 适用于严格按请求顺序应答的设备；某条请求超时后，如果它的响应迟到了，可能会被交给下一条请求检查。
+     * 为false时（默认），按{@link #getSendKey(SendData)}/{@link #getRecvKey(RecvData)}匹配，应答可以乱序
+     *
+     * @param fifo 是否按顺序匹配
+     */
+    public void setPipelineFifo(boolean fifo) {
+        mPipelineFifo = fifo;
+    }
+
+    public boolean isPipelineFifo() {
+        return mPipelineFifo;
+    }
+
+    /**
+     * 在途的异步请求数量，不包括因窗口已满而排队的
+     *
+     * @return
+     */
+    public int getInFlightCount() {
+        synchronized (mPipelineLock) {
+            return mInFlight;
+        }
+    }
+
+    /**
+     * 因窗口已满而排队、还没发送的异步请求数量
+     *
+     * @return
+     */
+    public int getPipelineBacklogSize() {
+        synchronized (mPipelineLock) {
+            return mBacklog.size();
+        }
+    }
+
+    @NonNull
+    @Override
+    public ResponseFuture<R> sendAsync(@NonNull final S sendData) {
+
+        final ResponseFuture<R> future = new ResponseFuture<>();
+        final long timeout = sendData.timeout() > 0 ? sendData.timeout() : getTimeout();
+        final AsyncRequest request = new AsyncRequest(sendData, future, timeout,
+            getSendDeadlineNanos(sendData, timeout));
+        // 完成（收到响应、出错、超时或取消）后清理，并发送排队中的请求
+        future.addListener(new Runnable() {
+            @Override
+            public void run() {
+                request.onComplete();
+            }
+        });
+
+        boolean send;
+        boolean overload = false;
+        int capacity = getQueueCapacity();
+        synchronized (mPipelineLock) {
+            if (future.isDone()) {
+                return future;
+            }
+            send = mPipelineWindow <= 0 || mInFlight < mPipelineWindow;
+            if (send) {
+                request.mHoldsSlot = true;
+                mInFlight++;
+            } else if (capacity > 0 && mBacklog.size() >= capacity) {
+                // 排队的请求也不能无限增长
+                overload = true;
+            } else {
+                // 窗口已满，先排队
+                mBacklog.add(request);
+            }
+        }
+        if (overload) {
+            mOverloadCount.incrementAndGet();
+            future.fail(
+                new SerialOverloadException("Pipeline backlog is full, capacity=" + capacity));
+            return future;
+        }
+        if (send) {
+            executeRequest(request);
+        }
+        return future;
+    }
+
+    @Override
+    protected void dispatchResponse(@NonNull R r) {
+        AsyncRequest head = null;
+        synchronized (mPipelineLock) {
+            // 刚超时或取消的请求可能还没移除，跳过
+            for (AsyncRequest request : mFifoInFlight) {
+                if (!request.mFuture.isDone()) {
+                    head = request;
+                    break;
+                }
+            }
+        }
+        if (head != null) {
+            try {
+                if (head.mWaitRoom.offerResponse(r)) {
+                    return;
+                }
+            } catch (Exception e) {
+                // 跟WaitRoomRegistry一样，不能让匹配的异常影响读线程
+                LogPlus.w(TAG, "Offer response exception occurred", e);
+            }
+        }
+        super.dispatchResponse(r);
+    }
+
+    @Override
+    protected void onWritesFlushed(@Nullable IOException error) {
+        super.onWritesFlushed(error);
+        while (true) {
+            AsyncRequest request;
+            synchronized (mUnflushed) {
+                request = mUnflushed.poll();
+            }
+            if (request == null) {
+                break;
+            }
+            if (error == null) {
+                // 真正写入串口后才开始计算超时
+                request.startTimeout();
+            } else {
+                request.mFuture.fail(error);
+            }
+        }
+    }
+
+    private void executeRequest(AsyncRequest request) {
+        try {
+            mSerialExecutor.execute(request, getSendPriority(request.mSendData));
+        } catch (RejectedExecutionException e) {
+            request.mFuture.fail(e);
+        }
+    }
+
+    /**
+     * 取出窗口允许发送的排队请求，需要持有mPipelineLock
+     */
+    private List<AsyncRequest> pollBacklogLocked() {
+        List<AsyncRequest> ready = Collections.emptyList();
+        while (!mBacklog.isEmpty() && (mPipelineWindow <= 0 || mInFlight < mPipelineWindow)) {
+            AsyncRequest request = mBacklog.poll();
+            if (request.mFuture.isDone()) {
+                continue;
+            }
+            request.mHoldsSlot = true;
+            mInFlight++;
+            if (ready.isEmpty()) {
+                ready = new ArrayList<>(2);
+            }
+            ready.add(request);
+        }
+        return ready;
+    }
+
+    /**
+     * 一个异步请求，在串口线程中发送
+     */
+    private final class AsyncRequest implements SerialTaskExecutor.RejectableTask {
+
+        final S mSendData;
+        final ResponseFuture<R> mFuture;
+        final AsyncWaitRoom<S, R> mWaitRoom;
+        final long mTimeout;
+        final long mDeadlineNanos;
+        final long mSubmitNanos;
+        // 以下由mPipelineLock保护
+        Object mKey;
+        boolean mFifo;
+        boolean mHoldsSlot; // 是否占用了窗口
+
+        AsyncRequest(S sendData, ResponseFuture<R> future, long timeout, long deadlineNanos) {
+            mSendData = sendData;
+            mFuture = future;
+            mWaitRoom = new AsyncWaitRoom<>(Rs232SerialWorkerX.this, sendData, future);
+            mTimeout = timeout;
+            mDeadlineNanos = deadlineNanos;
+            mSubmitNanos = System.nanoTime();
+        }
+
+        @Override
+        public void run() {
+            if (mFuture.isDone()) {
+                // 已经取消了，不用发送
+                return;
+            }
+            try {
+                // 排队太久或已过截止时间的不发送
+                checkQueueWait(mSubmitNanos);
+                checkDeadline(mDeadlineNanos);
+            } catch (Exception e) {
+                mFuture.fail(e);
+                return;
+            }
+            boolean fifo = mPipelineFifo;
+            Object key = fifo ? null : getSendKey(mSendData);
+            // 在串口线程中按发送顺序登记，保证FIFO队列的顺序与写入串口的顺序一致
+            synchronized (mPipelineLock) {
+                if (mFuture.isDone()) {
+                    // 已经取消了，不用发送
+                    return;
+                }
+                mFifo = fifo;
+                mKey = key;
+                if (fifo) {
+                    mFifoInFlight.add(this);
+                } else {
+                    mWaitRoomRegistry.add(mWaitRoom, key);
+                }
+            }
+            // 写入串口后（onWritesFlushed）才开始计算超时；开启合并写入时可能要等后面的请求一起写入
+            synchronized (mUnflushed) {
+                mUnflushed.add(this);
+            }
+            boolean outer = beginCoalescedWrite();
+            try {
+                // 发送数据
+                rawSendData(mSendData);
+                if (!hasPendingWrites()) {
+                    // 没有留在缓存中的数据（比如没有数据要写），不用等写入
+                    boolean unflushed;
+                    synchronized (mUnflushed) {
+                        unflushed = mUnflushed.remove(this);
+                    }
+                    if (unflushed) {
+                        startTimeout();
+                    }
+                }
+            } catch (Exception e) {
+                synchronized (mUnflushed) {
+                    mUnflushed.remove(this);
+                }
+                mFuture.fail(e);
+            } finally {
+                endCoalescedWrite(outer);
+            }
+        }
+
+        /**
+         * 开始计算超时，有截止时间时只用剩下的时间；超时小于等于0表示一直等到响应或取消
+         */
+        void startTimeout() {
+            if (mTimeout > 0) {
+                mWaitRoom.startTimeout(getTimer(), remainingTimeout(mTimeout, mDeadlineNanos));
+            }
+        }
+
+        @Override
+        public void reject(@NonNull RejectedExecutionException e) {
+            mFuture.fail(e);
+        }
+
+        void onComplete() {
+            mWaitRoom.cancelTimeout();
+            List<AsyncRequest> ready;
+            synchronized (mPipelineLock) {
+                if (mFifo) {
+                    mFifoInFlight.remove(this);
+                } else {
+                    mWaitRoomRegistry.remove(mWaitRoom, mKey);
+                }
+                if (!mHoldsSlot) {
+                    // 还在排队就结束了（比如被取消）
+                    mBacklog.remove(this);
+                    return;
+                }
+                mHoldsSlot = false;
+                mInFlight--;
+                ready = pollBacklogLocked();
+            }
+            for (AsyncRequest request : ready) {
+                executeRequest(request);
+            }
+        }
+    }
+
+    /**
+     * 阻塞等待异步请求的结果
+     *
+     * @param future
+     * @return
+     * @throws Exception
+     */
+    protected <T> T awaitResponse(ResponseFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            // 如果被外部中断了，也要取消请求
+            future.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+
     @Override
     public R sendX(S sendData) throws Exception {
-        return callOnReceiveThread(rawSendXCallable(sendData));
+        // 在调用的线程中等待，不需要再占用接收线程池
+        return awaitResponse(sendAsync(sendData));
     }
 
     @Override
@@ -102,18 +480,41 @@ public abstract class Rs232SerialWorkerX<S extends SendData, R extends RecvData>
 
     @Override
     public void sendX(S sendData, @Nullable Callback<R> callback) {
-        asyncCallOnReceiveThread(rawSendXCallable(sendData), callback);
+        sendX(sendData, callback, getCallbackExecutor());
+    }
+
+    /**
+     * 发送数据，并在callbackExecutor中回调，参考{@link #setCallbackExecutor(Executor)}
+     *
+     * @param sendData 发送的数据
+     * @param callback 回调
+     * @param callbackExecutor 执行回调的线程池，为null时在完成的线程（通常是读线程）中直接回调，延迟最低
+     */
+    public void sendX(S sendData, @Nullable Callback<R> callback,
+        @Nullable Executor callbackExecutor) {
+        ResponseFuture<R> future = sendAsync(sendData);
+        if (callback != null) {
+            future.addCallback(callback, callbackExecutor);
+        }
     }
 
     @Override
     public <T extends R> void sendX(final S sendData, Class<T> cast,
-        @Nullable Callback<T> callback) {
-        asyncCallOnReceiveThread(new Callable<T>() {
-            @Override
-            public T call() throws Exception {
-                return (T) rawSendX(sendData);
-            }
-        }, callback);
+        @Nullable final Callback<T> callback) {
+        ResponseFuture<R> future = sendAsync(sendData);
+        if (callback != null) {
+            future.addCallback(new Callback<R>() {
+                @Override
+                public void onSuccess(@Nullable R r) {
+                    callback.onSuccess((T) r);
+                }
+
+                @Override
+                public void onFailure(@NonNull Throwable tr) {
+                    callback.onFailure(tr);
+                }
+            }, getCallbackExecutor());
+        }
     }
 
 
@@ -18,6 +18,17 @@ public abstract class Rs485SerialWorker<S extends SendData, R extends RecvData>
 
     public static final String NO_SUPPORT_RS485 = "Don't call this method on RS485";
 
+    public Rs485SerialWorker() {
+        this(null);
+    }
+
+    /**
+     * @param group 多个串口共用的线程资源，为null时使用自己的线程
+     */
+    public Rs485SerialWorker(@Nullable SerialWorkerGroup group) {
+        super(group);
+    }
+
     @Override
     public void syncSendOnly(@NonNull S sendData) throws Exception {
         throw new RuntimeException(NO_SUPPORT_RS485);
@@ -35,4 +46,12 @@ public abstract class Rs485SerialWorker<S extends SendData, R extends RecvData>
         throw new RuntimeException(NO_SUPPORT_RS485);
         //super.sendOnly(sendData, callback);
     }
+
+    /**
+     * 半双工，批量发送时也要一问一答
+     */
+    @Override
+    protected int getBatchChunkSize() {
+        return 1;
+    }
 }
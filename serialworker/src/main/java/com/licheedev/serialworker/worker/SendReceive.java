@@ -2,9 +2,11 @@ package com.licheedev.serialworker.worker;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import com.licheedev.serialworker.core.BatchResult;
 import com.licheedev.serialworker.core.Callback;
 import com.licheedev.serialworker.core.RecvData;
 import com.licheedev.serialworker.core.SendData;
+import java.util.List;
 
 /**
  * 收发数据操作
@@ -105,4 +107,25 @@ interface SendReceive<S extends SendData, R extends RecvData> {
      * @param callback
      */
     void sendOnly(@NonNull S sendData, @Nullable Callback<Void> callback);
+
+    /**
+     * 同步批量发送并接收数据，会阻塞调用的线程；
+     * 所有命令编码到同一个缓存中一次写入串口，再按发送顺序匹配各自的响应。
+     * 单个命令的超时或出错不影响其他命令，结果与发送的数据一一对应
+     *
+     * @param sendDataList 发送的数据
+     * @return 每个命令的结果
+     * @throws Exception
+     */
+    @NonNull
+    List<BatchResult<R>> syncSendBatch(@NonNull List<S> sendDataList) throws Exception;
+
+    /**
+     * 异步批量发送并接收数据，参考{@link #syncSendBatch(List)}
+     *
+     * @param sendDataList 发送的数据
+     * @param callback 回调
+     */
+    void sendBatch(@NonNull List<S> sendDataList,
+        @Nullable Callback<List<BatchResult<R>>> callback);
 }
@@ -1,8 +1,10 @@
 package com.licheedev.serialworker.worker;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import com.licheedev.serialworker.core.Callback;
 import com.licheedev.serialworker.core.RecvData;
+import com.licheedev.serialworker.core.ResponseFuture;
 import com.licheedev.serialworker.core.SendData;
 
 /**
@@ -54,5 +56,16 @@ interface SendReceiveX<S extends SendData, R extends RecvData> {
      */
     <T extends R> void sendX(S sendData, Class<T> cast, @Nullable Callback<T> callback);
 
+    /**
+     * 异步发送数据，不会阻塞调用的线程，等待响应时也不占用任何线程。
+     * 发送数据，在单一线程池中执行；收到响应时，直接在读线程中完成；超时由共用的定时器处理
+     * （超时从数据发送完成时开始计算，优先使用{@link SendData#timeout()}，小于等于0表示不超时，一直等到响应或取消）。
+     *
+     * @param sendData 发送的数据
+     * @return 响应结果，超时会以{@link java.util.concurrent.TimeoutException}失败
+     */
+    @NonNull
+    ResponseFuture<R> sendAsync(@NonNull S sendData);
+
 
 }
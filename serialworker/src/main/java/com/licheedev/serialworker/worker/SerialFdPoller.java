@@ -0,0 +1,116 @@
+package com.licheedev.serialworker.worker;
+
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.system.StructPollfd;
+import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
+import java.io.FileDescriptor;
+import java.io.IOException;
+
+/**
+ * 使用poll(2)在内核中等待串口文件描述符可读，不占用CPU；
+ * 通过一个管道来唤醒等待中的线程（关闭读线程时使用）。需要API 21+
+ */
+@RequiresApi(21)
+class SerialFdPoller {
+
+    private static final byte[] WAKE_BYTES = { 1 };
+
+    private final FileDescriptor mReadPipe;
+    private final FileDescriptor mWritePipe;
+    private final StructPollfd mSerialPollFd;
+    private final StructPollfd mWakePollFd;
+    private final StructPollfd[] mPollFds;
+    private final byte[] mDrainBuffer = new byte[64];
+    private boolean mClosed;
+
+    SerialFdPoller(@NonNull FileDescriptor serialFd) throws ErrnoException {
+        FileDescriptor[] pipe = Os.pipe();
+        mReadPipe = pipe[0];
+        mWritePipe = pipe[1];
+
+        mSerialPollFd = new StructPollfd();
+        mSerialPollFd.fd = serialFd;
+        mSerialPollFd.events = (short) OsConstants.POLLIN;
+
+        mWakePollFd = new StructPollfd();
+        mWakePollFd.fd = mReadPipe;
+        mWakePollFd.events = (short) OsConstants.POLLIN;
+
+        mPollFds = new StructPollfd[] { mSerialPollFd, mWakePollFd };
+    }
+
+    /**
+     * 等待串口可读
+     *
+     * @param timeoutMillis 超时，毫秒；小于0表示一直等待
+     * @return true表示串口有数据可读；false表示超时或被唤醒
+     * @throws IOException 串口出错（如设备被拔出）
+     */
+    boolean await(int timeoutMillis) throws IOException {
+        mSerialPollFd.revents = 0;
+        mWakePollFd.revents = 0;
+        try {
+            Os.poll(mPollFds, timeoutMillis);
+        } catch (ErrnoException e) {
+            if (e.errno == OsConstants.EINTR) {
+                return false;
+            }
+            throw new IOException("poll serial fd failed", e);
+        }
+
+        if (mWakePollFd.revents != 0) {
+            drainWakePipe();
+        }
+
+        int revents = mSerialPollFd.revents;
+        if ((revents & (OsConstants.POLLERR | OsConstants.POLLHUP | OsConstants.POLLNVAL)) != 0) {
+            throw new IOException("SerialPort fd error, revents=" + revents);
+        }
+        return (revents & OsConstants.POLLIN) != 0;
+    }
+
+    /**
+     * 唤醒正在{@link #await(int)}的线程
+     */
+    synchronized void wakeup() {
+        if (mClosed) {
+            return;
+        }
+        try {
+            Os.write(mWritePipe, WAKE_BYTES, 0, WAKE_BYTES.length);
+        } catch (Exception e) {
+            //e.printStackTrace();
+        }
+    }
+
+    /**
+     * 关闭唤醒用的管道，不会关闭串口
+     */
+    synchronized void close() {
+        if (mClosed) {
+            return;
+        }
+        mClosed = true;
+        try {
+            Os.close(mWritePipe);
+        } catch (Exception e) {
+            //e.printStackTrace();
+        }
+        try {
+            Os.close(mReadPipe);
+        } catch (Exception e) {
+            //e.printStackTrace();
+        }
+    }
+
+    private void drainWakePipe() {
+        try {
+            Os.read(mReadPipe, mDrainBuffer, 0, mDrainBuffer.length);
+        } catch (Exception e) {
+            //e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,412 @@
+package com.licheedev.serialworker.worker;
+
+import android.os.Build;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.system.StructPollfd;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+import com.licheedev.myutils.LogPlus;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 多个串口共用的读线程，使用poll(2)同时等待所有已注册串口的文件描述符，
+ * 哪个串口有数据就读取哪个，并交给对应SerialWorker的{@link com.licheedev.serialworker.core.DataReceiver}处理。
+ * 线程数和空闲时的唤醒次数不会随串口数量增加；串口很多时也可以创建几个实例分摊。
+ * 需要API 21+，不支持时SerialWorker会使用自己的读线程。
+ * <p>
+ * 所有串口的数据都在同一线程中处理，{@code onReceiveData()}、{@code handleValidData()}等不要执行耗时操作，
+ * 否则会拖慢其他串口。
+ * 某个串口读取出错时，会取消注册并通知对应的SerialWorker（默认关闭串口，参考{@link BaseSerialWorker#onReactorError(Exception)}）。
+ *
+ * @see BaseSerialWorker#setReactor(SerialReactor)
+ */
+public class SerialReactor {
+
+    /** 串口可读 */
+    static final int EVENT_READABLE = 1;
+    /** 串口的文件描述符出错 */
+    static final int EVENT_ERROR = 2;
+
+    /**
+     * 注册到SerialReactor的串口
+     */
+    interface Channel {
+
+        /**
+         * 串口的文件描述符
+         */
+        @NonNull
+        FileDescriptor getFd();
+
+        /**
+         * 串口可读（在SerialReactor线程中调用）
+         *
+         * @param buffer 共用的读缓存
+         */
+        void onReadable(@NonNull byte[] buffer) throws IOException;
+
+        /**
+         * 串口出错（读取失败、文件描述符出错或poll失败），调用前已取消注册（在SerialReactor线程中调用）
+         */
+        void onError(@NonNull Exception e);
+    }
+
+    /**
+     * 同时等待多个串口，默认使用poll(2)，参考{@link OsPoller}
+     */
+    interface Poller {
+
+        /**
+         * 准备等待（创建唤醒用的管道等），在启动线程前调用
+         *
+         * @return 是否成功
+         */
+        boolean open();
+
+        /**
+         * 等待任一串口可读、出错，或被{@link #wakeup()}唤醒
+         *
+         * @param channels 已注册的串口，变化时会传入新的数组
+         * @param events 输出每个串口的事件（{@link #EVENT_READABLE}、{@link #EVENT_ERROR}），下标同channels，
+         * 调用前已清零；被唤醒或被信号中断时可以都为0
+         * @throws IOException 等待失败，所有串口都不会再收到数据
+         */
+        void poll(@NonNull Channel[] channels, @NonNull int[] events) throws IOException;
+
+        /**
+         * 唤醒等待中的{@link #poll(Channel[], int[])}，可以在任意线程调用
+         */
+        void wakeup();
+
+        /**
+         * 线程结束时调用
+         */
+        void close();
+    }
+
+    private final String mName;
+    private final Poller mPoller;
+    private final byte[] mRecvBuffer = new byte[2048];
+    private final List<Channel> mChannels = new ArrayList<>();
+    private Thread mThread;
+    private boolean mOpened;
+    private boolean mChanged; // 注册的串口有变化，需要重建pollfd
+    private long mGeneration; // 每重建一次pollfd加1
+    private boolean mShutdown;
+
+    /**
+     * @param name 线程名
+     */
+    public SerialReactor(@NonNull String name) {
+        this(name, isSupported() ? new OsPoller() : null);
+    }
+
+    /**
+     * @param name 线程名
+     * @param poller 为null表示不支持
+     */
+    SerialReactor(@NonNull String name, @Nullable Poller poller) {
+        mName = name;
+        mPoller = poller;
+    }
+
+    /**
+     * 当前系统是否支持
+     *
+     * @return
+     */
+    public static boolean isSupported() {
+        return Build.VERSION.SDK_INT >= 21;
+    }
+
+    /**
+     * 注册串口，首次注册时启动线程
+     *
+     * @return 是否注册成功，不支持或已关闭时返回false
+     */
+    synchronized boolean register(@NonNull Channel channel) {
+        if (mShutdown || mPoller == null) {
+            return false;
+        }
+        if (mThread == null && !start()) {
+            return false;
+        }
+        if (!mChannels.contains(channel)) {
+            mChannels.add(channel);
+            markChanged();
+        }
+        return true;
+    }
+
+    /**
+     * 取消注册，返回后SerialReactor不会再poll这个串口的文件描述符（可以安全关闭串口）
+     */
+    void unregister(@NonNull Channel channel) {
+        synchronized (this) {
+            if (!mChannels.remove(channel)) {
+                return;
+            }
+            markChanged();
+            if (Thread.currentThread() == mThread || mShutdown) {
+                return;
+            }
+            // 等待线程重建pollfd
+            long generation = mGeneration;
+            long deadline = System.currentTimeMillis() + 1000L;
+            while (mGeneration == generation && mThread != null) {
+                long wait = deadline - System.currentTimeMillis();
+                if (wait <= 0) {
+                    break;
+                }
+                try {
+                    wait(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * 关闭线程，已注册的串口不会再收到数据
+     */
+    public synchronized void shutdown() {
+        mShutdown = true;
+        mChannels.clear();
+        markChanged();
+    }
+
+    /**
+     * 已注册的串口数量
+     *
+     * @return
+     */
+    public synchronized int getChannelCount() {
+        return mChannels.size();
+    }
+
+    private boolean start() {
+        if (!mPoller.open()) {
+            LogPlus.w(BaseSerialWorker.TAG, String.format("SerialReactor(%s) start failed", mName));
+            return false;
+        }
+        mOpened = true;
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loop();
+            }
+        }, mName);
+        mThread.start();
+        return true;
+    }
+
+    private void markChanged() {
+        mChanged = true;
+        if (mOpened) {
+            mPoller.wakeup();
+        }
+    }
+
+    private void loop() {
+
+        LogPlus.i(BaseSerialWorker.TAG, String.format("Start SerialReactor(%s)", mName));
+
+        Channel[] channels = new Channel[0];
+        int[] events = new int[0];
+        IOException pollError = null;
+
+        while (true) {
+            synchronized (this) {
+                if (mShutdown) {
+                    break;
+                }
+                if (mChanged) {
+                    mChanged = false;
+                    // 重建pollfd
+                    channels = mChannels.toArray(new Channel[0]);
+                    events = new int[channels.length];
+                    mGeneration++;
+                    notifyAll();
+                }
+            }
+
+            for (int i = 0; i < events.length; i++) {
+                events[i] = 0;
+            }
+
+            try {
+                mPoller.poll(channels, events);
+            } catch (IOException e) {
+                LogPlus.w(BaseSerialWorker.TAG,
+                    String.format("SerialReactor(%s) poll failed", mName), e);
+                pollError = e;
+                break;
+            }
+
+            for (int i = 0; i < channels.length; i++) {
+                int event = events[i];
+                if (event == 0) {
+                    continue;
+                }
+                Channel channel = channels[i];
+                if ((event & EVENT_ERROR) != 0) {
+                    unregister(channel);
+                    notifyError(channel, new IOException("SerialPort fd error"));
+                    continue;
+                }
+                try {
+                    channel.onReadable(mRecvBuffer);
+                } catch (Exception e) {
+                    // 不取消注册的话，数据一直可读会不停地出错
+                    unregister(channel);
+                    notifyError(channel, e);
+                }
+            }
+        }
+
+        Channel[] remaining;
+        synchronized (this) {
+            mShutdown = true;
+            remaining = mChannels.toArray(new Channel[0]);
+            mChannels.clear();
+            mThread = null;
+            notifyAll();
+            mOpened = false;
+            mPoller.close();
+        }
+
+        if (pollError != null) {
+            // poll失败，所有串口都不会再收到数据了
+            for (Channel channel : remaining) {
+                notifyError(channel, pollError);
+            }
+        }
+
+        LogPlus.i(BaseSerialWorker.TAG, String.format("SerialReactor(%s) Finished", mName));
+    }
+
+    private static void notifyError(Channel channel, Exception e) {
+        try {
+            channel.onError(e);
+        } catch (Exception ex) {
+            LogPlus.w(BaseSerialWorker.TAG, "SerialReactor channel onError exception occurred",
+                ex);
+        }
+    }
+
+    /**
+     * 使用poll(2)等待，通过一个管道来唤醒
+     */
+    @RequiresApi(21)
+    static class OsPoller implements Poller {
+
+        private static final byte[] WAKE_BYTES = { 1 };
+        private static final int ERROR_EVENTS =
+            OsConstants.POLLERR | OsConstants.POLLHUP | OsConstants.POLLNVAL;
+
+        private final byte[] mDrainBuffer = new byte[64];
+        private volatile FileDescriptor mWritePipe;
+        private FileDescriptor mReadPipe;
+        private StructPollfd mWakePollFd;
+        private StructPollfd[] mPollFds;
+        private Channel[] mPollChannels; // mPollFds对应的串口
+
+        @Override
+        public boolean open() {
+            try {
+                FileDescriptor[] pipe = Os.pipe();
+                mReadPipe = pipe[0];
+                mWritePipe = pipe[1];
+            } catch (ErrnoException e) {
+                LogPlus.w(BaseSerialWorker.TAG, "SerialReactor create pipe failed", e);
+                return false;
+            }
+            mWakePollFd = new StructPollfd();
+            mWakePollFd.fd = mReadPipe;
+            mWakePollFd.events = (short) OsConstants.POLLIN;
+            return true;
+        }
+
+        @Override
+        public void poll(@NonNull Channel[] channels, @NonNull int[] events) throws IOException {
+            if (channels != mPollChannels) {
+                // 下标0是唤醒用的管道
+                mPollChannels = channels;
+                mPollFds = new StructPollfd[channels.length + 1];
+                mPollFds[0] = mWakePollFd;
+                for (int i = 0; i < channels.length; i++) {
+                    StructPollfd pollFd = new StructPollfd();
+                    pollFd.fd = channels[i].getFd();
+                    pollFd.events = (short) OsConstants.POLLIN;
+                    mPollFds[i + 1] = pollFd;
+                }
+            }
+            for (StructPollfd pollFd : mPollFds) {
+                pollFd.revents = 0;
+            }
+
+            try {
+                Os.poll(mPollFds, -1);
+            } catch (ErrnoException e) {
+                if (e.errno == OsConstants.EINTR) {
+                    return;
+                }
+                throw new IOException("poll failed", e);
+            }
+
+            if (mWakePollFd.revents != 0) {
+                try {
+                    Os.read(mReadPipe, mDrainBuffer, 0, mDrainBuffer.length);
+                } catch (Exception e) {
+                    //e.printStackTrace();
+                }
+                // 注册有变化，先重建再处理
+                return;
+            }
+
+            for (int i = 0; i < channels.length; i++) {
+                int revents = mPollFds[i + 1].revents;
+                if ((revents & ERROR_EVENTS) != 0) {
+                    events[i] = EVENT_ERROR;
+                } else if (revents != 0) {
+                    events[i] = EVENT_READABLE;
+                }
+            }
+        }
+
+        @Override
+        public void wakeup() {
+            FileDescriptor writePipe = mWritePipe;
+            if (writePipe != null) {
+                try {
+                    Os.write(writePipe, WAKE_BYTES, 0, WAKE_BYTES.length);
+                } catch (Exception e) {
+                    //e.printStackTrace();
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            FileDescriptor writePipe = mWritePipe;
+            mWritePipe = null;
+            try {
+                Os.close(writePipe);
+                Os.close(mReadPipe);
+            } catch (Exception e) {
+                //e.printStackTrace();
+            }
+            mReadPipe = null;
+            mPollFds = null;
+            mPollChannels = null;
+        }
+    }
+}
@@ -0,0 +1,577 @@
+package com.licheedev.serialworker.worker;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.licheedev.myutils.LogPlus;
+import com.licheedev.serialworker.core.Prioritized;
+import com.licheedev.serialworker.core.SerialOverloadException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * 串口任务执行器，同一个串口的任务严格按提交顺序、一个接一个地执行；
+ * 任务实际运行在另一个线程池上（独占的单一线程，或{@link SerialWorkerGroup}中多个串口共用的线程池）。
+ * 开启优先级调度后（{@link #setPriorityScheduling(boolean, long)}），按优先级和排队时间决定执行顺序
+ */
+public class SerialTaskExecutor extends AbstractExecutorService {
+
+    /** 使用共用线程池时，每轮最多连续执行的任务数，之后重新排队，让其他串口也有机会执行 */
+    private static final int SHARED_BATCH_SIZE = 8;
+
+    private final Executor mBackingExecutor;
+    private final boolean mOwnsBackingExecutor;
+    private final int mBatchSize;
+    private final ArrayDeque<Runnable> mTasks = new ArrayDeque<>();
+    private PriorityQueue<PriorityTask> mPriorityTasks; // 开启优先级调度时使用，否则为null
+    private long mAgingNanos;
+    private long mSequence;
+    private final HashMap<Integer, QueueWaitStats> mWaitStats = new HashMap<>();
+    private int mCapacity; // 排队任务数上限，0表示不限制
+    private long mRejectedCount; // 因队列已满被拒绝的任务数
+    private final Runnable mDrainTask = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    private boolean mScheduled; // 已提交到线程池，等待执行或正在执行
+    private boolean mShutdown;
+    private volatile Thread mRunningThread; // 正在执行任务的线程
+    private volatile Lock mTaskLock; // 执行每个任务时持有的锁，可以为null
+    private volatile Runnable mAfterTask; // 每个任务执行后（仍持有mTaskLock）执行，可以为null
+
+    /**
+     * 使用独占的单一线程
+     *
+     * @param threadName 线程名
+     */
+    SerialTaskExecutor(@NonNull String threadName) {
+        this(Executors.newSingleThreadExecutor(
+            new NamedThreadFactory(threadName)), true, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 使用共用的线程池
+     *
+     * @param sharedExecutor 共用的线程池
+     */
+    SerialTaskExecutor(@NonNull Executor sharedExecutor) {
+        this(sharedExecutor, false, SHARED_BATCH_SIZE);
+    }
+
+    private SerialTaskExecutor(Executor backingExecutor, boolean ownsBackingExecutor,
+        int batchSize) {
+        mBackingExecutor = backingExecutor;
+        mOwnsBackingExecutor = ownsBackingExecutor;
+        mBatchSize = batchSize;
+    }
+
+    @Override
+    public void execute(@NonNull Runnable command) {
+        execute(command, Prioritized.PRIORITY_NORMAL);
+    }
+
+    /**
+     * 按优先级执行任务，没有开启优先级调度时跟{@link #execute(Runnable)}一样按顺序执行
+     *
+     * @param command 任务
+     * @param priority 优先级，数值越大越优先，参考{@link Prioritized}
+     */
+    public void execute(@NonNull Runnable command, int priority) {
+        synchronized (this) {
+            if (mShutdown) {
+                throw new RejectedExecutionException("SerialTaskExecutor has been shut down");
+            }
+            if (mCapacity > 0 && getQueueSize() >= mCapacity) {
+                mRejectedCount++;
+                throw new SerialOverloadException(
+                    "SerialTaskExecutor queue is full, capacity=" + mCapacity);
+            }
+            if (mPriorityTasks != null) {
+                mPriorityTasks.offer(new PriorityTask(command, priority, System.nanoTime(),
+                    mAgingNanos, mSequence++));
+            } else {
+                mTasks.offer(command);
+            }
+            if (mScheduled) {
+                return;
+            }
+            mScheduled = true;
+        }
+        schedule(command);
+    }
+
+    /**
+     * 设置执行每个任务时持有的锁，用于跟不在此执行器中的操作互斥，参考{@link BaseSerialWorker#setDirectSync(boolean)}
+     *
+     * @param lock 为null时不加锁
+     */
+    void setTaskLock(Lock lock) {
+        mTaskLock = lock;
+    }
+
+    /**
+     * 设置每个任务执行后要执行的操作，在串口线程中执行，仍持有{@link #setTaskLock(Lock)}设置的锁
+     *
+     * @param afterTask 为null时不执行
+     */
+    void setAfterTask(Runnable afterTask) {
+        mAfterTask = afterTask;
+    }
+
+    /**
+     * 当前线程是否正在执行此执行器的任务
+     *
+     * @return
+     */
+    public boolean isInSerialThread() {
+        return mRunningThread == Thread.currentThread();
+    }
+
+    /**
+     * 排队中的任务数（不包括正在执行的）
+     *
+     * @return
+     */
+    public synchronized int getQueueSize() {
+        return mTasks.size() + (mPriorityTasks != null ? mPriorityTasks.size() : 0);
+    }
+
+    /**
+     * 设置排队任务数上限，超出时{@link #execute(Runnable)}抛出{@link SerialOverloadException}
+     *
+     * @param capacity 上限，0表示不限制（默认）
+     */
+    public synchronized void setCapacity(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity must not be negative: " + capacity);
+        }
+        mCapacity = capacity;
+    }
+
+    public synchronized int getCapacity() {
+        return mCapacity;
+    }
+
+    /**
+     * 因队列已满被拒绝的任务数
+     *
+     * @return
+     */
+    public synchronized long getRejectedCount() {
+        return mRejectedCount;
+    }
+
+    /**
+     * 开启或关闭优先级调度。开启后，优先级每高一级，相当于提前agingMillis排队，
+     * 即优先级高的任务会插到最近agingMillis*级差内排队的低优先级任务前面，
+     * 但排队足够久的低优先级任务不会被一直插队（老化），不会饿死；同一优先级的仍按提交顺序执行
+     *
+     * @param enabled 是否开启
+     * @param agingMillis 每级优先级相当的排队时间，毫秒，开启时必须大于0，关闭时忽略
+     */
+    public synchronized void setPriorityScheduling(boolean enabled, long agingMillis) {
+        if (enabled) {
+            if (agingMillis <= 0) {
+                throw new IllegalArgumentException(
+                    "agingMillis must be positive: " + agingMillis);
+            }
+            mAgingNanos = TimeUnit.MILLISECONDS.toNanos(agingMillis);
+        }
+        if (enabled && mPriorityTasks == null) {
+            mPriorityTasks = new PriorityQueue<>();
+            long now = System.nanoTime();
+            Runnable task;
+            while ((task = mTasks.poll()) != null) {
+                mPriorityTasks.offer(new PriorityTask(task, Prioritized.PRIORITY_NORMAL, now,
+                    mAgingNanos, mSequence++));
+            }
+        } else if (!enabled && mPriorityTasks != null) {
+            PriorityTask task;
+            while ((task = mPriorityTasks.poll()) != null) {
+                mTasks.offer(task.mTask);
+            }
+            mPriorityTasks = null;
+        }
+    }
+
+    public synchronized boolean isPriorityScheduling() {
+        return mPriorityTasks != null;
+    }
+
+    /**
+     * 某个优先级的任务的排队时间统计（只统计开启优先级调度后执行的任务）
+     *
+     * @param priority 优先级
+     * @return 统计快照，没有执行过此优先级的任务时为null
+     */
+    @Nullable
+    public synchronized QueueWaitStats getQueueWaitStats(int priority) {
+        QueueWaitStats stats = mWaitStats.get(priority);
+        return stats != null ? stats.copy() : null;
+    }
+
+    /**
+     * 清空排队时间统计
+     */
+    public synchronized void resetQueueWaitStats() {
+        mWaitStats.clear();
+    }
+
+    /**
+     * 取出下一个任务，需要持有锁
+     */
+    private Runnable pollTask() {
+        if (mPriorityTasks == null) {
+            return mTasks.poll();
+        }
+        PriorityTask priorityTask = mPriorityTasks.poll();
+        if (priorityTask == null) {
+            return null;
+        }
+        long wait = System.nanoTime() - priorityTask.mEnqueueNanos;
+        QueueWaitStats stats = mWaitStats.get(priorityTask.mPriority);
+        if (stats == null) {
+            stats = new QueueWaitStats();
+            mWaitStats.put(priorityTask.mPriority, stats);
+        }
+        stats.record(wait);
+        return priorityTask.mTask;
+    }
+
+    /**
+     * 取出所有排队中的任务，需要持有锁
+     */
+    private List<Runnable> drainTasks() {
+        List<Runnable> tasks = new ArrayList<>(mTasks);
+        mTasks.clear();
+        if (mPriorityTasks != null) {
+            PriorityTask task;
+            while ((task = mPriorityTasks.poll()) != null) {
+                tasks.add(task.mTask);
+            }
+        }
+        return tasks;
+    }
+
+    /**
+     * 提交到线程池执行
+     *
+     * @param command 调用{@link #execute(Runnable, int)}时提交的任务，线程池拒绝执行时由调用者处理，
+     * 其他被丢弃的任务在这里通知失败；为null时不抛出异常
+     */
+    private void schedule(@Nullable Runnable command) {
+        try {
+            mBackingExecutor.execute(mDrainTask);
+        } catch (RuntimeException e) {
+            // 线程池已关闭或拒绝执行，剩下的任务都没机会执行了
+            List<Runnable> dropped;
+            synchronized (this) {
+                mScheduled = false;
+                dropped = drainTasks();
+                notifyAll();
+            }
+            RejectedExecutionException rejected = e instanceof RejectedExecutionException
+                ? (RejectedExecutionException) e : new RejectedExecutionException(e);
+            for (Runnable task : dropped) {
+                if (task != command) {
+                    rejectTask(task, rejected);
+                }
+            }
+            if (command != null) {
+                throw rejected;
+            }
+        }
+    }
+
+    /**
+     * 通知被丢弃的任务执行失败
+     */
+    private static void rejectTask(Runnable task, RejectedExecutionException e) {
+        try {
+            if (task instanceof RejectableTask) {
+                ((RejectableTask) task).reject(e);
+            } else if (task instanceof Future) {
+                ((Future<?>) task).cancel(false);
+            } else {
+                LogPlus.w(BaseSerialWorker.TAG, "SerialTaskExecutor task dropped: " + task, e);
+            }
+        } catch (RuntimeException ex) {
+            LogPlus.w(BaseSerialWorker.TAG, "SerialTaskExecutor reject task exception occurred",
+                ex);
+        }
+    }
+
+    private void drain() {
+        boolean hasMore;
+        boolean completed = false;
+        mRunningThread = Thread.currentThread();
+        try {
+            hasMore = runBatch();
+            completed = true;
+        } finally {
+            mRunningThread = null;
+            if (!completed) {
+                // 任务抛出了Error，也要让剩下的任务重新排队，免得这个串口再也不能执行任务
+                reschedule();
+            }
+        }
+        if (hasMore) {
+            reschedule();
+        }
+    }
+
+    /**
+     * 连续执行最多mBatchSize个任务
+     *
+     * @return 是否还有任务没执行
+     */
+    private boolean runBatch() {
+        for (int i = 0; i < mBatchSize; i++) {
+            Runnable task;
+            synchronized (this) {
+                task = pollTask();
+                if (task == null) {
+                    mScheduled = false;
+                    notifyAll();
+                    return false;
+                }
+            }
+            runTask(task);
+        }
+        return true;
+    }
+
+    private void runTask(Runnable task) {
+        Lock lock = mTaskLock;
+        if (lock != null) {
+            lock.lock();
+        }
+        try {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                LogPlus.w(BaseSerialWorker.TAG, "SerialTaskExecutor task exception occurred", e);
+            }
+            Runnable afterTask = mAfterTask;
+            if (afterTask != null) {
+                try {
+                    afterTask.run();
+                } catch (RuntimeException e) {
+                    LogPlus.w(BaseSerialWorker.TAG, "SerialTaskExecutor task exception occurred",
+                        e);
+                }
+            }
+        } finally {
+            if (lock != null) {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 还有任务时重新排队，否则结束
+     */
+    private void reschedule() {
+        synchronized (this) {
+            if (getQueueSize() == 0) {
+                mScheduled = false;
+                notifyAll();
+                return;
+            }
+        }
+        schedule(null);
+    }
+
+    @Override
+    public void shutdown() {
+        synchronized (this) {
+            mShutdown = true;
+            notifyAll();
+        }
+        if (mOwnsBackingExecutor) {
+            ((ExecutorService) mBackingExecutor).shutdown();
+        }
+    }
+
+    @NonNull
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> tasks;
+        synchronized (this) {
+            mShutdown = true;
+            tasks = drainTasks();
+            notifyAll();
+        }
+        Thread thread = mRunningThread;
+        if (thread != null) {
+            thread.interrupt();
+        }
+        if (mOwnsBackingExecutor) {
+            ((ExecutorService) mBackingExecutor).shutdown();
+        }
+        return tasks;
+    }
+
+    @Override
+    public synchronized boolean isShutdown() {
+        return mShutdown;
+    }
+
+    @Override
+    public synchronized boolean isTerminated() {
+        return mShutdown && !mScheduled && getQueueSize() == 0;
+    }
+
+    @Override
+    public synchronized boolean awaitTermination(long timeout, @NonNull TimeUnit unit)
+        throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!isTerminated()) {
+            long waitNanos = deadline - System.nanoTime();
+            if (waitNanos <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, waitNanos);
+        }
+        return true;
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+        return new RejectableFutureTask<>(runnable, value);
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+        return new RejectableFutureTask<>(callable);
+    }
+
+    /**
+     * 线程池拒绝执行、任务被丢弃时，能通知调用者的任务
+     */
+    interface RejectableTask extends Runnable {
+
+        /**
+         * 任务被丢弃，不会再执行
+         *
+         * @param e 线程池拒绝执行的异常
+         */
+        void reject(@NonNull RejectedExecutionException e);
+    }
+
+    /**
+     * 被丢弃时以{@link RejectedExecutionException}失败的FutureTask
+     */
+    static final class RejectableFutureTask<T> extends FutureTask<T> implements RejectableTask {
+
+        RejectableFutureTask(Callable<T> callable) {
+            super(callable);
+        }
+
+        RejectableFutureTask(Runnable runnable, T result) {
+            super(runnable, result);
+        }
+
+        @Override
+        public void reject(@NonNull RejectedExecutionException e) {
+            setException(e);
+        }
+    }
+
+    /**
+     * 优先级调度中排队的任务，按“虚拟排队时间”排序：优先级每高一级，相当于提前agingNanos排队
+     */
+    private static final class PriorityTask implements Comparable<PriorityTask> {
+
+        final Runnable mTask;
+        final int mPriority;
+        final long mEnqueueNanos;
+        final long mKey;
+        final long mSeq;
+
+        PriorityTask(Runnable task, int priority, long enqueueNanos, long agingNanos, long seq) {
+            mTask = task;
+            mPriority = priority;
+            mEnqueueNanos = enqueueNanos;
+            mKey = enqueueNanos - priority * agingNanos;
+            mSeq = seq;
+        }
+
+        @Override
+        public int compareTo(@NonNull PriorityTask o) {
+            long diff = mKey - o.mKey; // nanoTime可能溢出，用差值比较
+            if (diff != 0) {
+                return diff < 0 ? -1 : 1;
+            }
+            return mSeq < o.mSeq ? -1 : (mSeq == o.mSeq ? 0 : 1);
+        }
+    }
+
+    /**
+     * 排队时间统计
+     */
+    public static final class QueueWaitStats {
+
+        private long mCount;
+        private long mTotalNanos;
+        private long mMaxNanos;
+
+        void record(long waitNanos) {
+            mCount++;
+            mTotalNanos += waitNanos;
+            if (waitNanos > mMaxNanos) {
+                mMaxNanos = waitNanos;
+            }
+        }
+
+        QueueWaitStats copy() {
+            QueueWaitStats stats = new QueueWaitStats();
+            stats.mCount = mCount;
+            stats.mTotalNanos = mTotalNanos;
+            stats.mMaxNanos = mMaxNanos;
+            return stats;
+        }
+
+        /** 执行的任务数 */
+        public long getCount() {
+            return mCount;
+        }
+
+        /** 总排队时间，纳秒 */
+        public long getTotalNanos() {
+            return mTotalNanos;
+        }
+
+        /** 平均排队时间，纳秒 */
+        public long getAverageNanos() {
+            return mCount == 0 ? 0 : mTotalNanos / mCount;
+        }
+
+        /** 最长排队时间，纳秒 */
+        public long getMaxNanos() {
+            return mMaxNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "QueueWaitStats{count=" + mCount + ", avg=" + getAverageNanos() + "ns, max="
+                + mMaxNanos + "ns}";
+        }
+    }
+}
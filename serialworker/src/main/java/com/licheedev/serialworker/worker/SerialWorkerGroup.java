@@ -0,0 +1,303 @@
+package com.licheedev.serialworker.worker;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多个SerialWorker共用的线程资源，线程数不随串口数量增加：
+ * <ul>
+ * <li>串口线程池：所有串口的收发任务共用，同一个串口的任务仍然严格按顺序执行；
+ * 线程数上限不少于使用此group的串口数，某些串口一直等到超时（比如设备不应答）也不会卡住其他串口，
+ * 空闲的线程会回收；</li>
+ * <li>接收线程池：{@link Rs232SerialWorkerX}中带“X”的方法等待响应时使用，线程数和排队数都有上限；</li>
+ * <li>定时器：所有异步请求的超时共用一个时间轮，参考{@link HashedWheelTimer}；</li>
+ * <li>共用的读线程（可选），参考{@link SerialReactor}。</li>
+ * </ul>
+ * <pre>
+ * SerialWorkerGroup group = SerialWorkerGroup.newBuilder()
+ *     .serialThreads(2)
+ *     .receiveThreads(4)
+ *     .receiveQueueCapacity(64)
+ *     .build();
+ * MySerialWorker worker = new MySerialWorker(group); // 子类调用super(group)
+ * </pre>
+ */
+public class SerialWorkerGroup {
+
+    static final int DEFAULT_RECEIVE_THREADS = 4;
+    static final int DEFAULT_RECEIVE_QUEUE_CAPACITY = 256;
+    static final long DEFAULT_KEEP_ALIVE_MILLIS = 60_000L;
+
+    /** 没有使用SerialWorkerGroup的SerialWorker共用的定时器 */
+    private static HashedWheelTimer sDefaultTimer;
+
+    private final ThreadPoolExecutor mSerialPool;
+    private final ThreadPoolExecutor mReceivePool;
+    private final HashedWheelTimer mTimer;
+    private final SerialReactor mReactor;
+    private final int mMinSerialThreads;
+    private int mPortCount; // 使用此group的串口数
+
+    private SerialWorkerGroup(Builder builder) {
+        mMinSerialThreads = builder.mSerialThreads;
+        // 每个串口最多只有一个任务在排队，不需要限制排队数
+        mSerialPool = new ThreadPoolExecutor(builder.mSerialThreads, builder.mSerialThreads,
+            builder.mKeepAliveMillis, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+            new NamedThreadFactory(builder.mName + "-serial"));
+        mSerialPool.allowCoreThreadTimeOut(true);
+
+        mReceivePool = newReceivePool(builder.mName + "-receive", builder.mReceiveThreads,
+            builder.mReceiveQueueCapacity, builder.mKeepAliveMillis, builder.mRejectionPolicy);
+
+        mTimer = new HashedWheelTimer(builder.mName + "-timer", builder.mTimerTickMillis,
+            TimeUnit.MILLISECONDS, 512);
+
+        mReactor = builder.mSharedReader ? new SerialReactor(builder.mName + "-reader") : null;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * 新建接收线程池，线程数和排队数都有上限，空闲的线程会回收
+     */
+    @NonNull
+    static ThreadPoolExecutor newReceivePool(@NonNull String name, int threads, int queueCapacity,
+        long keepAliveMillis, @NonNull RejectedExecutionHandler policy) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, keepAliveMillis,
+            TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(queueCapacity),
+            new NamedThreadFactory(name), policy);
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * 新建接收线程池，使用{@link Builder}的默认值，没有使用SerialWorkerGroup的{@link Rs232SerialWorkerX}使用
+     */
+    @NonNull
+    static ThreadPoolExecutor newDefaultReceivePool(@NonNull String name) {
+        return newReceivePool(name, DEFAULT_RECEIVE_THREADS, DEFAULT_RECEIVE_QUEUE_CAPACITY,
+            DEFAULT_KEEP_ALIVE_MILLIS, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * 新建一个串口的任务执行器，运行在共用的串口线程池上
+     *
+     * @return
+     */
+    @NonNull
+    synchronized SerialTaskExecutor newSerialExecutor() {
+        mPortCount++;
+        resizeSerialPool();
+        return new SerialTaskExecutor(mSerialPool);
+    }
+
+    /**
+     * 串口不再使用此group（SerialWorker释放时调用）
+     */
+    synchronized void releaseSerialExecutor() {
+        if (mPortCount > 0) {
+            mPortCount--;
+            resizeSerialPool();
+        }
+    }
+
+    /**
+     * 串口线程池的线程数上限不少于串口数：同步发送等待响应时会一直占用一个线程，
+     * 线程数少于串口数的话，几个不应答的串口就能让其他串口的任务都排队等着
+     */
+    private void resizeSerialPool() {
+        int threads = Math.max(mMinSerialThreads, mPortCount);
+        if (threads == mSerialPool.getMaximumPoolSize()) {
+            return;
+        }
+        // 先调大上限再调大核心数，先调小核心数再调小上限，保证核心数不超过上限
+        if (threads > mSerialPool.getMaximumPoolSize()) {
+            mSerialPool.setMaximumPoolSize(threads);
+            mSerialPool.setCorePoolSize(threads);
+        } else {
+            mSerialPool.setCorePoolSize(threads);
+            mSerialPool.setMaximumPoolSize(threads);
+        }
+    }
+
+    /**
+     * 共用的接收线程池
+     *
+     * @return
+     */
+    @NonNull
+    ExecutorService getReceiveExecutor() {
+        return mReceivePool;
+    }
+
+    /**
+     * 共用的定时器
+     *
+     * @return
+     */
+    @NonNull
+    public HashedWheelTimer getTimer() {
+        return mTimer;
+    }
+
+    /**
+     * 没有使用SerialWorkerGroup的SerialWorker共用的定时器
+     *
+     * @return
+     */
+    @NonNull
+    static synchronized HashedWheelTimer getDefaultTimer() {
+        if (sDefaultTimer == null) {
+            sDefaultTimer = new HashedWheelTimer(BaseSerialWorker.TAG + "-timer");
+        }
+        return sDefaultTimer;
+    }
+
+    /**
+     * 共用的读线程
+     *
+     * @return 没有开启时为null
+     */
+    @Nullable
+    public SerialReactor getReactor() {
+        return mReactor;
+    }
+
+    /**
+     * 串口线程池当前的线程数
+     *
+     * @return
+     */
+    public int getSerialPoolSize() {
+        return mSerialPool.getPoolSize();
+    }
+
+    /**
+     * 接收线程池当前的线程数
+     *
+     * @return
+     */
+    public int getReceivePoolSize() {
+        return mReceivePool.getPoolSize();
+    }
+
+    /**
+     * 接收线程池中排队的任务数
+     *
+     * @return
+     */
+    public int getReceiveQueueSize() {
+        return mReceivePool.getQueue().size();
+    }
+
+    /**
+     * 关闭所有线程，调用后使用此group的SerialWorker都不能再收发数据
+     */
+    public void shutdown() {
+        mSerialPool.shutdown();
+        mReceivePool.shutdown();
+        mTimer.stop();
+        if (mReactor != null) {
+            mReactor.shutdown();
+        }
+    }
+
+    public static class Builder {
+
+        private String mName = "SerialWorkerGroup";
+        private int mSerialThreads =
+            Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        private int mReceiveThreads = DEFAULT_RECEIVE_THREADS;
+        private int mReceiveQueueCapacity = DEFAULT_RECEIVE_QUEUE_CAPACITY;
+        private long mKeepAliveMillis = DEFAULT_KEEP_ALIVE_MILLIS;
+        private RejectedExecutionHandler mRejectionPolicy = new ThreadPoolExecutor.AbortPolicy();
+        private boolean mSharedReader = false;
+        private long mTimerTickMillis = 1;
+
+        private Builder() {
+        }
+
+        /**
+         * 线程名前缀
+         */
+        public Builder name(@NonNull String name) {
+            mName = name;
+            return this;
+        }
+
+        /**
+         * 串口线程池的最少线程数上限，默认为CPU核心数，最少2，最多4；
+         * 使用此group的串口更多时，线程数上限跟着增加到串口数
+         */
+        public Builder serialThreads(int threads) {
+            mSerialThreads = threads;
+            return this;
+        }
+
+        /**
+         * 接收线程池的线程数，默认4；也是同时等待响应的“X”请求数量上限
+         */
+        public Builder receiveThreads(int threads) {
+            mReceiveThreads = threads;
+            return this;
+        }
+
+        /**
+         * 接收线程池的排队数上限，默认256，超出时交给{@link #rejectionPolicy(RejectedExecutionHandler)}处理
+         */
+        public Builder receiveQueueCapacity(int capacity) {
+            mReceiveQueueCapacity = capacity;
+            return this;
+        }
+
+        /**
+         * 空闲线程的存活时间，默认60秒
+         */
+        public Builder keepAlive(long time, @NonNull TimeUnit unit) {
+            mKeepAliveMillis = unit.toMillis(time);
+            return this;
+        }
+
+        /**
+         * 接收线程池满时的处理策略，默认{@link ThreadPoolExecutor.AbortPolicy}，
+         * 即抛出{@link java.util.concurrent.RejectedExecutionException}（异步方法会回调onFailure）；
+         * 也可以使用{@link ThreadPoolExecutor.CallerRunsPolicy}，在调用的线程中执行
+         */
+        public Builder rejectionPolicy(@NonNull RejectedExecutionHandler policy) {
+            mRejectionPolicy = policy;
+            return this;
+        }
+
+        /**
+         * 超时定时器的精度，毫秒，默认1毫秒
+         */
+        public Builder timerTick(long millis) {
+            mTimerTickMillis = millis;
+            return this;
+        }
+
+        /**
+         * 是否使用共用的读线程，参考{@link SerialReactor}，默认false
+         */
+        public Builder sharedReader(boolean sharedReader) {
+            mSharedReader = sharedReader;
+            return this;
+        }
+
+        public SerialWorkerGroup build() {
+            if (mSerialThreads < 1 || mReceiveThreads < 1 || mReceiveQueueCapacity < 1
+                || mTimerTickMillis < 1) {
+                throw new IllegalArgumentException("threads and queue capacity must be positive");
+            }
+            return new SerialWorkerGroup(this);
+        }
+    }
+}
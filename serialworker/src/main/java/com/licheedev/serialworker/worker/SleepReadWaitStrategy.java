@@ -0,0 +1,49 @@
+package com.licheedev.serialworker.worker;
+
+import androidx.annotation.Nullable;
+import com.licheedev.hwutils.SystemClockEx;
+import com.licheedev.serialworker.core.ReadWaitStrategy;
+import java.io.FileDescriptor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 固定休眠一段时间再检查是否有数据（默认的等待策略）；
+ * 响应延迟最多为休眠时间，串口空闲时每次休眠结束都会唤醒一次CPU
+ */
+public class SleepReadWaitStrategy implements ReadWaitStrategy {
+
+    private final long mSleepMillis;
+
+    /**
+     * @param sleepMillis 每次休眠的时间，毫秒
+     */
+    public SleepReadWaitStrategy(long sleepMillis) {
+        mSleepMillis = sleepMillis;
+    }
+
+    @Override
+    public void onStart(@Nullable FileDescriptor fd) {
+        // 空实现
+    }
+
+    @Override
+    public void waitForData(int idleCount, long timeoutNanos) {
+        long millis = mSleepMillis;
+        if (timeoutNanos >= 0) {
+            millis = Math.min(millis, TimeUnit.NANOSECONDS.toMillis(timeoutNanos));
+        }
+        if (millis > 0) {
+            SystemClockEx.sleep(millis);
+        }
+    }
+
+    @Override
+    public void wakeup() {
+        // 休眠时间很短，不需要唤醒
+    }
+
+    @Override
+    public void onStop() {
+        // 空实现
+    }
+}
@@ -0,0 +1,96 @@
+package com.licheedev.serialworker.worker;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单生产者单消费者的无锁环形字节缓存，容量为2的幂，预先分配，读写都不分配对象；
+ * 只能有一个线程调用{@link #offer(byte[], int, int)}，一个线程调用{@link #poll(byte[], int, int)}
+ */
+final class SpscByteRing {
+
+    private final byte[] mBuffer;
+    private final int mMask;
+    private final AtomicLong mHead = new AtomicLong(); // 消费的位置
+    private final AtomicLong mTail = new AtomicLong(); // 生产的位置
+    private long mCachedHead; // 生产者看到的消费位置，只在生产者线程中访问
+    private long mCachedTail; // 消费者看到的生产位置，只在消费者线程中访问
+
+    /**
+     * @param capacity 容量，会向上取为2的幂
+     */
+    SpscByteRing(int capacity) {
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        mBuffer = new byte[size];
+        mMask = size - 1;
+    }
+
+    int capacity() {
+        return mBuffer.length;
+    }
+
+    /**
+     * 写入数据（生产者线程）
+     *
+     * @return 写入的字节数，空间不够时小于len
+     */
+    int offer(byte[] src, int offset, int len) {
+        final int capacity = mBuffer.length;
+        long tail = mTail.get();
+        long free = capacity - (tail - mCachedHead);
+        if (free < len) {
+            mCachedHead = mHead.get();
+            free = capacity - (tail - mCachedHead);
+        }
+        int count = (int) Math.min(len, free);
+        if (count <= 0) {
+            return 0;
+        }
+        int index = (int) (tail & mMask);
+        int first = Math.min(count, capacity - index);
+        System.arraycopy(src, offset, mBuffer, index, first);
+        System.arraycopy(src, offset + first, mBuffer, 0, count - first);
+        // 需要volatile写，保证之后读取消费者的等待状态时不会重排到前面
+        mTail.set(tail + count);
+        return count;
+    }
+
+    /**
+     * 读取数据（消费者线程）
+     *
+     * @return 读取的字节数，没有数据时返回0
+     */
+    int poll(byte[] dst, int offset, int maxLen) {
+        long head = mHead.get();
+        long available = mCachedTail - head;
+        if (available <= 0) {
+            mCachedTail = mTail.get();
+            available = mCachedTail - head;
+            if (available <= 0) {
+                return 0;
+            }
+        }
+        int count = (int) Math.min(maxLen, available);
+        int index = (int) (head & mMask);
+        int first = Math.min(count, mBuffer.length - index);
+        System.arraycopy(mBuffer, index, dst, offset, first);
+        System.arraycopy(mBuffer, 0, dst, offset + first, count - first);
+        mHead.lazySet(head + count);
+        return count;
+    }
+
+    boolean isEmpty() {
+        return mTail.get() == mHead.get();
+    }
+
+    /**
+     * 未读取的字节数
+     *
+     * @return
+     */
+    int size() {
+        return (int) (mTail.get() - mHead.get());
+    }
+}
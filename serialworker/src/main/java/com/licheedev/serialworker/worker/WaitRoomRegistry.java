@@ -0,0 +1,129 @@
+package com.licheedev.serialworker.worker;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.licheedev.serialworker.core.WaitRoom;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 正在等待响应的请求；有关联键的请求按关联键索引，收到响应时直接找到对应的请求，不需要逐个匹配；
+ * 没有关联键的请求放在列表中，收到响应时逐个匹配
+ *
+ * @param <R>
+ */
+class WaitRoomRegistry<R> {
+
+    /**
+     * 同一关联键的请求，按注册顺序排列
+     */
+    private static class Bucket<R> extends ConcurrentLinkedQueue<WaitRoom<R>> {
+
+        private static final long serialVersionUID = -1;
+
+        boolean mRemoved; // 已从map中移除，不能再添加
+    }
+
+    private final List<WaitRoom<R>> mUnkeyed = new CopyOnWriteArrayList<>();
+    private final ConcurrentHashMap<Object, Bucket<R>> mKeyed = new ConcurrentHashMap<>();
+
+    void add(@NonNull WaitRoom<R> waitRoom, @Nullable Object key) {
+        if (key == null) {
+            mUnkeyed.add(waitRoom);
+            return;
+        }
+        while (true) {
+            Bucket<R> bucket = mKeyed.get(key);
+            if (bucket == null) {
+                bucket = new Bucket<>();
+                Bucket<R> exist = mKeyed.putIfAbsent(key, bucket);
+                if (exist != null) {
+                    bucket = exist;
+                }
+            }
+            synchronized (bucket) {
+                if (!bucket.mRemoved) {
+                    bucket.add(waitRoom);
+                    return;
+                }
+            }
+            // 刚好被移除了，重试
+        }
+    }
+
+    void remove(@NonNull WaitRoom<R> waitRoom, @Nullable Object key) {
+        if (key == null) {
+            mUnkeyed.remove(waitRoom);
+            return;
+        }
+        Bucket<R> bucket = mKeyed.get(key);
+        if (bucket == null) {
+            return;
+        }
+        synchronized (bucket) {
+            bucket.remove(waitRoom);
+            if (bucket.isEmpty()) {
+                // 空了就移除，免得关联键（比如流水号）越积越多
+                bucket.mRemoved = true;
+                mKeyed.remove(key, bucket);
+            }
+        }
+    }
+
+    /**
+     * 把响应交给等待的请求
+     *
+     * @param r 响应
+     * @param key 响应的关联键，为null时交给所有请求逐一匹配
+     */
+    void putResponse(@NonNull R r, @Nullable Object key) {
+        if (key != null) {
+            Bucket<R> bucket = mKeyed.get(key);
+            if (bucket != null) {
+                putResponse(bucket.iterator(), r);
+            }
+        } else {
+            for (Bucket<R> bucket : mKeyed.values()) {
+                putResponse(bucket.iterator(), r);
+            }
+        }
+        if (!mUnkeyed.isEmpty()) {
+            putResponse(mUnkeyed.iterator(), r);
+        }
+    }
+
+    void notifyRunningReceive(boolean running) {
+        if (!mKeyed.isEmpty()) {
+            for (Bucket<R> bucket : mKeyed.values()) {
+                notifyRunningReceive(bucket.iterator(), running);
+            }
+        }
+        if (!mUnkeyed.isEmpty()) {
+            notifyRunningReceive(mUnkeyed.iterator(), running);
+        }
+    }
+
+    private static <R> void putResponse(Iterator<WaitRoom<R>> iterator, R r) {
+        while (iterator.hasNext()) {
+            try {
+                iterator.next().putResponse(r);
+            } catch (Exception e) {
+                //e.printStackTrace();
+            }
+        }
+    }
+
+    private static <R> void notifyRunningReceive(Iterator<WaitRoom<R>> iterator,
+        boolean running) {
+        while (iterator.hasNext()) {
+            try {
+                iterator.next().notifyRunningReceive(running);
+            } catch (Exception e) {
+                //e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.licheedev.serialworker.worker;
+
+import androidx.annotation.Nullable;
+import com.licheedev.serialworker.core.ReadWaitStrategy;
+import java.io.FileDescriptor;
+
+/**
+ * 没有数据时让出CPU（{@link Thread#yield()}），延迟接近忙等待；
+ * CPU空闲时仍然会一直占用，但其他线程需要CPU时可以让出
+ */
+public class YieldReadWaitStrategy implements ReadWaitStrategy {
+
+    @Override
+    public void onStart(@Nullable FileDescriptor fd) {
+        // 空实现
+    }
+
+    @Override
+    public void waitForData(int idleCount, long timeoutNanos) {
+        Thread.yield();
+    }
+
+    @Override
+    public void wakeup() {
+        // 从不阻塞，不需要唤醒
+    }
+
+    @Override
+    public void onStop() {
+        // 空实现
+    }
+}
@@ -0,0 +1,73 @@
+package com.licheedev.serialworker;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+
+/**
+ * 基准测试的公共方法；基准测试都是带main方法的普通类，在开发机上直接运行，
+ * 先预热再测量，结果只作横向比较（不同实现、不同参数之间），不作绝对值参考
+ */
+public final class BenchmarkUtils {
+
+    private BenchmarkUtils() {
+    }
+
+    /**
+     * 百分位数
+     *
+     * @param samples 样本，会被排序
+     * @param count 有效样本数
+     * @param percent 百分位，比如50、99
+     * @return
+     */
+    public static long percentile(long[] samples, int count, double percent) {
+        Arrays.sort(samples, 0, count);
+        int index = (int) Math.ceil(percent / 100 * count) - 1;
+        return samples[Math.max(0, Math.min(count - 1, index))];
+    }
+
+    /**
+     * 当前线程消耗的CPU时间，纳秒
+     *
+     * @return
+     */
+    public static long currentThreadCpuNanos() {
+        return ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime();
+    }
+
+    /**
+     * 当前线程累计分配的字节数，JVM不支持时返回-1
+     *
+     * @return
+     */
+    public static long currentThreadAllocatedBytes() {
+        return threadAllocatedBytes(Thread.currentThread());
+    }
+
+    /**
+     * 指定线程累计分配的字节数，JVM不支持时返回-1
+     *
+     * @param thread
+     * @return
+     */
+    public static long threadAllocatedBytes(Thread thread) {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(
+                thread.getId());
+        }
+        return -1;
+    }
+
+    /**
+     * 吞吐量，MB/s
+     *
+     * @param bytes 处理的字节数
+     * @param nanos 耗时，纳秒
+     * @return
+     */
+    public static double mbPerSecond(long bytes, long nanos) {
+        return bytes / (1024.0 * 1024.0) / (nanos / 1e9);
+    }
+}
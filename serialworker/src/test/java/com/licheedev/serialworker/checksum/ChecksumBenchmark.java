@@ -0,0 +1,69 @@
+package com.licheedev.serialworker.checksum;
+
+import com.licheedev.serialworker.BenchmarkUtils;
+import java.util.Random;
+import java.util.zip.Checksum;
+
+/**
+ * 各校验算法的吞吐量，分别按典型的帧长度（32字节）和大块数据（4KB）计算；
+ * “bytewise”为逐字节调用{@link Checksum#update(int)}，即不用4字节一组查表时的速度，用来对比
+ */
+public class ChecksumBenchmark {
+
+    private static final int DATA_BYTES = 1024 * 1024;
+    private static final int ROUNDS = 20;
+    private static final int TRIALS = 5;
+    private static final int[] BLOCK_SIZES = { 32, 4096 };
+
+    private static long sSink;
+
+    public static void main(String[] args) {
+        byte[] data = new byte[DATA_BYTES];
+        new Random(1).nextBytes(data);
+
+        System.out.println(String.format("%-18s %6s %12s %12s", "algorithm", "block", "MB/s",
+            "bytewise"));
+        run("XOR", new Xor8(), data);
+        run("CRC-8/SMBUS", new Crc8(), data);
+        run("CRC-16/MODBUS", Crc16.modbus(), data);
+        run("CRC-16/CCITT", Crc16.ccitt(), data);
+        run("CRC-32", new java.util.zip.CRC32(), data);
+        if (sSink == 42) {
+            System.out.println();
+        }
+    }
+
+    private static void run(String name, Checksum checksum, byte[] data) {
+        for (int block : BLOCK_SIZES) {
+            // 预热
+            measure(checksum, data, block, false);
+            measure(checksum, data, block, true);
+            double best = 0;
+            double bestBytewise = 0;
+            for (int i = 0; i < TRIALS; i++) {
+                best = Math.max(best, measure(checksum, data, block, false));
+                bestBytewise = Math.max(bestBytewise, measure(checksum, data, block, true));
+            }
+            System.out.println(String.format("%-18s %6d %12.1f %12.1f", name, block, best,
+                bestBytewise));
+        }
+    }
+
+    private static double measure(Checksum checksum, byte[] data, int block, boolean bytewise) {
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int offset = 0; offset + block <= data.length; offset += block) {
+                checksum.reset();
+                if (bytewise) {
+                    for (int i = offset; i < offset + block; i++) {
+                        checksum.update(data[i]);
+                    }
+                } else {
+                    checksum.update(data, offset, block);
+                }
+                sSink += checksum.getValue();
+            }
+        }
+        return BenchmarkUtils.mbPerSecond((long) data.length * ROUNDS, System.nanoTime() - start);
+    }
+}
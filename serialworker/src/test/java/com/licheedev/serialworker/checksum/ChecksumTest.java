@@ -0,0 +1,194 @@
+package com.licheedev.serialworker.checksum;
+
+import java.nio.charset.Charset;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ChecksumTest {
+
+    /**
+     * 各算法的标准校验值都以"123456789"计算
+     */
+    private static final byte[] CHECK = "123456789".getBytes(Charset.forName("US-ASCII"));
+
+    private static long compute(Checksum checksum, byte[] data) {
+        checksum.reset();
+        checksum.update(data, 0, data.length);
+        return checksum.getValue();
+    }
+
+    @Test
+    public void checkValues() {
+        assertEquals(0x31, compute(new Xor8(), CHECK));
+        assertEquals(0xF4, compute(new Crc8(), CHECK)); // CRC-8/SMBUS
+        assertEquals(0xA1, compute(new Crc8(0x07, 0x00, 0x55), CHECK)); // CRC-8/ITU
+        assertEquals(0x4B37, compute(Crc16.modbus(), CHECK));
+        assertEquals(0x29B1, compute(Crc16.ccitt(), CHECK));
+        assertEquals(0x31C3, compute(new Crc16(0x1021, 0x0000, false, 0), CHECK)); // XMODEM
+        assertEquals(0xBB3D, compute(new Crc16(0x8005, 0x0000, true, 0), CHECK)); // ARC
+        assertEquals(0x906E, compute(new Crc16(0x1021, 0xFFFF, true, 0xFFFF), CHECK)); // X-25
+    }
+
+    @Test
+    public void presetCheckValues() {
+        assertEquals(0x31, ChecksumAdapter.xor().compute(CHECK, 0, CHECK.length));
+        assertEquals(0xF4, ChecksumAdapter.crc8().compute(CHECK, 0, CHECK.length));
+        assertEquals(0x4B37, ChecksumAdapter.crc16Modbus().compute(CHECK, 0, CHECK.length));
+        assertEquals(0x29B1, ChecksumAdapter.crc16Ccitt().compute(CHECK, 0, CHECK.length));
+        assertEquals(0xCBF43926L, ChecksumAdapter.crc32().compute(CHECK, 0, CHECK.length));
+    }
+
+    @Test
+    public void arrayUpdate_matchesByteUpdate() {
+        // 按4字节一组的查表要跟逐字节计算一致，包括长度不是4的倍数、偏移不对齐的情况
+        Random random = new Random(7);
+        Checksum[][] pairs = {
+            { new Xor8(), new Xor8() },
+            { new Crc8(), new Crc8() },
+            { Crc16.modbus(), Crc16.modbus() },
+            { Crc16.ccitt(), Crc16.ccitt() },
+            { new Crc16(0x1021, 0xFFFF, true, 0xFFFF), new Crc16(0x1021, 0xFFFF, true, 0xFFFF) },
+        };
+        for (int round = 0; round < 200; round++) {
+            byte[] data = new byte[random.nextInt(64)];
+            random.nextBytes(data);
+            int offset = data.length == 0 ? 0 : random.nextInt(data.length);
+            int length = data.length - offset;
+            for (Checksum[] pair : pairs) {
+                pair[0].reset();
+                pair[0].update(data, offset, length);
+                pair[1].reset();
+                for (int i = offset; i < offset + length; i++) {
+                    pair[1].update(data[i]);
+                }
+                assertEquals(pair[0].getClass().getSimpleName() + " round " + round,
+                    pair[1].getValue(), pair[0].getValue());
+            }
+        }
+    }
+
+    @Test
+    public void splitUpdate_matchesOneShot() {
+        Random random = new Random(3);
+        byte[] data = new byte[300];
+        random.nextBytes(data);
+        ChecksumAdapter[] adapters = {
+            ChecksumAdapter.xor(), ChecksumAdapter.crc8(), ChecksumAdapter.crc16Modbus(),
+            ChecksumAdapter.crc16Ccitt(), ChecksumAdapter.crc32()
+        };
+        for (ChecksumAdapter adapter : adapters) {
+            long expected = adapter.compute(data, 0, data.length);
+            adapter.reset();
+            int pos = 0;
+            while (pos < data.length) {
+                int len = Math.min(1 + random.nextInt(10), data.length - pos);
+                adapter.update(data, pos, len);
+                pos += len;
+            }
+            // 把校验值按适配器的字节序写到末尾，再用check比较
+            byte[] frame = new byte[data.length + adapter.length()];
+            System.arraycopy(data, 0, frame, 0, data.length);
+            adapter.fill(frame, 0, frame.length);
+            assertTrue(adapter.check(frame, data.length));
+            assertEquals(expected, adapter.compute(data, 0, data.length));
+        }
+    }
+
+    @Test
+    public void fill_usesPresetByteOrder() {
+        byte[] frame = new byte[CHECK.length + 2];
+        System.arraycopy(CHECK, 0, frame, 0, CHECK.length);
+
+        // MODBUS低字节在前
+        ChecksumAdapter.crc16Modbus().fill(frame, 0, frame.length);
+        assertEquals(0x37, frame[9] & 0xFF);
+        assertEquals(0x4B, frame[10] & 0xFF);
+
+        // CCITT高字节在前
+        ChecksumAdapter.crc16Ccitt().fill(frame, 0, frame.length);
+        assertEquals(0x29, frame[9] & 0xFF);
+        assertEquals(0xB1, frame[10] & 0xFF);
+
+        byte[] frame32 = new byte[CHECK.length + 4];
+        System.arraycopy(CHECK, 0, frame32, 0, CHECK.length);
+        ChecksumAdapter.crc32().fill(frame32, 0, frame32.length);
+        assertEquals(0x26, frame32[9] & 0xFF);
+        assertEquals(0xCB, frame32[12] & 0xFF);
+    }
+
+    @Test
+    public void verify_detectsCorruption() {
+        ChecksumAdapter[] adapters = {
+            ChecksumAdapter.xor(), ChecksumAdapter.crc8(), ChecksumAdapter.crc16Modbus(),
+            ChecksumAdapter.crc16Ccitt(), ChecksumAdapter.crc32()
+        };
+        for (ChecksumAdapter adapter : adapters) {
+            // 帧放在缓存中间，校验时不能越界
+            byte[] buffer = new byte[3 + CHECK.length + adapter.length() + 3];
+            System.arraycopy(CHECK, 0, buffer, 3, CHECK.length);
+            int length = CHECK.length + adapter.length();
+            adapter.fill(buffer, 3, length);
+            assertTrue(adapter.verify(buffer, 3, length));
+
+            buffer[5] ^= 0x01;
+            assertFalse(adapter.verify(buffer, 3, length));
+            buffer[5] ^= 0x01;
+            buffer[3 + length - 1] ^= 0x80;
+            assertFalse(adapter.verify(buffer, 3, length));
+        }
+    }
+
+    @Test
+    public void verify_tooShortFrame() {
+        assertFalse(ChecksumAdapter.crc16Modbus().verify(new byte[1], 0, 1));
+    }
+
+    @Test
+    public void skip_excludesHeaderFromChecksum() {
+        // 帧头2字节不参与校验
+        ChecksumAdapter adapter = new ChecksumAdapter(Crc16.modbus(), 2, false, 2);
+        byte[] frame = new byte[2 + CHECK.length + 2];
+        frame[0] = 0x3B;
+        frame[1] = (byte) 0xB3;
+        System.arraycopy(CHECK, 0, frame, 2, CHECK.length);
+        adapter.fill(frame, 0, frame.length);
+
+        assertEquals(0x37, frame[11] & 0xFF);
+        assertEquals(0x4B, frame[12] & 0xFF);
+        assertTrue(adapter.verify(frame, 0, frame.length));
+
+        // 边接收边计算时，跳过的字节可能分在几段中
+        adapter.reset();
+        adapter.update(frame, 0, 1);
+        adapter.update(frame, 1, 5);
+        adapter.update(frame, 6, 5);
+        assertTrue(adapter.check(frame, 11));
+
+        // 帧头改了不影响校验
+        frame[0] = 0;
+        assertTrue(adapter.verify(frame, 0, frame.length));
+    }
+
+    @Test
+    public void crc32_matchesJdk() {
+        byte[] data = new byte[1000];
+        new Random(5).nextBytes(data);
+        CRC32 crc32 = new CRC32();
+        crc32.update(data, 0, data.length);
+        assertEquals(crc32.getValue(), ChecksumAdapter.crc32().compute(data, 0, data.length));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void illegalLength() {
+        new ChecksumAdapter(new Xor8(), 9, true, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fill_tooShortFrame() {
+        ChecksumAdapter.crc32().fill(new byte[3], 0, 3);
+    }
+}
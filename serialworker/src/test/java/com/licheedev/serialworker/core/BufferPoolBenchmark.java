@@ -0,0 +1,233 @@
+package com.licheedev.serialworker.core;
+
+import com.licheedev.serialworker.BenchmarkUtils;
+import java.util.Random;
+
+/**
+ * 收发时每次操作分配的字节数（ThreadMXBean统计的当前线程分配量）和耗时，对比使用{@link BufferPool}和每次分配新数组：
+ * <ul>
+ * <li>send：模仿Rs232SerialWorker#rawSendData，{@link PooledSendData}编码到借来的缓存 vs {@link SendData#toBytes()}</li>
+ * <li>receive：分帧后把每帧复制出来交给后续处理，{@link FrameView#copyTo(BufferPool)} vs {@link FrameView#toByteArray()}</li>
+ * </ul>
+ * 使用缓存池时，稳定后每次操作分配的字节数应该接近0
+ */
+public class BufferPoolBenchmark {
+
+    private static final int OPS = 1000000;
+    private static final int TRIALS = 5;
+
+    private static long sSink;
+
+    public static void main(String[] args) {
+        if (BenchmarkUtils.currentThreadAllocatedBytes() < 0) {
+            System.out.println("ThreadMXBean allocated bytes not supported");
+            return;
+        }
+        BufferPool pool = new BufferPool(256, 16);
+        byte[] stream = makeStream();
+
+        System.out.println(String.format("%-16s %10s %10s", "case", "ns/op", "B/op"));
+        for (int round = 0; round < 2; round++) {
+            // 第一轮为预热，不输出
+            boolean print = round > 0;
+            measure("send pooled", new SendTask(pool, true), print);
+            measure("send toBytes", new SendTask(pool, false), print);
+            measure("receive pooled", new ReceiveTask(pool, stream, true), print);
+            measure("receive copy", new ReceiveTask(pool, stream, false), print);
+        }
+        System.out.println("allocated buffers: " + pool.getAllocatedCount() + " / acquired "
+            + pool.getAcquiredCount());
+        if (sSink == 42) {
+            System.out.println();
+        }
+    }
+
+    private static void measure(String name, Task task, boolean print) {
+        double bestNanos = Double.MAX_VALUE;
+        double bytesPerOp = 0;
+        for (int i = 0; i < TRIALS; i++) {
+            long allocated = BenchmarkUtils.currentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            long ops = task.run(OPS);
+            long nanos = System.nanoTime() - start;
+            allocated = BenchmarkUtils.currentThreadAllocatedBytes() - allocated;
+            bestNanos = Math.min(bestNanos, (double) nanos / ops);
+            bytesPerOp = (double) allocated / ops;
+        }
+        if (print) {
+            System.out.println(String.format("%-16s %10.1f %10.2f", name, bestNanos, bytesPerOp));
+        }
+    }
+
+    /**
+     * 约30字节一帧，"\r\n"分隔
+     */
+    private static byte[] makeStream() {
+        Random random = new Random(1);
+        byte[] stream = new byte[64 * 1024];
+        for (int i = 0; i < stream.length; i++) {
+            stream[i] = (byte) ('A' + random.nextInt(26));
+            if (i % 32 == 31) {
+                stream[i - 1] = '\r';
+                stream[i] = '\n';
+            }
+        }
+        return stream;
+    }
+
+    /**
+     * 写串口，只是把数据读一遍
+     */
+    private static void write(byte[] bytes, int offset, int length) {
+        long sum = 0;
+        for (int i = offset; i < offset + length; i++) {
+            sum += bytes[i];
+        }
+        sSink += sum;
+    }
+
+    private interface Task {
+
+        /**
+         * @param ops 至少执行的操作数
+         * @return 实际执行的操作数
+         */
+        long run(int ops);
+    }
+
+    private static class SendTask implements Task {
+
+        private final BufferPool mPool;
+        private final boolean mPooled;
+        private final Command mCommand = new Command();
+
+        SendTask(BufferPool pool, boolean pooled) {
+            mPool = pool;
+            mPooled = pooled;
+        }
+
+        @Override
+        public long run(int ops) {
+            for (int i = 0; i < ops; i++) {
+                mCommand.mArg = i;
+                if (mPooled) {
+                    int length = mCommand.encodedLength();
+                    PooledBuffer buffer = mPool.acquire(length);
+                    try {
+                        mCommand.encode(buffer.array(), 0);
+                        mCommand.updateSendTime();
+                        write(buffer.array(), 0, length);
+                    } finally {
+                        buffer.release();
+                    }
+                } else {
+                    byte[] bytes = mCommand.toBytes();
+                    mCommand.updateSendTime();
+                    write(bytes, 0, bytes.length);
+                }
+            }
+            return ops;
+        }
+    }
+
+    private static class ReceiveTask implements Task {
+
+        private final BufferPool mPool;
+        private final byte[] mStream;
+        private final boolean mPooled;
+        private final ValidData mValidData = new ValidData();
+        private final DelimiterFrameDecoder<byte[]> mDecoder =
+            new DelimiterFrameDecoder<byte[]>(new byte[] { '\r', '\n' }, 256, true,
+                DelimiterFrameDecoder.OVERFLOW_DISCARD) {
+                @Override
+                public byte[] adaptReceive(byte[] allPack) {
+                    return allPack;
+                }
+            };
+
+        ReceiveTask(BufferPool pool, byte[] stream, boolean pooled) {
+            mPool = pool;
+            mStream = stream;
+            mPooled = pooled;
+        }
+
+        @Override
+        public long run(int ops) {
+            long frames = 0;
+            int offset = 0;
+            while (frames < ops) {
+                int length = Math.min(64, mStream.length - offset);
+                mValidData.clear();
+                mDecoder.onReceive(mValidData, mStream, offset, length);
+                offset = (offset + length) % mStream.length;
+                for (int i = 0; i < mValidData.size(); i++) {
+                    FrameView frame = mValidData.get(i);
+                    if (mPooled) {
+                        PooledBuffer buffer = frame.copyTo(mPool);
+                        write(buffer.array(), 0, buffer.length());
+                        buffer.release();
+                    } else {
+                        byte[] bytes = frame.toByteArray();
+                        write(bytes, 0, bytes.length);
+                    }
+                }
+                frames += mValidData.size();
+            }
+            return frames;
+        }
+    }
+
+    /**
+     * 帧头2字节、命令、4字节参数、异或校验
+     */
+    private static class Command implements PooledSendData {
+
+        private static final int LENGTH = 8;
+
+        int mArg;
+        private long mSendTime;
+
+        @Override
+        public int encodedLength() {
+            return LENGTH;
+        }
+
+        @Override
+        public void encode(byte[] buffer, int offset) {
+            buffer[offset] = 0x3B;
+            buffer[offset + 1] = (byte) 0xB3;
+            buffer[offset + 2] = 0x01;
+            buffer[offset + 3] = (byte) (mArg >> 24);
+            buffer[offset + 4] = (byte) (mArg >> 16);
+            buffer[offset + 5] = (byte) (mArg >> 8);
+            buffer[offset + 6] = (byte) mArg;
+            byte xor = 0;
+            for (int i = offset; i < offset + LENGTH - 1; i++) {
+                xor ^= buffer[i];
+            }
+            buffer[offset + LENGTH - 1] = xor;
+        }
+
+        @Override
+        public byte[] toBytes() {
+            byte[] bytes = new byte[LENGTH];
+            encode(bytes, 0);
+            return bytes;
+        }
+
+        @Override
+        public long getSendTime() {
+            return mSendTime;
+        }
+
+        @Override
+        public void updateSendTime() {
+            mSendTime = System.nanoTime();
+        }
+
+        @Override
+        public long timeout() {
+            return 1000;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.licheedev.serialworker.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BufferPoolTest {
+
+    @Test
+    public void acquire_roundsUpToSizeClass() {
+        BufferPool pool = new BufferPool(8, 4);
+
+        assertEquals(64, release(pool.acquire(1)));
+        assertEquals(64, release(pool.acquire(64)));
+        assertEquals(256, release(pool.acquire(65)));
+        assertEquals(1024, release(pool.acquire(1000)));
+        assertEquals(4096, release(pool.acquire(4096)));
+    }
+
+    private static int release(PooledBuffer buffer) {
+        assertEquals(1, buffer.refCnt());
+        assertEquals(0, buffer.length());
+        buffer.release();
+        return buffer.capacity();
+    }
+
+    @Test
+    public void releasedBuffer_isReused() {
+        BufferPool pool = new BufferPool(8, 4);
+
+        PooledBuffer first = pool.acquire(100);
+        first.setLength(10);
+        first.release();
+        PooledBuffer second = pool.acquire(200);
+
+        assertSame(first, second);
+        // 重新借出时状态被重置
+        assertEquals(0, second.length());
+        assertEquals(1, second.refCnt());
+        second.release();
+
+        for (int i = 0; i < 1000; i++) {
+            pool.acquire(256).release();
+        }
+        assertEquals(1, pool.getAllocatedCount());
+        assertEquals(1002, pool.getAcquiredCount());
+    }
+
+    @Test
+    public void oversizedBuffer_isNotPooled() {
+        BufferPool pool = new BufferPool(8, 4);
+
+        PooledBuffer first = pool.acquire(5000);
+        assertEquals(5000, first.capacity());
+        assertTrue(first.release());
+        PooledBuffer second = pool.acquire(5000);
+
+        assertNotSame(first, second);
+        assertEquals(2, pool.getAllocatedCount());
+    }
+
+    @Test
+    public void retainAndRelease() {
+        BufferPool pool = new BufferPool(8, 4);
+        PooledBuffer buffer = pool.acquire(10);
+
+        assertSame(buffer, buffer.retain());
+        assertEquals(2, buffer.refCnt());
+        assertFalse(buffer.release());
+        // 还有引用时不能还给缓存池
+        assertNotSame(buffer, pool.acquire(10));
+        assertTrue(buffer.release());
+        assertEquals(0, buffer.refCnt());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void doubleRelease_throws() {
+        PooledBuffer buffer = new BufferPool(8, 4).acquire(10);
+        buffer.release();
+        buffer.release();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void retainAfterRelease_throws() {
+        PooledBuffer buffer = new BufferPool(8, 4).acquire(10);
+        buffer.release();
+        buffer.retain();
+    }
+
+    @Test
+    public void setLength_checksBounds() {
+        PooledBuffer buffer = new BufferPool(8, 4).acquire(10);
+        buffer.setLength(64);
+        assertEquals(64, buffer.length());
+        try {
+            buffer.setLength(65);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            // 期望
+        }
+        try {
+            buffer.setLength(-1);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            // 期望
+        }
+    }
+
+    @Test
+    public void threadCacheOverflow_goesToSharedPool() throws Exception {
+        final BufferPool pool = new BufferPool(8, 2);
+        final List<PooledBuffer> buffers = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            buffers.add(pool.acquire(64));
+        }
+        for (PooledBuffer buffer : buffers) {
+            buffer.release();
+        }
+
+        // 2个留在当前线程，3个进了共用的池，其他线程只能拿到共用池中的
+        final List<PooledBuffer> fromOtherThread = new ArrayList<>();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 4; i++) {
+                    fromOtherThread.add(pool.acquire(64));
+                }
+            }
+        });
+        thread.start();
+        thread.join();
+
+        assertEquals(6, pool.getAllocatedCount());
+        for (int i = 0; i < 3; i++) {
+            assertTrue(buffers.contains(fromOtherThread.get(i)));
+        }
+        assertFalse(buffers.contains(fromOtherThread.get(3)));
+    }
+
+    @Test
+    public void releaseOnOtherThread_isReused() throws Exception {
+        final BufferPool pool = new BufferPool(64, 0);
+        final PooledBuffer[] buffers = new PooledBuffer[32];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = pool.acquire(1024);
+        }
+
+        // 借出和归还在不同线程，是接收线程交给回调线程的典型用法
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (PooledBuffer buffer : buffers) {
+                    buffer.release();
+                }
+            }
+        });
+        thread.start();
+        thread.join();
+        for (int i = 0; i < buffers.length; i++) {
+            pool.acquire(1024);
+        }
+
+        assertEquals(buffers.length, pool.getAllocatedCount());
+    }
+
+    @Test
+    public void leakDetection_tracksUntilRelease() {
+        BufferPool pool = new BufferPool(8, 4);
+        assertFalse(pool.isLeakDetection());
+        assertNull(pool.acquire(10).mTracker);
+
+        pool.setLeakDetection(true);
+        PooledBuffer buffer = pool.acquire(10);
+        assertNotNull(buffer.mTracker);
+        assertNotNull(buffer.mTracker.mAllocation);
+        assertSame(buffer, buffer.mTracker.get());
+
+        buffer.release();
+        assertNull(buffer.mTracker);
+        pool.reportLeaks();
+    }
+
+    @Test
+    public void frameCopy_usesPool() {
+        BufferPool pool = new BufferPool(8, 4);
+        ValidData validData = new ValidData();
+        byte[] bytes = { 1, 2, 3, 4, 5, 6 };
+        validData.addFrame(bytes, 1, 4);
+
+        PooledBuffer buffer = validData.get(0).copyTo(pool);
+
+        assertEquals(4, buffer.length());
+        assertEquals(64, buffer.capacity());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(bytes[i + 1], buffer.array()[i]);
+        }
+        buffer.release();
+        assertSame(buffer, pool.acquire(4));
+    }
+}
@@ -0,0 +1,148 @@
+package com.licheedev.serialworker.core;
+
+import com.licheedev.serialworker.BenchmarkUtils;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.Random;
+
+/**
+ * {@link DelimiterFrameDecoder}的吞吐量，数据为几MB类似NMEA的文本行（约70字节一行），
+ * 分别按64字节和4KB一次“读到”；对比每次收到数据都从缓存开头逐字节重新查找分隔符的简单实现
+ */
+public class DelimiterFrameDecoderBenchmark {
+
+    private static final int STREAM_BYTES = 4 * 1024 * 1024;
+    private static final int[] READ_SIZES = { 64, 4096 };
+    private static final int ROUNDS = 5;
+    private static final int TRIALS = 5;
+
+    public static void main(String[] args) {
+        run(new byte[] { '\r', '\n' });
+        run("<END>".getBytes(Charset.forName("US-ASCII")));
+    }
+
+    private static void run(final byte[] delimiter) {
+        byte[] stream = makeStream(new Random(1), delimiter);
+        DataReceiver<byte[]> decoder = new DelimiterFrameDecoder<byte[]>(delimiter, 256, true,
+            DelimiterFrameDecoder.OVERFLOW_DISCARD) {
+            @Override
+            public byte[] adaptReceive(byte[] allPack) {
+                return allPack;
+            }
+        };
+        DataReceiver<byte[]> naive = new NaiveDelimiterReceiver(delimiter, 256);
+
+        for (int readSize : READ_SIZES) {
+            // 预热
+            run(decoder, stream, readSize);
+            run(naive, stream, readSize);
+            double best = 0;
+            double bestNaive = 0;
+            long frames = 0;
+            long naiveFrames = 0;
+            for (int i = 0; i < TRIALS; i++) {
+                long start = System.nanoTime();
+                frames = 0;
+                for (int r = 0; r < ROUNDS; r++) {
+                    frames += run(decoder, stream, readSize);
+                }
+                best = Math.max(best, BenchmarkUtils.mbPerSecond((long) stream.length * ROUNDS,
+                    System.nanoTime() - start));
+
+                start = System.nanoTime();
+                naiveFrames = 0;
+                for (int r = 0; r < ROUNDS; r++) {
+                    naiveFrames += run(naive, stream, readSize);
+                }
+                bestNaive = Math.max(bestNaive,
+                    BenchmarkUtils.mbPerSecond((long) stream.length * ROUNDS,
+                        System.nanoTime() - start));
+            }
+            System.out.println(String.format(
+                "delimiter=%d bytes read=%4d  DelimiterFrameDecoder %8.1f MB/s (%d)  naive %8.1f MB/s (%d)",
+                delimiter.length, readSize, best, frames, bestNaive, naiveFrames));
+        }
+    }
+
+    private static long run(DataReceiver<byte[]> receiver, byte[] stream, int readSize) {
+        ValidData validData = new ValidData();
+        long frames = 0;
+        receiver.resetCache();
+        for (int offset = 0; offset < stream.length; offset += readSize) {
+            validData.clear();
+            receiver.onReceive(validData, stream, offset,
+                Math.min(readSize, stream.length - offset));
+            frames += validData.size();
+        }
+        return frames;
+    }
+
+    private static byte[] makeStream(Random random, byte[] delimiter) {
+        String chars = "0123456789ABCDEF,.$*NSEW";
+        ByteArrayOutputStream out = new ByteArrayOutputStream(STREAM_BYTES + 256);
+        while (out.size() < STREAM_BYTES) {
+            int length = 50 + random.nextInt(40);
+            for (int i = 0; i < length; i++) {
+                out.write(chars.charAt(random.nextInt(chars.length())));
+            }
+            out.write(delimiter, 0, delimiter.length);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 每次收到数据都从缓存开头逐字节查找分隔符
+     */
+    private static class NaiveDelimiterReceiver implements DataReceiver<byte[]> {
+
+        private final byte[] mDelimiter;
+        private final int mMaxFrameLength;
+        private final byte[] mBuffer;
+        private int mEnd;
+
+        NaiveDelimiterReceiver(byte[] delimiter, int maxFrameLength) {
+            mDelimiter = delimiter;
+            mMaxFrameLength = maxFrameLength;
+            mBuffer = new byte[(maxFrameLength + delimiter.length) * 2 + 4096];
+        }
+
+        @Override
+        public void onReceive(ValidData validData, byte[] bytes, int offset, int length) {
+            System.arraycopy(bytes, offset, mBuffer, mEnd, length);
+            mEnd += length;
+            int start = 0;
+            int i = 0;
+            while (i + mDelimiter.length <= mEnd) {
+                int j = 0;
+                while (j < mDelimiter.length && mBuffer[i + j] == mDelimiter[j]) {
+                    j++;
+                }
+                if (j == mDelimiter.length) {
+                    if (i > start && i - start <= mMaxFrameLength) {
+                        validData.addFrame(mBuffer, start, i - start);
+                    }
+                    i += mDelimiter.length;
+                    start = i;
+                } else {
+                    i++;
+                }
+            }
+            if (mEnd - start > mMaxFrameLength + mDelimiter.length) {
+                // 超长，丢弃
+                start = mEnd;
+            }
+            System.arraycopy(mBuffer, start, mBuffer, 0, mEnd - start);
+            mEnd -= start;
+        }
+
+        @Override
+        public byte[] adaptReceive(byte[] allPack) {
+            return allPack;
+        }
+
+        @Override
+        public void resetCache() {
+            mEnd = 0;
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package com.licheedev.serialworker.core;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DelimiterFrameDecoderTest {
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    private static final byte[] CRLF = { '\r', '\n' };
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(ASCII);
+    }
+
+    private static List<String> strings(TestDecoder decoder) {
+        List<String> list = new ArrayList<>();
+        for (byte[] frame : decoder.mFrames) {
+            list.add(new String(frame, ASCII));
+        }
+        return list;
+    }
+
+    private static void assertLines(TestDecoder decoder, String... expected) {
+        List<String> actual = strings(decoder);
+        assertEquals(expected.length + " frames, got " + actual, expected.length, actual.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], actual.get(i));
+        }
+    }
+
+    /**
+     * 一次喂一个字节
+     */
+    private static void feedBytewise(TestDecoder decoder, byte[] data) {
+        for (int i = 0; i < data.length; i++) {
+            decoder.feed(data, i, 1);
+        }
+    }
+
+    @Test
+    public void crlfLines() {
+        TestDecoder decoder = new TestDecoder(CRLF, 64, true,
+            DelimiterFrameDecoder.OVERFLOW_DISCARD);
+
+        decoder.feed(bytes("AT\r\nOK\r\n+CSQ: 20,0\r\n"));
+
+        assertLines(decoder, "AT", "OK", "+CSQ: 20,0");
+    }
+
+    @Test
+    public void keepDelimiter() {
+        TestDecoder decoder = new TestDecoder(CRLF, 64, false,
+            DelimiterFrameDecoder.OVERFLOW_DISCARD);
+
+        decoder.feed(bytes("OK\r\n\r\nERROR\r\n"));
+
+        // 不去掉分隔符时，空行也是一帧
+        assertLines(decoder, "OK\r\n", "\r\n", "ERROR\r\n");
+    }
+
+    @Test
+    public void emptyFramesIgnoredWhenStripping() {
+        TestDecoder decoder = new TestDecoder(CRLF, 64, true,
+            DelimiterFrameDecoder.OVERFLOW_DISCARD);
+
+        decoder.feed(bytes("\r\n\r\nOK\r\n\r\n"));
+
+        assertLines(decoder, "OK");
+    }
+
+    @Test
+    public void delimiterSplitAcrossReads() {
+        TestDecoder decoder = new TestDecoder(CRLF, 64, true,
+            DelimiterFrameDecoder.OVERFLOW_DISCARD);
+
+        decoder.feed(bytes("$GPGGA,1\r"));
+        assertEquals(0, decoder.mFrames.size());
+        decoder.feed(bytes("\n$GPRMC"));
+        decoder.feed(bytes(",2\r\n"));
+
+        assertLines(decoder, "$GPGGA,1", "$GPRMC,2");
+    }
+
+    @Test
+    public void bytewiseFeed() {
+        TestDecoder decoder = new TestDecoder(CRLF, 64, true,
+            DelimiterFrameDecoder.OVERFLOW_DISCARD);
+
+        feedBytewise(decoder, bytes("a\rb\r\n\rc\r\r\n"));
+
+        // 单独的\r不是分隔符；"\r\r\n"中只有后两个字节是分隔符
+        assertLines(decoder, "a\rb", "\rc\r");
+    }
+
+    @Test
+    public void singleByteDelimiter() {
+        TestDecoder decoder = new TestDecoder(new byte[] { '\n' }, 64, true,
+            DelimiterFrameDecoder.OVERFLOW_DISCARD);
+
+        decoder.feed(bytes("6901234567892\n69"));
+        decoder.feed(bytes("01234567893\n"));
+
+        assertLines(decoder, "6901234567892", "6901234567893");
+    }
+
+    @Test
+    public void longDelimiterWithPartialMatches() {
+        TestDecoder decoder = new TestDecoder(bytes("<END>"), 64, true,
+            DelimiterFrameDecoder.OVERFLOW_DISCARD);
+        byte[] data = bytes("a<EN<END<END>b<<END>>c<END>");
+
+        for (int chunk = 1; chunk <= data.length; chunk++) {
+            decoder.mFrames.clear();
+            decoder.resetCache();
+            for (int i = 0; i < data.length; i += chunk) {
+                decoder.feed(data, i, Math.min(chunk, data.length - i));
+            }
+            assertLines(decoder, "a<EN<END", "b<", ">c");
+        }
+    }
+
+    @Test
+    public void shortDelimiterWithPartialMatches() {
+        TestDecoder decoder = new TestDecoder(bytes("#$%"), 64, true,
+            DelimiterFrameDecoder.OVERFLOW_DISCARD);
+        byte[] data = bytes("%a#$#$%b$%##$%%c#$%");
+
+        for (int chunk = 1; chunk <= data.length; chunk++) {
+            decoder.mFrames.clear();
+            decoder.resetCache();
+            for (int i = 0; i < data.length; i += chunk) {
+                decoder.feed(data, i, Math.min(chunk, data.length - i));
+            }
+            assertLines(decoder, "%a#$", "b$%#", "%c");
+        }
+    }
+
+    @Test
+    public void frameOfExactlyMaxLength_isKept() {
+        TestDecoder decoder = new TestDecoder(CRLF, 5, true,
+            DelimiterFrameDecoder.OVERFLOW_DISCARD);
+
+        feedBytewise(decoder, bytes("abcde\r\n"));
+
+        assertLines(decoder, "abcde");
+    }
+
+    @Test
+    public void overflowDiscard() {
+        byte[] data = bytes("abcdefgh\r\nxy\r\n");
+
+        TestDecoder decoder = new TestDecoder(CRLF, 5, true,
+            DelimiterFrameDecoder.OVERFLOW_DISCARD);
+        decoder.feed(data);
+        assertLines(decoder, "xy");
+
+        // 分隔符到达前就发现超长
+        decoder = new TestDecoder(CRLF, 5, true, DelimiterFrameDecoder.OVERFLOW_DISCARD);
+        feedBytewise(decoder, data);
+        assertLines(decoder, "xy");
+    }
+
+    @Test
+    public void overflowTruncate() {
+        byte[] data = bytes("abcdefgh\r\nxy\r\n");
+
+        TestDecoder decoder = new TestDecoder(CRLF, 5, true,
+            DelimiterFrameDecoder.OVERFLOW_TRUNCATE);
+        decoder.feed(data);
+        assertLines(decoder, "abcde", "xy");
+
+        decoder = new TestDecoder(CRLF, 5, true, DelimiterFrameDecoder.OVERFLOW_TRUNCATE);
+        feedBytewise(decoder, data);
+        assertLines(decoder, "abcde", "xy");
+    }
+
+    @Test
+    public void overflowSplit() {
+        byte[] data = bytes("abcdefgh\r\nxy\r\n");
+
+        TestDecoder decoder = new TestDecoder(CRLF, 5, true,
+            DelimiterFrameDecoder.OVERFLOW_SPLIT);
+        decoder.feed(data);
+        assertLines(decoder, "abcde", "fgh", "xy");
+
+        decoder = new TestDecoder(CRLF, 5, true, DelimiterFrameDecoder.OVERFLOW_SPLIT);
+        feedBytewise(decoder, data);
+        assertLines(decoder, "abcde", "fgh", "xy");
+    }
+
+    @Test
+    public void endlessLine_usesBoundedMemory() {
+        // 一直没有分隔符，数据远多于内部缓存
+        TestDecoder decoder = new TestDecoder(CRLF, 16, true,
+            DelimiterFrameDecoder.OVERFLOW_DISCARD);
+        byte[] chunk = new byte[500];
+        for (int i = 0; i < chunk.length; i++) {
+            chunk[i] = (byte) ('a' + i % 26);
+        }
+        for (int i = 0; i < 100; i++) {
+            decoder.feed(chunk);
+        }
+        decoder.feed(bytes("\r\nOK\r\n"));
+
+        assertLines(decoder, "OK");
+    }
+
+    @Test
+    public void resetCache_dropsPartialLine() {
+        TestDecoder decoder = new TestDecoder(CRLF, 64, true,
+            DelimiterFrameDecoder.OVERFLOW_DISCARD);
+
+        decoder.feed(bytes("par"));
+        decoder.resetCache();
+        decoder.feed(bytes("OK\r\n"));
+
+        assertLines(decoder, "OK");
+    }
+
+    @Test
+    public void randomLines_matchSplit() {
+        Random random = new Random(11);
+        String alphabet = "abc\r\n ,$*";
+        for (int round = 0; round < 50; round++) {
+            StringBuilder text = new StringBuilder();
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                StringBuilder line = new StringBuilder();
+                int length = random.nextInt(20);
+                for (int j = 0; j < length; j++) {
+                    line.append(alphabet.charAt(random.nextInt(alphabet.length())));
+                }
+                // 行内不能出现分隔符，行尾的\r会和分隔符连在一起
+                String s = line.toString();
+                while (s.contains("\r\n")) {
+                    s = s.replace("\r\n", "\n");
+                }
+                while (s.endsWith("\r")) {
+                    s = s.substring(0, s.length() - 1);
+                }
+                text.append(s).append("\r\n");
+                if (!s.isEmpty()) {
+                    expected.add(s);
+                }
+            }
+            byte[] data = bytes(text.toString());
+
+            TestDecoder decoder = new TestDecoder(CRLF, 32, true,
+                DelimiterFrameDecoder.OVERFLOW_DISCARD);
+            for (int i = 0; i < data.length; ) {
+                int len = Math.min(1 + random.nextInt(40), data.length - i);
+                decoder.feed(data, i, len);
+                i += len;
+            }
+
+            assertEquals("round " + round, expected, strings(decoder));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void emptyDelimiter() {
+        new TestDecoder(new byte[0], 64, true, DelimiterFrameDecoder.OVERFLOW_DISCARD);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownPolicy() {
+        new TestDecoder(CRLF, 64, true, 3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nonPositiveMaxLength() {
+        new TestDecoder(CRLF, 0, true, DelimiterFrameDecoder.OVERFLOW_DISCARD);
+    }
+
+    private static class TestDecoder extends DelimiterFrameDecoder<byte[]> {
+
+        final List<byte[]> mFrames = new ArrayList<>();
+        private final ValidData mValidData = new ValidData();
+
+        TestDecoder(byte[] delimiter, int maxFrameLength, boolean stripDelimiter,
+            int overflowPolicy) {
+            super(delimiter, maxFrameLength, stripDelimiter, overflowPolicy);
+        }
+
+        void feed(byte[] bytes) {
+            feed(bytes, 0, bytes.length);
+        }
+
+        void feed(byte[] bytes, int offset, int length) {
+            mValidData.clear();
+            onReceive(mValidData, bytes, offset, length);
+            mFrames.addAll(mValidData.getAll());
+        }
+
+        @Override
+        public byte[] adaptReceive(byte[] allPack) {
+            return allPack;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.licheedev.serialworker.core;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GapFrameDecoderTest {
+
+    private static final long GAP = 3_000_000L;
+    private static final long MS = 1_000_000L;
+
+    private static class Decoder extends GapFrameDecoder<byte[]> {
+
+        Decoder(int maxFrameLength, @Nullable FrameChecksum checksum) {
+            super(GAP, maxFrameLength, checksum);
+        }
+
+        @Override
+        public byte[] adaptReceive(@NonNull byte[] allPack) {
+            return allPack;
+        }
+    }
+
+    /**
+     * 最后一个字节是前面所有字节的和
+     */
+    private static final FrameChecksum SUM = new FrameChecksum() {
+        @Override
+        public int length() {
+            return 1;
+        }
+
+        @Override
+        public boolean verify(@NonNull byte[] buffer, int offset, int length) {
+            byte sum = 0;
+            for (int i = offset; i < offset + length - 1; i++) {
+                sum += buffer[i];
+            }
+            return sum == buffer[offset + length - 1];
+        }
+    };
+
+    private static byte[] bytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+
+    private static void receive(Decoder decoder, ValidData validData, long nanoTime,
+        int... values) {
+        byte[] bytes = bytes(values);
+        decoder.onReceive(validData, bytes, 0, bytes.length, nanoTime);
+    }
+
+    @Test
+    public void chunksWithinGap_areOneFrame() {
+        Decoder decoder = new Decoder(64, null);
+        ValidData validData = new ValidData();
+        assertEquals(-1, decoder.getDeadlineNanos());
+
+        receive(decoder, validData, 0, 1, 2);
+        assertEquals(GAP, decoder.getDeadlineNanos());
+        receive(decoder, validData, 2 * MS, 3);
+        // 截止时间从最后一次收到数据开始算
+        assertEquals(2 * MS + GAP, decoder.getDeadlineNanos());
+
+        decoder.onTimeout(validData, 2 * MS + GAP - 1);
+        assertEquals(0, validData.size());
+        decoder.onTimeout(validData, 2 * MS + GAP);
+        assertEquals(1, validData.size());
+        assertArrayEquals(bytes(1, 2, 3), validData.get(0).toByteArray());
+        assertEquals(-1, decoder.getDeadlineNanos());
+    }
+
+    @Test
+    public void dataAfterGap_endsPreviousFrame() {
+        Decoder decoder = new Decoder(64, null);
+        ValidData validData = new ValidData();
+
+        // 读线程没来得及调用onTimeout，下一次收到数据时结束上一帧
+        receive(decoder, validData, 0, 1, 2);
+        receive(decoder, validData, GAP, 3, 4);
+        receive(decoder, validData, 3 * GAP, 5);
+        assertEquals(2, validData.size());
+        assertArrayEquals(bytes(1, 2), validData.get(0).toByteArray());
+        assertArrayEquals(bytes(3, 4), validData.get(1).toByteArray());
+
+        decoder.onTimeout(validData, 4 * GAP);
+        assertEquals(3, validData.size());
+        assertArrayEquals(bytes(5), validData.get(2).toByteArray());
+    }
+
+    @Test
+    public void badChecksum_isDropped() {
+        Decoder decoder = new Decoder(64, SUM);
+        ValidData validData = new ValidData();
+
+        receive(decoder, validData, 0, 1, 2, 4);
+        receive(decoder, validData, 2 * GAP, 1, 2, 3);
+        // 只有校验码，不够最短长度
+        receive(decoder, validData, 4 * GAP, 0);
+        decoder.onTimeout(validData, 6 * GAP);
+        assertEquals(1, validData.size());
+        assertArrayEquals(bytes(1, 2, 3), validData.get(0).toByteArray());
+    }
+
+    @Test
+    public void overlongFrame_isDropped() {
+        Decoder decoder = new Decoder(4, null);
+        ValidData validData = new ValidData();
+
+        receive(decoder, validData, 0, 1, 2, 3);
+        receive(decoder, validData, MS, 4, 5);
+        // 超长后的数据仍属于这一帧，直到静默
+        receive(decoder, validData, 2 * MS, 6);
+        assertEquals(2 * MS + GAP, decoder.getDeadlineNanos());
+        decoder.onTimeout(validData, 2 * MS + GAP);
+        assertEquals(0, validData.size());
+
+        // 下一帧正常
+        receive(decoder, validData, 3 * GAP, 7, 8);
+        decoder.onTimeout(validData, 4 * GAP);
+        assertEquals(1, validData.size());
+        assertArrayEquals(bytes(7, 8), validData.get(0).toByteArray());
+    }
+
+    @Test
+    public void resetCache_dropsPending() {
+        Decoder decoder = new Decoder(64, null);
+        ValidData validData = new ValidData();
+
+        receive(decoder, validData, 0, 1, 2);
+        decoder.resetCache();
+        assertEquals(-1, decoder.getDeadlineNanos());
+        decoder.onTimeout(validData, GAP);
+        assertEquals(0, validData.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nonPositiveGap() {
+        new GapFrameDecoder<byte[]>(0, 64, null) {
+            @Override
+            public byte[] adaptReceive(@NonNull byte[] allPack) {
+                return allPack;
+            }
+        };
+    }
+}
@@ -0,0 +1,204 @@
+package com.licheedev.serialworker.core;
+
+import com.licheedev.serialworker.BenchmarkUtils;
+import com.licheedev.serialworker.checksum.ChecksumAdapter;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * {@link LengthFieldFrameDecoder}与原来demo中手写的DoorDataReceiver（ByteBuffer实现，每帧复制后再算异或）的吞吐量对比，
+ * 数据为demo的协议，约5%的帧校验错误，帧之间夹杂少量随机数据，每次“读到”64字节；
+ * 同时给出每MB数据分配的字节数；两者交替测量多次，取最好的一次，减少机器负载波动的影响
+ */
+public class LengthFieldFrameDecoderBenchmark {
+
+    private static final byte[] HEAD = { 0x3B, (byte) 0xB3 };
+    private static final int MIN_PACK_LEN = 6;
+    private static final int MAX_N = 255;
+    private static final int READ_SIZE = 64;
+    private static final int STREAM_BYTES = 4 * 1024 * 1024;
+    private static final int ROUNDS = 5;
+    private static final int TRIALS = 5;
+
+    public static void main(String[] args) {
+        byte[] stream = makeStream(new Random(1));
+        System.out.println(String.format("stream=%d bytes, read=%d bytes", stream.length,
+            READ_SIZE));
+
+        DataReceiver<byte[]> decoder =
+            new LengthFieldFrameDecoder<byte[]>(HEAD, 2, 2, true, 1, MIN_PACK_LEN + MAX_N,
+                ChecksumAdapter.xor()) {
+                @Override
+                public byte[] adaptReceive(byte[] allPack) {
+                    return allPack;
+                }
+            };
+        DataReceiver<byte[]> legacy = new LegacyDoorDataReceiver();
+
+        // 预热
+        run(decoder, stream);
+        run(legacy, stream);
+
+        Result best = null;
+        Result bestLegacy = null;
+        for (int i = 0; i < TRIALS; i++) {
+            best = Result.better(best, measure(decoder, stream));
+            bestLegacy = Result.better(bestLegacy, measure(legacy, stream));
+        }
+        best.print("LengthFieldFrameDecoder");
+        bestLegacy.print("legacy DoorDataReceiver");
+    }
+
+    private static Result measure(DataReceiver<byte[]> receiver, byte[] stream) {
+        long frames = 0;
+        long allocated = BenchmarkUtils.currentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            frames += run(receiver, stream);
+        }
+        long elapsed = System.nanoTime() - start;
+        allocated = BenchmarkUtils.currentThreadAllocatedBytes() - allocated;
+        long bytes = (long) stream.length * ROUNDS;
+        return new Result(BenchmarkUtils.mbPerSecond(bytes, elapsed), frames,
+            allocated / (bytes / (1024.0 * 1024.0)));
+    }
+
+    private static class Result {
+
+        final double mMbPerSecond;
+        final long mFrames;
+        final double mAllocPerMb;
+
+        Result(double mbPerSecond, long frames, double allocPerMb) {
+            mMbPerSecond = mbPerSecond;
+            mFrames = frames;
+            mAllocPerMb = allocPerMb;
+        }
+
+        static Result better(Result a, Result b) {
+            return a == null || b.mMbPerSecond > a.mMbPerSecond ? b : a;
+        }
+
+        void print(String name) {
+            System.out.println(String.format("%-24s %8.1f MB/s  frames=%d  alloc=%.0f B/MB", name,
+                mMbPerSecond, mFrames, mAllocPerMb));
+        }
+    }
+
+    private static long run(DataReceiver<byte[]> receiver, byte[] stream) {
+        ValidData validData = new ValidData();
+        long frames = 0;
+        receiver.resetCache();
+        for (int offset = 0; offset < stream.length; offset += READ_SIZE) {
+            validData.clear();
+            receiver.onReceive(validData, stream, offset,
+                Math.min(READ_SIZE, stream.length - offset));
+            frames += validData.size();
+        }
+        return frames;
+    }
+
+    private static byte[] makeStream(Random random) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(STREAM_BYTES + 512);
+        while (out.size() < STREAM_BYTES) {
+            if (random.nextInt(20) == 0) {
+                byte[] garbage = new byte[1 + random.nextInt(8)];
+                random.nextBytes(garbage);
+                out.write(garbage, 0, garbage.length);
+            }
+            byte[] frame = new byte[MIN_PACK_LEN + random.nextInt(64)];
+            int len = frame.length - MIN_PACK_LEN + 1;
+            frame[0] = HEAD[0];
+            frame[1] = HEAD[1];
+            frame[2] = (byte) (len >> 8);
+            frame[3] = (byte) len;
+            for (int i = 4; i < frame.length - 1; i++) {
+                frame[i] = (byte) random.nextInt(256);
+            }
+            ChecksumAdapter.xor().fill(frame, 0, frame.length);
+            if (random.nextInt(20) == 0) {
+                frame[frame.length - 1] ^= 1;
+            }
+            out.write(frame, 0, frame.length);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 原来demo中的DoorDataReceiver，只修正了忽略offset的问题
+     */
+    private static class LegacyDoorDataReceiver implements DataReceiver<byte[]> {
+
+        private final ByteBuffer mByteBuffer = ByteBuffer.allocate(2048);
+
+        @Override
+        public void onReceive(ValidData validData, byte[] bytes, int offset, int length) {
+            try {
+                mByteBuffer.put(bytes, offset, length);
+                mByteBuffer.flip();
+
+                byte[] head = HEAD;
+                byte[] twoBytes = new byte[2];
+
+                byte b;
+                int readable;
+                out:
+                while ((readable = mByteBuffer.remaining()) >= MIN_PACK_LEN) {
+                    mByteBuffer.mark();
+                    int frameStart = mByteBuffer.position();
+
+                    for (byte aHead : head) {
+                        b = mByteBuffer.get();
+                        if (b != aHead) {
+                            mByteBuffer.position(frameStart + 1);
+                            continue out;
+                        }
+                    }
+
+                    mByteBuffer.get(twoBytes);
+                    final int dataLen = ((twoBytes[0] & 0xFF) << 8) | (twoBytes[1] & 0xFF);
+                    final int dataN = dataLen - 1;
+                    if (dataN > MAX_N) {
+                        mByteBuffer.position(frameStart + 2);
+                        continue;
+                    }
+                    final int total = MIN_PACK_LEN + dataN;
+                    if (readable < total) {
+                        mByteBuffer.reset();
+                        break;
+                    }
+
+                    mByteBuffer.position(mByteBuffer.position() + dataLen);
+                    byte xor = mByteBuffer.get();
+                    mByteBuffer.reset();
+                    byte[] allPack = new byte[total];
+                    mByteBuffer.get(allPack);
+                    byte calXor = 0;
+                    for (int i = 0; i < allPack.length - 1; i++) {
+                        calXor ^= allPack[i];
+                    }
+                    if (xor == calXor) {
+                        validData.add(allPack);
+                    } else {
+                        mByteBuffer.position(frameStart + 2);
+                    }
+                }
+            } catch (Exception e) {
+                // 跟原来一样忽略
+            } finally {
+                mByteBuffer.compact();
+            }
+        }
+
+        @Override
+        public byte[] adaptReceive(byte[] allPack) {
+            return allPack;
+        }
+
+        @Override
+        public void resetCache() {
+            mByteBuffer.clear();
+        }
+    }
+}
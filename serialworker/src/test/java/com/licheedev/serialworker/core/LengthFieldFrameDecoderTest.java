@@ -0,0 +1,403 @@
+package com.licheedev.serialworker.core;
+
+import com.licheedev.serialworker.checksum.ChecksumAdapter;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LengthFieldFrameDecoderTest {
+
+    private static final byte[] HEAD = { 0x3B, (byte) 0xB3 };
+    private static final int MAX_N = 255;
+    private static final int MAX_FRAME = 6 + MAX_N;
+
+    /**
+     * 跟demo的协议一样：3B B3 | 长度(2字节大端，=命令码+数据N) | 命令码 | 数据N | 异或校验
+     */
+    private static TestDecoder newDecoder() {
+        return new TestDecoder(HEAD, 2, 2, true, 1, MAX_FRAME, ChecksumAdapter.xor());
+    }
+
+    private static byte[] frame(int cmd, byte[] data) {
+        byte[] frame = new byte[6 + data.length];
+        frame[0] = HEAD[0];
+        frame[1] = HEAD[1];
+        int len = data.length + 1;
+        frame[2] = (byte) (len >> 8);
+        frame[3] = (byte) len;
+        frame[4] = (byte) cmd;
+        System.arraycopy(data, 0, frame, 5, data.length);
+        ChecksumAdapter.xor().fill(frame, 0, frame.length);
+        return frame;
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.write(part, 0, part.length);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void wholeFrame() {
+        TestDecoder decoder = newDecoder();
+        byte[] frame = frame(0xA4, new byte[] { 1, 2, 3 });
+
+        decoder.feed(frame);
+
+        assertEquals(1, decoder.mFrames.size());
+        assertArrayEquals(frame, decoder.mFrames.get(0));
+    }
+
+    @Test
+    public void frameSplitIntoSingleBytes() {
+        TestDecoder decoder = newDecoder();
+        byte[] frame = frame(0x5D, new byte[] { 9, 8, 7, 6, 5 });
+
+        for (int i = 0; i < frame.length; i++) {
+            decoder.feed(frame, i, 1);
+            assertEquals(i == frame.length - 1 ? 1 : 0, decoder.mFrames.size());
+        }
+        assertArrayEquals(frame, decoder.mFrames.get(0));
+    }
+
+    @Test
+    public void severalFramesInOneRead() {
+        TestDecoder decoder = newDecoder();
+        byte[] f1 = frame(0x28, new byte[0]);
+        byte[] f2 = frame(0xA8, new byte[] { 0x10 });
+        byte[] f3 = frame(0xA4, new byte[MAX_N]);
+
+        decoder.feed(concat(f1, f2, f3));
+
+        assertEquals(3, decoder.mFrames.size());
+        assertArrayEquals(f1, decoder.mFrames.get(0));
+        assertArrayEquals(f2, decoder.mFrames.get(1));
+        assertArrayEquals(f3, decoder.mFrames.get(2));
+    }
+
+    @Test
+    public void garbageBeforeFrame_isSkipped() {
+        TestDecoder decoder = newDecoder();
+        byte[] frame = frame(0xA4, new byte[] { 1 });
+
+        decoder.feed(concat(new byte[] { 0, 0x3B, 0x11, (byte) 0xB3, 0x3B }, frame));
+
+        assertEquals(1, decoder.mFrames.size());
+        assertArrayEquals(frame, decoder.mFrames.get(0));
+    }
+
+    @Test
+    public void repeatedHeaderByte_matchesLaterHeader() {
+        // 3B 3B B3 ...：第一个3B之后匹配失败，要回退到第二个3B，而不是跳过它
+        TestDecoder decoder = newDecoder();
+        byte[] frame = frame(0xA4, new byte[] { 1 });
+
+        decoder.feed(concat(new byte[] { 0x3B }, frame));
+
+        assertEquals(1, decoder.mFrames.size());
+        assertArrayEquals(frame, decoder.mFrames.get(0));
+    }
+
+    @Test
+    public void badChecksum_resyncsToFrameInsideIt() {
+        // 校验错的“帧”里面包含一个完整的帧，要从第二个字节开始重新找到它
+        TestDecoder decoder = newDecoder();
+        byte[] inner = frame(0x28, new byte[] { 5, 6 });
+        byte[] outer = frame(0xA4, concat(inner, new byte[] { 1, 2 }));
+        outer[outer.length - 1] ^= 0x55;
+
+        decoder.feed(outer);
+
+        assertEquals(1, decoder.mFrames.size());
+        assertArrayEquals(inner, decoder.mFrames.get(0));
+    }
+
+    @Test
+    public void badChecksumSplitAcrossReads_resyncs() {
+        TestDecoder decoder = newDecoder();
+        byte[] bad = frame(0xA4, new byte[] { 1, 2, 3 });
+        bad[bad.length - 1] ^= 1;
+        byte[] good = frame(0xA8, new byte[] { 4 });
+        byte[] stream = concat(bad, good);
+
+        for (int i = 0; i < stream.length; i += 3) {
+            decoder.feed(stream, i, Math.min(3, stream.length - i));
+        }
+
+        assertEquals(1, decoder.mFrames.size());
+        assertArrayEquals(good, decoder.mFrames.get(0));
+    }
+
+    @Test
+    public void lengthTooLarge_resyncs() {
+        TestDecoder decoder = newDecoder();
+        byte[] good = frame(0x5D, new byte[] { 7 });
+
+        // 长度域为0xFFFF，超过帧长度上限
+        decoder.feed(concat(new byte[] { 0x3B, (byte) 0xB3, (byte) 0xFF, (byte) 0xFF }, good));
+
+        assertEquals(1, decoder.mFrames.size());
+        assertArrayEquals(good, decoder.mFrames.get(0));
+    }
+
+    @Test
+    public void lengthTooSmall_resyncs() {
+        // 长度域为整帧的长度：3B B3 | 长度(2字节大端) | 命令码 | CRC16，长度小于最小帧长的视为错误
+        TestDecoder decoder = new TestDecoder(HEAD, 2, 2, true, -4, MAX_FRAME,
+            ChecksumAdapter.crc16Modbus());
+        byte[] good = new byte[] { 0x3B, (byte) 0xB3, 0, 7, 0x28, 0, 0 };
+        ChecksumAdapter.crc16Modbus().fill(good, 0, good.length);
+
+        decoder.feed(concat(new byte[] { 0x3B, (byte) 0xB3, 0, 2 }, good));
+
+        assertEquals(1, decoder.mFrames.size());
+        assertArrayEquals(good, decoder.mFrames.get(0));
+    }
+
+    @Test
+    public void longGarbage_doesNotOverflow() {
+        TestDecoder decoder = newDecoder();
+        byte[] garbage = new byte[MAX_FRAME * 10 + 3];
+        // 全是帧头，每个位置都要重新匹配
+        for (int i = 0; i < garbage.length; i++) {
+            garbage[i] = HEAD[i % 2];
+        }
+        byte[] good = frame(0xA4, new byte[] { 1, 2 });
+
+        decoder.feed(garbage);
+        decoder.feed(good);
+
+        assertEquals(1, decoder.mFrames.size());
+        assertArrayEquals(good, decoder.mFrames.get(0));
+    }
+
+    @Test
+    public void maxLengthFrames_acrossBufferCompaction() {
+        TestDecoder decoder = newDecoder();
+        byte[] data = new byte[MAX_N];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        byte[] frame = frame(0xA4, data);
+        byte[] stream = concat(new byte[] { 1, 2, 3 }, frame, frame, frame, frame, frame);
+
+        // 每次读100字节，帧会跨越缓存的末尾
+        for (int i = 0; i < stream.length; i += 100) {
+            decoder.feed(stream, i, Math.min(100, stream.length - i));
+        }
+
+        assertEquals(5, decoder.mFrames.size());
+        for (byte[] decoded : decoder.mFrames) {
+            assertArrayEquals(frame, decoded);
+        }
+    }
+
+    @Test
+    public void resetCache_dropsPartialFrame() {
+        TestDecoder decoder = newDecoder();
+        byte[] frame = frame(0xA4, new byte[] { 1, 2, 3 });
+
+        decoder.feed(frame, 0, 5);
+        decoder.resetCache();
+        decoder.feed(frame, 5, frame.length - 5);
+        assertEquals(0, decoder.mFrames.size());
+
+        decoder.feed(frame);
+        assertEquals(1, decoder.mFrames.size());
+    }
+
+    @Test
+    public void littleEndianLengthWithoutHeaderOrChecksum() {
+        // 没有帧头：长度(2字节小端，=数据长度) | 数据
+        TestDecoder decoder = new TestDecoder(new byte[0], 0, 2, false, 0, 64, null);
+        byte[] f1 = { 3, 0, 'a', 'b', 'c' };
+        byte[] f2 = { 0, 0 };
+        byte[] f3 = { 1, 0, 'z' };
+
+        decoder.feed(concat(f1, f2, f3));
+
+        assertEquals(3, decoder.mFrames.size());
+        assertArrayEquals(f1, decoder.mFrames.get(0));
+        assertArrayEquals(f2, decoder.mFrames.get(1));
+        assertArrayEquals(f3, decoder.mFrames.get(2));
+    }
+
+    @Test
+    public void nonRunningChecksum_verifiesWholeFrame() {
+        // 只实现了FrameChecksum：最后一个字节为前面所有字节的和
+        FrameChecksum sum = new FrameChecksum() {
+            @Override
+            public int length() {
+                return 1;
+            }
+
+            @Override
+            public boolean verify(byte[] buffer, int offset, int length) {
+                int sum = 0;
+                for (int i = offset; i < offset + length - 1; i++) {
+                    sum += buffer[i];
+                }
+                return (byte) sum == buffer[offset + length - 1];
+            }
+        };
+        TestDecoder decoder = new TestDecoder(new byte[] { 0x55 }, 1, 1, true, 1, 32, sum);
+        byte[] good = { 0x55, 2, 10, 20, 0 };
+        good[4] = (byte) (0x55 + 2 + 10 + 20);
+        byte[] bad = good.clone();
+        bad[4]++;
+
+        decoder.feed(concat(bad, good));
+
+        assertEquals(1, decoder.mFrames.size());
+        assertArrayEquals(good, decoder.mFrames.get(0));
+    }
+
+    @Test
+    public void onFrame_receivesFrameInPlace() {
+        final List<Integer> offsets = new ArrayList<>();
+        TestDecoder decoder = new TestDecoder(HEAD, 2, 2, true, 1, MAX_FRAME,
+            ChecksumAdapter.xor()) {
+            @Override
+            protected void onFrame(ValidData validData, byte[] buffer, int offset, int length) {
+                offsets.add(offset);
+                super.onFrame(validData, buffer, offset, length);
+            }
+        };
+        byte[] f1 = frame(0x28, new byte[0]);
+        byte[] f2 = frame(0xA8, new byte[] { 1 });
+
+        decoder.feed(concat(new byte[] { 0 }, f1, f2));
+
+        assertEquals(2, offsets.size());
+        assertEquals(1, (int) offsets.get(0));
+        assertEquals(1 + f1.length, (int) offsets.get(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void illegalLengthFieldSize() {
+        new TestDecoder(HEAD, 2, 5, true, 0, 64, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void lengthFieldOverlapsHeader() {
+        new TestDecoder(HEAD, 1, 2, true, 0, 64, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maxFrameLengthTooSmall() {
+        new TestDecoder(HEAD, 2, 2, true, 1, 4, ChecksumAdapter.xor());
+    }
+
+    @Test
+    public void randomStream_matchesReferenceDecoder() {
+        Random random = new Random(42);
+        for (int round = 0; round < 50; round++) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            for (int i = 0; i < 200; i++) {
+                int type = random.nextInt(10);
+                if (type < 6) {
+                    byte[] data = new byte[random.nextInt(20)];
+                    random.nextBytes(data);
+                    byte[] frame = frame(random.nextInt(256), data);
+                    out.write(frame, 0, frame.length);
+                } else if (type < 8) {
+                    // 校验错的帧
+                    byte[] data = new byte[random.nextInt(20)];
+                    random.nextBytes(data);
+                    byte[] frame = frame(random.nextInt(256), data);
+                    frame[random.nextInt(frame.length)] ^= 1 << random.nextInt(8);
+                    out.write(frame, 0, frame.length);
+                } else {
+                    // 随机数据，偏向帧头字节
+                    byte[] garbage = new byte[random.nextInt(8)];
+                    for (int j = 0; j < garbage.length; j++) {
+                        garbage[j] = random.nextBoolean() ? HEAD[random.nextInt(2)]
+                            : (byte) random.nextInt(256);
+                    }
+                    out.write(garbage, 0, garbage.length);
+                }
+            }
+            byte[] stream = out.toByteArray();
+
+            TestDecoder decoder = newDecoder();
+            for (int i = 0; i < stream.length; ) {
+                int len = Math.min(1 + random.nextInt(64), stream.length - i);
+                decoder.feed(stream, i, len);
+                i += len;
+            }
+
+            List<byte[]> expected = referenceDecode(stream);
+            assertEquals("round " + round, expected.size(), decoder.mFrames.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertArrayEquals("round " + round, expected.get(i), decoder.mFrames.get(i));
+            }
+        }
+    }
+
+    /**
+     * 最直接的实现：从每个位置尝试解析一帧，成功则跳过整帧，否则前进一个字节
+     */
+    private static List<byte[]> referenceDecode(byte[] stream) {
+        List<byte[]> frames = new ArrayList<>();
+        int pos = 0;
+        while (pos < stream.length) {
+            if (stream.length - pos < 4) {
+                break;
+            }
+            if (stream[pos] != HEAD[0] || stream[pos + 1] != HEAD[1]) {
+                pos++;
+                continue;
+            }
+            int len = 4 + (((stream[pos + 2] & 0xFF) << 8) | (stream[pos + 3] & 0xFF)) + 1;
+            if (len < 5 || len > MAX_FRAME) {
+                pos++;
+                continue;
+            }
+            if (stream.length - pos < len) {
+                break;
+            }
+            if (ChecksumAdapter.xor().verify(stream, pos, len)) {
+                byte[] frame = new byte[len];
+                System.arraycopy(stream, pos, frame, 0, len);
+                frames.add(frame);
+                pos += len;
+            } else {
+                pos++;
+            }
+        }
+        return frames;
+    }
+
+    private static class TestDecoder extends LengthFieldFrameDecoder<byte[]> {
+
+        final List<byte[]> mFrames = new ArrayList<>();
+        private final ValidData mValidData = new ValidData();
+
+        TestDecoder(byte[] header, int lengthFieldOffset, int lengthFieldSize, boolean bigEndian,
+            int lengthAdjustment, int maxFrameLength, FrameChecksum checksum) {
+            super(header, lengthFieldOffset, lengthFieldSize, bigEndian, lengthAdjustment,
+                maxFrameLength, checksum);
+        }
+
+        void feed(byte[] bytes) {
+            feed(bytes, 0, bytes.length);
+        }
+
+        void feed(byte[] bytes, int offset, int length) {
+            mValidData.clear();
+            onReceive(mValidData, bytes, offset, length);
+            mFrames.addAll(mValidData.getAll());
+        }
+
+        @Override
+        public byte[] adaptReceive(byte[] allPack) {
+            return allPack;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.licheedev.serialworker.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ResponseFutureTest {
+
+    private static Runnable record(final List<String> events, final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                events.add(name);
+            }
+        };
+    }
+
+    private static class RecordCallback implements Callback<String> {
+
+        final AtomicReference<Object> mResult = new AtomicReference<>();
+
+        @Override
+        public void onSuccess(String s) {
+            mResult.set(s);
+        }
+
+        @Override
+        public void onFailure(Throwable tr) {
+            mResult.set(tr);
+        }
+    }
+
+    @Test
+    public void listeners_runInOrderAdded() {
+        ResponseFuture<String> future = new ResponseFuture<>();
+        List<String> events = new ArrayList<>();
+        future.addListener(record(events, "a"));
+        future.addListener(record(events, "b"));
+        future.addListener(record(events, "c"));
+        assertTrue(events.isEmpty());
+
+        assertTrue(future.complete("ok"));
+        assertEquals("[a, b, c]", events.toString());
+
+        // 完成后添加的马上运行
+        future.addListener(record(events, "d"));
+        assertEquals("[a, b, c, d]", events.toString());
+    }
+
+    @Test
+    public void throwingListener_doesNotStopOthers() throws Exception {
+        ResponseFuture<String> future = new ResponseFuture<>();
+        List<String> events = new ArrayList<>();
+        future.addListener(new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("listener");
+            }
+        });
+        future.addListener(record(events, "after"));
+
+        assertTrue(future.complete("ok"));
+        assertEquals("[after]", events.toString());
+        assertEquals("ok", future.get());
+    }
+
+    @Test
+    public void completeOnlyOnce() throws Exception {
+        ResponseFuture<String> future = new ResponseFuture<>();
+        List<String> events = new ArrayList<>();
+        future.addListener(record(events, "done"));
+
+        assertTrue(future.complete("first"));
+        // 完成后再失败、完成或取消都无效，监听也不会再运行
+        assertFalse(future.fail(new TimeoutException()));
+        assertFalse(future.complete("second"));
+        assertFalse(future.cancel(true));
+        assertFalse(future.isCancelled());
+        assertTrue(future.isDone());
+        assertEquals("first", future.get());
+        assertEquals("[done]", events.toString());
+    }
+
+    @Test
+    public void failThenComplete_staysFailed() throws Exception {
+        ResponseFuture<String> future = new ResponseFuture<>();
+        TimeoutException error = new TimeoutException();
+        assertTrue(future.fail(error));
+        assertFalse(future.complete("late"));
+        try {
+            future.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertSame(error, e.getCause());
+        }
+        RecordCallback callback = new RecordCallback();
+        future.addCallback(callback, null);
+        assertSame(error, callback.mResult.get());
+    }
+
+    @Test
+    public void cancel_completesWithCancellation() throws Exception {
+        ResponseFuture<String> future = new ResponseFuture<>();
+        RecordCallback callback = new RecordCallback();
+        future.addCallback(callback, null);
+
+        assertTrue(future.cancel(false));
+        assertTrue(future.isCancelled());
+        assertTrue(future.isDone());
+        assertTrue(callback.mResult.get() instanceof CancellationException);
+        assertFalse(future.complete("late"));
+        try {
+            future.get(1, TimeUnit.SECONDS);
+            fail();
+        } catch (CancellationException e) {
+            // 期望
+        }
+    }
+
+    @Test
+    public void get_timesOutWhilePending() throws Exception {
+        ResponseFuture<String> future = new ResponseFuture<>();
+        try {
+            future.get(20, TimeUnit.MILLISECONDS);
+            fail();
+        } catch (TimeoutException e) {
+            // 期望
+        }
+        assertFalse(future.isDone());
+    }
+
+    @Test
+    public void addCallback_usesExecutor_orFallsBackWhenRejected() {
+        final List<Runnable> tasks = new ArrayList<>();
+        Executor queued = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                tasks.add(command);
+            }
+        };
+        ResponseFuture<String> future = new ResponseFuture<>();
+        RecordCallback callback = new RecordCallback();
+        future.addCallback(callback, queued);
+        future.complete("ok");
+        // 交给executor执行，还没回调
+        assertNull(callback.mResult.get());
+        assertEquals(1, tasks.size());
+        tasks.get(0).run();
+        assertEquals("ok", callback.mResult.get());
+
+        // executor拒绝时直接回调
+        RecordCallback rejected = new RecordCallback();
+        future.addCallback(rejected, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException();
+            }
+        });
+        assertEquals("ok", rejected.mResult.get());
+    }
+}
@@ -0,0 +1,128 @@
+package com.licheedev.serialworker.core;
+
+import java.util.ArrayList;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ValidDataTest {
+
+    private static byte[] bytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+
+    private static void addFrame(ValidData validData, int... values) {
+        byte[] bytes = bytes(values);
+        validData.addFrame(bytes, 0, bytes.length);
+    }
+
+    @Test
+    public void frames_areReusedAfterClear() {
+        ValidData validData = new ValidData();
+        addFrame(validData, 1, 2);
+        addFrame(validData, 3, 4, 5);
+        FrameView first = validData.get(0);
+        FrameView second = validData.get(1);
+        byte[] arena = first.getBuffer();
+        assertSame(arena, second.getBuffer());
+        assertEquals(2, second.getOffset());
+
+        validData.clear();
+        assertEquals(0, validData.size());
+        try {
+            validData.get(0);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            // 期望
+        }
+
+        // 下一批数据复用同一个实例和同一块缓存
+        addFrame(validData, 6, 7, 8);
+        assertSame(first, validData.get(0));
+        assertSame(arena, validData.get(0).getBuffer());
+        assertEquals(0, validData.get(0).getOffset());
+        assertArrayEquals(bytes(6, 7, 8), validData.get(0).toByteArray());
+    }
+
+    @Test
+    public void retainedView_seesNextBatch() {
+        ValidData validData = new ValidData();
+        addFrame(validData, 1, 2, 3);
+        FrameView retained = validData.get(0);
+        byte[] copied = retained.toByteArray();
+        BufferPool pool = new BufferPool(8, 4);
+        PooledBuffer pooled = retained.copyTo(pool);
+
+        validData.clear();
+        addFrame(validData, 9, 8);
+
+        // 保留下来的实例已经变成了新的帧，违反约定时读到的是错的数据
+        assertEquals(2, retained.length());
+        assertEquals(9, retained.getUnsigned(0));
+        // 复制出来的数据不受影响
+        assertArrayEquals(bytes(1, 2, 3), copied);
+        assertEquals(3, pooled.length());
+        assertEquals(1, pooled.array()[0]);
+        assertEquals(3, pooled.array()[2]);
+        pooled.release();
+    }
+
+    @Test
+    public void retainedView_seesOverwrittenArena() {
+        ValidData validData = new ValidData();
+        addFrame(validData, 1, 2);
+        addFrame(validData, 3, 4);
+        FrameView second = validData.get(1);
+
+        // 只有一帧时，缓存中原来第二帧的位置被新的数据覆盖
+        validData.clear();
+        addFrame(validData, 5, 6, 7, 8);
+        assertEquals(0, validData.get(0).getOffset());
+        assertEquals(7, second.get(0));
+        assertEquals(8, second.get(1));
+    }
+
+    @Test
+    public void growArena_repointsFrames() {
+        ValidData validData = new ValidData();
+        addFrame(validData, 1, 2, 3);
+        byte[] oldArena = validData.get(0).getBuffer();
+
+        byte[] large = new byte[oldArena.length * 2 + 1];
+        large[0] = 4;
+        validData.addFrame(large, 0, large.length);
+
+        FrameView first = validData.get(0);
+        assertNotSame(oldArena, first.getBuffer());
+        assertSame(first.getBuffer(), validData.get(1).getBuffer());
+        assertArrayEquals(bytes(1, 2, 3), first.toByteArray());
+        assertEquals(large.length, validData.get(1).length());
+        assertEquals(4, validData.get(1).get(0));
+    }
+
+    @Test
+    public void getAll_copiesFramesOnce() {
+        ValidData validData = new ValidData();
+        byte[] added = bytes(1, 2);
+        validData.add(added);
+        addFrame(validData, 3, 4, 5);
+
+        ArrayList<byte[]> all = validData.getAll();
+        assertSame(all, validData.getAll());
+        assertEquals(2, all.size());
+        // 用add(byte[])添加的不复制
+        assertSame(added, all.get(0));
+        assertArrayEquals(bytes(3, 4, 5), all.get(1));
+
+        // getAll()得到的数组在clear()之后仍然有效
+        validData.clear();
+        addFrame(validData, 6, 6, 6);
+        assertArrayEquals(bytes(3, 4, 5), all.get(1));
+        assertNotSame(all, validData.getAll());
+        assertEquals(1, validData.getAll().size());
+    }
+}
@@ -0,0 +1,149 @@
+package com.licheedev.serialworker.worker;
+
+import com.licheedev.serialworker.BenchmarkUtils;
+import com.licheedev.serialworker.core.Callback;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 异步发送每次请求分配的字节数（调用线程和串口线程分别统计），使用{@link FakePortWorker}，不需要串口：
+ * <ul>
+ * <li>sendOnly / send：当前的实现，重复使用CallTask、SendCall</li>
+ * <li>per-call objects：原来的写法，每次请求分配一个Callable、一个提交给串口线程的Runnable、一个回调用的Runnable</li>
+ * </ul>
+ * 回调通过{@link #CALLBACK_EXECUTOR}在串口线程中直接执行；最多64个请求同时排队
+ */
+public class AsyncDispatchBenchmark {
+
+    private static final int OPS = 500000;
+    private static final int WINDOW = 64;
+
+    private static final AtomicLong sCompleted = new AtomicLong();
+    private static final Callback<Object> COUNTING_CALLBACK = new Callback<Object>() {
+        @Override
+        public void onSuccess(Object o) {
+            sCompleted.incrementAndGet();
+        }
+
+        @Override
+        public void onFailure(Throwable tr) {
+            sCompleted.incrementAndGet();
+        }
+    };
+
+    private static volatile Runnable sLastCallback;
+    /**
+     * 直接执行回调，并像Handler.post一样保留任务的引用，免得JIT把回调用的Runnable优化掉
+     */
+    private static final Executor CALLBACK_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            sLastCallback = command;
+            command.run();
+        }
+    };
+
+    public static void main(String[] args) throws Exception {
+        if (BenchmarkUtils.currentThreadAllocatedBytes() < 0) {
+            System.out.println("ThreadMXBean allocated bytes not supported");
+            return;
+        }
+        final FakePortWorker worker = new FakePortWorker();
+        worker.mAnswer = true;
+        Thread serialThread = worker.callOnSerialThread(new Callable<Thread>() {
+            @Override
+            public Thread call() {
+                return Thread.currentThread();
+            }
+        });
+
+        System.out.println(String.format("%-18s %10s %12s %12s", "case", "ns/op", "caller B/op",
+            "serial B/op"));
+        for (int round = 0; round < 2; round++) {
+            // 第一轮为预热，不输出
+            boolean print = round > 0;
+            measure("sendOnly", worker, serialThread, Mode.SEND_ONLY, print);
+            measure("send", worker, serialThread, Mode.SEND, print);
+            measure("per-call objects", worker, serialThread, Mode.PER_CALL, print);
+        }
+        worker.release();
+    }
+
+    private enum Mode {
+        SEND_ONLY, SEND, PER_CALL
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void measure(String name, FakePortWorker worker, Thread serialThread,
+        Mode mode, boolean print) {
+        FakePortWorker.Command command = new FakePortWorker.Command();
+        Callback callback = COUNTING_CALLBACK;
+        sCompleted.set(0);
+
+        long callerBytes = BenchmarkUtils.currentThreadAllocatedBytes();
+        long serialBytes = BenchmarkUtils.threadAllocatedBytes(serialThread);
+        long start = System.nanoTime();
+        for (int i = 0; i < OPS; i++) {
+            while (i - sCompleted.get() >= WINDOW) {
+                Thread.yield();
+            }
+            switch (mode) {
+                case SEND_ONLY:
+                    worker.sendOnly(command, callback, CALLBACK_EXECUTOR);
+                    break;
+                case SEND:
+                    worker.send(command, callback, CALLBACK_EXECUTOR);
+                    break;
+                default:
+                    perCallSendOnly(worker, command, callback);
+                    break;
+            }
+        }
+        while (sCompleted.get() < OPS) {
+            Thread.yield();
+        }
+        long nanos = System.nanoTime() - start;
+        callerBytes = BenchmarkUtils.currentThreadAllocatedBytes() - callerBytes;
+        serialBytes = BenchmarkUtils.threadAllocatedBytes(serialThread) - serialBytes;
+        if (print) {
+            System.out.println(String.format("%-18s %10.1f %12.2f %12.2f", name,
+                (double) nanos / OPS, (double) callerBytes / OPS, (double) serialBytes / OPS));
+        }
+    }
+
+    /**
+     * 原来的asyncCallOnExecutor和sendOnly
+     */
+    private static void perCallSendOnly(final FakePortWorker worker,
+        final FakePortWorker.Command command, final Callback<Object> callback) {
+        final Callable<Void> callable = new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                worker.rawSend(command, 0);
+                return null;
+            }
+        };
+        worker.mSerialExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final Object o = callable.call();
+                    CALLBACK_EXECUTOR.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            callback.onSuccess(o);
+                        }
+                    });
+                } catch (final Exception e) {
+                    CALLBACK_EXECUTOR.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            callback.onFailure(e);
+                        }
+                    });
+                }
+            }
+        });
+    }
+}
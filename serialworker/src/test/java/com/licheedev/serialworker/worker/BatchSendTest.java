@@ -0,0 +1,240 @@
+package com.licheedev.serialworker.worker;
+
+import androidx.annotation.NonNull;
+import com.licheedev.serialworker.core.BatchResult;
+import com.licheedev.serialworker.core.Callback;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BatchSendTest {
+
+    /**
+     * 记录每次写入的命令参数；写入时马上“收到”mAnswers中参数的响应，参数相同的响应才是命令的响应
+     */
+    private static class BatchWorker
+        extends Rs232SerialWorker<FakePortWorker.Command, FakePortWorker.Response> {
+
+        final CopyOnWriteArrayList<List<Integer>> mWrites = new CopyOnWriteArrayList<>();
+        final Set<Integer> mAnswers = new CopyOnWriteArraySet<>();
+        volatile int mChunkSize = Integer.MAX_VALUE;
+
+        BatchWorker() {
+            mOutputStream = new OutputStream() {
+                @Override
+                public void write(int b) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    // 每个命令8字节，参数在第4到7个字节，参考FakePortWorker.Command
+                    List<Integer> args = new ArrayList<>();
+                    for (int i = off; i < off + len; i += 8) {
+                        args.add(((b[i + 3] & 0xFF) << 24) | ((b[i + 4] & 0xFF) << 16)
+                            | ((b[i + 5] & 0xFF) << 8) | (b[i + 6] & 0xFF));
+                    }
+                    mWrites.add(args);
+                    for (int arg : args) {
+                        if (mAnswers.contains(arg)) {
+                            dispatchResponse(new FakePortWorker.Response(arg));
+                        }
+                    }
+                }
+            };
+        }
+
+        @Override
+        protected int getBatchChunkSize() {
+            return mChunkSize;
+        }
+
+        @Override
+        public boolean isMyResponse(FakePortWorker.Command sendData,
+            FakePortWorker.Response recvData) {
+            return sendData.mArg == recvData.mArg;
+        }
+
+        @Override
+        public void onReceiveData(@NonNull FakePortWorker.Response recvData) {
+            // 空实现
+        }
+    }
+
+    /**
+     * 编码时出错的命令
+     */
+    private static class BrokenCommand extends FakePortWorker.Command {
+
+        @Override
+        public void encode(@NonNull byte[] buffer, int offset) {
+            // 写了一半再出错
+            buffer[offset] = 0x7F;
+            throw new IllegalStateException("broken");
+        }
+    }
+
+    private final BatchWorker mWorker = new BatchWorker();
+
+    @After
+    public void tearDown() {
+        mWorker.release();
+    }
+
+    private static List<FakePortWorker.Command> commands(int... args) {
+        List<FakePortWorker.Command> commands = new ArrayList<>();
+        for (int arg : args) {
+            commands.add(FakePortWorkerX.command(arg));
+        }
+        return commands;
+    }
+
+    private void answer(int... args) {
+        for (int arg : args) {
+            mWorker.mAnswers.add(arg);
+        }
+    }
+
+    private static void assertResponse(int arg, BatchResult<FakePortWorker.Response> result) {
+        assertTrue(String.valueOf(result), result.isSuccess());
+        assertEquals(arg, result.getResponse().mArg);
+    }
+
+    private static void assertTimeout(BatchResult<FakePortWorker.Response> result) {
+        assertFalse(result.isSuccess());
+        assertTrue(String.valueOf(result), result.getError() instanceof TimeoutException);
+    }
+
+    @Test
+    public void allAnswered_oneWrite() throws Exception {
+        answer(1, 2, 3);
+        List<BatchResult<FakePortWorker.Response>> results =
+            mWorker.syncSendBatch(commands(1, 2, 3));
+
+        assertEquals(1, mWorker.mWrites.size());
+        assertEquals(Arrays.asList(1, 2, 3), mWorker.mWrites.get(0));
+        assertEquals(3, results.size());
+        for (int i = 0; i < 3; i++) {
+            assertResponse(i + 1, results.get(i));
+        }
+    }
+
+    @Test
+    public void partialResponses_onlyMissingTimeOut() throws Exception {
+        mWorker.setTimeout(100);
+        // 2和4没有响应，且不影响收到的
+        answer(1, 3);
+        List<BatchResult<FakePortWorker.Response>> results =
+            mWorker.syncSendBatch(commands(1, 2, 3, 4));
+
+        assertResponse(1, results.get(0));
+        assertTimeout(results.get(1));
+        assertResponse(3, results.get(2));
+        assertTimeout(results.get(3));
+    }
+
+    @Test
+    public void timeoutMidBatch_laterChunksStillSent() throws Exception {
+        mWorker.setTimeout(100);
+        mWorker.mChunkSize = 2;
+        answer(1, 3, 4, 5);
+        long start = System.nanoTime();
+        List<BatchResult<FakePortWorker.Response>> results =
+            mWorker.syncSendBatch(commands(1, 2, 3, 4, 5));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // 第一批中2超时后才写第二批
+        assertEquals(3, mWorker.mWrites.size());
+        assertResponse(1, results.get(0));
+        assertTimeout(results.get(1));
+        assertResponse(3, results.get(2));
+        assertResponse(4, results.get(3));
+        assertResponse(5, results.get(4));
+        // 只等了一次超时
+        assertTrue("elapsed " + elapsed, elapsed >= 90 && elapsed < 1000);
+    }
+
+    @Test
+    public void chunkBoundaries_splitWrites() throws Exception {
+        mWorker.mChunkSize = 2;
+        answer(1, 2, 3, 4, 5);
+        List<BatchResult<FakePortWorker.Response>> results =
+            mWorker.syncSendBatch(commands(1, 2, 3, 4, 5));
+
+        assertEquals(3, mWorker.mWrites.size());
+        assertEquals(Arrays.asList(1, 2), mWorker.mWrites.get(0));
+        assertEquals(Arrays.asList(3, 4), mWorker.mWrites.get(1));
+        assertEquals(Arrays.asList(5), mWorker.mWrites.get(2));
+        for (int i = 0; i < 5; i++) {
+            assertResponse(i + 1, results.get(i));
+        }
+
+        // 块大小正好整除
+        mWorker.mWrites.clear();
+        mWorker.syncSendBatch(commands(1, 2, 3, 4));
+        assertEquals(2, mWorker.mWrites.size());
+        assertEquals(Arrays.asList(3, 4), mWorker.mWrites.get(1));
+    }
+
+    @Test
+    public void failingItem_doesNotPoisonOthers() throws Exception {
+        mWorker.mChunkSize = 2;
+        answer(1, 3, 4);
+        List<FakePortWorker.Command> commands = commands(1);
+        BrokenCommand broken = new BrokenCommand();
+        broken.mArg = 2;
+        commands.add(broken);
+        commands.addAll(commands(3, 4));
+        List<BatchResult<FakePortWorker.Response>> results = mWorker.syncSendBatch(commands);
+
+        // 出错的命令没有写入，它写了一半的数据也没有
+        assertEquals(Arrays.asList(1), mWorker.mWrites.get(0));
+        assertEquals(Arrays.asList(3, 4), mWorker.mWrites.get(1));
+        assertResponse(1, results.get(0));
+        assertFalse(results.get(1).isSuccess());
+        assertTrue(results.get(1).getError() instanceof IllegalStateException);
+        assertResponse(3, results.get(2));
+        assertResponse(4, results.get(3));
+    }
+
+    @Test
+    public void asyncBatch_callsBack() throws Exception {
+        mWorker.setTimeout(100);
+        mWorker.setCallbackExecutor(null);
+        answer(2);
+        final AtomicReference<List<BatchResult<FakePortWorker.Response>>> received =
+            new AtomicReference<>();
+        final CountDownLatch latch = new CountDownLatch(1);
+        mWorker.sendBatch(commands(1, 2),
+            new Callback<List<BatchResult<FakePortWorker.Response>>>() {
+                @Override
+                public void onSuccess(List<BatchResult<FakePortWorker.Response>> results) {
+                    received.set(results);
+                    latch.countDown();
+                }
+
+                @Override
+                public void onFailure(@NonNull Throwable tr) {
+                    latch.countDown();
+                }
+            });
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        // 部分失败时整批仍然成功回调，各命令的结果分开
+        List<BatchResult<FakePortWorker.Response>> results = received.get();
+        assertNotNull(results);
+        assertTimeout(results.get(0));
+        assertResponse(2, results.get(1));
+    }
+}
@@ -0,0 +1,113 @@
+package com.licheedev.serialworker.worker;
+
+import android.os.Build;
+import androidx.annotation.NonNull;
+import com.licheedev.serialworker.core.ReadWaitStrategy;
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * poll(2)只能在设备上测试（参考androidTest中的SerialFdPollerTest），这里测试策略的选择和不能poll时的退化
+ */
+public class BlockingReadTest {
+
+    private final int mSdkInt = Build.VERSION.SDK_INT;
+
+    /**
+     * 从内存中读取数据的worker
+     */
+    private static class ReadWorker extends FakePortWorker {
+
+        final LinkedBlockingQueue<Integer> mReceived = new LinkedBlockingQueue<>();
+
+        @Override
+        public void onReceiveData(@NonNull byte[] receiveBuffer, int offset, int length) {
+            mReceived.add(length);
+        }
+
+        void open(byte[] data) {
+            mInputStream = new ByteArrayInputStream(data);
+            onSerialOpened(mInputStream, mOutputStream);
+        }
+    }
+
+    private final ReadWorker mWorker = new ReadWorker();
+
+    @After
+    public void tearDown() {
+        Build.VERSION.SDK_INT = mSdkInt;
+        mWorker.release();
+    }
+
+    @Test
+    public void blockingRead_selectsBlockingStrategy() {
+        assertFalse(mWorker.isBlockingRead());
+        assertTrue(mWorker.newReadWaitStrategy() instanceof SleepReadWaitStrategy);
+        mWorker.setBlockingRead(true);
+        assertTrue(mWorker.isBlockingRead());
+        assertTrue(mWorker.newReadWaitStrategy() instanceof BlockingReadWaitStrategy);
+
+        // 重写了newReadWaitStrategy()时设置无效
+        final YieldReadWaitStrategy yield = new YieldReadWaitStrategy();
+        FakePortWorker worker = new FakePortWorker() {
+            @NonNull
+            @Override
+            protected ReadWaitStrategy newReadWaitStrategy() {
+                return yield;
+            }
+        };
+        try {
+            worker.setBlockingRead(true);
+            assertSame(yield, worker.newReadWaitStrategy());
+        } finally {
+            worker.release();
+        }
+    }
+
+    @Test
+    public void noFd_fallsBackToBoundedPark() throws Exception {
+        Build.VERSION.SDK_INT = 21;
+        BlockingReadWaitStrategy strategy = new BlockingReadWaitStrategy();
+        strategy.onStart(null);
+        try {
+            // 最多等待FALLBACK_PARK_MILLIS，不会一直阻塞
+            long start = System.nanoTime();
+            strategy.waitForData(0, -1);
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue("elapsed " + elapsed, elapsed < 500);
+
+            // 超时比退化的等待时间短时，按超时
+            start = System.nanoTime();
+            for (int i = 0; i < 10; i++) {
+                strategy.waitForData(i, TimeUnit.MICROSECONDS.toNanos(100));
+            }
+            elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue("elapsed " + elapsed,
+                elapsed < BlockingReadWaitStrategy.FALLBACK_PARK_MILLIS * 10);
+
+            // 没有等待中的线程时唤醒无效果
+            strategy.wakeup();
+        } finally {
+            strategy.onStop();
+        }
+    }
+
+    @Test
+    public void belowApi21_readsAndCloses() throws Exception {
+        Build.VERSION.SDK_INT = 19;
+        mWorker.setBlockingRead(true);
+        mWorker.open(new byte[] { 1, 2, 3, 4 });
+        assertEquals(Integer.valueOf(4), mWorker.mReceived.poll(5, TimeUnit.SECONDS));
+
+        // 关闭串口时读线程马上退出
+        Thread readThread = mWorker.mReadThread;
+        mWorker.closeSerial();
+        readThread.join(5000);
+        assertFalse(readThread.isAlive());
+    }
+}
@@ -0,0 +1,177 @@
+package com.licheedev.serialworker.worker;
+
+import com.licheedev.serialworker.core.Deadlined;
+import com.licheedev.serialworker.core.OpenSerialException;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DeadlineTest {
+
+    private FakePortWorker mWorker = new FakePortWorker();
+    private final CountDownLatch mRelease = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        mRelease.countDown();
+        mWorker.release();
+    }
+
+    /**
+     * 有截止时间的命令
+     */
+    private static class DeadlinedCommand extends FakePortWorker.Command implements Deadlined {
+
+        final long mDeadlineNanos;
+
+        DeadlinedCommand(long fromNowMillis) {
+            mDeadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(fromNowMillis);
+        }
+
+        @Override
+        public long getDeadlineNanos() {
+            return mDeadlineNanos;
+        }
+    }
+
+    private static long millisSince(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * 让串口线程忙一段时间
+     */
+    private void blockSerialThread(final long millis) throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        mWorker.mSerialExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    mRelease.await(millis, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void deadlined_expiredBeforeSend_isNotWritten() throws Exception {
+        mWorker.mAnswer = true;
+        try {
+            mWorker.syncSend(new DeadlinedCommand(-1));
+            fail();
+        } catch (TimeoutException e) {
+            assertEquals(Rs232SerialWorker.SERIAL_PORT_COMMAND_EXPIRED, e.getMessage());
+        }
+        assertEquals(0, mWorker.mWrites.get());
+        assertEquals(1, mWorker.getExpiredCount());
+
+        // 没过期的正常发送
+        assertNotNull(mWorker.syncSend(new DeadlinedCommand(1000)));
+        assertEquals(1, mWorker.mWrites.get());
+    }
+
+    @Test
+    public void deadlineMode_expiresWhileQueued() throws Exception {
+        mWorker.mAnswer = true;
+        mWorker.setDeadlineMode(true);
+        assertTrue(mWorker.isDeadlineMode());
+        mWorker.setTimeout(50);
+        blockSerialThread(100);
+
+        try {
+            mWorker.syncSend(new FakePortWorker.Command());
+            fail();
+        } catch (TimeoutException e) {
+            assertEquals(Rs232SerialWorker.SERIAL_PORT_COMMAND_EXPIRED, e.getMessage());
+        }
+        assertEquals(0, mWorker.mWrites.get());
+        assertEquals(1, mWorker.getExpiredCount());
+    }
+
+    @Test
+    public void withoutDeadlineMode_queueWaitDoesNotCount() throws Exception {
+        mWorker.mAnswer = true;
+        mWorker.setTimeout(50);
+        blockSerialThread(100);
+
+        assertNotNull(mWorker.syncSend(new FakePortWorker.Command()));
+        assertEquals(0, mWorker.getExpiredCount());
+    }
+
+    @Test
+    public void deadlineMode_waitsOnlyRemainingTime() throws Exception {
+        mWorker.setDeadlineMode(true);
+        mWorker.setTimeout(300);
+        blockSerialThread(100);
+
+        long start = System.nanoTime();
+        try {
+            mWorker.syncSend(new FakePortWorker.Command());
+            fail();
+        } catch (TimeoutException e) {
+            assertEquals(Rs232SerialWorker.SERIAL_PORT_RECEIVES_DATA_TIMEOUT, e.getMessage());
+        }
+        long elapsed = millisSince(start);
+        // 排队100ms，再只等剩下的200ms，而不是300ms
+        assertTrue("elapsed " + elapsed, elapsed >= 280 && elapsed < 380);
+        assertEquals(1, mWorker.mWrites.get());
+    }
+
+    @Test
+    public void remainingTimeout() {
+        long now = System.nanoTime();
+        // 不等待或没有截止时间时不变
+        assertEquals(0, Rs232SerialWorker.remainingTimeout(0, now + 1000000000L));
+        assertEquals(500, Rs232SerialWorker.remainingTimeout(500, 0));
+        // 截止时间更晚时不变
+        assertEquals(500, Rs232SerialWorker.remainingTimeout(500, now + 5000000000L));
+        // 截止时间更早时只用剩下的时间，向上取整
+        long remaining = Rs232SerialWorker.remainingTimeout(500, now + 200000000L);
+        assertTrue("remaining " + remaining, remaining > 150 && remaining <= 200);
+        // 已经过了截止时间，最少为1
+        assertEquals(1, Rs232SerialWorker.remainingTimeout(500, now - 1000000L));
+    }
+
+    @Test
+    public void reentrantSend_keepsOwnDeadline() throws Exception {
+        final DeadlinedCommand outer = new DeadlinedCommand(50);
+        final FakePortWorker.Command inner = new FakePortWorker.Command();
+        final long[] innerElapsed = new long[1];
+        mWorker.release();
+        mWorker = new FakePortWorker() {
+            @Override
+            protected void rawSendData(Command sendData) throws IOException, OpenSerialException {
+                super.rawSendData(sendData);
+                if (sendData == outer) {
+                    // 发送外层命令时再发送一条没有截止时间的命令，不能受外层截止时间的影响
+                    long start = System.nanoTime();
+                    rawSend(inner, 150);
+                    innerElapsed[0] = millisSince(start);
+                }
+            }
+        };
+        mWorker.setTimeout(2000);
+
+        long start = System.nanoTime();
+        try {
+            mWorker.syncSend(outer);
+            fail();
+        } catch (TimeoutException e) {
+            assertEquals(Rs232SerialWorker.SERIAL_PORT_RECEIVES_DATA_TIMEOUT, e.getMessage());
+        }
+        assertTrue("inner " + innerElapsed[0], innerElapsed[0] >= 140);
+        // 外层命令的截止时间也没有丢失，不会等满2000ms
+        long elapsed = millisSince(start);
+        assertTrue("elapsed " + elapsed, elapsed < 1000);
+        assertEquals(2, mWorker.mWrites.get());
+    }
+}
@@ -0,0 +1,62 @@
+package com.licheedev.serialworker.worker;
+
+import com.licheedev.serialworker.BenchmarkUtils;
+
+/**
+ * syncSend每次调用的往返开销，对比提交到串口线程再等待结果（默认）和在调用线程中直接执行
+ * （{@link BaseSerialWorker#setDirectSync(boolean)}）；使用{@link FakePortWorker}，写入时马上收到响应，
+ * 测到的只有排队、线程切换、等待响应等流程本身的开销；B/op只统计调用线程，直接执行时等待响应用的对象也在调用线程中分配
+ */
+public class DirectSyncBenchmark {
+
+    private static final int OPS = 200000;
+    private static final int TRIALS = 3;
+
+    public static void main(String[] args) throws Exception {
+        FakePortWorker worker = new FakePortWorker();
+        worker.mAnswer = true;
+
+        System.out.println(String.format("%-10s %10s %10s %10s %10s", "mode", "mean ns", "p50 ns",
+            "p99 ns", "B/op"));
+        for (int round = 0; round < 2; round++) {
+            // 第一轮为预热，不输出
+            boolean print = round > 0;
+            measure("executor", worker, false, print);
+            measure("direct", worker, true, print);
+        }
+        worker.release();
+    }
+
+    private static void measure(String name, FakePortWorker worker, boolean direct,
+        boolean print) throws Exception {
+        worker.setDirectSync(direct);
+        FakePortWorker.Command command = new FakePortWorker.Command();
+        long[] samples = new long[OPS];
+        double bestMean = Double.MAX_VALUE;
+        long p50 = 0;
+        long p99 = 0;
+        double bytesPerOp = 0;
+        for (int trial = 0; trial < TRIALS; trial++) {
+            long allocated = BenchmarkUtils.currentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < OPS; i++) {
+                long t = System.nanoTime();
+                worker.syncSend(command);
+                samples[i] = System.nanoTime() - t;
+            }
+            long nanos = System.nanoTime() - start;
+            allocated = BenchmarkUtils.currentThreadAllocatedBytes() - allocated;
+            double mean = (double) nanos / OPS;
+            if (mean < bestMean) {
+                bestMean = mean;
+                p50 = BenchmarkUtils.percentile(samples, OPS, 50);
+                p99 = BenchmarkUtils.percentile(samples, OPS, 99);
+                bytesPerOp = (double) allocated / OPS;
+            }
+        }
+        if (print) {
+            System.out.println(String.format("%-10s %10.0f %10d %10d %10.1f", name, bestMean, p50,
+                p99, bytesPerOp));
+        }
+    }
+}
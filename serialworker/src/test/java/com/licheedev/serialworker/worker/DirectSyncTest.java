@@ -0,0 +1,74 @@
+package com.licheedev.serialworker.worker;
+
+import com.licheedev.serialworker.core.Callback;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DirectSyncTest {
+
+    private final FakePortWorker mWorker = new FakePortWorker();
+
+    @After
+    public void tearDown() {
+        mWorker.release();
+    }
+
+    @Test
+    public void syncSend_bothModes() throws Exception {
+        mWorker.mAnswer = true;
+        assertNotNull(mWorker.syncSend(new FakePortWorker.Command()));
+
+        mWorker.setDirectSync(true);
+        assertTrue(mWorker.isDirectSync());
+        assertNotNull(mWorker.syncSend(new FakePortWorker.Command()));
+    }
+
+    @Test(expected = TimeoutException.class)
+    public void direct_noResponse_timesOut() throws Exception {
+        mWorker.setDirectSync(true);
+        mWorker.setTimeout(20);
+        mWorker.syncSend(new FakePortWorker.Command());
+    }
+
+    @Test
+    public void syncSendFromSerialThread_doesNotDeadlock() throws Exception {
+        syncSendFromSerialThread(false);
+        syncSendFromSerialThread(true);
+    }
+
+    private void syncSendFromSerialThread(boolean direct) throws Exception {
+        mWorker.mAnswer = true;
+        mWorker.setDirectSync(direct);
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<Object> result = new AtomicReference<>();
+
+        // 回调在串口线程中执行，再次同步发送时直接执行，不会自己等自己
+        mWorker.sendOnly(new FakePortWorker.Command(), new Callback<Void>() {
+            @Override
+            public void onSuccess(Void aVoid) {
+                try {
+                    result.set(mWorker.syncSend(new FakePortWorker.Command()));
+                } catch (Exception e) {
+                    result.set(e);
+                }
+                latch.countDown();
+            }
+
+            @Override
+            public void onFailure(Throwable tr) {
+                result.set(tr);
+                latch.countDown();
+            }
+        }, null);
+
+        assertTrue("deadlock, direct=" + direct, latch.await(5, TimeUnit.SECONDS));
+        assertTrue(String.valueOf(result.get()),
+            result.get() instanceof FakePortWorker.Response);
+    }
+}
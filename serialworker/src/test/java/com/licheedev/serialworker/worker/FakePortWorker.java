@@ -0,0 +1,138 @@
+package com.licheedev.serialworker.worker;
+
+import androidx.annotation.NonNull;
+import com.licheedev.serialworker.core.PooledSendData;
+import com.licheedev.serialworker.core.RecvData;
+import com.licheedev.serialworker.core.SendData;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 不需要真实串口的worker，写入的数据直接丢弃；开启应答时，每次写入都在写入的线程中马上“收到”同一个响应，
+ * 用来测量收发流程本身（排队、线程切换、等待响应）的开销。
+ * 没有BufferedOutputStream，每次rawSend都是一次write，flush单独计数
+ */
+class FakePortWorker extends Rs232SerialWorker<FakePortWorker.Command, FakePortWorker.Response> {
+
+    private final Response mResponse = new Response();
+    final AtomicInteger mWrites = new AtomicInteger(); // 写入的次数
+    final AtomicInteger mFlushes = new AtomicInteger(); // flush的次数
+    volatile IOException mFlushError; // 不为null时flush抛出此异常
+    volatile boolean mAnswer;
+
+    FakePortWorker() {
+        mOutputStream = new OutputStream() {
+            @Override
+            public void write(int b) {
+                write(null, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                mWrites.incrementAndGet();
+                if (mAnswer) {
+                    dispatchResponse(mResponse);
+                }
+            }
+
+            @Override
+            public void flush() throws IOException {
+                mFlushes.incrementAndGet();
+                IOException error = mFlushError;
+                if (error != null) {
+                    throw error;
+                }
+            }
+        };
+    }
+
+    @Override
+    public boolean isMyResponse(Command sendData, Response recvData) {
+        return true;
+    }
+
+    @Override
+    public void onReceiveData(@NonNull Response recvData) {
+        // 空实现
+    }
+
+    /**
+     * 帧头2字节、命令、4字节参数、异或校验
+     */
+    static class Command implements PooledSendData {
+
+        private static final int LENGTH = 8;
+
+        int mArg;
+        private long mSendTime;
+
+        @Override
+        public int encodedLength() {
+            return LENGTH;
+        }
+
+        @Override
+        public void encode(@NonNull byte[] buffer, int offset) {
+            buffer[offset] = 0x3B;
+            buffer[offset + 1] = (byte) 0xB3;
+            buffer[offset + 2] = 0x01;
+            buffer[offset + 3] = (byte) (mArg >> 24);
+            buffer[offset + 4] = (byte) (mArg >> 16);
+            buffer[offset + 5] = (byte) (mArg >> 8);
+            buffer[offset + 6] = (byte) mArg;
+            byte xor = 0;
+            for (int i = offset; i < offset + LENGTH - 1; i++) {
+                xor ^= buffer[i];
+            }
+            buffer[offset + LENGTH - 1] = xor;
+        }
+
+        @NonNull
+        @Override
+        public byte[] toBytes() {
+            byte[] bytes = new byte[LENGTH];
+            encode(bytes, 0);
+            return bytes;
+        }
+
+        @Override
+        public long getSendTime() {
+            return mSendTime;
+        }
+
+        @Override
+        public void updateSendTime() {
+            mSendTime = System.nanoTime();
+        }
+
+        @Override
+        public long timeout() {
+            return 0;
+        }
+    }
+
+    static class Response implements RecvData {
+
+        final int mArg;
+
+        Response() {
+            this(0);
+        }
+
+        Response(int arg) {
+            mArg = arg;
+        }
+
+        @Override
+        public long getRecvTime() {
+            return 0;
+        }
+
+        @NonNull
+        @Override
+        public byte[] getAllPack() {
+            return new byte[0];
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.licheedev.serialworker.worker;
+
+import androidx.annotation.NonNull;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 不需要真实串口的{@link Rs232SerialWorkerX}，记录写入串口的命令参数；响应由测试调用{@link #respond(int)}模拟收到，
+ * 参数相同的响应才是命令的响应
+ */
+class FakePortWorkerX
+    extends Rs232SerialWorkerX<FakePortWorker.Command, FakePortWorker.Response> {
+
+    final CopyOnWriteArrayList<Integer> mSent = new CopyOnWriteArrayList<>(); // 写入缓存的命令参数
+    final AtomicInteger mFlushes = new AtomicInteger(); // flush的次数
+    volatile IOException mFlushError; // 不为null时flush抛出此异常
+
+    FakePortWorkerX() {
+        this(null);
+    }
+
+    FakePortWorkerX(SerialWorkerGroup group) {
+        super(group);
+        mOutputStream = new OutputStream() {
+            @Override
+            public void write(int b) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                // 参数在第4到7个字节，参考FakePortWorker.Command
+                mSent.add(((b[off + 3] & 0xFF) << 24) | ((b[off + 4] & 0xFF) << 16)
+                    | ((b[off + 5] & 0xFF) << 8) | (b[off + 6] & 0xFF));
+            }
+
+            @Override
+            public void flush() throws IOException {
+                mFlushes.incrementAndGet();
+                IOException error = mFlushError;
+                if (error != null) {
+                    throw error;
+                }
+            }
+        };
+    }
+
+    static FakePortWorker.Command command(int arg) {
+        FakePortWorker.Command command = new FakePortWorker.Command();
+        command.mArg = arg;
+        return command;
+    }
+
+    /**
+     * 模拟读线程收到参数为arg的响应
+     */
+    void respond(int arg) {
+        dispatchResponse(new FakePortWorker.Response(arg));
+    }
+
+    @Override
+    public boolean isMyResponse(FakePortWorker.Command sendData,
+        FakePortWorker.Response recvData) {
+        return sendData.mArg == recvData.mArg;
+    }
+
+    @Override
+    public void onReceiveData(@NonNull FakePortWorker.Response recvData) {
+        // 空实现
+    }
+}
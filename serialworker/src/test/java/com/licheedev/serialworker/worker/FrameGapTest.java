@@ -0,0 +1,97 @@
+package com.licheedev.serialworker.worker;
+
+import android.os.Build;
+import androidx.annotation.NonNull;
+import com.licheedev.serialworker.core.ReadWaitStrategy;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FrameGapTest {
+
+    private final int mSdkInt = Build.VERSION.SDK_INT;
+    private final FakePortWorker mWorker = new FakePortWorker();
+
+    @After
+    public void tearDown() {
+        Build.VERSION.SDK_INT = mSdkInt;
+        mWorker.release();
+    }
+
+    @Test
+    public void lowBaudrate_isThreeAndHalfChars() {
+        // 默认9600，8N1，一个字符10位
+        assertEquals(10 * 3_500_000_000L / 9600, mWorker.getFrameGapNanos());
+        mWorker.setDevice("/dev/ttyS0", 9600);
+        assertEquals(3_645_833L, mWorker.getFrameGapNanos());
+        // 8E1，一个字符11位
+        mWorker.setDevice("/dev/ttyS0", 4800);
+        mWorker.setParams(8, 2, 1);
+        assertEquals(11 * 3_500_000_000L / 4800, mWorker.getFrameGapNanos());
+        // 19200还按字符时间算
+        mWorker.setDevice("/dev/ttyS0", 19200);
+        assertEquals(11 * 3_500_000_000L / 19200, mWorker.getFrameGapNanos());
+    }
+
+    @Test
+    public void highBaudrate_isFixed() {
+        mWorker.setDevice("/dev/ttyS0", 38400);
+        assertEquals(1_750_000L, mWorker.getFrameGapNanos());
+        mWorker.setDevice("/dev/ttyS0", 115200);
+        assertEquals(1_750_000L, mWorker.getFrameGapNanos());
+    }
+
+    @Test
+    public void explicitGap_overridesComputed() {
+        mWorker.setDevice("/dev/ttyS0", 9600);
+        mWorker.setFrameGapNanos(5_000_000L);
+        assertEquals(5_000_000L, mWorker.getFrameGapNanos());
+        mWorker.setFrameGapNanos(0);
+        assertEquals(3_645_833L, mWorker.getFrameGapNanos());
+    }
+
+    @Test
+    public void sleepStrategy_isReplacedByBlocking() {
+        Build.VERSION.SDK_INT = 21;
+        assertTrue(mWorker.newReadWaitStrategy() instanceof SleepReadWaitStrategy);
+        assertTrue(mWorker.newTimedReadWaitStrategy() instanceof BlockingReadWaitStrategy);
+    }
+
+    @Test
+    public void sleepStrategy_isReplacedByBackoffBeforeApi21() {
+        Build.VERSION.SDK_INT = 19;
+        mWorker.setDevice("/dev/ttyS0", 9600);
+        ReadWaitStrategy strategy = mWorker.newTimedReadWaitStrategy();
+        assertTrue(strategy instanceof BackoffReadWaitStrategy);
+        // 最长只park半个帧间隔
+        assertEquals(3_645_833L / 2, ((BackoffReadWaitStrategy) strategy).getMaxParkNanos());
+
+        mWorker.setDevice("/dev/ttyS0", 115200);
+        strategy = mWorker.newTimedReadWaitStrategy();
+        assertEquals(875_000L, ((BackoffReadWaitStrategy) strategy).getMaxParkNanos());
+    }
+
+    @Test
+    public void otherStrategy_isKept() {
+        final YieldReadWaitStrategy yield = new YieldReadWaitStrategy();
+        FakePortWorker worker = new FakePortWorker() {
+            @NonNull
+            @Override
+            protected ReadWaitStrategy newReadWaitStrategy() {
+                return yield;
+            }
+        };
+        try {
+            Build.VERSION.SDK_INT = 21;
+            assertSame(yield, worker.newTimedReadWaitStrategy());
+            Build.VERSION.SDK_INT = 19;
+            assertSame(yield, worker.newTimedReadWaitStrategy());
+        } finally {
+            worker.release();
+        }
+
+        mWorker.setBlockingRead(true);
+        assertTrue(mWorker.newTimedReadWaitStrategy() instanceof BlockingReadWaitStrategy);
+    }
+}
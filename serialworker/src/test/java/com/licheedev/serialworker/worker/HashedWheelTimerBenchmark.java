@@ -0,0 +1,161 @@
+package com.licheedev.serialworker.worker;
+
+import com.licheedev.serialworker.BenchmarkUtils;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 时间轮和原来每个请求一个wait(timeout)的超时方式对比：
+ * <ol>
+ * <li>响应先到（最常见）：添加再取消一个超时的耗时，对比一个线程wait(timeout)、另一个线程notify的耗时</li>
+ * <li>大量请求同时超时：到期的延迟（p50/p99），wait方式每个超时要占一个线程</li>
+ * </ol>
+ */
+public class HashedWheelTimerBenchmark {
+
+    private static final int CANCEL_OPS = 1_000_000;
+    private static final int NOTIFY_OPS = 100_000;
+    private static final int WHEEL_OUTSTANDING = 20_000;
+    private static final int WAIT_OUTSTANDING = 1_000;
+    private static final long TIMEOUT_MILLIS = 200;
+
+    public static void main(String[] args) throws Exception {
+        HashedWheelTimer timer = new HashedWheelTimer("benchmark-timer");
+        try {
+            // 预热
+            armAndCancel(timer, CANCEL_OPS);
+            waitAndNotify(NOTIFY_OPS / 10);
+
+            System.out.println(String.format("arm+cancel   wheel: %8.0f ns/op", armAndCancel(timer,
+                CANCEL_OPS)));
+            System.out.println(String.format("wait+notify  monitor: %6.0f ns/op",
+                waitAndNotify(NOTIFY_OPS)));
+
+            expireWheel(timer, WHEEL_OUTSTANDING / 10, false);
+            expireWheel(timer, WHEEL_OUTSTANDING, true);
+            expireWait(WAIT_OUTSTANDING);
+        } finally {
+            timer.stop();
+        }
+    }
+
+    private static double armAndCancel(HashedWheelTimer timer, int ops) {
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+        long start = System.nanoTime();
+        for (int i = 0; i < ops; i++) {
+            timer.newTimeout(task, TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).cancel();
+        }
+        return (System.nanoTime() - start) / (double) ops;
+    }
+
+    /**
+     * 原来的方式：发送线程wait(timeout)，读线程收到响应后notify
+     */
+    private static double waitAndNotify(final int ops) throws Exception {
+        final Object lock = new Object();
+        final int[] turn = new int[1];
+        Thread responder = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < ops; i++) {
+                    synchronized (lock) {
+                        while (turn[0] != 1) {
+                            waitNoThrow(lock, 0);
+                        }
+                        turn[0] = 0;
+                        lock.notifyAll();
+                    }
+                }
+            }
+        });
+        responder.start();
+        long start = System.nanoTime();
+        for (int i = 0; i < ops; i++) {
+            synchronized (lock) {
+                turn[0] = 1;
+                lock.notifyAll();
+                while (turn[0] != 0) {
+                    waitNoThrow(lock, TIMEOUT_MILLIS);
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        responder.join();
+        return elapsed / (double) ops;
+    }
+
+    private static void expireWheel(HashedWheelTimer timer, int count, boolean report)
+        throws Exception {
+        final long[] lateness = new long[count];
+        final CountDownLatch latch = new CountDownLatch(count);
+        long armStart = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            final int index = i;
+            final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+            timer.newTimeout(new Runnable() {
+                @Override
+                public void run() {
+                    lateness[index] = System.nanoTime() - deadline;
+                    latch.countDown();
+                }
+            }, TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        long armNanos = System.nanoTime() - armStart;
+        latch.await();
+        if (report) {
+            print("wheel", count, armNanos, lateness, 1);
+        }
+    }
+
+    private static void expireWait(int count) throws Exception {
+        final long[] lateness = new long[count];
+        final CountDownLatch started = new CountDownLatch(count);
+        final CountDownLatch done = new CountDownLatch(count);
+        final Object[] locks = new Object[count];
+        long armStart = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            final int index = i;
+            locks[i] = new Object();
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (locks[index]) {
+                        long deadline =
+                            System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+                        started.countDown();
+                        waitNoThrow(locks[index], TIMEOUT_MILLIS);
+                        lateness[index] = System.nanoTime() - deadline;
+                    }
+                    done.countDown();
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+        started.await();
+        long armNanos = System.nanoTime() - armStart;
+        done.await();
+        print("wait", count, armNanos, lateness, count);
+    }
+
+    private static void print(String name, int count, long armNanos, long[] lateness,
+        int threads) {
+        System.out.println(String.format(
+            "expire %-7s n=%6d arm=%7.0f ns/op threads=%5d late p50=%6.2f ms p99=%6.2f ms", name,
+            count, armNanos / (double) count, threads,
+            BenchmarkUtils.percentile(lateness, count, 50) / 1e6,
+            BenchmarkUtils.percentile(lateness, count, 99) / 1e6));
+    }
+
+    private static void waitNoThrow(Object lock, long timeout) {
+        try {
+            lock.wait(timeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.licheedev.serialworker.worker;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HashedWheelTimerTest {
+
+    private HashedWheelTimer mTimer;
+
+    @Before
+    public void setUp() {
+        // 一圈只有8个tick，容易覆盖多圈的情况
+        mTimer = new HashedWheelTimer("test-timer", 1, TimeUnit.MILLISECONDS, 8);
+    }
+
+    @After
+    public void tearDown() {
+        mTimer.stop();
+    }
+
+    @Test
+    public void expiresAfterDelay() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicLong firedAt = new AtomicLong();
+        long start = System.nanoTime();
+        HashedWheelTimer.Timeout timeout = mTimer.newTimeout(new Runnable() {
+            @Override
+            public void run() {
+                firedAt.set(System.nanoTime());
+                latch.countDown();
+            }
+        }, 30, TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertTrue(firedAt.get() - start >= TimeUnit.MILLISECONDS.toNanos(30));
+        assertTrue(timeout.isExpired());
+        assertFalse(timeout.cancel());
+        assertEquals(0, mTimer.getPendingCount());
+    }
+
+    @Test
+    public void cancelledTimeout_neverRuns() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        HashedWheelTimer.Timeout timeout = mTimer.newTimeout(new Runnable() {
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+            }
+        }, 20, TimeUnit.MILLISECONDS);
+
+        assertEquals(1, mTimer.getPendingCount());
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+        assertTrue(timeout.isCancelled());
+        assertEquals(0, mTimer.getPendingCount());
+
+        Thread.sleep(60);
+        assertEquals(0, runs.get());
+        assertFalse(timeout.isExpired());
+    }
+
+    @Test
+    public void nonPositiveDelay_expiresPromptly() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(2);
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        };
+        mTimer.newTimeout(task, 0, TimeUnit.MILLISECONDS);
+        mTimer.newTimeout(task, -5, TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(500, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void delayLongerThanOneRound_waitsFullDelay() throws Exception {
+        // 8个tick一圈，50毫秒要转6圈多
+        final CountDownLatch latch = new CountDownLatch(1);
+        long start = System.nanoTime();
+        mTimer.newTimeout(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        }, 50, TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    @Test
+    public void manyTimeouts_allExpireOrCancel() throws Exception {
+        final int count = 20000;
+        final AtomicInteger runs = new AtomicInteger();
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+            }
+        };
+        HashedWheelTimer.Timeout[] timeouts = new HashedWheelTimer.Timeout[count];
+        for (int i = 0; i < count; i++) {
+            timeouts[i] = mTimer.newTimeout(task, 50 + i % 100, TimeUnit.MILLISECONDS);
+        }
+        // 取消一半，已经到期的取消不了
+        int cancelled = 0;
+        for (int i = 1; i < count; i += 2) {
+            if (timeouts[i].cancel()) {
+                cancelled++;
+            }
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (mTimer.getPendingCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, mTimer.getPendingCount());
+        assertEquals(count - cancelled, runs.get());
+        for (HashedWheelTimer.Timeout timeout : timeouts) {
+            assertTrue(timeout.isExpired() != timeout.isCancelled());
+        }
+    }
+
+    @Test
+    public void throwingTask_doesNotStopTimer() throws Exception {
+        mTimer.newTimeout(new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("test");
+            }
+        }, 1, TimeUnit.MILLISECONDS);
+        final CountDownLatch latch = new CountDownLatch(1);
+        mTimer.newTimeout(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        }, 10, TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void stop_dropsPendingAndRejectsNew() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        mTimer.newTimeout(new Runnable() {
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+            }
+        }, 20, TimeUnit.MILLISECONDS);
+        mTimer.stop();
+
+        Thread.sleep(60);
+        assertEquals(0, runs.get());
+        try {
+            mTimer.newTimeout(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }, 1, TimeUnit.MILLISECONDS);
+            fail("newTimeout after stop");
+        } catch (IllegalStateException e) {
+            // 预期
+        }
+    }
+
+    @Test
+    public void idleTimer_wakesForNewTimeout() throws Exception {
+        final CountDownLatch first = new CountDownLatch(1);
+        mTimer.newTimeout(new Runnable() {
+            @Override
+            public void run() {
+                first.countDown();
+            }
+        }, 1, TimeUnit.MILLISECONDS);
+        assertTrue(first.await(1, TimeUnit.SECONDS));
+        // 没有超时了，线程会无限期休眠，新的超时要能把它唤醒
+        Thread.sleep(30);
+
+        final CountDownLatch second = new CountDownLatch(1);
+        long start = System.nanoTime();
+        mTimer.newTimeout(new Runnable() {
+            @Override
+            public void run() {
+                second.countDown();
+            }
+        }, 5, TimeUnit.MILLISECONDS);
+
+        assertTrue(second.await(1, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500));
+    }
+}
@@ -0,0 +1,179 @@
+package com.licheedev.serialworker.worker;
+
+import com.licheedev.serialworker.core.ResponseFuture;
+import com.licheedev.serialworker.core.SerialOverloadException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PipelineTest {
+
+    private final FakePortWorkerX mWorker = new FakePortWorkerX();
+
+    @After
+    public void tearDown() {
+        mWorker.release();
+    }
+
+    /**
+     * 等命令写入串口
+     */
+    private void awaitSent(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (mWorker.mSent.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(count, mWorker.mSent.size());
+    }
+
+    private List<ResponseFuture<FakePortWorker.Response>> sendAll(int... args) {
+        List<ResponseFuture<FakePortWorker.Response>> futures = new ArrayList<>();
+        for (int arg : args) {
+            futures.add(mWorker.sendAsync(FakePortWorkerX.command(arg)));
+        }
+        return futures;
+    }
+
+    private static Throwable failure(ResponseFuture<?> future) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+        fail();
+        return null;
+    }
+
+    @Test
+    public void fullWindow_drainsBacklogInOrder() throws Exception {
+        mWorker.setTimeout(0);
+        mWorker.setPipelineWindow(2);
+        assertEquals(2, mWorker.getPipelineWindow());
+        List<ResponseFuture<FakePortWorker.Response>> futures = sendAll(1, 2, 3, 4, 5);
+
+        // 只发送窗口内的，其余排队
+        awaitSent(2);
+        Thread.sleep(50);
+        assertEquals(2, mWorker.mSent.size());
+        assertEquals(2, mWorker.getInFlightCount());
+        assertEquals(3, mWorker.getPipelineBacklogSize());
+
+        // 每完成一条，发送排队中的下一条
+        mWorker.respond(2);
+        awaitSent(3);
+        mWorker.respond(1);
+        awaitSent(4);
+        mWorker.respond(3);
+        awaitSent(5);
+        mWorker.respond(5);
+        mWorker.respond(4);
+        for (int i = 0; i < futures.size(); i++) {
+            assertEquals(i + 1, futures.get(i).get(5, TimeUnit.SECONDS).mArg);
+        }
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5), mWorker.mSent);
+        assertEquals(0, mWorker.getInFlightCount());
+        assertEquals(0, mWorker.getPipelineBacklogSize());
+    }
+
+    @Test
+    public void enlargingWindow_sendsBacklog() throws Exception {
+        mWorker.setTimeout(0);
+        mWorker.setPipelineWindow(1);
+        sendAll(1, 2, 3);
+        awaitSent(1);
+        mWorker.setPipelineWindow(0);
+        awaitSent(3);
+        assertEquals(0, mWorker.getPipelineBacklogSize());
+    }
+
+    @Test
+    public void fifo_responsesGoToOldestRequest() throws Exception {
+        mWorker.setTimeout(0);
+        mWorker.setPipelineFifo(true);
+        assertTrue(mWorker.isPipelineFifo());
+        List<ResponseFuture<FakePortWorker.Response>> futures = sendAll(1, 2, 3);
+        awaitSent(3);
+
+        // 只交给最早的请求检查，不是它的响应就丢掉
+        mWorker.respond(2);
+        assertFalse(futures.get(1).isDone());
+        mWorker.respond(1);
+        mWorker.respond(2);
+        mWorker.respond(3);
+        for (int i = 0; i < futures.size(); i++) {
+            assertEquals(i + 1, futures.get(i).get(5, TimeUnit.SECONDS).mArg);
+        }
+    }
+
+    @Test
+    public void fifo_timedOutHeadReleasesQueue() throws Exception {
+        mWorker.setPipelineFifo(true);
+        mWorker.setTimeout(100);
+        ResponseFuture<FakePortWorker.Response> first =
+            mWorker.sendAsync(FakePortWorkerX.command(1));
+        mWorker.setTimeout(0);
+        List<ResponseFuture<FakePortWorker.Response>> rest = sendAll(2, 3);
+        awaitSent(3);
+
+        // 第一条的响应丢了，超时后后面的请求才能收到响应
+        assertTrue(failure(first) instanceof TimeoutException);
+        // 迟到的响应交给下一条检查，不匹配就丢掉
+        mWorker.respond(1);
+        assertFalse(rest.get(0).isDone());
+        mWorker.respond(2);
+        mWorker.respond(3);
+        assertEquals(2, rest.get(0).get(5, TimeUnit.SECONDS).mArg);
+        assertEquals(3, rest.get(1).get(5, TimeUnit.SECONDS).mArg);
+    }
+
+    @Test
+    public void fullBacklog_failsWithOverload() throws Exception {
+        mWorker.setTimeout(0);
+        mWorker.setPipelineWindow(1);
+        mWorker.setQueueCapacity(2);
+        List<ResponseFuture<FakePortWorker.Response>> futures = sendAll(1, 2, 3, 4);
+
+        // 1条在途，2条排队，第4条马上失败
+        assertTrue(failure(futures.get(3)) instanceof SerialOverloadException);
+        assertEquals(1, mWorker.getOverloadCount());
+        assertEquals(2, mWorker.getPipelineBacklogSize());
+
+        for (int i = 1; i <= 3; i++) {
+            awaitSent(i);
+            mWorker.respond(i);
+        }
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i + 1, futures.get(i).get(5, TimeUnit.SECONDS).mArg);
+        }
+        assertEquals(Arrays.asList(1, 2, 3), mWorker.mSent);
+    }
+
+    @Test
+    public void cancel_freesSlot() throws Exception {
+        mWorker.setTimeout(0);
+        mWorker.setPipelineWindow(1);
+        List<ResponseFuture<FakePortWorker.Response>> futures = sendAll(1, 2, 3);
+        awaitSent(1);
+
+        // 取消排队中的请求，不会发送
+        assertTrue(futures.get(1).cancel(true));
+        assertEquals(1, mWorker.getPipelineBacklogSize());
+        // 取消在途的请求，空出窗口发送下一条
+        assertTrue(futures.get(0).cancel(true));
+        awaitSent(2);
+        assertEquals(Arrays.asList(1, 3), mWorker.mSent);
+        assertEquals(1, mWorker.getInFlightCount());
+        assertEquals(0, mWorker.getPipelineBacklogSize());
+
+        mWorker.respond(3);
+        assertEquals(3, futures.get(2).get(5, TimeUnit.SECONDS).mArg);
+        assertEquals(0, mWorker.getInFlightCount());
+    }
+}
@@ -0,0 +1,220 @@
+package com.licheedev.serialworker.worker;
+
+import com.licheedev.serialworker.core.Callback;
+import com.licheedev.serialworker.core.SerialOverloadException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class QueueAdmissionTest {
+
+    private final FakePortWorker mWorker = new FakePortWorker();
+    private final CountDownLatch mRelease = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        mRelease.countDown();
+        mWorker.release();
+    }
+
+    /**
+     * 让串口线程一直忙（持有串口锁），直到mRelease
+     */
+    private void blockSerialThread() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        mWorker.mSerialExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    mRelease.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * 记录回调结果
+     */
+    private static class ResultCallback implements Callback<Void> {
+
+        final CountDownLatch mDone = new CountDownLatch(1);
+        final AtomicReference<Throwable> mError = new AtomicReference<>();
+
+        @Override
+        public void onSuccess(Void aVoid) {
+            mDone.countDown();
+        }
+
+        @Override
+        public void onFailure(Throwable tr) {
+            mError.set(tr);
+            mDone.countDown();
+        }
+
+        Throwable await() throws InterruptedException {
+            assertTrue(mDone.await(5, TimeUnit.SECONDS));
+            return mError.get();
+        }
+    }
+
+    @Test
+    public void capacity_failsFastWhenFull() throws Exception {
+        mWorker.setQueueCapacity(1);
+        assertEquals(1, mWorker.getQueueCapacity());
+        blockSerialThread();
+
+        ResultCallback queued = new ResultCallback();
+        mWorker.sendOnly(new FakePortWorker.Command(), queued, null);
+        assertEquals(1, mWorker.getQueueDepth());
+
+        ResultCallback overflow = new ResultCallback();
+        mWorker.sendOnly(new FakePortWorker.Command(), overflow, null);
+        // 不用等串口线程空闲，马上失败
+        assertTrue(overflow.await() instanceof SerialOverloadException);
+        try {
+            mWorker.syncSendOnly(new FakePortWorker.Command());
+            fail();
+        } catch (SerialOverloadException e) {
+            // 期望
+        }
+        assertEquals(2, mWorker.getOverloadCount());
+
+        mRelease.countDown();
+        assertNull(queued.await());
+        assertEquals(1, mWorker.mWrites.get());
+    }
+
+    @Test
+    public void maxQueueWait_expiredRequestIsNotSent() throws Exception {
+        mWorker.setMaxQueueWait(50);
+        assertEquals(50, mWorker.getMaxQueueWait());
+        blockSerialThread();
+
+        ResultCallback callback = new ResultCallback();
+        mWorker.sendOnly(new FakePortWorker.Command(), callback, null);
+        Thread.sleep(100);
+        mRelease.countDown();
+
+        assertTrue(callback.await() instanceof SerialOverloadException);
+        assertEquals(0, mWorker.mWrites.get());
+        assertEquals(1, mWorker.getOverloadCount());
+
+        // 没有排队太久的正常发送
+        mWorker.syncSendOnly(new FakePortWorker.Command());
+        assertEquals(1, mWorker.mWrites.get());
+    }
+
+    @Test
+    public void direct_capacityCountsLockWaiters() throws Exception {
+        mWorker.setDirectSync(true);
+        mWorker.setQueueCapacity(1);
+        blockSerialThread();
+
+        // 直接执行模式下，等待串口锁的线程也算在队列深度中
+        final CountDownLatch sent = new CountDownLatch(1);
+        Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mWorker.syncSendOnly(new FakePortWorker.Command());
+                    sent.countDown();
+                } catch (Exception e) {
+                    // 测试失败
+                }
+            }
+        });
+        waiter.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (mWorker.getQueueDepth() < 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(1, mWorker.getQueueDepth());
+
+        try {
+            mWorker.syncSendOnly(new FakePortWorker.Command());
+            fail();
+        } catch (SerialOverloadException e) {
+            // 期望
+        }
+        assertEquals(1, mWorker.getOverloadCount());
+
+        mRelease.countDown();
+        assertTrue(sent.await(5, TimeUnit.SECONDS));
+        assertEquals(1, mWorker.mWrites.get());
+    }
+
+    @Test
+    public void direct_concurrentCallersCannotExceedCapacity() throws Exception {
+        mWorker.setDirectSync(true);
+        mWorker.setQueueCapacity(2);
+        blockSerialThread();
+
+        // 同时调用的线程各自先占位置再检查，不会一起通过检查
+        final int callers = 16;
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch finished = new CountDownLatch(callers);
+        final AtomicInteger overloaded = new AtomicInteger();
+        for (int i = 0; i < callers; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        mWorker.syncSendOnly(new FakePortWorker.Command());
+                    } catch (SerialOverloadException e) {
+                        overloaded.incrementAndGet();
+                    } catch (Exception e) {
+                        // 测试失败
+                    } finally {
+                        finished.countDown();
+                    }
+                }
+            }).start();
+        }
+        start.countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (overloaded.get() < callers - 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(callers - 2, overloaded.get());
+        assertEquals(2, mWorker.getQueueDepth());
+
+        mRelease.countDown();
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertEquals(2, mWorker.mWrites.get());
+        assertEquals(callers - 2, mWorker.getOverloadCount());
+        assertEquals(0, mWorker.getQueueDepth());
+    }
+
+    @Test
+    public void direct_maxQueueWait_timesOutOnLock() throws Exception {
+        mWorker.setDirectSync(true);
+        mWorker.setMaxQueueWait(50);
+        blockSerialThread();
+
+        long start = System.nanoTime();
+        try {
+            mWorker.syncSendOnly(new FakePortWorker.Command());
+            fail();
+        } catch (SerialOverloadException e) {
+            // 期望
+        }
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(0, mWorker.mWrites.get());
+        assertEquals(1, mWorker.getOverloadCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeMaxQueueWait() {
+        mWorker.setMaxQueueWait(-1);
+    }
+}
@@ -0,0 +1,358 @@
+package com.licheedev.serialworker.worker;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ReceiveDispatcherTest {
+
+    /**
+     * 手动执行的线程池，用来模拟处理不过来的使用者
+     */
+    private static class ManualExecutor implements Executor {
+
+        final ArrayDeque<Runnable> mTasks = new ArrayDeque<>();
+        boolean mReject;
+
+        @Override
+        public synchronized void execute(Runnable command) {
+            if (mReject) {
+                throw new RejectedExecutionException();
+            }
+            mTasks.add(command);
+        }
+
+        synchronized Runnable poll() {
+            return mTasks.poll();
+        }
+
+        synchronized int size() {
+            return mTasks.size();
+        }
+
+        void runAll() {
+            Runnable task;
+            while ((task = poll()) != null) {
+                task.run();
+            }
+        }
+    }
+
+    private static class TestDispatcher extends ReceiveDispatcher<String> {
+
+        final List<String> mDelivered = new ArrayList<>();
+
+        TestDispatcher(Executor executor, int capacity, int policy) {
+            super(executor, capacity, policy);
+        }
+
+        @Override
+        void deliver(String s) {
+            if (s.startsWith("throw")) {
+                throw new IllegalStateException(s);
+            }
+            synchronized (mDelivered) {
+                mDelivered.add(s);
+            }
+        }
+    }
+
+    @Test
+    public void deliversInOrder_withOneScheduledTask() {
+        ManualExecutor executor = new ManualExecutor();
+        TestDispatcher dispatcher = new TestDispatcher(executor, 10,
+            Rs232SerialWorker.OVERFLOW_DROP_NEWEST);
+
+        dispatcher.offer("a", null);
+        dispatcher.offer("b", null);
+        dispatcher.offer("c", null);
+
+        // 已经提交过的不重复提交
+        assertEquals(1, executor.size());
+        assertEquals(3, dispatcher.size());
+        executor.runAll();
+        assertEquals(Arrays.asList("a", "b", "c"), dispatcher.mDelivered);
+        assertEquals(0, dispatcher.size());
+
+        // 分发完后再放入的需要重新提交
+        dispatcher.offer("d", null);
+        assertEquals(1, executor.size());
+        executor.runAll();
+        assertEquals(Arrays.asList("a", "b", "c", "d"), dispatcher.mDelivered);
+        assertEquals(0, dispatcher.getDroppedCount());
+    }
+
+    @Test
+    public void largeBacklog_isDeliveredInBatches() {
+        ManualExecutor executor = new ManualExecutor();
+        TestDispatcher dispatcher = new TestDispatcher(executor, 100,
+            Rs232SerialWorker.OVERFLOW_DROP_NEWEST);
+        for (int i = 0; i < 40; i++) {
+            dispatcher.offer("" + i, null);
+        }
+
+        // 一次最多分发32个，剩下的重新提交，让出线程
+        executor.poll().run();
+        assertEquals(32, dispatcher.mDelivered.size());
+        assertEquals(1, executor.size());
+        executor.runAll();
+        assertEquals(40, dispatcher.mDelivered.size());
+        assertEquals("39", dispatcher.mDelivered.get(39));
+    }
+
+    @Test
+    public void dropNewest() {
+        ManualExecutor executor = new ManualExecutor();
+        TestDispatcher dispatcher = new TestDispatcher(executor, 2,
+            Rs232SerialWorker.OVERFLOW_DROP_NEWEST);
+
+        dispatcher.offer("a", null);
+        dispatcher.offer("b", null);
+        dispatcher.offer("c", null);
+        dispatcher.offer("d", null);
+        executor.runAll();
+
+        assertEquals(Arrays.asList("a", "b"), dispatcher.mDelivered);
+        assertEquals(2, dispatcher.getDroppedCount());
+    }
+
+    @Test
+    public void dropOldest() {
+        ManualExecutor executor = new ManualExecutor();
+        TestDispatcher dispatcher = new TestDispatcher(executor, 2,
+            Rs232SerialWorker.OVERFLOW_DROP_OLDEST);
+
+        dispatcher.offer("a", null);
+        dispatcher.offer("b", null);
+        dispatcher.offer("c", null);
+        dispatcher.offer("d", null);
+        assertEquals(2, dispatcher.size());
+        executor.runAll();
+
+        assertEquals(Arrays.asList("c", "d"), dispatcher.mDelivered);
+        assertEquals(2, dispatcher.getDroppedCount());
+    }
+
+    @Test
+    public void keepLatest_replacesQueuedValueInPlace() {
+        ManualExecutor executor = new ManualExecutor();
+        TestDispatcher dispatcher = new TestDispatcher(executor, 10,
+            Rs232SerialWorker.OVERFLOW_KEEP_LATEST);
+        assertTrue(dispatcher.isKeepLatest());
+
+        dispatcher.offer("temp=20", 0x28);
+        dispatcher.offer("door=open", 0xA4);
+        dispatcher.offer("temp=21", 0x28);
+        dispatcher.offer("temp=22", 0x28);
+        // 没有关联键的不合并
+        dispatcher.offer("x", null);
+        dispatcher.offer("x", null);
+        assertEquals(4, dispatcher.size());
+        executor.runAll();
+
+        assertEquals(Arrays.asList("temp=22", "door=open", "x", "x"), dispatcher.mDelivered);
+        assertEquals(2, dispatcher.getDroppedCount());
+
+        // 分发后同一关联键重新排队
+        dispatcher.offer("temp=23", 0x28);
+        executor.runAll();
+        assertEquals("temp=23", dispatcher.mDelivered.get(4));
+    }
+
+    @Test
+    public void keepLatest_overflowDropsOldest() {
+        ManualExecutor executor = new ManualExecutor();
+        TestDispatcher dispatcher = new TestDispatcher(executor, 2,
+            Rs232SerialWorker.OVERFLOW_KEEP_LATEST);
+
+        dispatcher.offer("a1", "a");
+        dispatcher.offer("b1", "b");
+        dispatcher.offer("c1", "c");
+        // a已经被挤出队列，不能再替换
+        dispatcher.offer("a2", "a");
+        executor.runAll();
+
+        assertEquals(Arrays.asList("c1", "a2"), dispatcher.mDelivered);
+        assertEquals(2, dispatcher.getDroppedCount());
+    }
+
+    @Test
+    public void notKeepLatest_ignoresKey() {
+        ManualExecutor executor = new ManualExecutor();
+        TestDispatcher dispatcher = new TestDispatcher(executor, 10,
+            Rs232SerialWorker.OVERFLOW_DROP_OLDEST);
+        assertFalse(dispatcher.isKeepLatest());
+
+        dispatcher.offer("a", 1);
+        dispatcher.offer("b", 1);
+        executor.runAll();
+
+        assertEquals(Arrays.asList("a", "b"), dispatcher.mDelivered);
+    }
+
+    @Test
+    public void block_waitsForConsumer() throws Exception {
+        ManualExecutor executor = new ManualExecutor();
+        final TestDispatcher dispatcher = new TestDispatcher(executor, 2,
+            Rs232SerialWorker.OVERFLOW_BLOCK);
+        dispatcher.offer("a", null);
+        dispatcher.offer("b", null);
+
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                dispatcher.offer("c", null);
+            }
+        });
+        reader.start();
+        waitForState(reader, Thread.State.WAITING);
+        assertEquals(2, dispatcher.size());
+
+        // 消费后读线程继续
+        executor.poll().run();
+        reader.join(5000);
+        assertFalse(reader.isAlive());
+        executor.runAll();
+
+        assertEquals(Arrays.asList("a", "b", "c"), dispatcher.mDelivered);
+        assertEquals(0, dispatcher.getDroppedCount());
+    }
+
+    @Test
+    public void block_interruptDropsFrame() throws Exception {
+        ManualExecutor executor = new ManualExecutor();
+        final TestDispatcher dispatcher = new TestDispatcher(executor, 1,
+            Rs232SerialWorker.OVERFLOW_BLOCK);
+        dispatcher.offer("a", null);
+        final boolean[] interrupted = new boolean[1];
+
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                dispatcher.offer("b", null);
+                interrupted[0] = Thread.currentThread().isInterrupted();
+            }
+        });
+        reader.start();
+        waitForState(reader, Thread.State.WAITING);
+        reader.interrupt();
+        reader.join(5000);
+
+        assertTrue(interrupted[0]);
+        assertEquals(1, dispatcher.getDroppedCount());
+        executor.runAll();
+        assertEquals(Arrays.asList("a"), dispatcher.mDelivered);
+    }
+
+    @Test
+    public void close_wakesBlockedReader() throws Exception {
+        ManualExecutor executor = new ManualExecutor();
+        final TestDispatcher dispatcher = new TestDispatcher(executor, 1,
+            Rs232SerialWorker.OVERFLOW_BLOCK);
+        dispatcher.offer("a", null);
+
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                dispatcher.offer("b", null);
+            }
+        });
+        reader.start();
+        waitForState(reader, Thread.State.WAITING);
+        dispatcher.close();
+        reader.join(5000);
+
+        assertFalse(reader.isAlive());
+        assertEquals(0, dispatcher.size());
+        // 关闭后放入的直接忽略
+        dispatcher.offer("c", null);
+        executor.runAll();
+        assertTrue(dispatcher.mDelivered.isEmpty());
+    }
+
+    @Test
+    public void deliverException_doesNotStopOthers() {
+        ManualExecutor executor = new ManualExecutor();
+        TestDispatcher dispatcher = new TestDispatcher(executor, 10,
+            Rs232SerialWorker.OVERFLOW_DROP_NEWEST);
+
+        dispatcher.offer("a", null);
+        dispatcher.offer("throw", null);
+        dispatcher.offer("b", null);
+        executor.runAll();
+
+        assertEquals(Arrays.asList("a", "b"), dispatcher.mDelivered);
+    }
+
+    @Test
+    public void rejectedExecution_dropsQueued() {
+        ManualExecutor executor = new ManualExecutor();
+        TestDispatcher dispatcher = new TestDispatcher(executor, 10,
+            Rs232SerialWorker.OVERFLOW_DROP_NEWEST);
+
+        executor.mReject = true;
+        dispatcher.offer("a", null);
+        assertEquals(1, dispatcher.getDroppedCount());
+        assertEquals(0, dispatcher.size());
+
+        // 线程池恢复后可以继续分发
+        executor.mReject = false;
+        dispatcher.offer("b", null);
+        executor.runAll();
+        assertEquals(Arrays.asList("b"), dispatcher.mDelivered);
+    }
+
+    @Test
+    public void realExecutor_deliversEverything() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        TestDispatcher dispatcher = new TestDispatcher(executor, 8,
+            Rs232SerialWorker.OVERFLOW_BLOCK);
+        try {
+            for (int i = 0; i < 10000; i++) {
+                dispatcher.offer("" + i, null);
+            }
+            long deadline = System.currentTimeMillis() + 5000;
+            while (dispatcher.size() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+
+        assertEquals(10000, dispatcher.mDelivered.size());
+        for (int i = 0; i < 10000; i++) {
+            assertEquals("" + i, dispatcher.mDelivered.get(i));
+        }
+        assertEquals(0, dispatcher.getDroppedCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroCapacity() {
+        new TestDispatcher(new ManualExecutor(), 0, Rs232SerialWorker.OVERFLOW_BLOCK);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownPolicy() {
+        new TestDispatcher(new ManualExecutor(), 1, 4);
+    }
+
+    private static void waitForState(Thread thread, Thread.State state) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (thread.getState() != state) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("thread state " + thread.getState());
+            }
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.licheedev.serialworker.worker;
+
+import com.licheedev.serialworker.core.ResponseFuture;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SendAsyncTest {
+
+    private final FakePortWorkerX mWorker = new FakePortWorkerX();
+
+    @After
+    public void tearDown() {
+        mWorker.release();
+    }
+
+    /**
+     * 等命令写入串口
+     */
+    private void awaitSent(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (mWorker.mSent.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(count, mWorker.mSent.size());
+    }
+
+    @Test
+    public void response_completesFuture() throws Exception {
+        ResponseFuture<FakePortWorker.Response> future =
+            mWorker.sendAsync(FakePortWorkerX.command(7));
+        awaitSent(1);
+        // 参数不同的不是它的响应
+        mWorker.respond(8);
+        assertFalse(future.isDone());
+        mWorker.respond(7);
+        assertEquals(7, future.get(5, TimeUnit.SECONDS).mArg);
+    }
+
+    @Test
+    public void timeout_failsWithTimeoutException() throws Exception {
+        mWorker.setTimeout(50);
+        long start = System.nanoTime();
+        ResponseFuture<FakePortWorker.Response> future =
+            mWorker.sendAsync(FakePortWorkerX.command(1));
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        // 超时后迟到的响应被忽略
+        mWorker.respond(1);
+    }
+
+    @Test
+    public void zeroTimeout_waitsUntilResponse() throws Exception {
+        mWorker.setTimeout(0);
+        ResponseFuture<FakePortWorker.Response> future =
+            mWorker.sendAsync(FakePortWorkerX.command(1));
+        awaitSent(1);
+        Thread.sleep(100);
+        // 超时小于等于0表示不超时
+        assertFalse(future.isDone());
+        mWorker.respond(1);
+        assertEquals(1, future.get(5, TimeUnit.SECONDS).mArg);
+    }
+
+    @Test
+    public void commandTimeout_overridesWorkerTimeout() throws Exception {
+        mWorker.setTimeout(0);
+        FakePortWorker.Command command = new FakePortWorker.Command() {
+            @Override
+            public long timeout() {
+                return 50;
+            }
+        };
+        ResponseFuture<FakePortWorker.Response> future = mWorker.sendAsync(command);
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+    }
+
+    @Test
+    public void cancel_ignoresLateResponse() throws Exception {
+        mWorker.setTimeout(0);
+        ResponseFuture<FakePortWorker.Response> cancelled =
+            mWorker.sendAsync(FakePortWorkerX.command(1));
+        awaitSent(1);
+        assertTrue(cancelled.cancel(true));
+        mWorker.respond(1);
+        try {
+            cancelled.get();
+            fail();
+        } catch (CancellationException e) {
+            // 期望
+        }
+
+        // 取消后同样参数的新请求正常收到响应
+        ResponseFuture<FakePortWorker.Response> next =
+            mWorker.sendAsync(FakePortWorkerX.command(1));
+        awaitSent(2);
+        mWorker.respond(1);
+        assertEquals(1, next.get(5, TimeUnit.SECONDS).mArg);
+        assertEquals(0, mWorker.getInFlightCount());
+    }
+
+    @Test
+    public void listeners_runAfterInternalCleanup() throws Exception {
+        mWorker.setPipelineWindow(1);
+        final ResponseFuture<FakePortWorker.Response> future =
+            mWorker.sendAsync(FakePortWorkerX.command(1));
+        final List<Integer> inFlightSeen = new ArrayList<>();
+        future.addListener(new Runnable() {
+            @Override
+            public void run() {
+                // 内部的清理监听先运行，用户监听运行时窗口已经释放
+                inFlightSeen.add(mWorker.getInFlightCount());
+            }
+        });
+        awaitSent(1);
+        mWorker.respond(1);
+        future.get(5, TimeUnit.SECONDS);
+        assertEquals("[0]", inFlightSeen.toString());
+    }
+
+    @Test
+    public void rawSendX_waitsOnSendAsync() throws Exception {
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    awaitSent(1);
+                    mWorker.respond(3);
+                } catch (InterruptedException e) {
+                    // 测试失败
+                }
+            }
+        }).start();
+        assertEquals(3, mWorker.rawSendX(FakePortWorkerX.command(3)).mArg);
+
+        mWorker.setTimeout(50);
+        try {
+            mWorker.rawSendX(FakePortWorkerX.command(4));
+            fail();
+        } catch (TimeoutException e) {
+            assertEquals(Rs232SerialWorker.SERIAL_PORT_RECEIVES_DATA_TIMEOUT, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.licheedev.serialworker.worker;
+
+import com.licheedev.serialworker.core.Callback;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SendCallTest {
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private final FakePortWorker mWorker = new FakePortWorker();
+
+    @After
+    public void tearDown() {
+        mWorker.release();
+    }
+
+    @Test
+    public void rawSendCallable_canBeCalledAgain() throws Exception {
+        Callable<FakePortWorker.Response> callable =
+            mWorker.rawSendCallable(new FakePortWorker.Command(), 0);
+        // 子类重试或重新提交同一个Callable
+        mWorker.callOnSerialThread(callable);
+        mWorker.callOnSerialThread(callable);
+        assertEquals(2, mWorker.mWrites.get());
+    }
+
+    @Test
+    public void rawSendNoNullCallable_canBeWrapped() throws Exception {
+        mWorker.mAnswer = true;
+        final Callable<FakePortWorker.Response> callable =
+            mWorker.rawSendNoNullCallable(new FakePortWorker.Command(), 1000);
+        FakePortWorker.Response response =
+            mWorker.callOnSerialThread(new Callable<FakePortWorker.Response>() {
+                @Override
+                public FakePortWorker.Response call() throws Exception {
+                    callable.call();
+                    return callable.call();
+                }
+            });
+        assertNotNull(response);
+        assertEquals(2, mWorker.mWrites.get());
+    }
+
+    @Test
+    public void send_eachCallbackGetsOwnResult() throws Exception {
+        mWorker.mAnswer = true;
+        final int count = 200;
+        final CountDownLatch done = new CountDownLatch(count * 2);
+        final AtomicInteger responses = new AtomicInteger();
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        for (int i = 0; i < count; i++) {
+            mWorker.send(new FakePortWorker.Command(), new Callback<FakePortWorker.Response>() {
+                @Override
+                public void onSuccess(FakePortWorker.Response response) {
+                    if (response != null) {
+                        responses.incrementAndGet();
+                    }
+                    done.countDown();
+                }
+
+                @Override
+                public void onFailure(Throwable tr) {
+                    error.set(tr);
+                    done.countDown();
+                }
+            }, DIRECT);
+            // 重复使用的Callable不能把sendOnly的结果交给send，反之亦然
+            mWorker.sendOnly(new FakePortWorker.Command(), new Callback<Void>() {
+                @Override
+                public void onSuccess(Void aVoid) {
+                    done.countDown();
+                }
+
+                @Override
+                public void onFailure(Throwable tr) {
+                    error.set(tr);
+                    done.countDown();
+                }
+            }, DIRECT);
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertNull(error.get());
+        assertEquals(count, responses.get());
+        assertEquals(count * 2, mWorker.mWrites.get());
+    }
+
+    @Test
+    public void sendOnly_commandTimeoutIsNotDeliveredAsVoid() throws Exception {
+        mWorker.mAnswer = true;
+        FakePortWorker.Command command = new FakePortWorker.Command() {
+            @Override
+            public long timeout() {
+                return 1000;
+            }
+        };
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicReference<Object> result = new AtomicReference<>();
+        mWorker.sendOnly(command, new Callback<Void>() {
+            @Override
+            public void onSuccess(Void aVoid) {
+                result.set(aVoid);
+                done.countDown();
+            }
+
+            @Override
+            public void onFailure(Throwable tr) {
+                result.set(tr);
+                done.countDown();
+            }
+        }, DIRECT);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        // 命令自己有超时时会等到响应，但sendOnly只回调null
+        assertNull(result.get());
+    }
+}
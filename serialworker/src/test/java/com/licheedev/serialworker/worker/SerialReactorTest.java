@@ -0,0 +1,295 @@
+package com.licheedev.serialworker.worker;
+
+import androidx.annotation.NonNull;
+import java.io.ByteArrayInputStream;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SerialReactorTest {
+
+    /**
+     * 不需要poll(2)的Poller，由测试决定每一轮哪个串口有事件
+     */
+    private static class FakePoller implements SerialReactor.Poller {
+
+        private static final Object WAKE = new Object();
+
+        final LinkedBlockingQueue<Object> mRounds = new LinkedBlockingQueue<>();
+        volatile boolean mIgnoreWakeup; // 模拟重建pollfd很慢
+        volatile boolean mClosed;
+
+        /**
+         * 下一轮poll时channel有event事件，channel为null表示所有串口
+         */
+        void fire(SerialReactor.Channel channel, int event) {
+            mRounds.add(new Object[] { channel, event });
+        }
+
+        /**
+         * 下一轮poll失败
+         */
+        void fail(IOException error) {
+            mRounds.add(error);
+        }
+
+        @Override
+        public boolean open() {
+            return true;
+        }
+
+        @Override
+        public void poll(@NonNull SerialReactor.Channel[] channels, @NonNull int[] events)
+            throws IOException {
+            Object round;
+            try {
+                round = mRounds.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (round instanceof IOException) {
+                throw (IOException) round;
+            }
+            if (round == WAKE) {
+                return;
+            }
+            Object[] fired = (Object[]) round;
+            for (int i = 0; i < channels.length; i++) {
+                if (fired[0] == null || fired[0] == channels[i]) {
+                    events[i] = (Integer) fired[1];
+                }
+            }
+        }
+
+        @Override
+        public void wakeup() {
+            if (!mIgnoreWakeup) {
+                mRounds.add(WAKE);
+            }
+        }
+
+        @Override
+        public void close() {
+            mClosed = true;
+        }
+    }
+
+    /**
+     * 记录回调的串口
+     */
+    private static class RecordChannel implements SerialReactor.Channel {
+
+        final CountDownLatch mReadable = new CountDownLatch(1);
+        final CountDownLatch mError = new CountDownLatch(1);
+        final AtomicReference<Exception> mErrorCause = new AtomicReference<>();
+        volatile IOException mReadError; // 不为null时读取抛出此异常
+
+        @NonNull
+        @Override
+        public FileDescriptor getFd() {
+            return new FileDescriptor();
+        }
+
+        @Override
+        public void onReadable(@NonNull byte[] buffer) throws IOException {
+            IOException error = mReadError;
+            if (error != null) {
+                throw error;
+            }
+            mReadable.countDown();
+        }
+
+        @Override
+        public void onError(@NonNull Exception e) {
+            mErrorCause.set(e);
+            mError.countDown();
+        }
+    }
+
+    /**
+     * 通过共用的读线程读取数据的worker
+     */
+    private static class ReactorWorker extends FakePortWorker {
+
+        final LinkedBlockingQueue<Integer> mReceived = new LinkedBlockingQueue<>();
+        final CountDownLatch mReactorError = new CountDownLatch(1);
+
+        @Override
+        protected FileDescriptor getSerialFd() {
+            return new FileDescriptor();
+        }
+
+        @Override
+        public void onReceiveData(@NonNull byte[] receiveBuffer, int offset, int length) {
+            mReceived.add(length);
+        }
+
+        @Override
+        protected void onReactorError(@NonNull Exception e) {
+            super.onReactorError(e);
+            mReactorError.countDown();
+        }
+
+        void open(SerialReactor reactor, byte[] data) {
+            setReactor(reactor);
+            mInputStream = new ByteArrayInputStream(data);
+            onSerialOpened(mInputStream, mOutputStream);
+        }
+    }
+
+    private final FakePoller mPoller = new FakePoller();
+    private final SerialReactor mReactor = new SerialReactor("test-reactor", mPoller);
+
+    @After
+    public void tearDown() {
+        mPoller.mIgnoreWakeup = false;
+        mReactor.shutdown();
+    }
+
+    @Test
+    public void unsupported_registerFails() {
+        SerialReactor reactor = new SerialReactor("unsupported", null);
+        assertFalse(reactor.register(new RecordChannel()));
+        assertEquals(0, reactor.getChannelCount());
+    }
+
+    @Test
+    public void readable_callsChannel() throws Exception {
+        RecordChannel channel = new RecordChannel();
+        assertTrue(mReactor.register(channel));
+        // 重复注册无效
+        assertTrue(mReactor.register(channel));
+        assertEquals(1, mReactor.getChannelCount());
+
+        mPoller.fire(channel, SerialReactor.EVENT_READABLE);
+        assertTrue(channel.mReadable.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void unregister_stopsEvents() throws Exception {
+        RecordChannel removed = new RecordChannel();
+        RecordChannel kept = new RecordChannel();
+        mReactor.register(removed);
+        mReactor.register(kept);
+
+        // 返回时已经重建了pollfd，不会再收到这个串口的事件
+        mReactor.unregister(removed);
+        assertEquals(1, mReactor.getChannelCount());
+        mPoller.fire(removed, SerialReactor.EVENT_READABLE);
+        mPoller.fire(kept, SerialReactor.EVENT_READABLE);
+        assertTrue(kept.mReadable.await(5, TimeUnit.SECONDS));
+        assertEquals(1, removed.mReadable.getCount());
+    }
+
+    @Test
+    public void errorEvent_unregistersAndNotifies() throws Exception {
+        RecordChannel channel = new RecordChannel();
+        mReactor.register(channel);
+        mPoller.fire(channel, SerialReactor.EVENT_ERROR);
+        assertTrue(channel.mError.await(5, TimeUnit.SECONDS));
+        assertTrue(channel.mErrorCause.get() instanceof IOException);
+        assertEquals(0, mReactor.getChannelCount());
+    }
+
+    @Test
+    public void readFailure_unregistersAndNotifies() throws Exception {
+        RecordChannel channel = new RecordChannel();
+        IOException error = new IOException("read failed");
+        channel.mReadError = error;
+        mReactor.register(channel);
+        mPoller.fire(channel, SerialReactor.EVENT_READABLE);
+        assertTrue(channel.mError.await(5, TimeUnit.SECONDS));
+        assertSame(error, channel.mErrorCause.get());
+        assertEquals(0, mReactor.getChannelCount());
+    }
+
+    @Test
+    public void pollFailure_notifiesAllAndStops() throws Exception {
+        RecordChannel first = new RecordChannel();
+        RecordChannel second = new RecordChannel();
+        mReactor.register(first);
+        mReactor.register(second);
+        IOException error = new IOException("poll failed");
+        mPoller.fail(error);
+        assertTrue(first.mError.await(5, TimeUnit.SECONDS));
+        assertTrue(second.mError.await(5, TimeUnit.SECONDS));
+        assertSame(error, first.mErrorCause.get());
+        assertSame(error, second.mErrorCause.get());
+        assertTrue(mPoller.mClosed);
+        // 已经停止，不能再注册
+        assertFalse(mReactor.register(new RecordChannel()));
+    }
+
+    @Test
+    public void worker_readsThroughReactor() throws Exception {
+        ReactorWorker worker = new ReactorWorker();
+        try {
+            worker.open(mReactor, new byte[] { 1, 2, 3 });
+            assertEquals(1, mReactor.getChannelCount());
+            mPoller.fire(null, SerialReactor.EVENT_READABLE);
+            assertEquals(Integer.valueOf(3), worker.mReceived.poll(5, TimeUnit.SECONDS));
+
+            worker.closeSerial();
+            assertEquals(0, mReactor.getChannelCount());
+        } finally {
+            worker.release();
+        }
+    }
+
+    @Test
+    public void worker_reactorErrorClosesSerial() throws Exception {
+        ReactorWorker worker = new ReactorWorker();
+        try {
+            worker.open(mReactor, new byte[0]);
+            mPoller.fire(null, SerialReactor.EVENT_ERROR);
+            // 在SerialReactor线程中关闭串口，不会卡住
+            assertTrue(worker.mReactorError.await(5, TimeUnit.SECONDS));
+            assertEquals(0, mReactor.getChannelCount());
+            assertNull(worker.mInputStream);
+        } finally {
+            worker.release();
+        }
+    }
+
+    @Test
+    public void worker_closeDoesNotHoldLockWhileUnregistering() throws Exception {
+        final ReactorWorker worker = new ReactorWorker();
+        try {
+            worker.open(mReactor, new byte[0]);
+            // 读线程迟迟不重建pollfd，取消注册要等到超时
+            mPoller.mIgnoreWakeup = true;
+            final CountDownLatch closed = new CountDownLatch(1);
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    worker.closeSerial();
+                    closed.countDown();
+                }
+            }).start();
+            long deadline = System.currentTimeMillis() + 5000;
+            while (mReactor.getChannelCount() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+
+            // 等待期间，其他线程仍然能拿到串口锁
+            long start = System.nanoTime();
+            worker.isSerialOpened();
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue("elapsed " + elapsed, elapsed < 300);
+            assertEquals(1, closed.getCount());
+
+            mPoller.mIgnoreWakeup = false;
+            mPoller.wakeup();
+            assertTrue(closed.await(5, TimeUnit.SECONDS));
+        } finally {
+            worker.release();
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.licheedev.serialworker.worker;
+
+import com.licheedev.serialworker.core.Prioritized;
+import com.licheedev.serialworker.core.SerialOverloadException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SerialTaskExecutorTest {
+
+    /**
+     * 手动执行的共用线程池，任务只有在runAll时才执行，方便先排好队再检查执行顺序
+     */
+    private static class ManualExecutor implements Executor {
+
+        final ArrayDeque<Runnable> mTasks = new ArrayDeque<>();
+        boolean mReject;
+
+        @Override
+        public synchronized void execute(Runnable command) {
+            if (mReject) {
+                throw new RejectedExecutionException();
+            }
+            mTasks.add(command);
+        }
+
+        synchronized Runnable poll() {
+            return mTasks.poll();
+        }
+
+        synchronized int size() {
+            return mTasks.size();
+        }
+
+        void runAll() {
+            Runnable task;
+            while ((task = poll()) != null) {
+                task.run();
+            }
+        }
+    }
+
+    private final ManualExecutor mBacking = new ManualExecutor();
+    private final SerialTaskExecutor mExecutor = new SerialTaskExecutor(mBacking);
+    private final List<String> mLog = new ArrayList<>();
+
+    private Runnable task(final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                mLog.add(name);
+            }
+        };
+    }
+
+    @Test
+    public void fifoByDefault() {
+        mExecutor.execute(task("a"), Prioritized.PRIORITY_LOW);
+        mExecutor.execute(task("b"), Prioritized.PRIORITY_URGENT);
+        mExecutor.execute(task("c"));
+        assertEquals(3, mExecutor.getQueueSize());
+        mBacking.runAll();
+
+        // 没有开启优先级调度时忽略优先级
+        assertEquals(Arrays.asList("a", "b", "c"), mLog);
+        assertFalse(mExecutor.isPriorityScheduling());
+    }
+
+    @Test
+    public void priority_overtakesQueuedTasks() {
+        mExecutor.setPriorityScheduling(true, 10000);
+        mExecutor.execute(task("poll1"), Prioritized.PRIORITY_LOW);
+        mExecutor.execute(task("poll2"), Prioritized.PRIORITY_LOW);
+        mExecutor.execute(task("normal"), Prioritized.PRIORITY_NORMAL);
+        mExecutor.execute(task("openDoor"), Prioritized.PRIORITY_URGENT);
+        mExecutor.execute(task("poll3"), Prioritized.PRIORITY_LOW);
+        mBacking.runAll();
+
+        // 同一优先级按提交顺序
+        assertEquals(Arrays.asList("openDoor", "normal", "poll1", "poll2", "poll3"), mLog);
+    }
+
+    @Test
+    public void aging_preventsStarvation() throws Exception {
+        // 每级相当于20ms，高2级相当于提前40ms排队
+        mExecutor.setPriorityScheduling(true, 20);
+        mExecutor.execute(task("old"), Prioritized.PRIORITY_LOW);
+        Thread.sleep(100);
+        mExecutor.execute(task("urgent"), Prioritized.PRIORITY_HIGH);
+        mBacking.runAll();
+
+        // 低优先级的已经排队足够久，不会被插队
+        assertEquals(Arrays.asList("old", "urgent"), mLog);
+
+        mLog.clear();
+        mExecutor.execute(task("recent"), Prioritized.PRIORITY_LOW);
+        mExecutor.execute(task("urgent"), Prioritized.PRIORITY_HIGH);
+        mBacking.runAll();
+        assertEquals(Arrays.asList("urgent", "recent"), mLog);
+    }
+
+    @Test
+    public void toggling_keepsQueuedTasks() {
+        mExecutor.execute(task("a"));
+        mExecutor.execute(task("b"));
+        // 开启时已经排队的按普通优先级，保持原来的顺序
+        mExecutor.setPriorityScheduling(true, 10000);
+        mExecutor.execute(task("c"), Prioritized.PRIORITY_HIGH);
+        mExecutor.execute(task("d"), Prioritized.PRIORITY_LOW);
+        assertEquals(4, mExecutor.getQueueSize());
+
+        // 关闭时按当前的优先级顺序转回普通队列
+        mExecutor.setPriorityScheduling(false, 0);
+        mExecutor.execute(task("e"), Prioritized.PRIORITY_URGENT);
+        mBacking.runAll();
+
+        assertEquals(Arrays.asList("c", "a", "b", "d", "e"), mLog);
+    }
+
+    @Test
+    public void queueWaitStats_perPriority() throws Exception {
+        mExecutor.setPriorityScheduling(true, 10000);
+        mExecutor.execute(task("low"), Prioritized.PRIORITY_LOW);
+        mExecutor.execute(task("low"), Prioritized.PRIORITY_LOW);
+        mExecutor.execute(task("high"), Prioritized.PRIORITY_HIGH);
+        Thread.sleep(20);
+        mBacking.runAll();
+
+        SerialTaskExecutor.QueueWaitStats low = mExecutor.getQueueWaitStats(
+            Prioritized.PRIORITY_LOW);
+        SerialTaskExecutor.QueueWaitStats high = mExecutor.getQueueWaitStats(
+            Prioritized.PRIORITY_HIGH);
+        assertEquals(2, low.getCount());
+        assertEquals(1, high.getCount());
+        assertTrue(low.getMaxNanos() >= 20000000L);
+        assertTrue(low.getAverageNanos() <= low.getMaxNanos());
+        assertNull(mExecutor.getQueueWaitStats(Prioritized.PRIORITY_URGENT));
+
+        // 快照不受之后的统计影响
+        mExecutor.execute(task("low"), Prioritized.PRIORITY_LOW);
+        mBacking.runAll();
+        assertEquals(2, low.getCount());
+        assertEquals(3, mExecutor.getQueueWaitStats(Prioritized.PRIORITY_LOW).getCount());
+
+        mExecutor.resetQueueWaitStats();
+        assertNull(mExecutor.getQueueWaitStats(Prioritized.PRIORITY_LOW));
+    }
+
+    @Test
+    public void sharedExecutor_runsInBatches() {
+        for (int i = 0; i < 10; i++) {
+            mExecutor.execute(task("" + i));
+        }
+        assertEquals(1, mBacking.size());
+
+        // 共用线程池时每轮最多执行8个，然后重新排队
+        mBacking.poll().run();
+        assertEquals(8, mLog.size());
+        assertEquals(1, mBacking.size());
+        mBacking.runAll();
+        assertEquals(10, mLog.size());
+    }
+
+    @Test
+    public void taskException_doesNotStopQueue() {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("test");
+            }
+        });
+        mExecutor.execute(task("after"));
+        mBacking.runAll();
+
+        assertEquals(Arrays.asList("after"), mLog);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void enablingWithoutAging() {
+        mExecutor.setPriorityScheduling(true, 0);
+    }
+
+    @Test
+    public void disablingIgnoresAging() {
+        mExecutor.setPriorityScheduling(false, 0);
+        assertFalse(mExecutor.isPriorityScheduling());
+    }
+
+    @Test
+    public void capacity_rejectsWhenFull() {
+        mExecutor.setCapacity(2);
+        assertEquals(2, mExecutor.getCapacity());
+        mExecutor.execute(task("a"));
+        mExecutor.execute(task("b"));
+        try {
+            mExecutor.execute(task("c"));
+            fail();
+        } catch (SerialOverloadException e) {
+            // 期望
+        }
+        assertEquals(1, mExecutor.getRejectedCount());
+        assertEquals(2, mExecutor.getQueueSize());
+
+        // 排队的执行完后又可以提交
+        mBacking.runAll();
+        mExecutor.execute(task("d"));
+        mBacking.runAll();
+        assertEquals(Arrays.asList("a", "b", "d"), mLog);
+    }
+
+    @Test
+    public void capacity_appliesToPriorityQueue() {
+        mExecutor.setPriorityScheduling(true, 10000);
+        mExecutor.setCapacity(1);
+        mExecutor.execute(task("a"), Prioritized.PRIORITY_LOW);
+        try {
+            // 优先级高也不能超出容量
+            mExecutor.execute(task("b"), Prioritized.PRIORITY_URGENT);
+            fail();
+        } catch (SerialOverloadException e) {
+            // 期望
+        }
+        assertEquals(1, mExecutor.getRejectedCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeCapacity() {
+        mExecutor.setCapacity(-1);
+    }
+
+    @Test
+    public void shutdown_rejectsNewTasks() {
+        mExecutor.execute(task("a"));
+        mExecutor.execute(task("b"));
+        List<Runnable> dropped = mExecutor.shutdownNow();
+
+        assertEquals(2, dropped.size());
+        assertTrue(mExecutor.isShutdown());
+        try {
+            mExecutor.execute(task("c"));
+            fail();
+        } catch (RejectedExecutionException e) {
+            assertFalse(e instanceof SerialOverloadException);
+        }
+    }
+
+    @Test
+    public void backingRejects_failsSubmittedTask() {
+        mBacking.mReject = true;
+        try {
+            mExecutor.execute(task("a"));
+            fail();
+        } catch (RejectedExecutionException e) {
+            // 期望
+        }
+        assertEquals(0, mExecutor.getQueueSize());
+
+        // 线程池恢复后可以继续提交
+        mBacking.mReject = false;
+        mExecutor.execute(task("b"));
+        mBacking.runAll();
+        assertEquals(Arrays.asList("b"), mLog);
+    }
+
+    @Test
+    public void backingRejectsReschedule_failsRemainingTasks() throws Exception {
+        List<SerialTaskExecutor.RejectableFutureTask<String>> tasks = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            final String name = "" + i;
+            SerialTaskExecutor.RejectableFutureTask<String> task =
+                new SerialTaskExecutor.RejectableFutureTask<>(new Callable<String>() {
+                    @Override
+                    public String call() {
+                        return name;
+                    }
+                });
+            tasks.add(task);
+            mExecutor.execute(task);
+        }
+
+        // 执行完一轮（8个）后重新提交时被拒绝，剩下的以RejectedExecutionException失败
+        mBacking.mReject = true;
+        mBacking.poll().run();
+
+        for (int i = 0; i < 8; i++) {
+            assertEquals("" + i, tasks.get(i).get());
+        }
+        for (int i = 8; i < 10; i++) {
+            try {
+                tasks.get(i).get();
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof RejectedExecutionException);
+            }
+        }
+        assertEquals(0, mExecutor.getQueueSize());
+    }
+}
@@ -0,0 +1,62 @@
+package com.licheedev.serialworker.worker;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SerialWorkerGroupTest {
+
+    @Test
+    public void defaultReceivePool_isBounded() throws Exception {
+        ThreadPoolExecutor pool = SerialWorkerGroup.newDefaultReceivePool("test");
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            assertEquals(SerialWorkerGroup.DEFAULT_RECEIVE_THREADS, pool.getMaximumPoolSize());
+            Runnable blocker = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            };
+            int capacity = SerialWorkerGroup.DEFAULT_RECEIVE_THREADS
+                + SerialWorkerGroup.DEFAULT_RECEIVE_QUEUE_CAPACITY;
+            for (int i = 0; i < capacity; i++) {
+                pool.execute(blocker);
+            }
+            // 线程数和排队数都满了，不再创建新线程
+            assertEquals(SerialWorkerGroup.DEFAULT_RECEIVE_THREADS, pool.getPoolSize());
+            try {
+                pool.execute(blocker);
+                fail();
+            } catch (RejectedExecutionException e) {
+                // 期望
+            }
+        } finally {
+            release.countDown();
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void builder_rejectsNonPositiveSizes() {
+        try {
+            SerialWorkerGroup.newBuilder().receiveThreads(0).build();
+            fail();
+        } catch (IllegalArgumentException e) {
+            // 期望
+        }
+        try {
+            SerialWorkerGroup.newBuilder().receiveQueueCapacity(0).build();
+            fail();
+        } catch (IllegalArgumentException e) {
+            // 期望
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.licheedev.serialworker.worker;
+
+import androidx.annotation.NonNull;
+import com.licheedev.serialworker.core.DataReceiver;
+import com.licheedev.serialworker.core.FrameView;
+import com.licheedev.serialworker.core.SliceDataReceiver;
+import com.licheedev.serialworker.core.ValidData;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SliceReceiveTest {
+
+    /**
+     * 每帧第一个字节作为响应的参数
+     */
+    private static class Receiver implements SliceDataReceiver<FakePortWorker.Response> {
+
+        final List<FrameView> mRetained = new ArrayList<>(); // 违反约定，保留了实例
+        final List<byte[]> mCopied = new ArrayList<>();
+        int mByteArrayCalls;
+
+        @Override
+        public FakePortWorker.Response adaptReceive(@NonNull FrameView frame) {
+            mRetained.add(frame);
+            mCopied.add(frame.toByteArray());
+            return new FakePortWorker.Response(frame.getUnsigned(0));
+        }
+
+        @Override
+        public FakePortWorker.Response adaptReceive(@NonNull byte[] allPack) {
+            mByteArrayCalls++;
+            return adaptReceive(FrameView.wrap(allPack));
+        }
+
+        @Override
+        public void onReceive(@NonNull ValidData validData, @NonNull byte[] bytes, int offset,
+            int length) {
+            validData.addFrame(bytes, offset, length);
+        }
+
+        @Override
+        public void resetCache() {
+        }
+    }
+
+    private final List<Integer> mReceived = new ArrayList<>();
+    private final FakePortWorker mWorker = new FakePortWorker() {
+        @Override
+        public void onReceiveData(@NonNull Response recvData) {
+            mReceived.add(recvData.mArg);
+        }
+    };
+
+    @After
+    public void tearDown() {
+        mWorker.release();
+    }
+
+    private static void addFrame(ValidData validData, int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        validData.addFrame(bytes, 0, bytes.length);
+    }
+
+    @Test
+    public void sliceReceiver_getsViewsWithoutCopy() {
+        Receiver receiver = new Receiver();
+        ValidData validData = new ValidData();
+        addFrame(validData, 1, 10);
+        addFrame(validData, 2, 20);
+        mWorker.handleValidData(validData, receiver);
+
+        assertEquals(0, receiver.mByteArrayCalls);
+        assertSame(validData.get(0), receiver.mRetained.get(0));
+        assertSame(validData.get(1), receiver.mRetained.get(1));
+        assertEquals(2, mReceived.size());
+        assertEquals(Integer.valueOf(1), mReceived.get(0));
+        assertEquals(Integer.valueOf(2), mReceived.get(1));
+    }
+
+    @Test
+    public void retainedView_isReusedByNextBatch() {
+        Receiver receiver = new Receiver();
+        ValidData validData = new ValidData();
+        addFrame(validData, 1, 10);
+        mWorker.handleValidData(validData, receiver);
+
+        // 读线程处理下一批数据
+        validData.clear();
+        addFrame(validData, 3, 30, 31);
+        mWorker.handleValidData(validData, receiver);
+
+        // 两次拿到的是同一个实例，第一次保留下来的已经变成了第二批的数据
+        assertSame(receiver.mRetained.get(0), receiver.mRetained.get(1));
+        assertEquals(3, receiver.mRetained.get(0).getUnsigned(0));
+        assertEquals(3, receiver.mRetained.get(0).length());
+        // 在adaptReceive中复制出来的数据、转换好的响应都不受影响
+        assertArrayEquals(new byte[] { 1, 10 }, receiver.mCopied.get(0));
+        assertArrayEquals(new byte[] { 3, 30, 31 }, receiver.mCopied.get(1));
+        assertEquals(Integer.valueOf(1), mReceived.get(0));
+        assertEquals(Integer.valueOf(3), mReceived.get(1));
+    }
+
+    @Test
+    public void plainReceiver_getsCopies() {
+        final List<byte[]> packs = new ArrayList<>();
+        ValidData validData = new ValidData();
+        addFrame(validData, 4, 40);
+        addFrame(validData, 5, 50);
+        mWorker.handleValidData(validData,
+            new DataReceiver<FakePortWorker.Response>() {
+                @Override
+                public void onReceive(@NonNull ValidData validData, @NonNull byte[] bytes,
+                    int offset, int length) {
+                }
+
+                @Override
+                public FakePortWorker.Response adaptReceive(@NonNull byte[] allPack) {
+                    packs.add(allPack);
+                    return new FakePortWorker.Response(allPack[0]);
+                }
+
+                @Override
+                public void resetCache() {
+                }
+            });
+        assertEquals(2, packs.size());
+        assertArrayEquals(new byte[] { 4, 40 }, packs.get(0));
+        assertArrayEquals(new byte[] { 5, 50 }, packs.get(1));
+        // 普通接收器得到的是复制出来的数组，下一批数据不会改变它
+        validData.clear();
+        addFrame(validData, 6, 60);
+        assertArrayEquals(new byte[] { 4, 40 }, packs.get(0));
+        assertEquals(2, mReceived.size());
+    }
+}
@@ -0,0 +1,158 @@
+package com.licheedev.serialworker.worker;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SpscByteRingTest {
+
+    private static byte[] sequence(int start, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (start + i);
+        }
+        return bytes;
+    }
+
+    @Test
+    public void capacity_roundsUpToPowerOfTwo() {
+        assertEquals(1, new SpscByteRing(1).capacity());
+        assertEquals(8, new SpscByteRing(5).capacity());
+        assertEquals(8, new SpscByteRing(8).capacity());
+        assertEquals(4096, new SpscByteRing(4000).capacity());
+    }
+
+    @Test
+    public void offerThenPoll() {
+        SpscByteRing ring = new SpscByteRing(16);
+        assertTrue(ring.isEmpty());
+
+        assertEquals(5, ring.offer(sequence(0, 10), 2, 5));
+        assertFalse(ring.isEmpty());
+        assertEquals(5, ring.size());
+
+        byte[] dst = new byte[8];
+        assertEquals(5, ring.poll(dst, 1, 7));
+        for (int i = 0; i < 5; i++) {
+            assertEquals(2 + i, dst[1 + i]);
+        }
+        assertTrue(ring.isEmpty());
+        assertEquals(0, ring.poll(dst, 0, 8));
+    }
+
+    @Test
+    public void poll_respectsMaxLen() {
+        SpscByteRing ring = new SpscByteRing(16);
+        ring.offer(sequence(0, 10), 0, 10);
+
+        byte[] dst = new byte[10];
+        assertEquals(3, ring.poll(dst, 0, 3));
+        assertEquals(7, ring.size());
+        assertEquals(7, ring.poll(dst, 3, 10));
+        assertArrayEquals(sequence(0, 10), dst);
+    }
+
+    @Test
+    public void offer_whenFull_isPartial() {
+        SpscByteRing ring = new SpscByteRing(8);
+
+        assertEquals(6, ring.offer(sequence(0, 6), 0, 6));
+        // 只剩2字节
+        assertEquals(2, ring.offer(sequence(6, 5), 0, 5));
+        assertEquals(8, ring.size());
+        assertEquals(0, ring.offer(sequence(0, 1), 0, 1));
+
+        byte[] dst = new byte[8];
+        assertEquals(8, ring.poll(dst, 0, 8));
+        assertArrayEquals(sequence(0, 8), dst);
+        // 消费后又有空间
+        assertEquals(8, ring.offer(sequence(0, 8), 0, 8));
+    }
+
+    @Test
+    public void wrapAround() {
+        SpscByteRing ring = new SpscByteRing(8);
+        byte[] dst = new byte[8];
+        int next = 0;
+        int expected = 0;
+        // 每次写5读5，写入和读取的位置反复跨过数组末尾
+        for (int round = 0; round < 100; round++) {
+            assertEquals(5, ring.offer(sequence(next, 5), 0, 5));
+            next += 5;
+            assertEquals(5, ring.poll(dst, 0, 8));
+            for (int i = 0; i < 5; i++) {
+                assertEquals((byte) expected++, dst[i]);
+            }
+        }
+        assertTrue(ring.isEmpty());
+    }
+
+    @Test
+    public void concurrentProducerConsumer_keepsOrder() throws Exception {
+        final SpscByteRing ring = new SpscByteRing(64);
+        final int total = 4 * 1024 * 1024;
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Random random = new Random(1);
+                byte[] src = new byte[100];
+                int written = 0;
+                while (written < total) {
+                    int len = Math.min(1 + random.nextInt(src.length), total - written);
+                    for (int i = 0; i < len; i++) {
+                        src[i] = (byte) (written + i);
+                    }
+                    int offset = 0;
+                    while (offset < len) {
+                        if (error.get() != null) {
+                            return;
+                        }
+                        int count = ring.offer(src, offset, len - offset);
+                        if (count == 0) {
+                            Thread.yield();
+                        }
+                        offset += count;
+                    }
+                    written += len;
+                }
+            }
+        });
+        Thread consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Random random = new Random(2);
+                byte[] dst = new byte[100];
+                int read = 0;
+                while (read < total) {
+                    int count = ring.poll(dst, 0, 1 + random.nextInt(dst.length));
+                    if (count == 0) {
+                        Thread.yield();
+                        continue;
+                    }
+                    for (int i = 0; i < count; i++) {
+                        if (dst[i] != (byte) (read + i)) {
+                            error.set(new AssertionError("mismatch at " + (read + i)));
+                            return;
+                        }
+                    }
+                    read += count;
+                }
+            }
+        });
+        producer.start();
+        consumer.start();
+        producer.join(30000);
+        consumer.join(30000);
+
+        assertFalse(producer.isAlive());
+        assertFalse(consumer.isAlive());
+        if (error.get() != null) {
+            throw new AssertionError(error.get());
+        }
+        assertTrue(ring.isEmpty());
+    }
+}
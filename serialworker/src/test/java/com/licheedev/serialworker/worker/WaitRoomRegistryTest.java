@@ -0,0 +1,218 @@
+package com.licheedev.serialworker.worker;
+
+import com.licheedev.serialworker.core.WaitRoom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WaitRoomRegistryTest {
+
+    private WaitRoomRegistry<String> mRegistry;
+
+    @Before
+    public void setUp() {
+        mRegistry = new WaitRoomRegistry<>();
+    }
+
+    @Test
+    public void keyedResponse_onlyReachesSameKey() {
+        Room a1 = new Room();
+        Room a2 = new Room();
+        Room b = new Room();
+        mRegistry.add(a1, 0xA4);
+        mRegistry.add(b, 0x28);
+        mRegistry.add(a2, 0xA4);
+
+        mRegistry.putResponse("open", 0xA4);
+
+        assertEquals(1, a1.mResponses.size());
+        assertEquals(1, a2.mResponses.size());
+        assertEquals(0, b.mResponses.size());
+    }
+
+    @Test
+    public void keyedResponse_deliveredInRegistrationOrder() {
+        final List<Room> order = new ArrayList<>();
+        Room first = new Room(order);
+        Room second = new Room(order);
+        mRegistry.add(first, "k");
+        mRegistry.add(second, "k");
+
+        mRegistry.putResponse("r", "k");
+
+        assertEquals(2, order.size());
+        assertSame(first, order.get(0));
+        assertSame(second, order.get(1));
+    }
+
+    @Test
+    public void unkeyedRooms_seeEveryResponse() {
+        Room unkeyed = new Room();
+        Room keyed = new Room();
+        mRegistry.add(unkeyed, null);
+        mRegistry.add(keyed, 1);
+
+        mRegistry.putResponse("one", 1);
+        mRegistry.putResponse("two", 2);
+
+        assertEquals(2, unkeyed.mResponses.size());
+        assertEquals(1, keyed.mResponses.size());
+    }
+
+    @Test
+    public void unkeyedResponse_reachesAllRooms() {
+        Room unkeyed = new Room();
+        Room keyed1 = new Room();
+        Room keyed2 = new Room();
+        mRegistry.add(unkeyed, null);
+        mRegistry.add(keyed1, 1);
+        mRegistry.add(keyed2, 2);
+
+        mRegistry.putResponse("r", null);
+
+        assertEquals(1, unkeyed.mResponses.size());
+        assertEquals(1, keyed1.mResponses.size());
+        assertEquals(1, keyed2.mResponses.size());
+    }
+
+    @Test
+    public void removedRoom_getsNothing() {
+        Room keyed = new Room();
+        Room unkeyed = new Room();
+        mRegistry.add(keyed, 1);
+        mRegistry.add(unkeyed, null);
+        mRegistry.remove(keyed, 1);
+        mRegistry.remove(unkeyed, null);
+
+        mRegistry.putResponse("r", 1);
+        mRegistry.putResponse("r", null);
+
+        assertEquals(0, keyed.mResponses.size());
+        assertEquals(0, unkeyed.mResponses.size());
+    }
+
+    @Test
+    public void keyReusedAfterBucketRemoved() {
+        Room old = new Room();
+        mRegistry.add(old, 1);
+        mRegistry.remove(old, 1);
+
+        Room room = new Room();
+        mRegistry.add(room, 1);
+        mRegistry.putResponse("r", 1);
+
+        assertEquals(1, room.mResponses.size());
+        assertEquals(0, old.mResponses.size());
+    }
+
+    @Test
+    public void throwingRoom_doesNotBlockOthers() {
+        Room bad = new Room() {
+            @Override
+            public void putResponse(String s) {
+                throw new IllegalStateException();
+            }
+
+            @Override
+            public void notifyRunningReceive(boolean running) {
+                throw new IllegalStateException();
+            }
+        };
+        Room good = new Room();
+        mRegistry.add(bad, 1);
+        mRegistry.add(good, 1);
+
+        mRegistry.putResponse("r", 1);
+        mRegistry.notifyRunningReceive(false);
+
+        assertEquals(1, good.mResponses.size());
+        assertEquals(Boolean.FALSE, good.mRunning);
+    }
+
+    @Test
+    public void notifyRunningReceive_reachesAllRooms() {
+        Room keyed = new Room();
+        Room unkeyed = new Room();
+        mRegistry.add(keyed, 1);
+        mRegistry.add(unkeyed, null);
+
+        mRegistry.notifyRunningReceive(true);
+
+        assertEquals(Boolean.TRUE, keyed.mRunning);
+        assertEquals(Boolean.TRUE, unkeyed.mRunning);
+    }
+
+    @Test
+    public void concurrentChurnOnSameKey_keepsRegisteredRoom() throws Exception {
+        // 其他线程不停地在同一个关联键上注册、移除，期间一直注册着的请求不能丢失
+        final Room stay = new Room();
+        final AtomicBoolean stop = new AtomicBoolean();
+        final CountDownLatch started = new CountDownLatch(4);
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    while (!stop.get()) {
+                        Room room = new Room();
+                        mRegistry.add(room, 1);
+                        mRegistry.remove(room, 1);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        started.await();
+        for (int i = 0; i < 2000; i++) {
+            mRegistry.add(stay, 1);
+            mRegistry.putResponse("r", 1);
+            mRegistry.remove(stay, 1);
+        }
+        stop.set(true);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(2000, stay.mResponses.size());
+    }
+
+    private static class Room implements WaitRoom<String> {
+
+        final List<String> mResponses = new CopyOnWriteArrayList<>();
+        final List<Room> mOrder;
+        volatile Boolean mRunning;
+
+        Room() {
+            this(null);
+        }
+
+        Room(List<Room> order) {
+            mOrder = order;
+        }
+
+        @Override
+        public Object getResponse(long timeout) {
+            return mResponses.isEmpty() ? null : mResponses.get(0);
+        }
+
+        @Override
+        public void putResponse(String s) {
+            mResponses.add(s);
+            if (mOrder != null) {
+                mOrder.add(this);
+            }
+        }
+
+        @Override
+        public void notifyRunningReceive(boolean running) {
+            mRunning = running;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.licheedev.serialworker.worker;
+
+import com.licheedev.serialworker.core.Callback;
+import com.licheedev.serialworker.core.ResponseFuture;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WriteCoalescingTest {
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private final FakePortWorker mWorker = new FakePortWorker();
+    private final CountDownLatch mRelease = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        mRelease.countDown();
+        mWorker.release();
+    }
+
+    /**
+     * 让串口线程一直忙，直到mRelease，好让后面的请求先排好队
+     */
+    private static void blockSerialThread(BaseSerialWorker worker, final CountDownLatch release)
+        throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        worker.mSerialExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * 记录回调结果，以及回调时已经flush的次数
+     */
+    private class WriteCallback implements Callback<Void> {
+
+        final CountDownLatch mDone = new CountDownLatch(1);
+        final AtomicReference<Throwable> mError = new AtomicReference<>();
+        volatile int mFlushesSeen = -1;
+
+        @Override
+        public void onSuccess(Void aVoid) {
+            mFlushesSeen = mWorker.mFlushes.get();
+            mDone.countDown();
+        }
+
+        @Override
+        public void onFailure(Throwable tr) {
+            mFlushesSeen = mWorker.mFlushes.get();
+            mError.set(tr);
+            mDone.countDown();
+        }
+
+        Throwable await() throws InterruptedException {
+            assertTrue(mDone.await(5, TimeUnit.SECONDS));
+            return mError.get();
+        }
+    }
+
+    private static Throwable failure(ResponseFuture<?> future) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+        fail();
+        return null;
+    }
+
+    @Test
+    public void disabledByDefault_flushesEveryFrame() throws Exception {
+        assertEquals(0, mWorker.getWriteCoalescing());
+        assertEquals(0, mWorker.getAverageFramesPerWrite(), 0);
+        blockSerialThread(mWorker, mRelease);
+        List<WriteCallback> callbacks = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            WriteCallback callback = new WriteCallback();
+            mWorker.sendOnly(new FakePortWorker.Command(), callback, DIRECT);
+            callbacks.add(callback);
+        }
+        mRelease.countDown();
+        for (WriteCallback callback : callbacks) {
+            assertNull(callback.await());
+        }
+        assertEquals(3, mWorker.mFlushes.get());
+        assertEquals(3, mWorker.getWriteCount());
+        assertEquals(1.0, mWorker.getAverageFramesPerWrite(), 0);
+    }
+
+    @Test
+    public void queuedSends_flushOnceWhenQueueDrains() throws Exception {
+        mWorker.setWriteCoalescing(1000000);
+        assertEquals(1000000, mWorker.getWriteCoalescing());
+        blockSerialThread(mWorker, mRelease);
+        List<WriteCallback> callbacks = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            WriteCallback callback = new WriteCallback();
+            mWorker.sendOnly(new FakePortWorker.Command(), callback, DIRECT);
+            callbacks.add(callback);
+        }
+        // sendBytes用默认的回调线程
+        mWorker.setCallbackExecutor(null);
+        WriteCallback bytesCallback = new WriteCallback();
+        mWorker.sendBytes(new byte[] { 1, 2, 3 }, bytesCallback);
+        callbacks.add(bytesCallback);
+        mRelease.countDown();
+
+        for (WriteCallback callback : callbacks) {
+            assertNull(callback.await());
+            // 写入串口后才回调
+            assertEquals(1, callback.mFlushesSeen);
+        }
+        assertEquals(5, mWorker.mWrites.get());
+        assertEquals(1, mWorker.mFlushes.get());
+        assertEquals(1, mWorker.getWriteCount());
+        assertEquals(5, mWorker.getWrittenFrameCount());
+        assertEquals(5.0, mWorker.getAverageFramesPerWrite(), 0);
+    }
+
+    @Test
+    public void flushFailure_failsDeferredCallbacks() throws Exception {
+        mWorker.setWriteCoalescing(1000000);
+        IOException error = new IOException("flush failed");
+        mWorker.mFlushError = error;
+        blockSerialThread(mWorker, mRelease);
+        List<WriteCallback> callbacks = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            WriteCallback callback = new WriteCallback();
+            mWorker.sendOnly(new FakePortWorker.Command(), callback, DIRECT);
+            callbacks.add(callback);
+        }
+        mRelease.countDown();
+
+        for (WriteCallback callback : callbacks) {
+            assertSame(error, callback.await());
+        }
+        assertEquals(0, mWorker.getWriteCount());
+
+        // 恢复后正常回调
+        mWorker.mFlushError = null;
+        WriteCallback callback = new WriteCallback();
+        mWorker.sendOnly(new FakePortWorker.Command(), callback, DIRECT);
+        assertNull(callback.await());
+    }
+
+    @Test
+    public void syncSend_flushesImmediately() throws Exception {
+        mWorker.setWriteCoalescing(1000000);
+        mWorker.syncSendOnly(new FakePortWorker.Command());
+        assertEquals(1, mWorker.mFlushes.get());
+        mWorker.syncSendBytes(new byte[] { 1 });
+        assertEquals(2, mWorker.mFlushes.get());
+
+        mWorker.setDirectSync(true);
+        mWorker.syncSendOnly(new FakePortWorker.Command());
+        assertEquals(3, mWorker.mFlushes.get());
+        assertEquals(1.0, mWorker.getAverageFramesPerWrite(), 0);
+    }
+
+    @Test
+    public void syncSend_takesQueuedFramesAlong() throws Exception {
+        mWorker.setWriteCoalescing(1000000);
+        blockSerialThread(mWorker, mRelease);
+        WriteCallback first = new WriteCallback();
+        WriteCallback second = new WriteCallback();
+        mWorker.sendOnly(new FakePortWorker.Command(), first, DIRECT);
+        mWorker.sendOnly(new FakePortWorker.Command(), second, DIRECT);
+        final CountDownLatch synced = new CountDownLatch(1);
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mWorker.syncSendOnly(new FakePortWorker.Command());
+                    synced.countDown();
+                } catch (Exception e) {
+                    // 测试失败
+                }
+            }
+        }).start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (mWorker.getQueueDepth() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        mRelease.countDown();
+
+        assertTrue(synced.await(5, TimeUnit.SECONDS));
+        assertNull(first.await());
+        assertNull(second.await());
+        // 同步发送不合并，但会把之前缓存的两帧一起写入
+        assertEquals(1, mWorker.mFlushes.get());
+        assertEquals(3.0, mWorker.getAverageFramesPerWrite(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeDelay() {
+        mWorker.setWriteCoalescing(-1);
+    }
+
+    @Test
+    public void sendAsync_timeoutStartsAfterFlush() throws Exception {
+        final FakePortWorkerX worker = new FakePortWorkerX();
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            worker.setWriteCoalescing(1000000);
+            worker.setTimeout(100);
+            blockSerialThread(worker, release);
+            ResponseFuture<FakePortWorker.Response> future =
+                worker.sendAsync(FakePortWorkerX.command(1));
+            // 排在后面、不写数据的任务，在它执行完之前命令一直留在缓存中
+            final AtomicInteger flushesBehind = new AtomicInteger(-1);
+            worker.mSerialExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Thread.sleep(200);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    flushesBehind.set(worker.mFlushes.get());
+                }
+            });
+            long start = System.nanoTime();
+            release.countDown();
+            assertTrue(failure(future) instanceof TimeoutException);
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertEquals(0, flushesBehind.get());
+            // 200ms后才写入串口，再等100ms超时
+            assertTrue("elapsed " + elapsed, elapsed >= 280);
+            assertEquals(1, worker.mFlushes.get());
+        } finally {
+            release.countDown();
+            worker.release();
+        }
+    }
+
+    @Test
+    public void sendAsync_flushFailureFailsRequest() throws Exception {
+        FakePortWorkerX worker = new FakePortWorkerX();
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            worker.setWriteCoalescing(1000000);
+            IOException error = new IOException("flush failed");
+            worker.mFlushError = error;
+            blockSerialThread(worker, release);
+            ResponseFuture<FakePortWorker.Response> first =
+                worker.sendAsync(FakePortWorkerX.command(1));
+            ResponseFuture<FakePortWorker.Response> second =
+                worker.sendAsync(FakePortWorkerX.command(2));
+            release.countDown();
+            assertSame(error, failure(first));
+            assertSame(error, failure(second));
+            assertEquals(1, worker.mFlushes.get());
+        } finally {
+            release.countDown();
+            worker.release();
+        }
+    }
+}